@@ -42,6 +42,7 @@ public final class ReadRecordsCmdBuild extends AbstractPoCommandBuilder<ReadReco
   private final int sfi;
   private final int firstRecordNumber;
   private final ReadMode readMode;
+  private final int expectedLength;
 
   /**
    * Instantiates a new read records cmd build.
@@ -63,6 +64,7 @@ public final class ReadRecordsCmdBuild extends AbstractPoCommandBuilder<ReadReco
     this.sfi = sfi;
     this.firstRecordNumber = firstRecordNumber;
     this.readMode = readMode;
+    this.expectedLength = expectedLength;
 
     byte p1 = (byte) firstRecordNumber;
     byte p2 = (sfi == (byte) 0x00) ? (byte) 0x05 : (byte) ((byte) (sfi * 8) + 5);
@@ -128,4 +130,12 @@ public final class ReadRecordsCmdBuild extends AbstractPoCommandBuilder<ReadReco
   public ReadMode getReadMode() {
     return readMode;
   }
+
+  /**
+   * @return the expected length of the record(s), 0 if not specified
+   * @since 1.0
+   */
+  public int getExpectedLength() {
+    return expectedLength;
+  }
 }
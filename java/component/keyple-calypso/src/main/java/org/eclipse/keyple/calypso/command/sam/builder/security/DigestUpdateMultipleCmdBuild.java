@@ -33,7 +33,8 @@ public class DigestUpdateMultipleCmdBuild
    *
    * @param revision the revision
    * @param encryptedSession the encrypted session flag, true if encrypted
-   * @param digestData the digest data
+   * @param digestData the digest data: a sequence of PO exchange buffers, each one preceded by its
+   *     length
    * @since 0.9
    */
   public DigestUpdateMultipleCmdBuild(
@@ -43,7 +44,8 @@ public class DigestUpdateMultipleCmdBuild
       this.defaultRevision = revision;
     }
     byte cla = this.defaultRevision.getClassByte();
-    byte p1 = (byte) 0x00;
+    // P1 = 80h distinguishes the Digest Update Multiple from the Digest Update command
+    byte p1 = (byte) 0x80;
     byte p2 = encryptedSession ? (byte) 0x80 : (byte) 0x00;
 
     if (digestData == null || digestData.length > 255) {
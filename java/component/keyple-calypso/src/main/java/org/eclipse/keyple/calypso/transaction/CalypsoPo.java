@@ -95,6 +95,12 @@ public class CalypsoPo extends AbstractSmartCard {
   private int svLastTNum;
   private SvLoadLogRecord svLoadLogRecord;
   private SvDebitLogRecord svDebitLogRecord;
+  // transient session data, owned by the transaction in progress on this PO
+  private transient byte[] poChallenge;
+  private transient byte svKvc;
+  private transient byte[] svGetHeader;
+  private transient byte[] svGetData;
+  private transient byte[] svOperationSignature;
 
   /**
    * Constructor.
@@ -570,6 +576,99 @@ public class CalypsoPo extends AbstractSmartCard {
     }
   }
 
+  /**
+   * (package-private)<br>
+   * Sets the challenge received from the PO
+   *
+   * @param poChallenge the challenge bytes
+   * @since 1.0
+   */
+  final void setPoChallenge(byte[] poChallenge) {
+    this.poChallenge = poChallenge;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the challenge received from the PO
+   *
+   * @return an array of bytes containing the challenge bytes (variable length according to the
+   *     revision of the PO). May be null if the challenge is not available.
+   * @since 1.0
+   */
+  final byte[] getPoChallenge() {
+    return poChallenge;
+  }
+
+  /**
+   * (package-private)<br>
+   * Sets the SV Get context needed to build the next SV Operation command
+   *
+   * @param svKvc the SV KVC
+   * @param svGetHeader the SV Get command header
+   * @param svGetData the SV Get command response data
+   * @since 1.0
+   */
+  final void setSvGetContext(byte svKvc, byte[] svGetHeader, byte[] svGetData) {
+    this.svKvc = svKvc;
+    this.svGetHeader = svGetHeader;
+    this.svGetData = svGetData;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the SV KVC from the PO
+   *
+   * @return the SV KVC byte.
+   * @since 1.0
+   */
+  final byte getSvKvc() {
+    return svKvc;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the SV Get command header
+   *
+   * @return a byte array containing the SV Get command header.
+   * @since 1.0
+   */
+  final byte[] getSvGetHeader() {
+    return svGetHeader;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the SV Get command response data
+   *
+   * @return a byte array containing the SV Get command response data.
+   * @since 1.0
+   */
+  final byte[] getSvGetData() {
+    return svGetData;
+  }
+
+  /**
+   * (package-private)<br>
+   * Sets the last SV Operation signature (SV Reload, Debit or Undebit)
+   *
+   * @param svOperationSignature the signature returned by the PO (may be null)
+   * @since 1.0
+   */
+  final void setSvOperationSignature(byte[] svOperationSignature) {
+    this.svOperationSignature = svOperationSignature;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the last SV Operation signature (SV Reload, Debit or Undebit)
+   *
+   * @return a byte array containing the SV Operation signature or null if not available.
+   * @since 1.0
+   */
+  final byte[] getSvOperationSignature() {
+    return svOperationSignature;
+  }
+
   /**
    * Gets the current SV balance value
    *
@@ -912,6 +1011,47 @@ public class CalypsoPo extends AbstractSmartCard {
     copyMapSfi(sfiByLidBackup, sfiByLid);
   }
 
+  /**
+   * (package-private)<br>
+   * Gets the backup of the Elementary Files made at the opening of the last secure session.
+   *
+   * @return a not null map (empty if no backup was made)
+   * @since 1.0
+   */
+  final Map<Byte, ElementaryFile> getAllFilesBackup() {
+    return efBySfiBackup;
+  }
+
+  /**
+   * (package-private)<br>
+   *
+   * @return true if the ratification status is known (a session has been opened)
+   * @since 1.0
+   */
+  final boolean hasRatificationStatus() {
+    return isDfRatified != null;
+  }
+
+  /**
+   * (package-private)<br>
+   *
+   * @return true if the PIN status has been checked
+   * @since 1.0
+   */
+  final boolean hasPinStatus() {
+    return pinAttemptCounter != null;
+  }
+
+  /**
+   * (package-private)<br>
+   *
+   * @return true if a SV Get command has been executed
+   * @since 1.0
+   */
+  final boolean hasSvData() {
+    return svBalance != null;
+  }
+
   /**
    * (private)<br>
    * Copy a map of ElementaryFile by SFI to another one by cloning each element.
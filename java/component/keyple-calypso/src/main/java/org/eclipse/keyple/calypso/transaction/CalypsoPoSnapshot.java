@@ -0,0 +1,736 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.calypso.transaction;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Compact binary image of the content of a {@link CalypsoPo}.
+ *
+ * <p>The image contains the application serial number, the Elementary Files (headers and records,
+ * including the counters and the SV log files), the ratification status, the PIN status and the
+ * SV balance and last transaction number. It is intended to be shipped to a back office or to an
+ * audit stream after a transaction:
+ *
+ * <ul>
+ *   <li>{@link #encode(CalypsoPo)} produces a full image of the PO.
+ *   <li>{@link #encodeSessionDelta(CalypsoPo)} produces a delta image containing only the headers
+ *       and records added or changed since the opening of the last secure session.
+ *   <li>{@link #decode(byte[])} restores a full image as a {@code CalypsoPoSnapshot}, on which the
+ *       delta images can then be applied with {@link #applyDelta(byte[])}.
+ * </ul>
+ *
+ * <p>The first byte of an image is the version of its format, the decoding of an image having an
+ * unknown version is refused. The integers are encoded as unsigned variable length quantities (7
+ * bits per byte, least significant group first) and the EFs and records are sorted by SFI and by
+ * record number, so that the same content always gives the same image.
+ *
+ * <p>A snapshot is immutable: its EFs are never exposed, the accessors return copies of them.
+ *
+ * @since 1.0
+ */
+public final class CalypsoPoSnapshot {
+
+  /**
+   * The version of the image format produced by this class.
+   *
+   * @since 1.0
+   */
+  public static final int FORMAT_VERSION = 1;
+
+  private static final int IMAGE_TYPE_FULL = 0x00;
+  private static final int IMAGE_TYPE_DELTA = 0x01;
+
+  private static final int FLAG_RATIFICATION_STATUS = 0x01;
+  private static final int FLAG_DF_RATIFIED = 0x02;
+  private static final int FLAG_PIN_STATUS = 0x04;
+  private static final int FLAG_SV_DATA = 0x08;
+
+  private static final int FLAG_FILE_HEADER = 0x01;
+  private static final int FLAG_SHARED_REFERENCE = 0x02;
+
+  private static final int INITIAL_IMAGE_SIZE = 512;
+
+  private final byte[] applicationSerialNumber;
+  private final Boolean isDfRatified;
+  private final Integer pinAttemptCounter;
+  private final Integer svBalance;
+  private final int svLastTNum;
+  private final SortedMap<Byte, ElementaryFile> efBySfi;
+
+  /**
+   * (private)<br>
+   * Constructor.
+   */
+  private CalypsoPoSnapshot(
+      byte[] applicationSerialNumber,
+      Boolean isDfRatified,
+      Integer pinAttemptCounter,
+      Integer svBalance,
+      int svLastTNum,
+      SortedMap<Byte, ElementaryFile> efBySfi) {
+    this.applicationSerialNumber = applicationSerialNumber;
+    this.isDfRatified = isDfRatified;
+    this.pinAttemptCounter = pinAttemptCounter;
+    this.svBalance = svBalance;
+    this.svLastTNum = svLastTNum;
+    this.efBySfi = efBySfi;
+  }
+
+  /**
+   * Encodes the full image of the provided PO.
+   *
+   * @param calypsoPo the PO (must be not null)
+   * @return a not empty byte array
+   * @since 1.0
+   */
+  public static byte[] encode(CalypsoPo calypsoPo) {
+    return encode(
+        IMAGE_TYPE_FULL,
+        calypsoPo.getApplicationSerialNumberBytes(),
+        calypsoPo.hasRatificationStatus() ? calypsoPo.isDfRatified() : null,
+        calypsoPo.hasPinStatus() ? calypsoPo.getPinAttemptRemaining() : null,
+        calypsoPo.hasSvData() ? calypsoPo.getSvBalance() : null,
+        calypsoPo.hasSvData() ? calypsoPo.getSvLastTNum() : 0,
+        calypsoPo.getAllFiles(),
+        null);
+  }
+
+  /**
+   * Encodes a delta image of the provided PO containing only the headers and records added or
+   * changed since the opening of the last secure session, as well as the current ratification
+   * status, PIN status and SV data.
+   *
+   * <p>If no session was opened, the delta image contains all the known headers and records.
+   *
+   * @param calypsoPo the PO (must be not null)
+   * @return a not empty byte array
+   * @since 1.0
+   */
+  public static byte[] encodeSessionDelta(CalypsoPo calypsoPo) {
+    return encode(
+        IMAGE_TYPE_DELTA,
+        calypsoPo.getApplicationSerialNumberBytes(),
+        calypsoPo.hasRatificationStatus() ? calypsoPo.isDfRatified() : null,
+        calypsoPo.hasPinStatus() ? calypsoPo.getPinAttemptRemaining() : null,
+        calypsoPo.hasSvData() ? calypsoPo.getSvBalance() : null,
+        calypsoPo.hasSvData() ? calypsoPo.getSvLastTNum() : 0,
+        calypsoPo.getAllFiles(),
+        calypsoPo.getAllFilesBackup());
+  }
+
+  /**
+   * Decodes a full image.
+   *
+   * @param image the image produced by {@link #encode(CalypsoPo)} or {@link #encode()} (must be
+   *     not null)
+   * @return a not null reference
+   * @throws IllegalArgumentException if the image is not a valid full image of a known version
+   * @since 1.0
+   */
+  public static CalypsoPoSnapshot decode(byte[] image) {
+    return decode(image, IMAGE_TYPE_FULL, null);
+  }
+
+  /**
+   * Applies a delta image to this snapshot.
+   *
+   * <p>The headers and records of the delta image replace those of the snapshot, the other ones
+   * are kept. The ratification status, PIN status and SV data are those of the delta image.
+   *
+   * @param delta the image produced by {@link #encodeSessionDelta(CalypsoPo)} or {@link
+   *     #encodeDelta(CalypsoPoSnapshot)} (must be not null)
+   * @return a new snapshot
+   * @throws IllegalArgumentException if the image is not a valid delta image of a known version or
+   *     if it belongs to another PO
+   * @since 1.0
+   */
+  public CalypsoPoSnapshot applyDelta(byte[] delta) {
+    return decode(delta, IMAGE_TYPE_DELTA, this);
+  }
+
+  /**
+   * Encodes the full image of this snapshot.
+   *
+   * @return a not empty byte array
+   * @since 1.0
+   */
+  public byte[] encode() {
+    return encode(
+        IMAGE_TYPE_FULL,
+        applicationSerialNumber,
+        isDfRatified,
+        pinAttemptCounter,
+        svBalance,
+        svLastTNum,
+        efBySfi,
+        null);
+  }
+
+  /**
+   * Encodes a delta image containing only the headers and records of this snapshot added or
+   * changed since the provided snapshot.
+   *
+   * @param reference the previous snapshot of the same PO (must be not null)
+   * @return a not empty byte array
+   * @throws IllegalArgumentException if the reference belongs to another PO
+   * @since 1.0
+   */
+  public byte[] encodeDelta(CalypsoPoSnapshot reference) {
+    if (!Arrays.equals(applicationSerialNumber, reference.applicationSerialNumber)) {
+      throw new IllegalArgumentException("The reference snapshot belongs to another PO.");
+    }
+    return encode(
+        IMAGE_TYPE_DELTA,
+        applicationSerialNumber,
+        isDfRatified,
+        pinAttemptCounter,
+        svBalance,
+        svLastTNum,
+        efBySfi,
+        reference.efBySfi);
+  }
+
+  /**
+   * Gets the application serial number of the PO.
+   *
+   * @return a not null byte array
+   * @since 1.0
+   */
+  public byte[] getApplicationSerialNumber() {
+    return applicationSerialNumber.clone();
+  }
+
+  /**
+   * Gets the ratification status of the last session.
+   *
+   * @return null if no session was opened
+   * @since 1.0
+   */
+  public Boolean isDfRatified() {
+    return isDfRatified;
+  }
+
+  /**
+   * Gets the number of erroneous PIN presentations remaining before blocking.
+   *
+   * @return null if the PIN status has not been checked
+   * @since 1.0
+   */
+  public Integer getPinAttemptRemaining() {
+    return pinAttemptCounter;
+  }
+
+  /**
+   * Gets the SV balance.
+   *
+   * @return null if no SV Get command has been executed
+   * @since 1.0
+   */
+  public Integer getSvBalance() {
+    return svBalance;
+  }
+
+  /**
+   * Gets the last SV transaction number.
+   *
+   * @return 0 if no SV Get command has been executed
+   * @since 1.0
+   */
+  public int getSvLastTNum() {
+    return svLastTNum;
+  }
+
+  /**
+   * Gets a copy of the EF having the provided SFI.
+   *
+   * @param sfi the SFI
+   * @return a not null reference
+   * @throws NoSuchElementException if the EF is not found
+   * @since 1.0
+   */
+  public ElementaryFile getFileBySfi(byte sfi) {
+    ElementaryFile ef = efBySfi.get(sfi);
+    if (ef == null) {
+      throw new NoSuchElementException(
+          "EF with SFI [0x" + Integer.toHexString(sfi & 0xFF) + "] is not found.");
+    }
+    return new ElementaryFile(ef);
+  }
+
+  /**
+   * Gets a copy of all the EFs sorted by SFI.
+   *
+   * @return a not null unmodifiable map (may be empty)
+   * @since 1.0
+   */
+  public SortedMap<Byte, ElementaryFile> getAllFiles() {
+    SortedMap<Byte, ElementaryFile> files = new TreeMap<Byte, ElementaryFile>();
+    for (ElementaryFile ef : efBySfi.values()) {
+      files.put(ef.getSfi(), new ElementaryFile(ef));
+    }
+    return Collections.unmodifiableSortedMap(files);
+  }
+
+  /**
+   * (private)<br>
+   * Encodes an image.
+   *
+   * @param imageType the image type
+   * @param applicationSerialNumber the application serial number
+   * @param isDfRatified the ratification status (may be null)
+   * @param pinAttemptCounter the PIN attempt counter (may be null)
+   * @param svBalance the SV balance (may be null)
+   * @param svLastTNum the last SV transaction number
+   * @param files the EFs
+   * @param referenceFiles the EFs of reference of a delta image (null for a full image)
+   * @return a not empty byte array
+   */
+  private static byte[] encode(
+      int imageType,
+      byte[] applicationSerialNumber,
+      Boolean isDfRatified,
+      Integer pinAttemptCounter,
+      Integer svBalance,
+      int svLastTNum,
+      Map<Byte, ElementaryFile> files,
+      Map<Byte, ElementaryFile> referenceFiles) {
+    ImageWriter writer = new ImageWriter();
+    writer.writeByte(FORMAT_VERSION);
+    writer.writeByte(imageType);
+    writer.writeBytes(applicationSerialNumber);
+    int flags = 0;
+    if (isDfRatified != null) {
+      flags |= FLAG_RATIFICATION_STATUS;
+      if (isDfRatified) {
+        flags |= FLAG_DF_RATIFIED;
+      }
+    }
+    if (pinAttemptCounter != null) {
+      flags |= FLAG_PIN_STATUS;
+    }
+    if (svBalance != null) {
+      flags |= FLAG_SV_DATA;
+    }
+    writer.writeByte(flags);
+    if (pinAttemptCounter != null) {
+      writer.writeInt(pinAttemptCounter);
+    }
+    if (svBalance != null) {
+      // the SV balance is a signed value
+      writer.writeInt((svBalance << 1) ^ (svBalance >> 31));
+      writer.writeInt(svLastTNum);
+    }
+
+    // the EFs are sorted to produce the same image for the same content
+    SortedMap<Byte, ElementaryFile> sortedFiles =
+        files instanceof SortedMap
+            ? (SortedMap<Byte, ElementaryFile>) files
+            : new TreeMap<Byte, ElementaryFile>(files);
+    int nbFilesPosition = writer.reserveCount();
+    int nbFiles = 0;
+    for (ElementaryFile ef : sortedFiles.values()) {
+      ElementaryFile referenceEf = referenceFiles != null ? referenceFiles.get(ef.getSfi()) : null;
+      FileHeader header = ef.getHeader();
+      boolean isHeaderWritten =
+          header != null
+              && (referenceEf == null || !isSameHeader(header, referenceEf.getHeader()));
+      int filePosition = writer.getLength();
+      writer.writeByte(ef.getSfi());
+      writeHeader(writer, isHeaderWritten ? header : null);
+      int nbRecordsPosition = writer.reserveCount();
+      int nbRecords = 0;
+      FileData data = ef.getData();
+      for (int numRecord = data.getNextRecordNumber(0);
+          numRecord > 0;
+          numRecord = data.getNextRecordNumber(numRecord)) {
+        byte[] content = data.findContent(numRecord);
+        if (referenceEf == null
+            || !Arrays.equals(content, referenceEf.getData().findContent(numRecord))) {
+          writer.writeInt(numRecord);
+          writer.writeBytes(content);
+          nbRecords++;
+        }
+      }
+      if (referenceFiles != null && !isHeaderWritten && nbRecords == 0) {
+        // nothing changed in this EF
+        writer.setLength(filePosition);
+        continue;
+      }
+      writer.writeCount(nbRecordsPosition, nbRecords);
+      nbFiles++;
+    }
+    writer.writeCount(nbFilesPosition, nbFiles);
+    return writer.toByteArray();
+  }
+
+  /**
+   * (private)<br>
+   * Writes the flags of an EF followed by its header if any.
+   *
+   * @param writer the writer
+   * @param header the header (may be null)
+   */
+  private static void writeHeader(ImageWriter writer, FileHeader header) {
+    if (header == null) {
+      writer.writeByte(0);
+      return;
+    }
+    Short sharedReference = header.getSharedReference();
+    writer.writeByte(
+        sharedReference != null ? FLAG_FILE_HEADER | FLAG_SHARED_REFERENCE : FLAG_FILE_HEADER);
+    writer.writeInt(header.getLid() & 0xFFFF);
+    writer.writeInt(header.getRecordsNumber());
+    writer.writeInt(header.getRecordSize());
+    writer.writeByte(header.getType().ordinal());
+    writer.writeBytes(header.getAccessConditions());
+    writer.writeBytes(header.getKeyIndexes());
+    writer.writeByte(header.getDfStatus());
+    if (sharedReference != null) {
+      writer.writeInt(sharedReference & 0xFFFF);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Decodes an image.
+   *
+   * @param image the image
+   * @param expectedImageType the expected image type
+   * @param reference the snapshot to which a delta image is applied (null for a full image)
+   * @return a not null reference
+   * @throws IllegalArgumentException if the image is not valid
+   */
+  private static CalypsoPoSnapshot decode(
+      byte[] image, int expectedImageType, CalypsoPoSnapshot reference) {
+    ImageReader reader = new ImageReader(image);
+    int version = reader.readByte();
+    if (version < 1 || version > FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported image format version: " + version);
+    }
+    if (reader.readByte() != expectedImageType) {
+      throw new IllegalArgumentException(
+          expectedImageType == IMAGE_TYPE_FULL
+              ? "A full image is expected."
+              : "A delta image is expected.");
+    }
+    byte[] applicationSerialNumber = reader.readBytes();
+    if (reference != null
+        && !Arrays.equals(applicationSerialNumber, reference.applicationSerialNumber)) {
+      throw new IllegalArgumentException("The delta image belongs to another PO.");
+    }
+    int flags = reader.readByte();
+    Boolean isDfRatified =
+        (flags & FLAG_RATIFICATION_STATUS) != 0 ? (flags & FLAG_DF_RATIFIED) != 0 : null;
+    Integer pinAttemptCounter = (flags & FLAG_PIN_STATUS) != 0 ? reader.readInt() : null;
+    Integer svBalance = null;
+    int svLastTNum = 0;
+    if ((flags & FLAG_SV_DATA) != 0) {
+      int zigZagBalance = reader.readInt();
+      svBalance = (zigZagBalance >>> 1) ^ -(zigZagBalance & 1);
+      svLastTNum = reader.readInt();
+    }
+
+    SortedMap<Byte, ElementaryFile> efBySfi = new TreeMap<Byte, ElementaryFile>();
+    if (reference != null) {
+      // the EFs not present in the delta image are shared, they are never exposed
+      efBySfi.putAll(reference.efBySfi);
+    }
+    int nbFiles = reader.readInt();
+    for (int i = 0; i < nbFiles; i++) {
+      byte sfi = (byte) reader.readByte();
+      ElementaryFile referenceEf = efBySfi.get(sfi);
+      ElementaryFile ef =
+          referenceEf != null ? new ElementaryFile(referenceEf) : new ElementaryFile(sfi);
+      FileHeader header = readHeader(reader);
+      if (header != null) {
+        ef.setHeader(header);
+      }
+      int nbRecords = reader.readInt();
+      for (int j = 0; j < nbRecords; j++) {
+        int numRecord = reader.readInt();
+        ef.getData().setContent(numRecord, reader.readBytes());
+      }
+      efBySfi.put(sfi, ef);
+    }
+    if (reader.hasRemaining()) {
+      throw new IllegalArgumentException("Unexpected data at the end of the image.");
+    }
+    return new CalypsoPoSnapshot(
+        applicationSerialNumber, isDfRatified, pinAttemptCounter, svBalance, svLastTNum, efBySfi);
+  }
+
+  /**
+   * (private)<br>
+   * Reads the flags of an EF followed by its header if any.
+   *
+   * @param reader the reader
+   * @return null if the image does not contain the header
+   */
+  private static FileHeader readHeader(ImageReader reader) {
+    int flags = reader.readByte();
+    if ((flags & FLAG_FILE_HEADER) == 0) {
+      return null;
+    }
+    FileHeader.FileHeaderBuilder builder =
+        FileHeader.builder()
+            .lid((short) reader.readInt())
+            .recordsNumber(reader.readInt())
+            .recordSize(reader.readInt());
+    int type = reader.readByte();
+    if (type >= FileHeader.FileType.values().length) {
+      throw new IllegalArgumentException("Unknown file type: " + type);
+    }
+    builder
+        .type(FileHeader.FileType.values()[type])
+        .accessConditions(reader.readBytes())
+        .keyIndexes(reader.readBytes())
+        .dfStatus((byte) reader.readByte());
+    if ((flags & FLAG_SHARED_REFERENCE) != 0) {
+      builder.sharedReference((short) reader.readInt());
+    }
+    return builder.build();
+  }
+
+  /**
+   * (private)<br>
+   * Compares all the fields of two headers ({@link FileHeader#equals(Object)} only compares the
+   * LIDs).
+   *
+   * @param header the header (must be not null)
+   * @param referenceHeader the header of reference (may be null)
+   * @return true if both headers have the same content
+   */
+  private static boolean isSameHeader(FileHeader header, FileHeader referenceHeader) {
+    return referenceHeader != null
+        && header.getLid() == referenceHeader.getLid()
+        && header.getRecordsNumber() == referenceHeader.getRecordsNumber()
+        && header.getRecordSize() == referenceHeader.getRecordSize()
+        && header.getType() == referenceHeader.getType()
+        && Arrays.equals(header.getAccessConditions(), referenceHeader.getAccessConditions())
+        && Arrays.equals(header.getKeyIndexes(), referenceHeader.getKeyIndexes())
+        && header.getDfStatus() == referenceHeader.getDfStatus()
+        && (header.getSharedReference() == null
+            ? referenceHeader.getSharedReference() == null
+            : header.getSharedReference().equals(referenceHeader.getSharedReference()));
+  }
+
+  /**
+   * (private)<br>
+   * Growable buffer used to write an image.
+   */
+  private static final class ImageWriter {
+
+    private byte[] buffer = new byte[INITIAL_IMAGE_SIZE];
+    private int length;
+
+    /**
+     * (private)<br>
+     * Writes a byte.
+     *
+     * @param value the value (only the 8 least significant bits are written)
+     */
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[length++] = (byte) value;
+    }
+
+    /**
+     * (private)<br>
+     * Writes an unsigned variable length quantity.
+     *
+     * @param value the value (interpreted as unsigned)
+     */
+    private void writeInt(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[length++] = (byte) value;
+    }
+
+    /**
+     * (private)<br>
+     * Writes a byte array preceded by its length.
+     *
+     * @param value the value (must be not null)
+     */
+    private void writeBytes(byte[] value) {
+      writeInt(value.length);
+      ensureCapacity(value.length);
+      System.arraycopy(value, 0, buffer, length, value.length);
+      length += value.length;
+    }
+
+    /**
+     * (private)<br>
+     * Reserves the room of a count written later with {@link #writeCount(int, int)}.
+     *
+     * <p>The count is written on 2 bytes, as a variable length quantity whose first byte always
+     * has its continuation bit set, so that it can be read as any other integer.
+     *
+     * @return the position of the count
+     */
+    private int reserveCount() {
+      ensureCapacity(2);
+      int position = length;
+      length += 2;
+      return position;
+    }
+
+    /**
+     * (private)<br>
+     * Writes a count at a reserved position.
+     *
+     * @param position the position returned by {@link #reserveCount()}
+     * @param count the count (lower than 16384)
+     */
+    private void writeCount(int position, int count) {
+      buffer[position] = (byte) ((count & 0x7F) | 0x80);
+      buffer[position + 1] = (byte) (count >>> 7);
+    }
+
+    /**
+     * (private)<br>
+     *
+     * @return the number of written bytes
+     */
+    private int getLength() {
+      return length;
+    }
+
+    /**
+     * (private)<br>
+     * Discards the bytes written after the provided length.
+     *
+     * @param length a length previously returned by {@link #getLength()}
+     */
+    private void setLength(int length) {
+      this.length = length;
+    }
+
+    /**
+     * (private)<br>
+     *
+     * @return a copy of the written bytes
+     */
+    private byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * (private)<br>
+     * Grows the buffer if needed.
+     *
+     * @param size the number of bytes to be written
+     */
+    private void ensureCapacity(int size) {
+      if (length + size > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + size));
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Reader of an image.
+   */
+  private static final class ImageReader {
+
+    private final byte[] image;
+    private int position;
+
+    /**
+     * (private)<br>
+     * Constructor.
+     *
+     * @param image the image (must be not null)
+     */
+    private ImageReader(byte[] image) {
+      this.image = image;
+    }
+
+    /**
+     * (private)<br>
+     * Reads an unsigned byte.
+     *
+     * @return a value between 0 and 255
+     * @throws IllegalArgumentException if the image is truncated
+     */
+    private int readByte() {
+      checkRemaining(1);
+      return image[position++] & 0xFF;
+    }
+
+    /**
+     * (private)<br>
+     * Reads an unsigned variable length quantity.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the image is truncated or the value malformed
+     */
+    private int readInt() {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        int b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed integer in the image.");
+    }
+
+    /**
+     * (private)<br>
+     * Reads a byte array preceded by its length.
+     *
+     * @return a not null byte array
+     * @throws IllegalArgumentException if the image is truncated
+     */
+    private byte[] readBytes() {
+      int size = readInt();
+      checkRemaining(size);
+      byte[] value = Arrays.copyOfRange(image, position, position + size);
+      position += size;
+      return value;
+    }
+
+    /**
+     * (private)<br>
+     *
+     * @return true if the image contains unread bytes
+     */
+    private boolean hasRemaining() {
+      return position < image.length;
+    }
+
+    /**
+     * (private)<br>
+     * Checks that the image contains enough unread bytes.
+     *
+     * @param size the number of bytes to be read
+     * @throws IllegalArgumentException if the image is truncated
+     */
+    private void checkRemaining(int size) {
+      if (size < 0 || size > image.length - position) {
+        throw new IllegalArgumentException("Truncated image.");
+      }
+    }
+  }
+}
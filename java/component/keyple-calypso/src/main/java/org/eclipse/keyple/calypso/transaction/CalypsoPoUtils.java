@@ -115,12 +115,6 @@ final class CalypsoPoUtils {
   public static final int SV_DEBIT_LOG_FILE_NB_REC = 3;
   public static final int SV_LOG_FILE_REC_LENGTH = 29;
 
-  private static byte[] poChallenge;
-  private static byte svKvc;
-  private static byte[] svGetHeader;
-  private static byte[] svGetData;
-  private static byte[] svOperationSignature;
-
   /** Private constructor */
   private CalypsoPoUtils() {}
 
@@ -363,21 +357,24 @@ final class CalypsoPoUtils {
 
   /**
    * Parses the response to a Get Challenge command received from the PO <br>
-   * The PO challenge value is stored in {@link CalypsoPoUtils} and made available through a
+   * The PO challenge value is stored in the {@link CalypsoPo} and made available through a
    * dedicated getters for later use
    *
+   * @param calypsoPo the {@link CalypsoPo} object to update
    * @param poGetChallengeCmdBuild the Get Challenge command builder
    * @param apduResponse the response received
    * @throws CalypsoPoCommandException if a response from the PO was unexpected
    */
   private static PoGetChallengeRespPars updateCalypsoPoGetChallenge(
-      PoGetChallengeCmdBuild poGetChallengeCmdBuild, ApduResponse apduResponse) {
+      CalypsoPo calypsoPo,
+      PoGetChallengeCmdBuild poGetChallengeCmdBuild,
+      ApduResponse apduResponse) {
     PoGetChallengeRespPars poGetChallengeRespPars =
         poGetChallengeCmdBuild.createResponseParser(apduResponse);
 
     poGetChallengeRespPars.checkStatus();
 
-    poChallenge = apduResponse.getDataOut();
+    calypsoPo.setPoChallenge(apduResponse.getDataOut());
 
     return poGetChallengeRespPars;
   }
@@ -417,7 +414,7 @@ final class CalypsoPoUtils {
   /**
    * Updates the {@link CalypsoPo} object with the response to an SV Get command received from the
    * PO <br>
-   * The SV Data values (KVC, command header, response data) are stored in {@link CalypsoPoUtils}
+   * The SV Data values (KVC, command header, response data) are stored in the {@link CalypsoPo}
    * and made available through a dedicated getters for later use<br>
    *
    * @param calypsoPo the {@link CalypsoPo} object to update
@@ -437,9 +434,10 @@ final class CalypsoPoUtils {
         svGetRespPars.getLoadLog(),
         svGetRespPars.getDebitLog());
 
-    svKvc = svGetRespPars.getCurrentKVC();
-    svGetHeader = svGetRespPars.getSvGetCommandHeader();
-    svGetData = svGetRespPars.getApduResponse().getBytes();
+    calypsoPo.setSvGetContext(
+        svGetRespPars.getCurrentKVC(),
+        svGetRespPars.getSvGetCommandHeader(),
+        svGetRespPars.getApduResponse().getBytes());
 
     return svGetRespPars;
   }
@@ -449,12 +447,14 @@ final class CalypsoPoUtils {
    * the PO<br>
    * Keep the PO SV signature if any (command executed outside a secure session).
    *
+   * @param calypsoPo the {@link CalypsoPo} object to update
    * @param svOperationCmdBuild the SV Operation command builder (SvReloadCmdBuild, SvDebitCmdBuild
    *     or SvUndebitCmdBuild)
    * @param apduResponse the response received
    * @throws CalypsoPoCommandException if a response from the PO was unexpected
    */
   private static AbstractPoResponseParser updateCalypsoPoSvOperation(
+      CalypsoPo calypsoPo,
       AbstractPoCommandBuilder<? extends AbstractPoResponseParser> svOperationCmdBuild,
       ApduResponse apduResponse) {
     AbstractPoResponseParser svOperationRespPars =
@@ -462,7 +462,7 @@ final class CalypsoPoUtils {
 
     svOperationRespPars.checkStatus();
 
-    svOperationSignature = svOperationRespPars.getApduResponse().getDataOut();
+    calypsoPo.setSvOperationSignature(svOperationRespPars.getApduResponse().getDataOut());
 
     return svOperationRespPars;
   }
@@ -657,7 +657,8 @@ final class CalypsoPoUtils {
       case CLOSE_SESSION:
         return updateCalypsoPoCloseSession((CloseSessionCmdBuild) commandBuilder, apduResponse);
       case GET_CHALLENGE:
-        return updateCalypsoPoGetChallenge((PoGetChallengeCmdBuild) commandBuilder, apduResponse);
+        return updateCalypsoPoGetChallenge(
+            calypsoPo, (PoGetChallengeCmdBuild) commandBuilder, apduResponse);
       case VERIFY_PIN:
         return updateCalypsoVerifyPin(calypsoPo, (VerifyPinCmdBuild) commandBuilder, apduResponse);
       case SV_GET:
@@ -665,7 +666,7 @@ final class CalypsoPoUtils {
       case SV_RELOAD:
       case SV_DEBIT:
       case SV_UNDEBIT:
-        return updateCalypsoPoSvOperation(commandBuilder, apduResponse);
+        return updateCalypsoPoSvOperation(calypsoPo, commandBuilder, apduResponse);
       case INVALIDATE:
       case REHABILITATE:
         return updateCalypsoInvalidateRehabilitate(commandBuilder, apduResponse);
@@ -743,55 +744,4 @@ final class CalypsoPoUtils {
   static SelectFileCmdBuild prepareSelectFile(PoClass poClass, SelectFileControl selectControl) {
     return new SelectFileCmdBuild(poClass, selectControl);
   }
-
-  /**
-   * (package-private)<br>
-   * Gets the challenge received from the PO
-   *
-   * @return an array of bytes containing the challenge bytes (variable length according to the
-   *     revision of the PO). May be null if the challenge is not available.
-   */
-  static byte[] getPoChallenge() {
-    return poChallenge;
-  }
-
-  /**
-   * (package-private)<br>
-   * Gets the SV KVC from the PO
-   *
-   * @return the SV KVC byte.
-   */
-  static byte getSvKvc() {
-    return svKvc;
-  }
-
-  /**
-   * (package-private)<br>
-   * Gets the SV Get command header
-   *
-   * @return a byte array containing the SV Get command header.
-   */
-  static byte[] getSvGetHeader() {
-    return svGetHeader;
-  }
-
-  /**
-   * (package-private)<br>
-   * Gets the SV Get command response data
-   *
-   * @return a byte array containing the SV Get command response data.
-   */
-  static byte[] getSvGetData() {
-    return svGetData;
-  }
-
-  /**
-   * (package-private)<br>
-   * Gets the last SV Operation signature (SV Reload, Debit or Undebit)
-   *
-   * @return a byte array containing the SV Operation signature or null if not available.
-   */
-  static byte[] getSvOperationSignature() {
-    return svOperationSignature;
-  }
 }
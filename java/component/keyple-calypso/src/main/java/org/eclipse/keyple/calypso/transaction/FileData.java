@@ -11,6 +11,7 @@
  ************************************************************************************** */
 package org.eclipse.keyple.calypso.transaction;
 
+import com.google.gson.annotations.JsonAdapter;
 import java.io.Serializable;
 import java.util.*;
 import org.eclipse.keyple.core.util.Assert;
@@ -19,11 +20,20 @@ import org.eclipse.keyple.core.util.ByteArrayUtil;
 /**
  * This POJO contains all known data content of a Calypso EF.
  *
+ * <p>The records are stored in an array indexed by record number, their presence being tracked
+ * in a bitmap. The JSON representation remains a map of the records content indexed by record
+ * number (see {@link FileDataJsonAdapter}).
+ *
  * @since 0.9
  */
+@JsonAdapter(FileDataJsonAdapter.class)
 public class FileData implements Serializable {
 
-  private final TreeMap<Integer, byte[]> records = new TreeMap<Integer, byte[]>();
+  private static final int INITIAL_CAPACITY = 8;
+
+  private byte[][] records;
+  private long[] presentRecords;
+  private transient SortedMap<Integer, byte[]> recordsView;
 
   /**
    * (package-private)<br>
@@ -31,7 +41,10 @@ public class FileData implements Serializable {
    *
    * @since 0.9
    */
-  FileData() {}
+  FileData() {
+    records = new byte[INITIAL_CAPACITY][];
+    presentRecords = new long[getNbWords(INITIAL_CAPACITY)];
+  }
 
   /**
    * (package-private)<br>
@@ -41,20 +54,27 @@ public class FileData implements Serializable {
    * @since 0.9
    */
   FileData(FileData source) {
-    SortedMap<Integer, byte[]> sourceContent = source.getAllRecordsContent();
-    for (Map.Entry<Integer, byte[]> entry : sourceContent.entrySet()) {
-      records.put(entry.getKey(), Arrays.copyOf(entry.getValue(), entry.getValue().length));
+    records = new byte[source.records.length][];
+    for (int i = source.getNextRecordNumber(0); i > 0; i = source.getNextRecordNumber(i)) {
+      records[i] = source.records[i].clone();
     }
+    presentRecords = source.presentRecords.clone();
   }
 
   /**
    * Gets a reference to all known records content.
    *
+   * <p>The returned map is an unmodifiable view sorted by record number and reflecting the further
+   * changes of the content.
+   *
    * @return a not null map eventually empty if there's no content.
    * @since 0.9
    */
   public SortedMap<Integer, byte[]> getAllRecordsContent() {
-    return records;
+    if (recordsView == null) {
+      recordsView = new RecordsView();
+    }
+    return recordsView;
   }
 
   /**
@@ -78,7 +98,7 @@ public class FileData implements Serializable {
    * @since 0.9
    */
   public byte[] getContent(int numRecord) {
-    byte[] content = records.get(numRecord);
+    byte[] content = findContent(numRecord);
     if (content == null) {
       throw new NoSuchElementException("Record #" + numRecord + " is not set.");
     }
@@ -104,7 +124,7 @@ public class FileData implements Serializable {
         .greaterOrEqual(dataOffset, 0, "dataOffset")
         .greaterOrEqual(dataLength, 1, "dataLength");
 
-    byte[] content = records.get(numRecord);
+    byte[] content = findContent(numRecord);
     if (content == null) {
       throw new NoSuchElementException("Record #" + numRecord + " is not set.");
     }
@@ -146,7 +166,7 @@ public class FileData implements Serializable {
 
     Assert.getInstance().greaterOrEqual(numCounter, 1, "numCounter");
 
-    byte[] rec1 = records.get(1);
+    byte[] rec1 = findContent(1);
     if (rec1 == null) {
       throw new NoSuchElementException("Record #1 is not set.");
     }
@@ -181,16 +201,35 @@ public class FileData implements Serializable {
    * @since 0.9
    */
   public SortedMap<Integer, Integer> getAllCountersValue() {
+    int[] values = getAllCountersValueAsArray();
     SortedMap<Integer, Integer> result = new TreeMap<Integer, Integer>();
-    byte[] rec1 = records.get(1);
+    for (int i = 0; i < values.length; i++) {
+      result.put(i + 1, values[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Gets all known counters value as an array of primitive values, the value of counter #n being
+   * at index n - 1.<br>
+   * The counters values are extracted from record #1.<br>
+   * If last counter has a truncated value (when size of record #1 modulo 3 != 0), then last counter
+   * value is not returned.
+   *
+   * @return a not null array.
+   * @throws NoSuchElementException if record #1 is not set.
+   * @since 1.0
+   */
+  public int[] getAllCountersValueAsArray() {
+    byte[] rec1 = findContent(1);
     if (rec1 == null) {
       throw new NoSuchElementException("Record #1 is not set.");
     }
-    int length = rec1.length - (rec1.length % 3);
-    for (int i = 0, c = 1; i < length; i += 3, c++) {
-      result.put(c, ByteArrayUtil.threeBytesToInt(rec1, i));
+    int[] values = new int[rec1.length / 3];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = ByteArrayUtil.threeBytesToInt(rec1, i * 3);
     }
-    return result;
+    return values;
   }
 
   /**
@@ -202,7 +241,7 @@ public class FileData implements Serializable {
    * @since 0.9
    */
   void setContent(int numRecord, byte[] content) {
-    records.put(numRecord, content);
+    putContent(numRecord, content);
   }
 
   /**
@@ -232,7 +271,7 @@ public class FileData implements Serializable {
   void setContent(int numRecord, byte[] content, int offset) {
     byte[] newContent;
     int newLength = offset + content.length;
-    byte[] oldContent = records.get(numRecord);
+    byte[] oldContent = findContent(numRecord);
     if (oldContent == null) {
       newContent = new byte[newLength];
     } else if (oldContent.length <= offset) {
@@ -245,7 +284,7 @@ public class FileData implements Serializable {
       newContent = oldContent;
     }
     System.arraycopy(content, 0, newContent, offset, content.length);
-    records.put(numRecord, newContent);
+    putContent(numRecord, newContent);
   }
 
   /**
@@ -260,14 +299,14 @@ public class FileData implements Serializable {
    * @since 0.9
    */
   void fillContent(int numRecord, byte[] content) {
-    byte[] actualContent = records.get(numRecord);
+    byte[] actualContent = findContent(numRecord);
     if (actualContent == null) {
-      records.put(numRecord, content);
+      putContent(numRecord, content);
     } else if (actualContent.length < content.length) {
       for (int i = 0; i < actualContent.length; i++) {
         content[i] |= actualContent[i];
       }
-      records.put(numRecord, content);
+      putContent(numRecord, content);
     } else {
       for (int i = 0; i < content.length; i++) {
         actualContent[i] |= content[i];
@@ -286,25 +325,236 @@ public class FileData implements Serializable {
    * @since 0.9
    */
   void addCyclicContent(byte[] content) {
-    ArrayList<Integer> descendingKeys = new ArrayList<Integer>(records.descendingKeySet());
-    for (Integer i : descendingKeys) {
-      records.put(i + 1, records.get(i));
+    int lastRecord = getLastRecordNumber();
+    if (lastRecord > 0) {
+      ensureCapacity(lastRecord + 2);
+      System.arraycopy(records, 1, records, 2, lastRecord);
+      shiftLeft(presentRecords);
+    }
+    putContent(1, content);
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the content of a specific record.
+   *
+   * @param numRecord the record number
+   * @return null if the record is not set.
+   * @since 1.0
+   */
+  byte[] findContent(int numRecord) {
+    return numRecord > 0 && numRecord < records.length ? records[numRecord] : null;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of the first record set after the provided one.
+   *
+   * @param numRecord the record number (0 to get the first record set)
+   * @return -1 if there is no record set after the provided one.
+   * @since 1.0
+   */
+  int getNextRecordNumber(int numRecord) {
+    int index = numRecord + 1;
+    int wordIndex = index >>> 6;
+    if (index < 1 || wordIndex >= presentRecords.length) {
+      return -1;
+    }
+    long word = presentRecords[wordIndex] & (-1L << index);
+    while (word == 0) {
+      if (++wordIndex == presentRecords.length) {
+        return -1;
+      }
+      word = presentRecords[wordIndex];
+    }
+    return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * (private)<br>
+   * Sets the content of a specific record.
+   *
+   * @param numRecord the record number (should be {@code >=} 1)
+   * @param content the content (should be not null)
+   */
+  private void putContent(int numRecord, byte[] content) {
+    ensureCapacity(numRecord + 1);
+    records[numRecord] = content;
+    presentRecords[numRecord >>> 6] |= 1L << numRecord;
+  }
+
+  /**
+   * (private)<br>
+   * Gets the highest record number set.
+   *
+   * @return 0 if no record is set.
+   */
+  private int getLastRecordNumber() {
+    for (int i = presentRecords.length - 1; i >= 0; i--) {
+      if (presentRecords[i] != 0) {
+        return (i << 6) + 63 - Long.numberOfLeadingZeros(presentRecords[i]);
+      }
     }
-    records.put(1, content);
+    return 0;
+  }
+
+  /**
+   * (private)<br>
+   * Grows the arrays if needed so that they can hold the provided number of slots.
+   *
+   * @param capacity the needed number of slots (record #0 is never used)
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity <= records.length) {
+      return;
+    }
+    int newCapacity = Math.max(records.length * 2, capacity);
+    records = Arrays.copyOf(records, newCapacity);
+    presentRecords = Arrays.copyOf(presentRecords, getNbWords(newCapacity));
+  }
+
+  /**
+   * (private)<br>
+   * Gets the number of words of a bitmap holding the provided number of slots.
+   *
+   * @param capacity the number of slots
+   * @return a strictly positive number
+   */
+  private static int getNbWords(int capacity) {
+    return (capacity + 63) >>> 6;
+  }
+
+  /**
+   * (private)<br>
+   * Shifts all the bits of a bitmap by one position (record #n becomes record #n + 1).
+   *
+   * @param bitmap the bitmap (its last bit must be clear)
+   */
+  private static void shiftLeft(long[] bitmap) {
+    for (int i = bitmap.length - 1; i > 0; i--) {
+      bitmap[i] = (bitmap[i] << 1) | (bitmap[i - 1] >>> 63);
+    }
+    bitmap[0] <<= 1;
   }
 
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("FileData{");
     sb.append("records={");
-    for (Map.Entry<Integer, byte[]> rec : records.entrySet()) {
+    for (int i = getNextRecordNumber(0); i > 0; i = getNextRecordNumber(i)) {
       sb.append("(");
-      sb.append(rec.getKey());
+      sb.append(i);
       sb.append("=0x");
-      sb.append(ByteArrayUtil.toHex(rec.getValue()));
+      sb.append(ByteArrayUtil.toHex(records[i]));
       sb.append(")");
     }
     sb.append("}}");
     return sb.toString();
   }
+
+  /**
+   * (private)<br>
+   * Unmodifiable sorted map view of the records.
+   *
+   * <p>The sub maps are unmodifiable copies of the current content.
+   */
+  private final class RecordsView extends AbstractMap<Integer, byte[]>
+      implements SortedMap<Integer, byte[]> {
+
+    @Override
+    public int size() {
+      int size = 0;
+      for (long word : presentRecords) {
+        size += Long.bitCount(word);
+      }
+      return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof Integer && findContent((Integer) key) != null;
+    }
+
+    @Override
+    public byte[] get(Object key) {
+      return key instanceof Integer ? findContent((Integer) key) : null;
+    }
+
+    @Override
+    public Set<Entry<Integer, byte[]>> entrySet() {
+      return new AbstractSet<Entry<Integer, byte[]>>() {
+        @Override
+        public Iterator<Entry<Integer, byte[]>> iterator() {
+          return new Iterator<Entry<Integer, byte[]>>() {
+            private int nextRecord = getNextRecordNumber(0);
+
+            @Override
+            public boolean hasNext() {
+              return nextRecord > 0;
+            }
+
+            @Override
+            public Entry<Integer, byte[]> next() {
+              if (nextRecord < 0) {
+                throw new NoSuchElementException();
+              }
+              int numRecord = nextRecord;
+              nextRecord = getNextRecordNumber(numRecord);
+              return new SimpleImmutableEntry<Integer, byte[]>(numRecord, records[numRecord]);
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException();
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return RecordsView.this.size();
+        }
+      };
+    }
+
+    @Override
+    public Comparator<? super Integer> comparator() {
+      return null;
+    }
+
+    @Override
+    public SortedMap<Integer, byte[]> subMap(Integer fromKey, Integer toKey) {
+      return Collections.unmodifiableSortedMap(
+          new TreeMap<Integer, byte[]>(this).subMap(fromKey, toKey));
+    }
+
+    @Override
+    public SortedMap<Integer, byte[]> headMap(Integer toKey) {
+      return Collections.unmodifiableSortedMap(new TreeMap<Integer, byte[]>(this).headMap(toKey));
+    }
+
+    @Override
+    public SortedMap<Integer, byte[]> tailMap(Integer fromKey) {
+      return Collections.unmodifiableSortedMap(
+          new TreeMap<Integer, byte[]>(this).tailMap(fromKey));
+    }
+
+    @Override
+    public Integer firstKey() {
+      int numRecord = getNextRecordNumber(0);
+      if (numRecord < 0) {
+        throw new NoSuchElementException();
+      }
+      return numRecord;
+    }
+
+    @Override
+    public Integer lastKey() {
+      int numRecord = getLastRecordNumber();
+      if (numRecord == 0) {
+        throw new NoSuchElementException();
+      }
+      return numRecord;
+    }
+  }
 }
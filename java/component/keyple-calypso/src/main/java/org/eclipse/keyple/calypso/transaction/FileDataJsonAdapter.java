@@ -0,0 +1,69 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.calypso.transaction;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * (package-private)<br>
+ * Json adapter of {@link FileData}.
+ *
+ * <p>The records are serialized as a map of their content indexed by record number, i.e. the
+ * {@code {"records":{"1":"...","2":"..."}}} shape exchanged with the peers using a previous
+ * version of the library.
+ *
+ * @since 1.0
+ */
+final class FileDataJsonAdapter implements JsonSerializer<FileData>, JsonDeserializer<FileData> {
+
+  private static final String RECORDS = "records";
+  private static final Type RECORDS_TYPE = new TypeToken<TreeMap<Integer, byte[]>>() {}.getType();
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public JsonElement serialize(
+      FileData fileData, Type typeOfSrc, JsonSerializationContext context) {
+    JsonObject json = new JsonObject();
+    json.add(
+        RECORDS,
+        context.serialize(
+            new TreeMap<Integer, byte[]>(fileData.getAllRecordsContent()), RECORDS_TYPE));
+    return json;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public FileData deserialize(
+      JsonElement json, Type typeOfT, JsonDeserializationContext context) {
+    FileData fileData = new FileData();
+    JsonElement records = json.getAsJsonObject().get(RECORDS);
+    if (records != null && !records.isJsonNull()) {
+      TreeMap<Integer, byte[]> contentByRecordNumber = context.deserialize(records, RECORDS_TYPE);
+      for (Map.Entry<Integer, byte[]> entry : contentByRecordNumber.entrySet()) {
+        fileData.setContent(entry.getKey(), entry.getValue());
+      }
+    }
+    return fileData;
+  }
+}
@@ -12,10 +12,15 @@
 package org.eclipse.keyple.calypso.transaction;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.eclipse.keyple.calypso.command.po.AbstractPoCommandBuilder;
 import org.eclipse.keyple.calypso.command.po.AbstractPoResponseParser;
 import org.eclipse.keyple.calypso.command.po.CalypsoPoCommand;
+import org.eclipse.keyple.calypso.command.po.builder.ReadRecordsCmdBuild;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoPoTransactionIllegalStateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +50,22 @@ class PoCommandManager {
   private PoTransaction.SvSettings.Operation svOperation;
   private boolean svOperationComplete = false;
 
+  /**
+   * The records (SFI &lt;&lt; 8 | record number) read since the opening of the current session and
+   * not modified since
+   */
+  private final Set<Integer> sessionReadRecords = new HashSet<Integer>();
+
+  /** Orders the reads of records by SFI and record number */
+  private static final Comparator<ReadRecordsCmdBuild> readRecordsComparator =
+      new Comparator<ReadRecordsCmdBuild>() {
+        @Override
+        public int compare(ReadRecordsCmdBuild r1, ReadRecordsCmdBuild r2) {
+          return getRecordKey(r1.getSfi(), r1.getFirstRecordNumber())
+              - getRecordKey(r2.getSfi(), r2.getFirstRecordNumber());
+        }
+      };
+
   /**
    * (package-private)<br>
    * Constructor
@@ -159,4 +180,239 @@ class PoCommandManager {
     svOperationComplete = false;
     return flag;
   }
+
+  /**
+   * (package-private)<br>
+   * Optimizes the Read Records commands of the prepared command list.
+   *
+   * <p>Within each sequence of consecutive reads of records referenced by an SFI, the reads are
+   * sorted by SFI and record number (their order has no effect on the PO), the reads of records
+   * already read in the current session or earlier in the sequence are removed and the reads of
+   * consecutive records of the same EF are merged into a multiple records read when the record size
+   * is known and the expected data fits the PO payload capacity.
+   *
+   * <p>The other commands are kept in place and delimit the sequences. A command modifying the PO
+   * forgets all the records read before it.
+   *
+   * @param calypsoPo the current {@link CalypsoPo}
+   * @param isSessionOpen true if the commands will be processed in the current secure session
+   * @return the number of PO APDUs saved
+   * @since 1.0
+   */
+  int optimizeReadCommands(CalypsoPo calypsoPo, boolean isSessionOpen) {
+    Set<Integer> readRecords =
+        isSessionOpen ? new HashSet<Integer>(sessionReadRecords) : new HashSet<Integer>();
+    List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> optimizedCommands =
+        new ArrayList<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>>();
+    List<ReadRecordsCmdBuild> readSequence = new ArrayList<ReadRecordsCmdBuild>();
+    for (AbstractPoCommandBuilder<? extends AbstractPoResponseParser> poCommand : poCommands) {
+      if (isOptimizableRead(poCommand)) {
+        readSequence.add((ReadRecordsCmdBuild) poCommand);
+      } else {
+        addReadSequence(calypsoPo, readSequence, readRecords, optimizedCommands);
+        updateReadRecords(poCommand, readRecords);
+        optimizedCommands.add(poCommand);
+      }
+    }
+    addReadSequence(calypsoPo, readSequence, readRecords, optimizedCommands);
+    int nbSavedApdus = poCommands.size() - optimizedCommands.size();
+    if (nbSavedApdus != 0) {
+      poCommands.clear();
+      poCommands.addAll(optimizedCommands);
+    }
+    return nbSavedApdus;
+  }
+
+  /**
+   * (package-private)<br>
+   * Records the reads of records performed by the provided commands, just processed in the current
+   * secure session.
+   *
+   * @param poCommands the processed commands
+   * @since 1.0
+   */
+  void notifySessionCommandsProcessed(
+      List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> poCommands) {
+    for (AbstractPoCommandBuilder<? extends AbstractPoResponseParser> poCommand : poCommands) {
+      updateReadRecords(poCommand, sessionReadRecords);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Records the read of a record performed at the opening of the current secure session.
+   *
+   * @param sfi the SFI of the EF
+   * @param recordNumber the record number
+   * @since 1.0
+   */
+  void notifySessionRecordRead(int sfi, int recordNumber) {
+    if (sfi != 0 && recordNumber != 0) {
+      sessionReadRecords.add(getRecordKey(sfi, recordNumber));
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Informs that the current secure session has been opened, closed or aborted.
+   *
+   * <p>The records read in the previous session are forgotten.
+   *
+   * @since 1.0
+   */
+  void notifySessionChanged() {
+    sessionReadRecords.clear();
+  }
+
+  /**
+   * (private)<br>
+   * Adds the optimized commands of a sequence of reads to the provided list and clears the
+   * sequence.
+   *
+   * @param calypsoPo the current {@link CalypsoPo}
+   * @param readSequence the reads of records prepared consecutively
+   * @param readRecords the records already read
+   * @param optimizedCommands the list of optimized commands to complete
+   */
+  private static void addReadSequence(
+      CalypsoPo calypsoPo,
+      List<ReadRecordsCmdBuild> readSequence,
+      Set<Integer> readRecords,
+      List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> optimizedCommands) {
+    if (readSequence.isEmpty()) {
+      return;
+    }
+    // Collections.sort is stable: the reads of the same record keep their relative order
+    Collections.sort(readSequence, readRecordsComparator);
+    int maxExpectedLength = Math.min(calypsoPo.getPayloadCapacity(), CalypsoPoUtils.LE_MAX);
+    List<ReadRecordsCmdBuild> mergedReads = new ArrayList<ReadRecordsCmdBuild>();
+    int mergedRecordSize = 0;
+    for (ReadRecordsCmdBuild read : readSequence) {
+      if (read.getReadMode() == ReadRecordsCmdBuild.ReadMode.MULTIPLE_RECORD) {
+        addMergedReads(calypsoPo, mergedReads, mergedRecordSize, optimizedCommands);
+        optimizedCommands.add(read);
+        readRecords.add(getRecordKey(read.getSfi(), read.getFirstRecordNumber()));
+        continue;
+      }
+      int recordKey = getRecordKey(read.getSfi(), read.getFirstRecordNumber());
+      if (readRecords.contains(recordKey)) {
+        // the content of the record is already available in CalypsoPo
+        continue;
+      }
+      int recordSize = getRecordSize(calypsoPo, read);
+      if (mergedReads.isEmpty()
+          || recordSize == 0
+          || recordSize != mergedRecordSize
+          || read.getSfi() != mergedReads.get(0).getSfi()
+          || read.getFirstRecordNumber()
+              != mergedReads.get(0).getFirstRecordNumber() + mergedReads.size()
+          || (mergedReads.size() + 1) * (recordSize + 2) > maxExpectedLength) {
+        addMergedReads(calypsoPo, mergedReads, mergedRecordSize, optimizedCommands);
+        mergedRecordSize = recordSize;
+      }
+      mergedReads.add(read);
+      readRecords.add(recordKey);
+    }
+    addMergedReads(calypsoPo, mergedReads, mergedRecordSize, optimizedCommands);
+    readSequence.clear();
+  }
+
+  /**
+   * (private)<br>
+   * Adds to the provided list a single command reading the provided consecutive records and clears
+   * the list of reads.
+   *
+   * @param calypsoPo the current {@link CalypsoPo}
+   * @param mergedReads the reads of consecutive records of the same EF
+   * @param recordSize the size of the records (must be not 0 if there are several reads)
+   * @param optimizedCommands the list of optimized commands to complete
+   */
+  private static void addMergedReads(
+      CalypsoPo calypsoPo,
+      List<ReadRecordsCmdBuild> mergedReads,
+      int recordSize,
+      List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> optimizedCommands) {
+    if (mergedReads.isEmpty()) {
+      return;
+    }
+    if (mergedReads.size() == 1) {
+      optimizedCommands.add(mergedReads.get(0));
+    } else {
+      // the PO returns the record number and the record length before each record
+      optimizedCommands.add(
+          new ReadRecordsCmdBuild(
+              calypsoPo.getPoClass(),
+              mergedReads.get(0).getSfi(),
+              mergedReads.get(0).getFirstRecordNumber(),
+              ReadRecordsCmdBuild.ReadMode.MULTIPLE_RECORD,
+              mergedReads.size() * (recordSize + 2)));
+    }
+    mergedReads.clear();
+  }
+
+  /**
+   * (private)<br>
+   * Updates the provided set of read records according to a command.
+   *
+   * @param poCommand the command
+   * @param readRecords the records already read
+   */
+  private static void updateReadRecords(
+      AbstractPoCommandBuilder<? extends AbstractPoResponseParser> poCommand,
+      Set<Integer> readRecords) {
+    if (poCommand.isSessionBufferUsed()) {
+      // the PO content may have changed
+      readRecords.clear();
+    } else if (isOptimizableRead(poCommand)) {
+      ReadRecordsCmdBuild read = (ReadRecordsCmdBuild) poCommand;
+      readRecords.add(getRecordKey(read.getSfi(), read.getFirstRecordNumber()));
+    }
+  }
+
+  /**
+   * (private)<br>
+   *
+   * @param poCommand the command
+   * @return true if the command is a read of records referenced by an SFI
+   */
+  private static boolean isOptimizableRead(
+      AbstractPoCommandBuilder<? extends AbstractPoResponseParser> poCommand) {
+    return poCommand.getCommandRef() == CalypsoPoCommand.READ_RECORDS
+        && ((ReadRecordsCmdBuild) poCommand).getSfi() != 0;
+  }
+
+  /**
+   * (private)<br>
+   * Gets the size of the record read by a single record read.
+   *
+   * <p>The size is provided by the file header if known, otherwise the expected length of the read
+   * is considered as the record size. A read of a part of the record only (e.g. of the first
+   * counters) is therefore never merged when the file header is known.
+   *
+   * @param calypsoPo the current {@link CalypsoPo}
+   * @param read the read command
+   * @return 0 if the size is unknown or if the read does not cover the whole record
+   */
+  private static int getRecordSize(CalypsoPo calypsoPo, ReadRecordsCmdBuild read) {
+    ElementaryFile ef = calypsoPo.getAllFiles().get((byte) read.getSfi());
+    if (ef == null || ef.getHeader() == null) {
+      return read.getExpectedLength();
+    }
+    int recordSize = ef.getHeader().getRecordSize();
+    if (read.getExpectedLength() != 0 && read.getExpectedLength() != recordSize) {
+      return 0;
+    }
+    return recordSize;
+  }
+
+  /**
+   * (private)<br>
+   *
+   * @param sfi the SFI of the EF
+   * @param recordNumber the record number
+   * @return the key identifying the record
+   */
+  private static int getRecordKey(int sfi, int recordNumber) {
+    return (sfi << 8) | recordNumber;
+  }
 }
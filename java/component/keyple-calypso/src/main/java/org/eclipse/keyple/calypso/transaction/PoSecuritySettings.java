@@ -15,6 +15,7 @@ import static org.eclipse.keyple.calypso.transaction.PoTransaction.SessionSettin
 
 import java.util.EnumMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import org.eclipse.keyple.calypso.KeyReference;
 import org.eclipse.keyple.core.card.selection.CardResource;
 
@@ -43,6 +44,10 @@ public class PoSecuritySettings {
   private final KeyReference defaultPinCipheringKey;
   private final PoTransaction.SvSettings.LogRead svGetLogReadMode;
   private final PoTransaction.SvSettings.NegativeBalance svNegativeBalance;
+  private final boolean digestUpdateMultipleEnabled;
+  private final ExecutorService samPipeliningExecutor;
+  private final boolean readCommandsOptimizationEnabled;
+  private final boolean lookAheadPackingEnabled;
 
   public static final ModificationMode defaultSessionModificationMode = ModificationMode.ATOMIC;
   public static final RatificationMode defaultRatificationMode = RatificationMode.CLOSE_RATIFIED;
@@ -67,6 +72,10 @@ public class PoSecuritySettings {
     this.defaultPinCipheringKey = builder.defaultPinCipheringKey;
     this.svGetLogReadMode = builder.svGetLogReadMode;
     this.svNegativeBalance = builder.svNegativeBalance;
+    this.digestUpdateMultipleEnabled = builder.digestUpdateMultipleEnabled;
+    this.samPipeliningExecutor = builder.samPipeliningExecutor;
+    this.readCommandsOptimizationEnabled = builder.readCommandsOptimizationEnabled;
+    this.lookAheadPackingEnabled = builder.lookAheadPackingEnabled;
   }
 
   /**
@@ -94,6 +103,10 @@ public class PoSecuritySettings {
     KeyReference defaultPinCipheringKey = nullPinCipheringKey;
     PoTransaction.SvSettings.LogRead svGetLogReadMode = defaultSvGetLogReadMode;
     PoTransaction.SvSettings.NegativeBalance svNegativeBalance = defaultSvNegativeBalance;
+    boolean digestUpdateMultipleEnabled = false;
+    ExecutorService samPipeliningExecutor = null;
+    boolean readCommandsOptimizationEnabled = false;
+    boolean lookAheadPackingEnabled = false;
 
     /**
      * Constructor
@@ -243,6 +256,105 @@ public class PoSecuritySettings {
       return this;
     }
 
+    /**
+     * Enables the use of the SAM Digest Update Multiple command during the secure sessions.
+     *
+     * <p>The PO exchanges to be provided to the SAM are then packed into as few Digest Update
+     * Multiple commands as possible instead of one Digest Update command per PO request and per PO
+     * response, which significantly reduces the number of SAM APDUs exchanged when the session is
+     * closed.
+     *
+     * <p>This command is only used with a SAM C1 and when the session is not encrypted, the
+     * individual Digest Update commands remain used otherwise.<br>
+     * It is disabled by default.
+     *
+     * @return the builder instance
+     * @since 1.0
+     */
+    public PoSecuritySettingsBuilder enableDigestUpdateMultiple() {
+      this.digestUpdateMultipleEnabled = true;
+      return this;
+    }
+
+    /**
+     * Enables the pipelined mode, in which the SAM digest exchanges of the secure sessions are
+     * performed in parallel with the PO exchanges.
+     *
+     * <p>The Digest Init and Digest Update commands are sent after each PO exchange of the session,
+     * while the application prepares and transmits the next PO commands. The terminal challenge
+     * remains requested when the session is opened, the Open Secure Session command sent to the PO
+     * needing it.
+     *
+     * <p>An error occurring during a SAM exchange performed in the background is reported by the
+     * next SAM operation of the transaction. The background exchanges are always terminated when
+     * the session is closed or cancelled, and when a processing method fails, so that the SAM
+     * resource can then be released safely.
+     *
+     * <p>The SAM exchanges of a transaction remain sequential, the provided executor only allows
+     * them to be performed outside the thread of the application.
+     *
+     * @param executorService the executor used to perform the SAM exchanges (must be not null)
+     * @return the builder instance
+     * @throws IllegalArgumentException if the executor is null
+     * @since 1.0
+     */
+    public PoSecuritySettingsBuilder enableSamPipelining(ExecutorService executorService) {
+      if (executorService == null) {
+        throw new IllegalArgumentException("Executor service cannot be null.");
+      }
+      this.samPipeliningExecutor = executorService;
+      return this;
+    }
+
+    /**
+     * Enables the optimization of the prepared Read Records commands before their transmission to
+     * the PO.
+     *
+     * <ul>
+     *   <li>The independent reads of records prepared consecutively are grouped by SFI and record
+     *       number.
+     *   <li>The reads of consecutive records of the same EF are merged into a multiple records
+     *       read, provided that the record size is known (from the file header or from the prepare
+     *       method) and that the expected data fits the PO payload capacity.
+     *   <li>The reads of records already read since the opening of the current session, without
+     *       any PO modification since, are removed, their data being already available in {@link
+     *       CalypsoPo}.
+     * </ul>
+     *
+     * <p>The reads performed with the current EF (SFI 0) are never optimized. The number of PO
+     * APDUs saved is available with {@link PoTransaction#getNbSavedPoApdus()}.<br>
+     * It is disabled by default.
+     *
+     * @return the builder instance
+     * @since 1.0
+     */
+    public PoSecuritySettingsBuilder enableReadCommandsOptimization() {
+      this.readCommandsOptimizationEnabled = true;
+      return this;
+    }
+
+    /**
+     * Enables the look-ahead packing of the prepared commands when the session modification mode
+     * is {@link ModificationMode#MULTIPLE} and the PO modifications buffer is counted in bytes.
+     *
+     * <p>Instead of closing the session as soon as the next prepared command would overflow the
+     * modifications buffer, all the pending commands are planned beforehand: each session is
+     * filled with the first pending commands that still fit in the buffer, which minimizes the
+     * number of sessions (and therefore of SAM challenges, digests and PO signatures) needed.
+     *
+     * <p>The order of the commands accessing the same EF is preserved, as well as the position of
+     * the commands not accessing an EF by its SFI (e.g. SV, PIN, Select File or Invalidate
+     * commands).<br>
+     * It is disabled by default.
+     *
+     * @return the builder instance
+     * @since 1.0
+     */
+    public PoSecuritySettingsBuilder enableLookAheadPacking() {
+      this.lookAheadPackingEnabled = true;
+      return this;
+    }
+
     /**
      * Build a new {@code PoSecuritySettings}.
      *
@@ -367,4 +479,45 @@ public class PoSecuritySettings {
   PoTransaction.SvSettings.NegativeBalance getSvNegativeBalance() {
     return svNegativeBalance;
   }
+
+  /**
+   * (package-private)<br>
+   *
+   * @return true if the Digest Update Multiple command can be used
+   * @since 1.0
+   */
+  boolean isDigestUpdateMultipleEnabled() {
+    return digestUpdateMultipleEnabled;
+  }
+
+  /**
+   * (package-private)<br>
+   *
+   * @return the executor used to perform the SAM exchanges in pipelined mode, null if this mode
+   *     is disabled
+   * @since 1.0
+   */
+  ExecutorService getSamPipeliningExecutor() {
+    return samPipeliningExecutor;
+  }
+
+  /**
+   * (package-private)<br>
+   *
+   * @return true if the prepared Read Records commands can be optimized
+   * @since 1.0
+   */
+  boolean isReadCommandsOptimizationEnabled() {
+    return readCommandsOptimizationEnabled;
+  }
+
+  /**
+   * (package-private)<br>
+   *
+   * @return true if the pending commands can be packed in multiple sessions
+   * @since 1.0
+   */
+  boolean isLookAheadPackingEnabled() {
+    return lookAheadPackingEnabled;
+  }
 }
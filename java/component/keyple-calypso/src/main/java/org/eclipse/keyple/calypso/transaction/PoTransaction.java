@@ -14,8 +14,12 @@ package org.eclipse.keyple.calypso.transaction;
 import static org.eclipse.keyple.calypso.command.po.CalypsoPoCommand.*;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.keyple.calypso.SelectFileControl;
@@ -126,6 +130,14 @@ public class PoTransaction {
   private SvSettings.Action svAction;
   /** The {@link ChannelControl} action */
   private ChannelControl channelControl;
+  /** Indicates whether a processing submitted to an executor is in progress */
+  private final AtomicBoolean isAsyncProcessingInProgress = new AtomicBoolean();
+  /** The executor thread performing the submitted processing (null until it starts) */
+  private volatile Thread asyncProcessingThread;
+  /** The number of PO APDUs saved by the optimization of the read commands */
+  private int nbSavedPoApdus;
+  /** The number of sessions saved by the look-ahead packing of the pending commands */
+  private int nbSavedSessions;
 
   /**
    * Constructor.
@@ -286,12 +298,22 @@ public class PoTransaction {
       samCommandProcessor.pushPoExchangeDataList(poApduRequests, poApduResponses, 1);
     }
 
+    // In pipelined mode, the digest computation starts while the next PO commands are processed
+    samCommandProcessor.streamPendingDigestData();
+
     // Remove Open Secure Session response and create a new CardResponse
     poApduResponses.remove(0);
 
     // update CalypsoPo with the received data
     CalypsoPoUtils.updateCalypsoPo(calypsoPo, poCommands, poApduResponses);
 
+    // the records read in this session can be used to optimize the next read commands
+    poCommandManager.notifySessionChanged();
+    poCommandManager.notifySessionRecordRead(sfi, recordNumber);
+    if (poCommands != null) {
+      poCommandManager.notifySessionCommandsProcessed(poCommands);
+    }
+
     sessionState = SessionState.SESSION_OPEN;
   }
 
@@ -357,9 +379,14 @@ public class PoTransaction {
     // Session.
     if (sessionState == SessionState.SESSION_OPEN) {
       samCommandProcessor.pushPoExchangeDataList(poApduRequests, poApduResponses, 0);
+      samCommandProcessor.streamPendingDigestData();
     }
 
     CalypsoPoUtils.updateCalypsoPo(calypsoPo, poCommands, poCardResponse.getApduResponses());
+
+    if (sessionState == SessionState.SESSION_OPEN) {
+      poCommandManager.notifySessionCommandsProcessed(poCommands);
+    }
   }
 
   /**
@@ -519,6 +546,8 @@ public class PoTransaction {
       samCommandProcessor.checkSvStatus(poCloseSessionPars.getPostponedData());
     }
 
+    poCommandManager.notifySessionChanged();
+
     sessionState = SessionState.SESSION_CLOSED;
 
     if (ratificationCommandResponseReceived) { // NOSONAR: boolean change in catch
@@ -644,6 +673,32 @@ public class PoTransaction {
     ENCRYPTED
   }
 
+  /**
+   * Callback notified of the end of a processing of a {@link PoTransaction} submitted to an
+   * executor.
+   *
+   * <p>It is notified by the thread of the executor which performed the processing, the
+   * transaction being available again for the next processing.
+   *
+   * @since 1.0
+   */
+  public interface ProcessingCallback {
+    /**
+     * Called when the processing succeeded.
+     *
+     * @since 1.0
+     */
+    void onSuccess();
+
+    /**
+     * Called when the processing failed.
+     *
+     * @param e the exception which would have been thrown by the synchronous processing
+     * @since 1.0
+     */
+    void onFailure(RuntimeException e);
+  }
+
   /**
    * Defines the Stored Value transactions parameters
    *
@@ -870,6 +925,7 @@ public class PoTransaction {
    *
    * @param accessLevel An {@link SessionSetting.AccessLevel} enum entry.
    * @throws CalypsoPoTransactionIllegalStateException if no {@link PoSecuritySettings} is available
+   *     or if a processing submitted to an executor is in progress
    * @throws CalypsoAtomicTransactionException if the PO session buffer were to overflow
    * @throws CalypsoUnauthorizedKvcException if the card KVC is not authorized
    * @throws CalypsoPoTransactionException if a functional error occurs (including PO and SAM IO
@@ -879,8 +935,31 @@ public class PoTransaction {
    * @since 0.9
    */
   public final void processOpening(PoTransaction.SessionSetting.AccessLevel accessLevel) {
+    checkNoAsyncProcessingInProgress();
+    try {
+      processOpeningCommands(accessLevel);
+    } catch (RuntimeException e) {
+      cancelPendingSamExchanges();
+      throw e;
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Opens the Secure Session and processes the prepared PO commands.
+   *
+   * @param accessLevel An {@link SessionSetting.AccessLevel} enum entry.
+   * @see #processOpening(SessionSetting.AccessLevel)
+   */
+  private void processOpeningCommands(PoTransaction.SessionSetting.AccessLevel accessLevel) {
     currentAccessLevel = accessLevel;
 
+    // keep the image of the files at the opening of the session (see CalypsoPoSnapshot)
+    calypsoPo.backupFiles();
+
+    optimizeReadCommands(false);
+    packPendingCommands();
+
     // create a sublist of AbstractPoCommandBuilder to be sent atomically
     List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> poAtomicCommands =
         new ArrayList<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>>();
@@ -947,7 +1026,7 @@ public class PoTransaction {
 
     // If an SV transaction was performed, we check the signature returned by the PO here
     if (poCommandManager.isSvOperationCompleteOneTime()) {
-      samCommandProcessor.checkSvStatus(CalypsoPoUtils.getSvOperationSignature());
+      samCommandProcessor.checkSvStatus(calypsoPo.getSvOperationSignature());
     }
   }
 
@@ -1037,11 +1116,21 @@ public class PoTransaction {
    *     errors)
    * @throws CalypsoPoCommandException if a response from the PO was unexpected
    * @throws CalypsoSamCommandException if a response from the SAM was unexpected
+   * @throws CalypsoPoTransactionIllegalStateException if a processing submitted to an executor is
+   *     in progress
    * @since 0.9
    */
   public final void processPoCommands() {
+    checkNoAsyncProcessingInProgress();
+    optimizeReadCommands(sessionState == SessionState.SESSION_OPEN);
     if (sessionState == SessionState.SESSION_OPEN) {
-      processPoCommandsInSession();
+      packPendingCommands();
+      try {
+        processPoCommandsInSession();
+      } catch (RuntimeException e) {
+        cancelPendingSamExchanges();
+        throw e;
+      }
     } else {
       processPoCommandsOutOfSession(channelControl);
     }
@@ -1099,10 +1188,30 @@ public class PoTransaction {
    *     errors)
    * @throws CalypsoPoCommandException if a response from the PO was unexpected
    * @throws CalypsoSamCommandException if a response from the SAM was unexpected
+   * @throws CalypsoPoTransactionIllegalStateException if no session is open or if a processing
+   *     submitted to an executor is in progress
    * @since 0.9
    */
   public final void processClosing() {
+    checkNoAsyncProcessingInProgress();
     checkSessionIsOpen();
+    try {
+      processClosingCommands();
+    } catch (RuntimeException e) {
+      cancelPendingSamExchanges();
+      throw e;
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Processes the prepared PO commands and closes the Secure Session.
+   *
+   * @see #processClosing()
+   */
+  private void processClosingCommands() {
+    optimizeReadCommands(true);
+    packPendingCommands();
 
     boolean atLeastOneReadCommand = false;
     boolean sessionPreviouslyClosed = false;
@@ -1190,9 +1299,12 @@ public class PoTransaction {
    * @throws CalypsoPoTransactionException if a functional error occurs (including PO and SAM IO
    *     errors)
    * @throws CalypsoPoCommandException if a response from the PO was unexpected
+   * @throws CalypsoPoTransactionIllegalStateException if a processing submitted to an executor is
+   *     in progress
    * @since 0.9
    */
   public final void processCancel() {
+    checkNoAsyncProcessingInProgress();
     // PO ApduRequest List to hold Close Secure Session command
     List<ApduRequest> poApduRequests = new ArrayList<ApduRequest>();
 
@@ -1204,7 +1316,13 @@ public class PoTransaction {
     // Transfer PO commands
     CardRequest poCardRequest = new CardRequest(poApduRequests);
 
-    CardResponse poCardResponse = safePoTransmit(poCardRequest, channelControl);
+    CardResponse poCardResponse;
+    try {
+      poCardResponse = safePoTransmit(poCardRequest, channelControl);
+    } finally {
+      // the digest data possibly streamed to the SAM in pipelined mode are no longer needed
+      cancelPendingSamExchanges();
+    }
 
     closeSessionCmdBuild
         .createResponseParser(poCardResponse.getApduResponses().get(0))
@@ -1213,11 +1331,173 @@ public class PoTransaction {
     // sets the flag indicating that the commands have been executed
     poCommandManager.notifyCommandsProcessed();
 
+    poCommandManager.notifySessionChanged();
+
     // session is now considered closed regardless the previous state or the result of the abort
     // session command sent to the PO.
     sessionState = SessionState.SESSION_CLOSED;
   }
 
+  /**
+   * (private)<br>
+   * Waits for the end of the SAM exchanges possibly performed in the background in pipelined mode,
+   * ignoring their result, so that none of them outlives a processing that has failed.
+   */
+  private void cancelPendingSamExchanges() {
+    if (samCommandProcessor != null) {
+      samCommandProcessor.cancelPendingSamExchanges();
+    }
+  }
+
+  /**
+   * Submits {@link #processOpening(SessionSetting.AccessLevel)} to the provided executor.
+   *
+   * <p>This is a convenience method: the processing is performed by a thread of the executor as a
+   * single task and the provided callback is notified at its end. The exchanges with the PO and
+   * the SAM remain blocking and hold this thread for the whole processing, but the calling thread
+   * is released immediately and no thread is held between two processing steps of the
+   * transaction, the next step being typically submitted from the callback.
+   *
+   * <p>The other processing methods of the transaction are rejected until the callback is
+   * notified.
+   *
+   * @param accessLevel access level of the session (personalization, load or debit).
+   * @param executor the executor performing the processing
+   * @param callback the callback notified of the result of the processing
+   * @throws IllegalArgumentException if the executor or the callback is null
+   * @throws CalypsoPoTransactionIllegalStateException if a processing submitted to an executor is
+   *     already in progress
+   * @since 1.0
+   */
+  public final void submitOpening(
+      final PoTransaction.SessionSetting.AccessLevel accessLevel,
+      Executor executor,
+      ProcessingCallback callback) {
+    submitProcessing(
+        executor,
+        callback,
+        new Runnable() {
+          @Override
+          public void run() {
+            processOpening(accessLevel);
+          }
+        });
+  }
+
+  /**
+   * Submits {@link #processPoCommands()} to the provided executor.
+   *
+   * <p>This is a convenience method behaving as {@link
+   * #submitOpening(SessionSetting.AccessLevel, Executor, ProcessingCallback)}.
+   *
+   * @param executor the executor performing the processing
+   * @param callback the callback notified of the result of the processing
+   * @throws IllegalArgumentException if the executor or the callback is null
+   * @throws CalypsoPoTransactionIllegalStateException if a processing submitted to an executor is
+   *     already in progress
+   * @since 1.0
+   */
+  public final void submitPoCommands(Executor executor, ProcessingCallback callback) {
+    submitProcessing(
+        executor,
+        callback,
+        new Runnable() {
+          @Override
+          public void run() {
+            processPoCommands();
+          }
+        });
+  }
+
+  /**
+   * Submits {@link #processClosing()} to the provided executor.
+   *
+   * <p>This is a convenience method behaving as {@link
+   * #submitOpening(SessionSetting.AccessLevel, Executor, ProcessingCallback)}.
+   *
+   * @param executor the executor performing the processing
+   * @param callback the callback notified of the result of the processing
+   * @throws IllegalArgumentException if the executor or the callback is null
+   * @throws CalypsoPoTransactionIllegalStateException if a processing submitted to an executor is
+   *     already in progress
+   * @since 1.0
+   */
+  public final void submitClosing(Executor executor, ProcessingCallback callback) {
+    submitProcessing(
+        executor,
+        callback,
+        new Runnable() {
+          @Override
+          public void run() {
+            processClosing();
+          }
+        });
+  }
+
+  /**
+   * (private)<br>
+   * Executes a processing step with the provided executor and notifies its result.
+   *
+   * @param executor the executor
+   * @param callback the callback notified of the result
+   * @param processing the processing step
+   */
+  private void submitProcessing(
+      Executor executor, final ProcessingCallback callback, final Runnable processing) {
+    Assert.getInstance().notNull(executor, "executor").notNull(callback, "callback");
+    if (!isAsyncProcessingInProgress.compareAndSet(false, true)) {
+      throw new CalypsoPoTransactionIllegalStateException(
+          "A processing submitted to an executor is already in progress.");
+    }
+    boolean isSubmitted = false;
+    try {
+      executor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              RuntimeException failure = null;
+              // only this thread is allowed to process the transaction
+              asyncProcessingThread = Thread.currentThread();
+              try {
+                processing.run();
+              } catch (RuntimeException e) {
+                failure = e;
+              } finally {
+                // the transaction is available again before the notification, whatever the outcome
+                asyncProcessingThread = null;
+                isAsyncProcessingInProgress.set(false);
+              }
+              if (failure == null) {
+                callback.onSuccess();
+              } else {
+                callback.onFailure(failure);
+              }
+            }
+          });
+      isSubmitted = true;
+    } finally {
+      if (!isSubmitted) {
+        // rejected by the executor
+        isAsyncProcessingInProgress.set(false);
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Checks that no processing submitted to an executor is in progress, except in the thread
+   * performing it.
+   *
+   * @throws CalypsoPoTransactionIllegalStateException if a processing submitted to an executor is
+   *     in progress
+   */
+  private void checkNoAsyncProcessingInProgress() {
+    if (isAsyncProcessingInProgress.get() && asyncProcessingThread != Thread.currentThread()) {
+      throw new CalypsoPoTransactionIllegalStateException(
+          "A processing submitted to an executor is in progress.");
+    }
+  }
+
   /**
    * Performs a PIN verification, in order to authenticate the card holder and/or unlock access to
    * certain PO files.
@@ -1242,10 +1522,12 @@ public class PoTransaction {
    *     update in Calypso). See {@link CalypsoPo#isPinBlocked} and {@link
    *     CalypsoPo#getPinAttemptRemaining} methods
    * @throws CalypsoPoTransactionIllegalStateException if the PIN feature is not available for this
-   *     PO or if commands have been prepared before calling this process method.
+   *     PO or if commands have been prepared before calling this process method or if a processing
+   *     submitted to an executor is in progress.
    * @since 0.9
    */
   public final void processVerifyPin(byte[] pin) {
+    checkNoAsyncProcessingInProgress();
     Assert.getInstance()
         .notNull(pin, "pin")
         .isEqual(pin.length, CalypsoPoUtils.PIN_LENGTH, "PIN length");
@@ -1271,7 +1553,7 @@ public class PoTransaction {
 
       // Get the encrypted PIN with the help of the SAM
       byte[] cipheredPin =
-          samCommandProcessor.getCipheredPinData(CalypsoPoUtils.getPoChallenge(), pin, null);
+          samCommandProcessor.getCipheredPinData(calypsoPo.getPoChallenge(), pin, null);
       poCommandManager.addRegularCommand(
           new VerifyPinCmdBuild(
               calypsoPo.getPoClass(), PinTransmissionMode.ENCRYPTED, cipheredPin));
@@ -1377,10 +1659,7 @@ public class PoTransaction {
       AtomicInteger neededSessionBufferSpace) {
     if (builder.isSessionBufferUsed()) {
       // This command affects the PO modifications buffer
-      neededSessionBufferSpace.set(
-          builder.getApduRequest().getBytes().length
-              + SESSION_BUFFER_CMD_ADDITIONAL_COST
-              - APDU_HEADER_LENGTH);
+      neededSessionBufferSpace.set(getNeededSessionBufferSpace(builder));
       if (isSessionBufferOverflowed(neededSessionBufferSpace.get())) {
         // raise an exception if in atomic mode
         if (poSecuritySettings.getSessionModificationMode()
@@ -1397,6 +1676,20 @@ public class PoTransaction {
     } else return false;
   }
 
+  /**
+   * (private)<br>
+   * Gets the requirement in bytes of a modifying command for the PO modifications buffer.
+   *
+   * @param builder the command builder
+   * @return the length of the outgoing data plus the additional cost
+   */
+  private int getNeededSessionBufferSpace(
+      AbstractPoCommandBuilder<? extends AbstractPoResponseParser> builder) {
+    return builder.getApduRequest().getBytes().length
+        + SESSION_BUFFER_CMD_ADDITIONAL_COST
+        - APDU_HEADER_LENGTH;
+  }
+
   /**
    * Checks whether the requirement for the modifications buffer of the command provided in argument
    * is compatible with the current usage level of the buffer.
@@ -1449,6 +1742,210 @@ public class PoTransaction {
     modificationsCounter = calypsoPo.getModificationsCounter();
   }
 
+  /**
+   * (private)<br>
+   * Optimizes the prepared Read Records commands if enabled in the {@link PoSecuritySettings}.
+   *
+   * @param isSessionOpen true if the commands will be processed in the current secure session
+   */
+  private void optimizeReadCommands(boolean isSessionOpen) {
+    if (poSecuritySettings == null || !poSecuritySettings.isReadCommandsOptimizationEnabled()) {
+      return;
+    }
+    int nbSavedApdus = poCommandManager.optimizeReadCommands(calypsoPo, isSessionOpen);
+    nbSavedPoApdus += nbSavedApdus;
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Read commands optimized: SAVEDAPDUS = {}, TOTALSAVEDAPDUS = {}",
+          nbSavedApdus,
+          nbSavedPoApdus);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Plans the pending commands in as few sessions as possible if the look-ahead packing is enabled
+   * in the {@link PoSecuritySettings} and applicable.
+   *
+   * <p>The sessions are filled one after the other with the first pending commands fitting in the
+   * PO modifications buffer, the first session with the space remaining in the current one. The
+   * planned list then replaces the pending one if it needs fewer sessions, and is processed as
+   * usual: a session is closed each time the next command would overflow the buffer.
+   *
+   * <p>When the buffer is counted in operations, all the modifying commands have the same cost and
+   * the sequential filling is already optimal.
+   */
+  private void packPendingCommands() {
+    if (poSecuritySettings == null
+        || !poSecuritySettings.isLookAheadPackingEnabled()
+        || poSecuritySettings.getSessionModificationMode()
+            != SessionSetting.ModificationMode.MULTIPLE
+        || !calypsoPo.isModificationsCounterInBytes()) {
+      return;
+    }
+    List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> poCommands =
+        poCommandManager.getPoCommandBuilders();
+    List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> pendingCommands =
+        new ArrayList<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>>(poCommands);
+    List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> plannedCommands =
+        new ArrayList<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>>(
+            poCommands.size());
+    int sessionBufferSize = modificationsCounter;
+    while (!pendingCommands.isEmpty()) {
+      fillSession(
+          pendingCommands,
+          plannedCommands,
+          sessionBufferSize,
+          sessionBufferSize == calypsoPo.getModificationsCounter());
+      sessionBufferSize = calypsoPo.getModificationsCounter();
+    }
+    int nbSessions = getNbSessions(poCommands);
+    int nbPlannedSessions = getNbSessions(plannedCommands);
+    if (nbPlannedSessions < nbSessions) {
+      poCommands.clear();
+      poCommands.addAll(plannedCommands);
+      nbSavedSessions += nbSessions - nbPlannedSessions;
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Pending commands packed: SESSIONS = {}, PLANNEDSESSIONS = {}, TOTALSAVEDSESSIONS = {}",
+          nbSessions,
+          nbPlannedSessions,
+          nbSavedSessions);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Moves to the planned commands the first pending commands fitting in a session.
+   *
+   * <p>A command accessing an EF by its SFI is postponed if it does not fit in the remaining
+   * space, as well as all the following commands accessing the same EF. Any other command is kept
+   * in place: it is postponed if a previous command was, and then all the following commands are
+   * too.
+   *
+   * @param pendingCommands the pending commands, updated by the method
+   * @param plannedCommands the planned commands, completed by the method
+   * @param sessionBufferSize the space available in the PO modifications buffer
+   * @param isSessionEmpty true if the session does not contain any modification yet (a command
+   *     overflowing the whole buffer is then accepted to ensure progress)
+   */
+  private void fillSession(
+      List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> pendingCommands,
+      List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> plannedCommands,
+      int sessionBufferSize,
+      boolean isSessionEmpty) {
+    Set<Integer> postponedSfis = new HashSet<Integer>();
+    boolean isCommandInPlacePostponed = false;
+    int remainingSize = sessionBufferSize;
+    Iterator<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> iterator =
+        pendingCommands.iterator();
+    while (iterator.hasNext() && !isCommandInPlacePostponed) {
+      AbstractPoCommandBuilder<? extends AbstractPoResponseParser> commandBuilder = iterator.next();
+      int sfi = getAccessedSfi(commandBuilder);
+      boolean isPlanned = sfi == 0 ? postponedSfis.isEmpty() : !postponedSfis.contains(sfi);
+      if (isPlanned && commandBuilder.isSessionBufferUsed()) {
+        int neededSpace = getNeededSessionBufferSpace(commandBuilder);
+        if (neededSpace <= remainingSize || isSessionEmpty) {
+          remainingSize = Math.max(remainingSize - neededSpace, 0);
+          isSessionEmpty = false;
+        } else {
+          isPlanned = false;
+        }
+      }
+      if (isPlanned) {
+        plannedCommands.add(commandBuilder);
+        iterator.remove();
+      } else if (sfi == 0) {
+        isCommandInPlacePostponed = true;
+      } else {
+        postponedSfis.add(sfi);
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Gets the number of sessions needed to process the provided commands, a session being closed
+   * each time the next command would overflow the PO modifications buffer.
+   *
+   * @param poCommands the commands
+   * @return a number greater than or equal to 1
+   */
+  private int getNbSessions(
+      List<AbstractPoCommandBuilder<? extends AbstractPoResponseParser>> poCommands) {
+    int nbSessions = 1;
+    int remainingSize = modificationsCounter;
+    for (AbstractPoCommandBuilder<? extends AbstractPoResponseParser> commandBuilder : poCommands) {
+      if (commandBuilder.isSessionBufferUsed()) {
+        int neededSpace = getNeededSessionBufferSpace(commandBuilder);
+        if (neededSpace > remainingSize) {
+          nbSessions++;
+          remainingSize = calypsoPo.getModificationsCounter();
+        }
+        if (neededSpace <= remainingSize) {
+          remainingSize -= neededSpace;
+        }
+      }
+    }
+    return nbSessions;
+  }
+
+  /**
+   * (private)<br>
+   * Gets the SFI of the EF accessed by a command.
+   *
+   * @param commandBuilder the command builder
+   * @return 0 if the command does not access an EF by its SFI
+   */
+  private static int getAccessedSfi(
+      AbstractPoCommandBuilder<? extends AbstractPoResponseParser> commandBuilder) {
+    switch (commandBuilder.getCommandRef()) {
+      case READ_RECORDS:
+        return ((ReadRecordsCmdBuild) commandBuilder).getSfi();
+      case UPDATE_RECORD:
+        return ((UpdateRecordCmdBuild) commandBuilder).getSfi();
+      case WRITE_RECORD:
+        return ((WriteRecordCmdBuild) commandBuilder).getSfi();
+      case APPEND_RECORD:
+        return ((AppendRecordCmdBuild) commandBuilder).getSfi();
+      case INCREASE:
+        return ((IncreaseCmdBuild) commandBuilder).getSfi();
+      case DECREASE:
+        return ((DecreaseCmdBuild) commandBuilder).getSfi();
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Gets the number of sessions saved since the creation of the transaction by the look-ahead
+   * packing of the pending commands.
+   *
+   * <p>This number is always 0 if the look-ahead packing is not enabled in the {@link
+   * PoSecuritySettings}.
+   *
+   * @return a positive number
+   * @since 1.0
+   */
+  public final int getNbSavedSessions() {
+    return nbSavedSessions;
+  }
+
+  /**
+   * Gets the number of PO APDUs saved since the creation of the transaction by the optimization of
+   * the prepared read commands.
+   *
+   * <p>This number is always 0 if the optimization is not enabled in the {@link
+   * PoSecuritySettings}.
+   *
+   * @return a positive number
+   * @since 1.0
+   */
+  public final int getNbSavedPoApdus() {
+    return nbSavedPoApdus;
+  }
+
   /**
    * Requests the closing of the PO channel.
    *
@@ -1902,7 +2399,7 @@ public class PoTransaction {
             calypsoPo.getPoClass(),
             calypsoPo.getRevision(),
             amount,
-            CalypsoPoUtils.getSvKvc(),
+            calypsoPo.getSvKvc(),
             date,
             time,
             free);
@@ -1910,7 +2407,7 @@ public class PoTransaction {
     // get the security data from the SAM
     byte[] svReloadComplementaryData =
         samCommandProcessor.getSvReloadComplementaryData(
-            svReloadCmdBuild, CalypsoPoUtils.getSvGetHeader(), CalypsoPoUtils.getSvGetData());
+            svReloadCmdBuild, calypsoPo.getSvGetHeader(), calypsoPo.getSvGetData());
 
     // finalize the SvReload command builder with the data provided by the SAM
     svReloadCmdBuild.finalizeBuilder(svReloadComplementaryData);
@@ -1963,14 +2460,14 @@ public class PoTransaction {
             calypsoPo.getPoClass(),
             calypsoPo.getRevision(),
             amount,
-            CalypsoPoUtils.getSvKvc(),
+            calypsoPo.getSvKvc(),
             date,
             time);
 
     // get the security data from the SAM
     byte[] svDebitComplementaryData =
         samCommandProcessor.getSvDebitComplementaryData(
-            svDebitCmdBuild, CalypsoPoUtils.getSvGetHeader(), CalypsoPoUtils.getSvGetData());
+            svDebitCmdBuild, calypsoPo.getSvGetHeader(), calypsoPo.getSvGetData());
 
     // finalize the SvDebit command builder with the data provided by the SAM
     svDebitCmdBuild.finalizeBuilder(svDebitComplementaryData);
@@ -1997,14 +2494,14 @@ public class PoTransaction {
             calypsoPo.getPoClass(),
             calypsoPo.getRevision(),
             amount,
-            CalypsoPoUtils.getSvKvc(),
+            calypsoPo.getSvKvc(),
             date,
             time);
 
     // get the security data from the SAM
     byte[] svDebitComplementaryData =
         samCommandProcessor.getSvUndebitComplementaryData(
-            svUndebitCmdBuild, CalypsoPoUtils.getSvGetHeader(), CalypsoPoUtils.getSvGetData());
+            svUndebitCmdBuild, calypsoPo.getSvGetHeader(), calypsoPo.getSvGetData());
 
     // finalize the SvUndebit command builder with the data provided by the SAM
     svUndebitCmdBuild.finalizeBuilder(svDebitComplementaryData);
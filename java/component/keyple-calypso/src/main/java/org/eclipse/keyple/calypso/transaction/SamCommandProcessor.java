@@ -14,6 +14,10 @@ package org.eclipse.keyple.calypso.transaction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.eclipse.keyple.calypso.KeyReference;
 import org.eclipse.keyple.calypso.command.po.PoRevision;
 import org.eclipse.keyple.calypso.command.po.builder.storedvalue.SvDebitCmdBuild;
@@ -21,6 +25,7 @@ import org.eclipse.keyple.calypso.command.po.builder.storedvalue.SvReloadCmdBuil
 import org.eclipse.keyple.calypso.command.po.builder.storedvalue.SvUndebitCmdBuild;
 import org.eclipse.keyple.calypso.command.sam.AbstractSamCommandBuilder;
 import org.eclipse.keyple.calypso.command.sam.AbstractSamResponseParser;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
 import org.eclipse.keyple.calypso.command.sam.builder.security.*;
 import org.eclipse.keyple.calypso.command.sam.exception.CalypsoSamCommandException;
 import org.eclipse.keyple.calypso.command.sam.parser.security.CardCipherPinRespPars;
@@ -31,6 +36,7 @@ import org.eclipse.keyple.calypso.command.sam.parser.security.SvCheckRespPars;
 import org.eclipse.keyple.calypso.command.sam.parser.security.SvPrepareOperationRespPars;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoDesynchronizedExchangesException;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoSamIOException;
+import org.eclipse.keyple.calypso.transaction.sammanager.SamExchangeListener;
 import org.eclipse.keyple.core.card.command.AbstractApduCommandBuilder;
 import org.eclipse.keyple.core.card.message.ApduRequest;
 import org.eclipse.keyple.core.card.message.ApduResponse;
@@ -64,11 +70,14 @@ class SamCommandProcessor {
   private static final byte CHALLENGE_LENGTH_REV32 = (byte) 0x08;
   private static final byte SIGNATURE_LENGTH_REV_INF_32 = (byte) 0x04;
   private static final byte SIGNATURE_LENGTH_REV32 = (byte) 0x08;
+  private static final int DIGEST_UPDATE_MULTIPLE_MAX_DATA_LENGTH = 255;
 
   /** The SAM resource */
   private final CardResource<CalypsoSam> samResource;
   /** The Proxy reader to communicate with the SAM */
   private final ProxyReader samReader;
+  /** The listener of the SAM exchanges provided by the SAM resource (null if none) */
+  private final SamExchangeListener samExchangeListener;
   /** The PO resource */
   private final CardResource<CalypsoPo> poResource;
   /** The security settings. */
@@ -76,9 +85,10 @@ class SamCommandProcessor {
   /*
    * The digest data cache stores all PO data to be send to SAM during a Secure Session. The 1st
    * buffer is the data buffer to be provided with Digest Init. The following buffers are PO
-   * command/response pairs
+   * command/response pairs. It is owned by the transaction (one instance per PoTransaction), so
+   * that concurrent transactions never share their session state.
    */
-  private static final List<byte[]> poDigestDataCache = new ArrayList<byte[]>();
+  private final List<byte[]> poDigestDataCache = new ArrayList<byte[]>();
   private boolean sessionEncryption;
   private boolean verificationMode;
   private byte workKeyRecordNumber;
@@ -87,6 +97,10 @@ class SamCommandProcessor {
   private boolean isDiversificationDone;
   private boolean isDigestInitDone;
   private boolean isDigesterInitialized;
+  /** The executor performing the SAM exchanges in pipelined mode (null if not pipelined) */
+  private final ExecutorService samExecutor;
+  /** The digest exchange in progress in pipelined mode (null if none) */
+  private Future<Void> pendingDigestExchange;
 
   /**
    * Constructor
@@ -100,6 +114,100 @@ class SamCommandProcessor {
     this.poSecuritySettings = poSecuritySettings;
     this.samResource = poSecuritySettings.getSamResource();
     samReader = (ProxyReader) this.samResource.getReader();
+    samExchangeListener =
+        samResource instanceof SamExchangeListener ? (SamExchangeListener) samResource : null;
+    samExecutor = poSecuritySettings.getSamPipeliningExecutor();
+  }
+
+  /**
+   * Sends in the background the pending digest data to the SAM if the pipelined mode is enabled.
+   *
+   * <p>The Digest Init and Digest Update commands are then processed by the SAM while the next PO
+   * commands are exchanged, the closing of the session only having to send the remaining ones.
+   *
+   * @since 1.0
+   */
+  void streamPendingDigestData() {
+    if (samExecutor == null
+        || !isDigesterInitialized
+        || (isDigestInitDone && poDigestDataCache.isEmpty())) {
+      return;
+    }
+    awaitPendingSamExchanges();
+    final List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands =
+        getPendingSamCommands(false);
+    pendingDigestExchange =
+        samExecutor.submit(
+            new Callable<Void>() {
+              @Override
+              public Void call() {
+                transmitDigestCommands(samCommands);
+                return null;
+              }
+            });
+  }
+
+  /**
+   * Waits for the end of the SAM exchanges performed in the background, ignoring their result.
+   *
+   * <p>Used when the session is cancelled or when a processing fails, so that no SAM exchange
+   * outlives it, the SAM digest state being reset by the next session opening.
+   *
+   * @since 1.0
+   */
+  void cancelPendingSamExchanges() {
+    if (pendingDigestExchange == null) {
+      return;
+    }
+    Future<Void> future = pendingDigestExchange;
+    pendingDigestExchange = null;
+    try {
+      await(future);
+    } catch (RuntimeException e) {
+      logger.debug("cancelPendingSamExchanges: ignored SAM error: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Waits for the end of the SAM exchanges performed in the background.
+   *
+   * <p>Must be called before any other SAM exchange.
+   *
+   * @throws CalypsoSamIOException if the communication with the SAM has failed.
+   * @throws CalypsoDesynchronizedExchangesException if the APDU SAM exchanges are out of sync
+   * @throws CalypsoSamCommandException if the SAM has responded with an error status
+   */
+  private void awaitPendingSamExchanges() {
+    if (pendingDigestExchange != null) {
+      Future<Void> future = pendingDigestExchange;
+      pendingDigestExchange = null;
+      await(future);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Waits for the result of a SAM exchange performed in the background.
+   *
+   * @param future the future result
+   * @param <T> the type of the result
+   * @return the result
+   * @throws CalypsoSamIOException if the exchange has failed with a checked exception or if the
+   *     current thread has been interrupted.
+   */
+  private static <T> T await(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CalypsoSamIOException("Interrupted while waiting for the SAM.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new CalypsoSamIOException("SAM exchange failed.", e.getCause());
+    }
   }
 
   /**
@@ -121,6 +229,8 @@ class SamCommandProcessor {
    * @since 0.9
    */
   byte[] getSessionTerminalChallenge() {
+    awaitPendingSamExchanges();
+
     List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
 
     // diversify only if this has not already been done.
@@ -151,8 +261,7 @@ class SamCommandProcessor {
     // Transmit the CardRequest to the SAM and get back the CardResponse (list of ApduResponse)
     CardResponse samCardResponse;
     try {
-      samCardResponse =
-          samReader.transmitCardRequest(new CardRequest(apduRequests), ChannelControl.KEEP_OPEN);
+      samCardResponse = transmitSamCardRequest(new CardRequest(apduRequests));
     } catch (KeypleReaderIOException e) {
       throw new CalypsoSamIOException("SAM IO Exception while getting terminal challenge.", e);
     }
@@ -323,7 +432,9 @@ class SamCommandProcessor {
    *
    * <ul>
    *   <li>Starts with a Digest Init command if not already done,
-   *   <li>Adds as many Digest Update commands as there are packages in the cache,
+   *   <li>Adds as many Digest Update commands as there are packages in the cache, or packs them
+   *       into Digest Update Multiple commands when possible (see {@link
+   *       #addDigestUpdateCommands(List)}),
    *   <li>Appends a Digest Close command if the addDigestClose flag is set to true.
    * </ul>
    *
@@ -333,12 +444,11 @@ class SamCommandProcessor {
    */
   private List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>>
       getPendingSamCommands(boolean addDigestClose) {
-    // TODO optimization with the use of Digest Update Multiple whenever possible.
     List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands =
         new ArrayList<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>>();
 
     // sanity checks
-    if (poDigestDataCache.isEmpty()) {
+    if (!isDigestInitDone && poDigestDataCache.isEmpty()) {
       logger.debug("getSamDigestRequest: no data in cache.");
       throw new IllegalStateException("Digest data cache is empty.");
     }
@@ -370,14 +480,8 @@ class SamCommandProcessor {
       isDigestInitDone = true;
     }
 
-    // Build and append Digest Update commands
-    for (int i = 0; i < poDigestDataCache.size(); i++) {
-      samCommands.add(
-          new DigestUpdateCmdBuild(
-              samResource.getSmartCard().getSamRevision(),
-              sessionEncryption,
-              poDigestDataCache.get(i)));
-    }
+    // Build and append Digest Update (Multiple) commands
+    addDigestUpdateCommands(samCommands);
 
     // clears cached commands once they have been processed
     poDigestDataCache.clear();
@@ -395,6 +499,86 @@ class SamCommandProcessor {
     return samCommands;
   }
 
+  /**
+   * (private)<br>
+   * Appends the Digest Update commands corresponding to the PO exchanges in the cache.
+   *
+   * <p>When the Digest Update Multiple command is enabled in the security settings, is supported
+   * by the SAM (C1 revision) and the session is not encrypted (the SAM must then return the
+   * deciphered data of each PO exchange), the consecutive buffers of the cache are packed into as
+   * few Digest Update Multiple commands as the SAM buffer size allows. Each buffer is then
+   * preceded by its length.
+   *
+   * <p>One Digest Update command is used otherwise, as well as for a buffer that cannot be packed
+   * with any other one.
+   *
+   * @param samCommands the list of SAM commands to complete
+   */
+  private void addDigestUpdateCommands(
+      List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands) {
+    SamRevision samRevision = samResource.getSmartCard().getSamRevision();
+    if (!poSecuritySettings.isDigestUpdateMultipleEnabled()
+        || samRevision != SamRevision.C1
+        || sessionEncryption) {
+      for (byte[] digestData : poDigestDataCache) {
+        samCommands.add(new DigestUpdateCmdBuild(samRevision, sessionEncryption, digestData));
+      }
+      return;
+    }
+    List<byte[]> pack = new ArrayList<byte[]>();
+    int packLength = 0;
+    for (byte[] digestData : poDigestDataCache) {
+      if (packLength + 1 + digestData.length > DIGEST_UPDATE_MULTIPLE_MAX_DATA_LENGTH) {
+        addDigestUpdatePack(samCommands, samRevision, pack, packLength);
+        pack.clear();
+        packLength = 0;
+      }
+      pack.add(digestData);
+      packLength += 1 + digestData.length;
+    }
+    addDigestUpdatePack(samCommands, samRevision, pack, packLength);
+  }
+
+  /**
+   * (private)<br>
+   * Appends the command corresponding to a pack of digest buffers: nothing if the pack is empty, a
+   * Digest Update command if it contains only one buffer, a Digest Update Multiple command
+   * otherwise.
+   *
+   * @param samCommands the list of SAM commands to complete
+   * @param samRevision the SAM revision
+   * @param pack the buffers to pack
+   * @param packLength the length of the packed data (length bytes included)
+   */
+  private void addDigestUpdatePack(
+      List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands,
+      SamRevision samRevision,
+      List<byte[]> pack,
+      int packLength) {
+    if (pack.isEmpty()) {
+      return;
+    }
+    if (pack.size() == 1) {
+      samCommands.add(new DigestUpdateCmdBuild(samRevision, sessionEncryption, pack.get(0)));
+      return;
+    }
+    byte[] packedData = new byte[packLength];
+    int offset = 0;
+    for (byte[] digestData : pack) {
+      packedData[offset++] = (byte) digestData.length;
+      System.arraycopy(digestData, 0, packedData, offset, digestData.length);
+      offset += digestData.length;
+    }
+    if (logger.isTraceEnabled()) {
+      logger.trace(
+          "addDigestUpdatePack: {} buffers packed, DATA = {}",
+          pack.size(),
+          ByteArrayUtil.toHex(packedData));
+    }
+    samCommands.add(
+        new DigestUpdateMultipleCmdBuild(samRevision, sessionEncryption, packedData));
+  }
+
   /**
    * Gets the terminal signature from the SAM
    *
@@ -409,18 +593,52 @@ class SamCommandProcessor {
    */
   byte[] getTerminalSignature() {
 
+    // The digest data possibly streamed in pipelined mode must have been processed
+    awaitPendingSamExchanges();
+
     // All remaining SAM digest operations will now run at once.
     // Get the SAM Digest request including Digest Close from the cache manager
     List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands =
         getPendingSamCommands(true);
 
+    List<ApduResponse> samApduResponses = transmitDigestCommands(samCommands);
+
+    // Get Terminal Signature from the latest response
+    DigestCloseRespPars digestCloseRespPars =
+        (DigestCloseRespPars)
+            samCommands
+                .get(samCommands.size() - 1)
+                .createResponseParser(samApduResponses.get(samCommands.size() - 1));
+
+    byte[] sessionTerminalSignature = digestCloseRespPars.getSignature();
+
+    if (logger.isDebugEnabled()) {
+      logger.debug("SIGNATURE = {}", ByteArrayUtil.toHex(sessionTerminalSignature));
+    }
+
+    return sessionTerminalSignature;
+  }
+
+  /**
+   * (private)<br>
+   * Transmits digest commands to the SAM and checks their responses.
+   *
+   * @param samCommands the SAM commands
+   * @return the SAM responses
+   * @throws CalypsoSamIOException if the communication with the SAM has failed.
+   * @throws CalypsoDesynchronizedExchangesException if the APDU SAM exchanges are out of sync
+   * @throws CalypsoSamCommandException if the SAM has responded with an error status
+   */
+  private List<ApduResponse> transmitDigestCommands(
+      List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands) {
+
     CardRequest samCardRequest = new CardRequest(getApduRequests(samCommands));
 
     // Transmit CardRequest and get CardResponse
     CardResponse samCardResponse;
 
     try {
-      samCardResponse = samReader.transmitCardRequest(samCardRequest, ChannelControl.KEEP_OPEN);
+      samCardResponse = transmitSamCardRequest(samCardRequest);
     } catch (KeypleReaderIOException e) {
       throw new CalypsoSamIOException("SAM IO Exception while transmitting digest data.", e);
     }
@@ -439,21 +657,7 @@ class SamCommandProcessor {
     for (int i = 0; i < samApduResponses.size(); i++) {
       samCommands.get(i).createResponseParser(samApduResponses.get(i)).checkStatus();
     }
-
-    // Get Terminal Signature from the latest response
-    DigestCloseRespPars digestCloseRespPars =
-        (DigestCloseRespPars)
-            samCommands
-                .get(samCommands.size() - 1)
-                .createResponseParser(samApduResponses.get(samCommands.size() - 1));
-
-    byte[] sessionTerminalSignature = digestCloseRespPars.getSignature();
-
-    if (logger.isDebugEnabled()) {
-      logger.debug("SIGNATURE = {}", ByteArrayUtil.toHex(sessionTerminalSignature));
-    }
-
-    return sessionTerminalSignature;
+    return samApduResponses;
   }
 
   /**
@@ -468,6 +672,7 @@ class SamCommandProcessor {
    * @since 0.9
    */
   void authenticatePoSignature(byte[] poSignatureLo) {
+    awaitPendingSamExchanges();
     // Check the PO signature part with the SAM
     // Build and send SAM Digest Authenticate command
     DigestAuthenticateCmdBuild digestAuthenticateCmdBuild =
@@ -480,7 +685,7 @@ class SamCommandProcessor {
 
     CardResponse samCardResponse;
     try {
-      samCardResponse = samReader.transmitCardRequest(samCardRequest, ChannelControl.KEEP_OPEN);
+      samCardResponse = transmitSamCardRequest(samCardRequest);
     } catch (KeypleReaderIOException e) {
       throw new CalypsoSamIOException(
           "SAM IO Exception while transmitting digest authentication data.", e);
@@ -532,6 +737,7 @@ class SamCommandProcessor {
    * @since 0.9
    */
   byte[] getCipheredPinData(byte[] poChallenge, byte[] currentPin, byte[] newPin) {
+    awaitPendingSamExchanges();
     List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands =
         new ArrayList<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>>();
     KeyReference pinCipheringKey;
@@ -573,8 +779,7 @@ class SamCommandProcessor {
     CardRequest samCardRequest = new CardRequest(getApduRequests(samCommands));
 
     // execute the command
-    CardResponse samCardResponse =
-        samReader.transmitCardRequest(samCardRequest, ChannelControl.KEEP_OPEN);
+    CardResponse samCardResponse = transmitSamCardRequest(samCardRequest);
 
     ApduResponse cardCipherPinResponse =
         samCardResponse.getApduResponses().get(cardCipherPinCmdIndex);
@@ -610,6 +815,7 @@ class SamCommandProcessor {
    */
   private byte[] getSvComplementaryData(
       AbstractSamCommandBuilder<? extends AbstractSamResponseParser> svPrepareCmdBuild) {
+    awaitPendingSamExchanges();
     List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands =
         new ArrayList<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>>();
 
@@ -635,8 +841,7 @@ class SamCommandProcessor {
     CardRequest samCardRequest = new CardRequest(getApduRequests(samCommands));
 
     // execute the command
-    CardResponse samCardResponse =
-        samReader.transmitCardRequest(samCardRequest, ChannelControl.KEEP_OPEN);
+    CardResponse samCardResponse = transmitSamCardRequest(samCardRequest);
 
     ApduResponse svPrepareResponse =
         samCardResponse.getApduResponses().get(svPrepareOperationCmdIndex);
@@ -759,6 +964,7 @@ class SamCommandProcessor {
    * @since 0.9
    */
   void checkSvStatus(byte[] svOperationResponseData) {
+    awaitPendingSamExchanges();
     List<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>> samCommands =
         new ArrayList<AbstractSamCommandBuilder<? extends AbstractSamResponseParser>>();
 
@@ -770,8 +976,7 @@ class SamCommandProcessor {
     CardRequest samCardRequest = new CardRequest(getApduRequests(samCommands));
 
     // execute the command
-    CardResponse samCardResponse =
-        samReader.transmitCardRequest(samCardRequest, ChannelControl.KEEP_OPEN);
+    CardResponse samCardResponse = transmitSamCardRequest(samCardRequest);
 
     ApduResponse svCheckResponse = samCardResponse.getApduResponses().get(0);
 
@@ -780,4 +985,56 @@ class SamCommandProcessor {
 
     svCheckRespPars.checkStatus();
   }
+
+  /**
+   * (private)<br>
+   * Transmits a card request to the SAM and notifies the exchange to the SAM resource.
+   *
+   * <p>The exchange is notified as failed if the communication failed, or if a response is missing
+   * or reports a status word not expected by its command, the status words being checked later by
+   * the response parsers.
+   *
+   * @param samCardRequest the card request
+   * @return the card response
+   * @throws KeypleReaderIOException if the communication with the SAM failed
+   */
+  private CardResponse transmitSamCardRequest(CardRequest samCardRequest) {
+    long startNanos = System.nanoTime();
+    boolean isSuccessful = false;
+    try {
+      CardResponse samCardResponse =
+          samReader.transmitCardRequest(samCardRequest, ChannelControl.KEEP_OPEN);
+      isSuccessful = hasExpectedStatusWords(samCardRequest, samCardResponse);
+      if (samExchangeListener != null && !samCardResponse.isLogicalChannelOpen()) {
+        samExchangeListener.onSamChannelClosed();
+      }
+      return samCardResponse;
+    } finally {
+      if (samExchangeListener != null) {
+        samExchangeListener.onSamExchange(System.nanoTime() - startNanos, isSuccessful);
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Indicates whether the SAM answered each APDU of a card request with an expected status word.
+   *
+   * @param samCardRequest the card request
+   * @param samCardResponse the card response
+   * @return false if a response is missing or unsuccessful
+   */
+  private static boolean hasExpectedStatusWords(
+      CardRequest samCardRequest, CardResponse samCardResponse) {
+    List<ApduResponse> samApduResponses = samCardResponse.getApduResponses();
+    if (samApduResponses.size() != samCardRequest.getApduRequests().size()) {
+      return false;
+    }
+    for (ApduResponse samApduResponse : samApduResponses) {
+      if (!samApduResponse.isSuccessful()) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
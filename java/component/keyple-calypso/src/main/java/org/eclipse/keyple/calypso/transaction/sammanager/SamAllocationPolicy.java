@@ -0,0 +1,40 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.calypso.transaction.sammanager;
+
+/**
+ * Policy used by the {@link SamResourceManagerDefault} to choose a SAM among the free SAM matching
+ * an allocation request.
+ *
+ * @since 1.0
+ */
+public enum SamAllocationPolicy {
+  /**
+   * The SAM free for the longest time is allocated first (default policy).
+   *
+   * @since 1.0
+   */
+  LEAST_RECENTLY_USED,
+  /**
+   * The SAM are allocated in turn, in the order in which they were added to the manager.
+   *
+   * @since 1.0
+   */
+  ROUND_ROBIN,
+  /**
+   * The SAM having the lowest mean exchange time is allocated first, a SAM not used yet being
+   * considered as the fastest.
+   *
+   * @since 1.0
+   */
+  LOWEST_LATENCY
+}
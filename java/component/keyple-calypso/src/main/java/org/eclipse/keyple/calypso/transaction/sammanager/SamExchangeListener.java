@@ -0,0 +1,41 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.calypso.transaction.sammanager;
+
+/**
+ * Listener notified of each exchange made with a SAM resource.
+ *
+ * <p>It is implemented by the SAM resources provided by the {@link SamResourceManagerDefault} to
+ * collect the exchange statistics used by its allocation policies and its quarantine.
+ *
+ * @since 1.0
+ */
+public interface SamExchangeListener {
+
+  /**
+   * Called after each exchange of APDUs with the SAM.
+   *
+   * @param durationNanos the duration of the exchange (in nanoseconds)
+   * @param isSuccessful false if the exchange failed (communication error, missing response or
+   *     status word not expected by the command)
+   * @since 1.0
+   */
+  void onSamExchange(long durationNanos, boolean isSuccessful);
+
+  /**
+   * Called when the response to an exchange reports that the channel with the SAM is closed (e.g.
+   * SAM removed or reader reset), the SAM then having to be selected again.
+   *
+   * @since 1.0
+   */
+  void onSamChannelClosed();
+}
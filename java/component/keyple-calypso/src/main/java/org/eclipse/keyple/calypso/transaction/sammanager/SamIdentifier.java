@@ -32,6 +32,8 @@ public class SamIdentifier {
   SamRevision samRevision;
   String serialNumber;
   String groupReference;
+  /** The serial number regular expression, compiled at its first use */
+  private volatile Pattern serialNumberPattern;
 
   /** Private constructor */
   private SamIdentifier(SamIdentifierBuilder builder) {
@@ -157,8 +159,7 @@ public class SamIdentifier {
       return false;
     }
     if (samIdentifier.getSerialNumber() != null && !samIdentifier.getSerialNumber().isEmpty()) {
-      Pattern p = Pattern.compile(samIdentifier.getSerialNumber());
-      if (!p.matcher(serialNumber).matches()) {
+      if (!samIdentifier.getSerialNumberPattern().matcher(serialNumber).matches()) {
         return false;
       }
     }
@@ -168,4 +169,19 @@ public class SamIdentifier {
     }
     return true;
   }
+
+  /**
+   * (private)<br>
+   * Gets the serial number regular expression, compiling it at the first call.
+   *
+   * @return a not null pattern
+   */
+  private Pattern getSerialNumberPattern() {
+    Pattern pattern = serialNumberPattern;
+    if (pattern == null) {
+      pattern = Pattern.compile(serialNumber);
+      serialNumberPattern = pattern;
+    }
+    return pattern;
+  }
 }
@@ -0,0 +1,292 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.calypso.transaction.sammanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.exception.CalypsoNoSamResourceAvailableException;
+import org.eclipse.keyple.core.card.message.ApduRequest;
+import org.eclipse.keyple.core.card.message.ApduResponse;
+import org.eclipse.keyple.core.card.message.CardRequest;
+import org.eclipse.keyple.core.card.message.CardResponse;
+import org.eclipse.keyple.core.card.message.CardSelectionRequest;
+import org.eclipse.keyple.core.card.message.CardSelectionResponse;
+import org.eclipse.keyple.core.card.message.ChannelControl;
+import org.eclipse.keyple.core.card.message.ProxyReader;
+import org.eclipse.keyple.core.card.selection.MultiSelectionProcessing;
+import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
+import org.eclipse.keyple.core.util.ByteArrayUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * (package-private)<br>
+ * Reader giving access to one logical channel of a SAM inserted in a physical SAM reader.
+ *
+ * <p>The APDU requests are transmitted through the physical reader after having set the logical
+ * channel number in b2-b1 of their class byte (channels 0 to 3). The channel number is only set in
+ * the class bytes structured like the ISO 7816-4 first interindustry class: the first interindustry
+ * class itself and the proprietary class of the SAM-C1 and SAM-S1E revisions. Setting it in any
+ * other class byte would change the command, so such requests are rejected on the channels other
+ * than the basic one. The transmissions of all the logical channels of a physical reader are
+ * serialized by a common lock, each card request being transmitted atomically.
+ *
+ * <p>The physical channel is always kept open, since it is shared by all the logical channels.
+ *
+ * @since 1.0
+ */
+final class SamLogicalChannelReader implements ProxyReader {
+  private static final Logger logger = LoggerFactory.getLogger(SamLogicalChannelReader.class);
+
+  /** the highest logical channel number usable with the first interindustry class byte */
+  static final int MAX_CHANNEL_NUMBER = 3;
+
+  private static final String MANAGE_CHANNEL_OPEN = "0070000001";
+  private static final int SW_SUCCESS = 0x9000;
+
+  private final ProxyReader physicalReader;
+  private final int channelNumber;
+  private final Object channelLock;
+  private final byte samClassByte;
+  private final String name;
+
+  /**
+   * (package-private)<br>
+   * Constructor
+   *
+   * @param physicalReader the SAM reader
+   * @param channelNumber the logical channel number (between 0 and 3)
+   * @param channelLock the lock shared by all the logical channels of the physical reader
+   * @param samRevision the revision of the SAM (must support the logical channels if the channel
+   *     number is not 0)
+   * @since 1.0
+   */
+  SamLogicalChannelReader(
+      ProxyReader physicalReader, int channelNumber, Object channelLock, SamRevision samRevision) {
+    this.physicalReader = physicalReader;
+    this.channelNumber = channelNumber;
+    this.channelLock = channelLock;
+    this.samClassByte = samRevision.getClassByte();
+    this.name =
+        channelNumber == 0
+            ? physicalReader.getName()
+            : physicalReader.getName() + "#" + channelNumber;
+  }
+
+  /**
+   * (package-private)<br>
+   * Indicates whether the proprietary class byte of a SAM revision codes the logical channel number
+   * like the first interindustry class.
+   *
+   * @param samRevision the revision of the SAM
+   * @return true if the logical channels can be used with the SAM
+   * @since 1.0
+   */
+  static boolean isLogicalChannelSupported(SamRevision samRevision) {
+    return samRevision == SamRevision.C1 || samRevision == SamRevision.S1E;
+  }
+
+  /**
+   * (package-private)<br>
+   * Opens a new logical channel with the MANAGE CHANNEL command on the basic channel.
+   *
+   * @param physicalReader the SAM reader
+   * @param channelLock the lock shared by all the logical channels of the physical reader
+   * @return the number of the new logical channel (between 1 and 3)
+   * @throws CalypsoNoSamResourceAvailableException if the SAM refused to open a logical channel
+   * @throws org.eclipse.keyple.core.service.exception.KeypleReaderIOException if a communication
+   *     error occurs
+   * @since 1.0
+   */
+  static int openLogicalChannel(ProxyReader physicalReader, Object channelLock) {
+    List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
+    apduRequests.add(
+        new ApduRequest(ByteArrayUtil.fromHex(MANAGE_CHANNEL_OPEN), false)
+            .setName("Manage Channel"));
+    CardResponse cardResponse;
+    synchronized (channelLock) {
+      cardResponse =
+          physicalReader.transmitCardRequest(
+              new CardRequest(apduRequests), ChannelControl.KEEP_OPEN);
+    }
+    ApduResponse apduResponse = cardResponse.getApduResponses().get(0);
+    byte[] dataOut = apduResponse.getDataOut();
+    if (apduResponse.getStatusCode() != SW_SUCCESS
+        || dataOut.length != 1
+        || dataOut[0] < 1
+        || dataOut[0] > MAX_CHANNEL_NUMBER) {
+      throw new CalypsoNoSamResourceAvailableException(
+          "Unable to open a logical channel for SAM! Response: "
+              + ByteArrayUtil.toHex(apduResponse.getBytes()));
+    }
+    return dataOut[0];
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the physical reader of the logical channel.
+   *
+   * @return a not null reader
+   * @since 1.0
+   */
+  ProxyReader getPhysicalReader() {
+    return physicalReader;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the logical channel number.
+   *
+   * @return a number between 0 and 3
+   * @since 1.0
+   */
+  int getChannelNumber() {
+    return channelNumber;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The name of the physical reader followed by "#" and the channel number, the basic channel
+   * having the name of the physical reader.
+   *
+   * @since 1.0
+   */
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public boolean isCardPresent() {
+    return physicalReader.isCardPresent();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public void activateProtocol(String readerProtocolName, String applicationProtocolName) {
+    physicalReader.activateProtocol(readerProtocolName, applicationProtocolName);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public void deactivateProtocol(String readerProtocolName) {
+    physicalReader.deactivateProtocol(readerProtocolName);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public boolean isContactless() {
+    return physicalReader.isContactless();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Rejected without any exchange: the SAM is selected through the physical reader before
+   * opening the logical channels, and a new selection would reset the channel shared with the other
+   * logical channels.
+   *
+   * @throws KeypleReaderIOException in any case
+   * @since 1.0
+   */
+  @Override
+  public List<CardSelectionResponse> transmitCardSelectionRequests(
+      List<CardSelectionRequest> cardSelectionRequests,
+      MultiSelectionProcessing multiSelectionProcessing,
+      ChannelControl channelControl) {
+    throw new KeypleReaderIOException(
+        "The card selection is not supported on the SAM logical channel " + name + ".");
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The class byte of each APDU request is updated with the logical channel number and the
+   * physical channel is kept open whatever the provided channel control.
+   *
+   * @throws KeypleReaderIOException if the communication with the SAM failed, or without any
+   *     exchange if the class byte of an APDU request cannot code the logical channel number
+   * @since 1.0
+   */
+  @Override
+  public CardResponse transmitCardRequest(CardRequest cardRequest, ChannelControl channelControl) {
+    CardRequest channelCardRequest = cardRequest;
+    if (channelNumber != 0) {
+      List<ApduRequest> apduRequests =
+          new ArrayList<ApduRequest>(cardRequest.getApduRequests().size());
+      for (ApduRequest apduRequest : cardRequest.getApduRequests()) {
+        apduRequests.add(toChannelApduRequest(apduRequest));
+      }
+      channelCardRequest = new CardRequest(apduRequests);
+    }
+    if (channelControl == ChannelControl.CLOSE_AFTER && logger.isTraceEnabled()) {
+      logger.trace("[{}] The shared physical channel is kept open.", name);
+    }
+    synchronized (channelLock) {
+      return physicalReader.transmitCardRequest(channelCardRequest, ChannelControl.KEEP_OPEN);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Does nothing: the physical channel is shared by all the logical channels.
+   *
+   * @since 1.0
+   */
+  @Override
+  public void releaseChannel() {
+    // the physical channel is shared by the logical channels
+  }
+
+  /**
+   * (private)<br>
+   * Creates a copy of an APDU request targeting the logical channel.
+   *
+   * @param apduRequest the APDU request
+   * @return a new APDU request
+   * @throws KeypleReaderIOException if the class byte cannot code the logical channel number
+   */
+  private ApduRequest toChannelApduRequest(ApduRequest apduRequest) {
+    byte[] apdu = apduRequest.getBytes().clone();
+    // only the first interindustry class (b8-b6 = 000) and the SAM class can code the channel
+    if ((apdu[0] & 0xE0) != 0 && apdu[0] != samClassByte) {
+      throw new KeypleReaderIOException(
+          String.format(
+              "The class byte %02Xh cannot address the SAM logical channel %s.", apdu[0], name));
+    }
+    // channel number in b2-b1
+    apdu[0] = (byte) ((apdu[0] & 0xFC) | channelNumber);
+    return new ApduRequest(apdu, apduRequest.isCase4())
+        .setSuccessfulStatusCodes(apduRequest.getSuccessfulStatusCodes())
+        .setName(apduRequest.getName());
+  }
+}
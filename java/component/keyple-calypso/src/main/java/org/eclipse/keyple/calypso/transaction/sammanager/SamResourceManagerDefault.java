@@ -11,14 +11,26 @@
  ************************************************************************************** */
 package org.eclipse.keyple.calypso.transaction.sammanager;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
 import org.eclipse.keyple.calypso.command.sam.SamRevision;
 import org.eclipse.keyple.calypso.exception.CalypsoNoSamResourceAvailableException;
 import org.eclipse.keyple.calypso.transaction.CalypsoSam;
+import org.eclipse.keyple.core.card.message.ProxyReader;
 import org.eclipse.keyple.core.card.selection.CardResource;
 import org.eclipse.keyple.core.service.Plugin;
 import org.eclipse.keyple.core.service.Reader;
@@ -44,6 +56,9 @@ import org.slf4j.LoggerFactory;
 public class SamResourceManagerDefault extends SamResourceManager {
   private static final Logger logger = LoggerFactory.getLogger(SamResourceManagerDefault.class);
 
+  /* the minimum number of exchanges with a SAM before evaluating its quarantine */
+  private static final int QUARANTINE_MIN_EXCHANGES = 10;
+
   private final ConcurrentMap<String, ManagedSamResource> localManagedSamResources =
       new ConcurrentHashMap<String, ManagedSamResource>();
   final SamResourceManagerDefault.ReaderObserver readerObserver; // only used with observable
@@ -51,10 +66,37 @@ public class SamResourceManagerDefault extends SamResourceManager {
   protected final Plugin samReaderPlugin;
   /* the maximum time (in milliseconds) during which the BLOCKING mode will wait */
   private final int maxBlockingTime;
+  /* the number of logical channels opened with each SAM (1 for the basic channel only) */
+  private final int nbLogicalChannels;
+  /* guards the free resources, the waiting allocations and the metrics */
+  private final ReentrantLock allocationLock = new ReentrantLock();
   /*
-   * the sleep time between two tries (in milliseconds) during which the BLOCKING mode will wait
+   * the free resources by SAM identifier of the resource (null key for the resources without
+   * identifier), the longest free resource first
    */
-  private final int sleepTime;
+  private final Map<SamIdentifier, Deque<ManagedSamResource>> freeResourcesBySamIdentifier =
+      new LinkedHashMap<SamIdentifier, Deque<ManagedSamResource>>();
+  /* the blocking allocations waiting for a resource, in arrival order */
+  private final LinkedList<AllocationWaiter> allocationWaiters = new LinkedList<AllocationWaiter>();
+  /* the resources withdrawn from the allocations until their quarantine end */
+  private final List<ManagedSamResource> quarantinedResources = new ArrayList<ManagedSamResource>();
+  /* allocation policy */
+  private SamAllocationPolicy allocationPolicy = SamAllocationPolicy.LEAST_RECENTLY_USED;
+  private long nbAddedResources;
+  private long lastAllocatedResourceIndex = -1;
+  /* quarantine settings (disabled when the duration is 0) */
+  private double quarantineMaxErrorRate;
+  private long quarantineMaxLatencyNanos;
+  private long quarantineDurationMillis;
+  /* metrics */
+  private long nbAllocations;
+  private long nbAllocationFailures;
+  private long totalAllocationWaitNanos;
+  private long maxAllocationWaitNanos;
+  private int nbBusyResources;
+  private long busyResourcesTimeNanos;
+  private long presentResourcesTimeNanos;
+  private long lastResourcesTimeUpdateNanos = System.nanoTime();
 
   /**
    * Protected constructor, use the {@link SamResourceManagerFactory}
@@ -62,13 +104,44 @@ public class SamResourceManagerDefault extends SamResourceManager {
    * @param plugin the plugin through which SAM readers are accessible
    * @param samReaderFilter the regular expression defining how to identify SAM readers among
    *     others.
-   * @param maxBlockingTime the maximum duration for which the allocateSamResource method will
-   *     attempt to allocate a new reader by retrying (in milliseconds)
-   * @param sleepTime the duration to wait between two retries
+   * @param maxBlockingTime the maximum duration for which the allocateSamResource method will wait
+   *     for a free resource (in milliseconds)
+   * @param sleepTime not used anymore, the waiting allocations being served as soon as a resource
+   *     is freed (must be however greater than 0)
    * @throws KeypleReaderException thrown if an error occurs while getting the readers list.
    */
   protected SamResourceManagerDefault(
       Plugin plugin, String samReaderFilter, int maxBlockingTime, int sleepTime) {
+    this(plugin, samReaderFilter, maxBlockingTime, sleepTime, 1);
+  }
+
+  /**
+   * Protected constructor, use the {@link SamResourceManagerFactory}
+   *
+   * <p>When more than one logical channel is requested, additional logical channels are opened
+   * with each SAM and each of them is managed as an independent SAM resource, allowing as many
+   * concurrent transactions with the SAM. If the SAM refuses to open a logical channel, only the
+   * channels already opened are used. Only the basic channel is used with the SAM-S1D revision,
+   * whose class byte cannot code the logical channel number.
+   *
+   * @param plugin the plugin through which SAM readers are accessible
+   * @param samReaderFilter the regular expression defining how to identify SAM readers among
+   *     others.
+   * @param maxBlockingTime the maximum duration for which the allocateSamResource method will wait
+   *     for a free resource (in milliseconds)
+   * @param sleepTime not used anymore, the waiting allocations being served as soon as a resource
+   *     is freed (must be however greater than 0)
+   * @param nbLogicalChannels the number of logical channels to use with each SAM, including the
+   *     basic channel (between 1 and 4)
+   * @throws KeypleReaderException thrown if an error occurs while getting the readers list.
+   * @since 1.0
+   */
+  protected SamResourceManagerDefault(
+      Plugin plugin,
+      String samReaderFilter,
+      int maxBlockingTime,
+      int sleepTime,
+      int nbLogicalChannels) {
     /*
      * Assign parameters
      */
@@ -78,8 +151,12 @@ public class SamResourceManagerDefault extends SamResourceManager {
     if (maxBlockingTime < 1) {
       throw new IllegalArgumentException("Max Blocking Time must be greater than 0");
     }
-    this.sleepTime = sleepTime;
+    if (nbLogicalChannels < 1
+        || nbLogicalChannels > SamLogicalChannelReader.MAX_CHANNEL_NUMBER + 1) {
+      throw new IllegalArgumentException("Number of logical channels must be between 1 and 4");
+    }
     this.maxBlockingTime = maxBlockingTime;
+    this.nbLogicalChannels = nbLogicalChannels;
     this.samReaderPlugin = plugin;
 
     readerObserver = new SamResourceManagerDefault.ReaderObserver();
@@ -117,61 +194,191 @@ public class SamResourceManagerDefault extends SamResourceManager {
   /**
    * Remove a {@link CardResource} from the current {@code CardResource CalypsoSam>} list
    *
+   * <p>The resources of all the logical channels opened with the SAM are removed.
+   *
    * @param samReader the SAM reader of the resource to remove from the list.
    */
   protected void removeResource(Reader samReader) {
-    ManagedSamResource managedSamResource = localManagedSamResources.get(samReader.getName());
-    if (managedSamResource != null) {
-      localManagedSamResources.remove(samReader.getName());
-      if (logger.isInfoEnabled()) {
+    List<ManagedSamResource> removedResources = new ArrayList<ManagedSamResource>();
+    allocationLock.lock();
+    try {
+      updateResourcesTime();
+      Iterator<ManagedSamResource> iterator = localManagedSamResources.values().iterator();
+      while (iterator.hasNext()) {
+        ManagedSamResource managedSamResource = iterator.next();
+        if (!getPhysicalReaderName(managedSamResource).equals(samReader.getName())) {
+          continue;
+        }
+        iterator.remove();
+        removedResources.add(managedSamResource);
+        quarantinedResources.remove(managedSamResource);
+        if (managedSamResource.isSamResourceFree()) {
+          Deque<ManagedSamResource> freeResources =
+              freeResourcesBySamIdentifier.get(managedSamResource.getSamIdentifier());
+          if (freeResources != null) {
+            freeResources.remove(managedSamResource);
+          }
+        } else {
+          // the resource will be ignored when freed
+          nbBusyResources--;
+        }
+      }
+    } finally {
+      allocationLock.unlock();
+    }
+    if (logger.isInfoEnabled()) {
+      for (ManagedSamResource managedSamResource : removedResources) {
         logger.trace(
             "Freed SAM resource: READER = {}, SAM_REVISION = {}, SAM_SERIAL_NUMBER = {}",
-            samReader.getName(),
+            managedSamResource.getReader().getName(),
             managedSamResource.getSmartCard().getSamRevision(),
             ByteArrayUtil.toHex(managedSamResource.getSmartCard().getSerialNumber()));
       }
     }
   }
 
+  /**
+   * (private)<br>
+   * Adds a new resource to the managed resources and makes it available for the allocations.
+   *
+   * <p>The additional logical channels are opened with the SAM if requested, each of them being
+   * added as a new resource.
+   *
+   * @param samReader the SAM reader of the resource
+   * @param managedSamResource the new resource
+   */
+  private void addResource(Reader samReader, ManagedSamResource managedSamResource) {
+    List<ManagedSamResource> newResources =
+        createLogicalChannelResources(samReader, managedSamResource);
+    allocationLock.lock();
+    try {
+      updateResourcesTime();
+      for (ManagedSamResource newResource : newResources) {
+        newResource.index = nbAddedResources++;
+        localManagedSamResources.put(newResource.getReader().getName(), newResource);
+        dispatchFreeResource(newResource);
+      }
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Opens the additional logical channels with the SAM and creates their resources.
+   *
+   * @param samReader the SAM reader
+   * @param managedSamResource the resource resulting from the SAM selection
+   * @return the resources of all the logical channels, or the provided resource only if a single
+   *     channel is requested
+   */
+  private List<ManagedSamResource> createLogicalChannelResources(
+      Reader samReader, ManagedSamResource managedSamResource) {
+    List<ManagedSamResource> resources = new ArrayList<ManagedSamResource>();
+    if (nbLogicalChannels == 1 || !(samReader instanceof ProxyReader)) {
+      resources.add(managedSamResource);
+      return resources;
+    }
+    SamRevision samRevision = managedSamResource.getSmartCard().getSamRevision();
+    if (!SamLogicalChannelReader.isLogicalChannelSupported(samRevision)) {
+      logger.warn(
+          "[{}] No logical channel used with the SAM revision {}",
+          samReader.getName(),
+          samRevision);
+      resources.add(managedSamResource);
+      return resources;
+    }
+    ProxyReader physicalReader = (ProxyReader) samReader;
+    Object channelLock = new Object();
+    // the basic channel shares the lock of the other logical channels
+    resources.add(
+        new ManagedSamResource(
+            new SamLogicalChannelReader(physicalReader, 0, channelLock, samRevision),
+            managedSamResource.getSmartCard()));
+    for (int i = 1; i < nbLogicalChannels; i++) {
+      try {
+        int channelNumber = SamLogicalChannelReader.openLogicalChannel(physicalReader, channelLock);
+        resources.add(
+            new ManagedSamResource(
+                new SamLogicalChannelReader(
+                    physicalReader, channelNumber, channelLock, samRevision),
+                managedSamResource.getSmartCard()));
+      } catch (CalypsoNoSamResourceAvailableException e) {
+        logger.warn("[{}] {}", samReader.getName(), e.getMessage());
+        break;
+      } catch (KeypleReaderException e) {
+        logger.warn(
+            "[{}] Unable to open a logical channel: {}", samReader.getName(), e.getMessage());
+        break;
+      }
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("[{}] {} logical channel(s) used", samReader.getName(), resources.size());
+    }
+    return resources;
+  }
+
+  /**
+   * (private)<br>
+   * Gets the name of the physical reader of a resource.
+   *
+   * @param managedSamResource the resource
+   * @return a not null string
+   */
+  private static String getPhysicalReaderName(ManagedSamResource managedSamResource) {
+    Reader reader = managedSamResource.getReader();
+    if (reader instanceof SamLogicalChannelReader) {
+      return ((SamLogicalChannelReader) reader).getPhysicalReader().getName();
+    }
+    return reader.getName();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The free resources are kept in FIFO queues by SAM identifier, so the allocation only
+   * evaluates the identifier of each queue instead of every resource. In BLOCKING mode, the
+   * allocation requests wait in arrival order and a freed resource is directly handed over to the
+   * first matching one.
+   *
+   * <p>When several free resources match, the choice is made according to the {@link
+   * SamAllocationPolicy} of the manager. The resources in quarantine are not allocated.
+   */
   @Override
   public CardResource<CalypsoSam> allocateSamResource(
       AllocationMode allocationMode, SamIdentifier samIdentifier) {
+    long startNanos = System.nanoTime();
     long maxBlockingDate = System.currentTimeMillis() + maxBlockingTime;
-    boolean noSamResourceLogged = false;
     logger.trace("Allocating SAM reader channel...");
-    while (true) {
-      synchronized (localManagedSamResources) {
-        for (Map.Entry<String, ManagedSamResource> entry : localManagedSamResources.entrySet()) {
-          ManagedSamResource managedSamResource = entry.getValue();
-          if (managedSamResource.isSamResourceFree()) {
-            if (managedSamResource.isSamMatching(samIdentifier)) {
-              managedSamResource.setSamResourceStatus(ManagedSamResource.SamResourceStatus.BUSY);
-              logger.debug("Allocation succeeded. SAM resource created.");
-              return managedSamResource;
-            }
-          }
-        }
+    allocationLock.lock();
+    try {
+      ManagedSamResource managedSamResource = pollFreeResource(samIdentifier);
+      if (managedSamResource != null) {
+        managedSamResource.setSamResourceStatus(ManagedSamResource.SamResourceStatus.BUSY);
+        updateResourcesTime();
+        nbBusyResources++;
+        recordResourceAllocation(managedSamResource);
+        recordAllocation(startNanos);
+        logger.debug("Allocation succeeded. SAM resource created.");
+        return managedSamResource;
       }
 
-      // loop until MAX_BLOCKING_TIME in blocking mode, only once in non-blocking mode
+      // wait until MAX_BLOCKING_TIME in blocking mode, only once in non-blocking mode
+      logger.trace("No SAM resources available at the moment.");
       if (allocationMode == AllocationMode.NON_BLOCKING) {
-        logger.trace("No SAM resources available at the moment.");
+        nbAllocationFailures++;
         throw new CalypsoNoSamResourceAvailableException(
             "No Sam resource could be allocated for samIdentifier +"
                 + samIdentifier.getGroupReference());
-      } else {
-        if (!noSamResourceLogged) {
-          /* log once the first time */
-          logger.trace("No SAM resources available at the moment.");
-          noSamResourceLogged = true;
-        }
-        try {
-          Thread.sleep(sleepTime);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt(); // set interrupt flag
-          logger.error("Interrupt exception in Thread.sleep.");
-        }
-        if (System.currentTimeMillis() >= maxBlockingDate) {
+      }
+      AllocationWaiter allocationWaiter =
+          new AllocationWaiter(samIdentifier, allocationLock.newCondition());
+      allocationWaiters.addLast(allocationWaiter);
+      while (allocationWaiter.managedSamResource == null) {
+        long remainingTime = maxBlockingDate - System.currentTimeMillis();
+        if (remainingTime <= 0) {
+          allocationWaiters.remove(allocationWaiter);
+          nbAllocationFailures++;
           logger.error(
               "The allocation process failed. Timeout {} sec exceeded .",
               (maxBlockingTime / 1000.0));
@@ -181,22 +388,460 @@ public class SamResourceManagerDefault extends SamResourceManager {
                   + "ms for samIdentifier "
                   + samIdentifier.getGroupReference());
         }
+        try {
+          // wake up at the end of the next quarantine to reinstate the resource
+          allocationWaiter.condition.await(
+              Math.min(remainingTime, getNextQuarantineEndDelay()), TimeUnit.MILLISECONDS);
+          releaseExpiredQuarantines();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt(); // set interrupt flag
+          if (allocationWaiter.managedSamResource == null) {
+            allocationWaiters.remove(allocationWaiter);
+            nbAllocationFailures++;
+            throw new CalypsoNoSamResourceAvailableException(
+                "Interrupted while waiting for a Sam resource for samIdentifier "
+                    + samIdentifier.getGroupReference());
+          }
+        }
       }
+      recordAllocation(startNanos);
+      logger.debug("Allocation succeeded after waiting. SAM resource created.");
+      return allocationWaiter.managedSamResource;
+    } finally {
+      allocationLock.unlock();
     }
   }
 
   @Override
   public void freeSamResource(CardResource<CalypsoSam> samResource) {
-    synchronized (localManagedSamResources) {
+    allocationLock.lock();
+    try {
       ManagedSamResource managedSamResource =
           localManagedSamResources.get(samResource.getReader().getName());
-      if (managedSamResource != null) {
+      if (managedSamResource == null || managedSamResource != samResource) {
+        logger.error("SAM resource not found while freeing.");
+      } else if (managedSamResource.isSamResourceFree()) {
+        logger.error("SAM resource already free.");
+      } else {
         logger.trace("Freeing local SAM resource.");
         managedSamResource.setSamResourceStatus(ManagedSamResource.SamResourceStatus.FREE);
+        updateResourcesTime();
+        nbBusyResources--;
+        if (isQuarantineRequired(managedSamResource)) {
+          quarantineResource(managedSamResource);
+        } else {
+          dispatchFreeResource(managedSamResource);
+        }
+      }
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the allocation metrics of the manager.
+   *
+   * <p>The returned map contains the following entries:
+   *
+   * <ul>
+   *   <li><b>allocations</b>: number of successful allocations,
+   *   <li><b>allocationFailures</b>: number of failed allocations (timeout or no free resource),
+   *   <li><b>meanAllocationWaitMicros</b>: mean duration of the successful allocations,
+   *   <li><b>maxAllocationWaitMicros</b>: max duration of the successful allocations,
+   *   <li><b>waitingAllocations</b>: number of allocations currently waiting for a resource,
+   *   <li><b>samResources</b>: number of managed SAM resources,
+   *   <li><b>busySamResources</b>: number of SAM resources currently allocated,
+   *   <li><b>samUtilizationPercent</b>: percentage of the time during which the managed SAM
+   *       resources were allocated since the creation of the manager.
+   * </ul>
+   *
+   * @return a not null map
+   * @since 1.0
+   */
+  public Map<String, Long> getAllocationMetrics() {
+    allocationLock.lock();
+    try {
+      updateResourcesTime();
+      Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+      metrics.put("allocations", nbAllocations);
+      metrics.put("allocationFailures", nbAllocationFailures);
+      metrics.put(
+          "meanAllocationWaitMicros",
+          nbAllocations == 0 ? 0 : totalAllocationWaitNanos / nbAllocations / 1000);
+      metrics.put("maxAllocationWaitMicros", maxAllocationWaitNanos / 1000);
+      metrics.put("waitingAllocations", (long) allocationWaiters.size());
+      metrics.put("samResources", (long) localManagedSamResources.size());
+      metrics.put("busySamResources", (long) nbBusyResources);
+      metrics.put(
+          "samUtilizationPercent",
+          presentResourcesTimeNanos == 0
+              ? 0
+              : busyResourcesTimeNanos * 100 / presentResourcesTimeNanos);
+      return metrics;
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  /**
+   * Gets the statistics of each managed SAM resource.
+   *
+   * <p>The returned map associates the name of the SAM reader to the following entries:
+   *
+   * <ul>
+   *   <li><b>allocations</b>: number of allocations of the resource,
+   *   <li><b>exchanges</b>: number of APDU exchanges made with the SAM,
+   *   <li><b>exchangeErrors</b>: number of failed APDU exchanges,
+   *   <li><b>meanExchangeMicros</b>: recent mean duration of the exchanges,
+   *   <li><b>errorRatePercent</b>: recent percentage of failed exchanges,
+   *   <li><b>quarantines</b>: number of quarantines of the resource,
+   *   <li><b>quarantined</b>: 1 if the resource is currently in quarantine, 0 otherwise.
+   * </ul>
+   *
+   * <p>The recent values are exponential moving averages, reset at the end of each quarantine.
+   *
+   * @return a not null map
+   * @since 1.0
+   */
+  public Map<String, Map<String, Long>> getSamStatistics() {
+    allocationLock.lock();
+    try {
+      Map<String, Map<String, Long>> statistics = new LinkedHashMap<String, Map<String, Long>>();
+      for (Map.Entry<String, ManagedSamResource> entry : localManagedSamResources.entrySet()) {
+        ManagedSamResource managedSamResource = entry.getValue();
+        Map<String, Long> samStatistics = managedSamResource.getExchangeStatistics();
+        samStatistics.put("quarantines", managedSamResource.nbQuarantines);
+        samStatistics.put(
+            "quarantined", quarantinedResources.contains(managedSamResource) ? 1L : 0L);
+        statistics.put(entry.getKey(), samStatistics);
+      }
+      return statistics;
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  /**
+   * Sets the policy used to choose a SAM among the free SAM matching an allocation request.
+   *
+   * @param allocationPolicy the allocation policy ({@link
+   *     SamAllocationPolicy#LEAST_RECENTLY_USED} by default)
+   * @throws IllegalArgumentException if the policy is null
+   * @since 1.0
+   */
+  public void setAllocationPolicy(SamAllocationPolicy allocationPolicy) {
+    if (allocationPolicy == null) {
+      throw new IllegalArgumentException("The allocation policy must not be null");
+    }
+    allocationLock.lock();
+    try {
+      this.allocationPolicy = allocationPolicy;
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  /**
+   * Enables the automatic quarantine of the degraded SAM.
+   *
+   * <p>When a SAM resource is freed after at least 10 exchanges, it is withdrawn from the
+   * allocations during the provided duration if its recent error rate or its recent mean exchange
+   * time exceeds the provided thresholds. Its recent statistics are reset at the end of the
+   * quarantine.
+   *
+   * @param maxErrorRate the maximum rate of failed exchanges (between 0 and 1)
+   * @param maxMeanLatency the maximum mean exchange time (in milliseconds)
+   * @param quarantineDuration the duration of the quarantine (in milliseconds)
+   * @throws IllegalArgumentException if a parameter is out of range
+   * @since 1.0
+   */
+  public void enableQuarantine(double maxErrorRate, int maxMeanLatency, int quarantineDuration) {
+    if (maxErrorRate < 0 || maxErrorRate > 1) {
+      throw new IllegalArgumentException("The max error rate must be between 0 and 1");
+    }
+    if (maxMeanLatency < 1 || quarantineDuration < 1) {
+      throw new IllegalArgumentException(
+          "The max mean latency and the quarantine duration must be greater than 0");
+    }
+    allocationLock.lock();
+    try {
+      this.quarantineMaxErrorRate = maxErrorRate;
+      this.quarantineMaxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxMeanLatency);
+      this.quarantineDurationMillis = quarantineDuration;
+    } finally {
+      allocationLock.unlock();
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Removes and returns the free resource matching the provided SAM identifier preferred by the
+   * allocation policy.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @param samIdentifier the targeted SAM identifier
+   * @return null if no free resource matches
+   */
+  private ManagedSamResource pollFreeResource(SamIdentifier samIdentifier) {
+    releaseExpiredQuarantines();
+    ManagedSamResource selectedResource = null;
+    Deque<ManagedSamResource> selectedResources = null;
+    for (Map.Entry<SamIdentifier, Deque<ManagedSamResource>> entry :
+        freeResourcesBySamIdentifier.entrySet()) {
+      if (entry.getValue().isEmpty() || !samIdentifier.matches(entry.getKey())) {
+        continue;
+      }
+      if (allocationPolicy == SamAllocationPolicy.LEAST_RECENTLY_USED) {
+        // the queues are ordered by free date, only their heads are candidates
+        ManagedSamResource managedSamResource = entry.getValue().peekFirst();
+        if (isPreferred(managedSamResource, selectedResource)) {
+          selectedResource = managedSamResource;
+          selectedResources = entry.getValue();
+        }
       } else {
-        logger.error("SAM resource not found while freeing.");
+        for (ManagedSamResource managedSamResource : entry.getValue()) {
+          if (isPreferred(managedSamResource, selectedResource)) {
+            selectedResource = managedSamResource;
+            selectedResources = entry.getValue();
+          }
+        }
       }
     }
+    if (selectedResource != null) {
+      selectedResources.remove(selectedResource);
+    }
+    return selectedResource;
+  }
+
+  /**
+   * (private)<br>
+   * Indicates whether a free resource is preferred to another according to the allocation policy.
+   *
+   * @param managedSamResource the candidate resource
+   * @param selectedResource the resource currently selected (may be null)
+   * @return true if the candidate is preferred
+   */
+  private boolean isPreferred(
+      ManagedSamResource managedSamResource, ManagedSamResource selectedResource) {
+    if (selectedResource == null) {
+      return true;
+    }
+    switch (allocationPolicy) {
+      case ROUND_ROBIN:
+        // the first resource added after the last allocated one, else the first one added
+        boolean isNext = managedSamResource.index > lastAllocatedResourceIndex;
+        if (isNext != selectedResource.index > lastAllocatedResourceIndex) {
+          return isNext;
+        }
+        return managedSamResource.index < selectedResource.index;
+      case LOWEST_LATENCY:
+        return managedSamResource.getMeanExchangeNanos()
+            < selectedResource.getMeanExchangeNanos();
+      default:
+        return managedSamResource.freeDateNanos - selectedResource.freeDateNanos < 0;
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Records the allocation of a resource.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @param managedSamResource the allocated resource
+   */
+  private void recordResourceAllocation(ManagedSamResource managedSamResource) {
+    managedSamResource.nbAllocations++;
+    lastAllocatedResourceIndex = managedSamResource.index;
+  }
+
+  /**
+   * (private)<br>
+   * Indicates whether a freed resource must be put in quarantine.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @param managedSamResource the freed resource
+   * @return true if the quarantine is enabled and the resource exceeds its thresholds
+   */
+  private boolean isQuarantineRequired(ManagedSamResource managedSamResource) {
+    return quarantineDurationMillis > 0
+        && managedSamResource.getNbRecentExchanges() >= QUARANTINE_MIN_EXCHANGES
+        && (managedSamResource.getExchangeErrorRate() > quarantineMaxErrorRate
+            || managedSamResource.getMeanExchangeNanos() > quarantineMaxLatencyNanos);
+  }
+
+  /**
+   * (private)<br>
+   * Withdraws a freed resource from the allocations until the end of its quarantine.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @param managedSamResource the freed resource
+   */
+  private void quarantineResource(ManagedSamResource managedSamResource) {
+    managedSamResource.nbQuarantines++;
+    managedSamResource.quarantineEndMillis = System.currentTimeMillis() + quarantineDurationMillis;
+    quarantinedResources.add(managedSamResource);
+    logger.warn(
+        "SAM resource put in quarantine for {} ms: READER = {}, statistics = {}",
+        quarantineDurationMillis,
+        managedSamResource.getReader().getName(),
+        managedSamResource.getExchangeStatistics());
+  }
+
+  /**
+   * (private)<br>
+   * Makes available again the resources whose quarantine is over.
+   *
+   * <p>Must be called with the allocation lock held.
+   */
+  private void releaseExpiredQuarantines() {
+    if (quarantinedResources.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    Iterator<ManagedSamResource> iterator = quarantinedResources.iterator();
+    while (iterator.hasNext()) {
+      ManagedSamResource managedSamResource = iterator.next();
+      if (managedSamResource.quarantineEndMillis <= now) {
+        iterator.remove();
+        managedSamResource.resetRecentExchangeStatistics(
+            getMedianMeanExchangeNanos(managedSamResource));
+        logger.info(
+            "End of quarantine of SAM resource: READER = {}",
+            managedSamResource.getReader().getName());
+        dispatchFreeResource(managedSamResource);
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Gets the median of the recent mean exchange durations of the other resources, to seed the
+   * statistics of a resource at the end of its quarantine.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @param managedSamResource the resource leaving its quarantine
+   * @return the recent mean exchange duration of the resource itself if no other resource has
+   *     made an exchange
+   */
+  private double getMedianMeanExchangeNanos(ManagedSamResource managedSamResource) {
+    List<Double> meanExchangeNanos = new ArrayList<Double>();
+    for (ManagedSamResource otherResource : localManagedSamResources.values()) {
+      if (otherResource != managedSamResource && otherResource.getNbRecentExchanges() > 0) {
+        meanExchangeNanos.add(otherResource.getMeanExchangeNanos());
+      }
+    }
+    if (meanExchangeNanos.isEmpty()) {
+      return managedSamResource.getMeanExchangeNanos();
+    }
+    Collections.sort(meanExchangeNanos);
+    int middle = meanExchangeNanos.size() / 2;
+    if (meanExchangeNanos.size() % 2 == 0) {
+      return (meanExchangeNanos.get(middle - 1) + meanExchangeNanos.get(middle)) / 2;
+    }
+    return meanExchangeNanos.get(middle);
+  }
+
+  /**
+   * (private)<br>
+   * Gets the delay until the end of the next quarantine.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @return {@link Long#MAX_VALUE} if no resource is in quarantine
+   */
+  private long getNextQuarantineEndDelay() {
+    long delay = Long.MAX_VALUE;
+    long now = System.currentTimeMillis();
+    for (ManagedSamResource managedSamResource : quarantinedResources) {
+      delay = Math.min(delay, Math.max(1, managedSamResource.quarantineEndMillis - now));
+    }
+    return delay;
+  }
+
+  /**
+   * (private)<br>
+   * Hands over a free resource to the first waiting allocation it matches, or adds it to the free
+   * resources.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @param managedSamResource the free resource
+   */
+  private void dispatchFreeResource(ManagedSamResource managedSamResource) {
+    Iterator<AllocationWaiter> iterator = allocationWaiters.iterator();
+    while (iterator.hasNext()) {
+      AllocationWaiter allocationWaiter = iterator.next();
+      if (managedSamResource.isSamMatching(allocationWaiter.samIdentifier)) {
+        iterator.remove();
+        managedSamResource.setSamResourceStatus(ManagedSamResource.SamResourceStatus.BUSY);
+        nbBusyResources++;
+        recordResourceAllocation(managedSamResource);
+        allocationWaiter.managedSamResource = managedSamResource;
+        allocationWaiter.condition.signal();
+        return;
+      }
+    }
+    Deque<ManagedSamResource> freeResources =
+        freeResourcesBySamIdentifier.get(managedSamResource.getSamIdentifier());
+    if (freeResources == null) {
+      freeResources = new ArrayDeque<ManagedSamResource>();
+      freeResourcesBySamIdentifier.put(managedSamResource.getSamIdentifier(), freeResources);
+    }
+    managedSamResource.freeDateNanos = System.nanoTime();
+    freeResources.addLast(managedSamResource);
+  }
+
+  /**
+   * (private)<br>
+   * Records the wait time of a successful allocation.
+   *
+   * <p>Must be called with the allocation lock held.
+   *
+   * @param startNanos the beginning of the allocation
+   */
+  private void recordAllocation(long startNanos) {
+    long waitNanos = System.nanoTime() - startNanos;
+    nbAllocations++;
+    totalAllocationWaitNanos += waitNanos;
+    if (waitNanos > maxAllocationWaitNanos) {
+      maxAllocationWaitNanos = waitNanos;
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Accumulates the busy and present resources times up to now, before any change of the number
+   * of busy or present resources.
+   *
+   * <p>Must be called with the allocation lock held.
+   */
+  private void updateResourcesTime() {
+    long now = System.nanoTime();
+    long elapsed = now - lastResourcesTimeUpdateNanos;
+    busyResourcesTimeNanos += nbBusyResources * elapsed;
+    presentResourcesTimeNanos += localManagedSamResources.size() * elapsed;
+    lastResourcesTimeUpdateNanos = now;
+  }
+
+  /**
+   * (private)<br>
+   * Blocking allocation waiting for a free resource.
+   */
+  private static final class AllocationWaiter {
+    private final SamIdentifier samIdentifier;
+    private final Condition condition;
+    /* the resource handed over to the allocation, null while waiting */
+    private ManagedSamResource managedSamResource;
+
+    private AllocationWaiter(SamIdentifier samIdentifier, Condition condition) {
+      this.samIdentifier = samIdentifier;
+      this.condition = condition;
+    }
   }
 
   /**
@@ -331,45 +976,43 @@ public class SamResourceManagerDefault extends SamResourceManager {
       } catch (KeypleReaderNotFoundException e) {
         e.printStackTrace();
       }
-      synchronized (localManagedSamResources) {
-        switch (event.getEventType()) {
-          case CARD_MATCHED:
-          case CARD_INSERTED:
-            if (localManagedSamResources.containsKey(samReader.getName())) {
-              logger.trace(
-                  "Reader is already present in the local samResources -  READERNAME = {}",
-                  samReader.getName());
-              // do nothing
-              return;
-            }
+      switch (event.getEventType()) {
+        case CARD_MATCHED:
+        case CARD_INSERTED:
+          if (localManagedSamResources.containsKey(samReader.getName())) {
+            logger.trace(
+                "Reader is already present in the local samResources -  READERNAME = {}",
+                samReader.getName());
+            // do nothing
+            return;
+          }
 
-            ManagedSamResource newSamResource = null;
-            try {
-              /*
-               * although the reader allocation is dynamic, the SAM resource type is
-               * STATIC
-               */
-              newSamResource = createSamResource(samReader);
-            } catch (CalypsoNoSamResourceAvailableException e) {
-              logger.error(
-                  "Failed to create a CardResource<CalypsoSam> from {}", samReader.getName());
-            }
-            /* failures are ignored */
-            if (newSamResource != null) {
-              if (logger.isInfoEnabled()) {
-                logger.trace(
-                    "Created SAM resource: READER = {}, SAM_REVISION = {}, SAM_SERIAL_NUMBER = {}",
-                    event.getReaderName(),
-                    newSamResource.getSmartCard().getSamRevision(),
-                    ByteArrayUtil.toHex(newSamResource.getSmartCard().getSerialNumber()));
-              }
-              localManagedSamResources.put(samReader.getName(), newSamResource);
+          ManagedSamResource newSamResource = null;
+          try {
+            /*
+             * although the reader allocation is dynamic, the SAM resource type is
+             * STATIC
+             */
+            newSamResource = createSamResource(samReader);
+          } catch (CalypsoNoSamResourceAvailableException e) {
+            logger.error(
+                "Failed to create a CardResource<CalypsoSam> from {}", samReader.getName());
+          }
+          /* failures are ignored */
+          if (newSamResource != null) {
+            if (logger.isInfoEnabled()) {
+              logger.trace(
+                  "Created SAM resource: READER = {}, SAM_REVISION = {}, SAM_SERIAL_NUMBER = {}",
+                  event.getReaderName(),
+                  newSamResource.getSmartCard().getSamRevision(),
+                  ByteArrayUtil.toHex(newSamResource.getSmartCard().getSerialNumber()));
             }
-            break;
-          case CARD_REMOVED:
-            removeResource(samReader);
-            break;
-        }
+            addResource(samReader, newSamResource);
+          }
+          break;
+        case CARD_REMOVED:
+          removeResource(samReader);
+          break;
       }
     }
   }
@@ -382,9 +1025,7 @@ public class SamResourceManagerDefault extends SamResourceManager {
     try {
       if (samReader.isCardPresent()) {
         logger.trace("Create SAM resource: {}", samReader.getName());
-        synchronized (localManagedSamResources) {
-          localManagedSamResources.put(samReader.getName(), createSamResource(samReader));
-        }
+        addResource(samReader, createSamResource(samReader));
       }
     } catch (KeypleException e) {
       throw new IllegalArgumentException(
@@ -407,7 +1048,10 @@ public class SamResourceManagerDefault extends SamResourceManager {
    *
    * @since 0.9
    */
-  static class ManagedSamResource extends CardResource<CalypsoSam> {
+  static class ManagedSamResource extends CardResource<CalypsoSam> implements SamExchangeListener {
+    /* the weight of the last exchange in the recent exchange statistics */
+    private static final double RECENT_EXCHANGE_WEIGHT = 0.2;
+
     /** the free/busy enum status */
     public enum SamResourceStatus {
       FREE,
@@ -420,6 +1064,22 @@ public class SamResourceManagerDefault extends SamResourceManager {
     /** the sam identifier */
     private SamIdentifier samIdentifier;
 
+    /* allocation data, guarded by the allocation lock of the manager */
+    private long index;
+    private long freeDateNanos;
+    private long nbAllocations;
+    private long nbQuarantines;
+    private long quarantineEndMillis;
+
+    /* exchange statistics, guarded by the resource itself */
+    private long nbExchanges;
+    private long nbExchangeErrors;
+    private long nbRecentExchanges;
+    private double meanExchangeNanos;
+    private double exchangeErrorRate;
+
+    private volatile boolean isChannelClosed;
+
     /**
      * Constructor
      *
@@ -451,6 +1111,17 @@ public class SamResourceManagerDefault extends SamResourceManager {
       this.samIdentifier = samIdentifier;
     }
 
+    /**
+     * (package-private)<br>
+     * Gets the {@link SamIdentifier} of the current {@link ManagedSamResource}
+     *
+     * @return null if not defined
+     * @since 1.0
+     */
+    SamIdentifier getSamIdentifier() {
+      return samIdentifier;
+    }
+
     /**
      * Indicates whether the ManagedSamResource matches the provided SAM identifier.
      *
@@ -470,6 +1141,135 @@ public class SamResourceManagerDefault extends SamResourceManager {
       return samIdentifier.matches(this.samIdentifier);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Updates the exchange statistics of the resource.
+     *
+     * @since 1.0
+     */
+    @Override
+    public synchronized void onSamExchange(long durationNanos, boolean isSuccessful) {
+      nbExchanges++;
+      if (!isSuccessful) {
+        nbExchangeErrors++;
+      }
+      double error = isSuccessful ? 0 : 1;
+      if (meanExchangeNanos == 0) {
+        meanExchangeNanos = durationNanos;
+      } else {
+        // blended with the seed after a quarantine
+        meanExchangeNanos += RECENT_EXCHANGE_WEIGHT * (durationNanos - meanExchangeNanos);
+      }
+      if (nbRecentExchanges == 0) {
+        exchangeErrorRate = error;
+      } else {
+        exchangeErrorRate += RECENT_EXCHANGE_WEIGHT * (error - exchangeErrorRate);
+      }
+      nbRecentExchanges++;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public void onSamChannelClosed() {
+      isChannelClosed = true;
+    }
+
+    /**
+     * (package-private)<br>
+     * Indicates whether an exchange reported that the channel with the SAM has been closed since
+     * its selection.
+     *
+     * @return true if the channel has been closed
+     * @since 1.0
+     */
+    boolean isChannelClosed() {
+      return isChannelClosed;
+    }
+
+    /**
+     * (package-private)<br>
+     * Gets the recent mean duration of the exchanges.
+     *
+     * @return 0 if no exchange was made since the creation, the seed given at the end of the last
+     *     quarantine if no exchange was made since
+     * @since 1.0
+     */
+    synchronized double getMeanExchangeNanos() {
+      return meanExchangeNanos;
+    }
+
+    /**
+     * (package-private)<br>
+     * Gets the recent rate of failed exchanges.
+     *
+     * @return a value between 0 and 1
+     * @since 1.0
+     */
+    synchronized double getExchangeErrorRate() {
+      return exchangeErrorRate;
+    }
+
+    /**
+     * (package-private)<br>
+     * Gets the number of exchanges since the creation or the last quarantine.
+     *
+     * @return a positive number
+     * @since 1.0
+     */
+    synchronized long getNbRecentExchanges() {
+      return nbRecentExchanges;
+    }
+
+    /**
+     * (package-private)<br>
+     * Gets the number of failed exchanges since the creation of the resource.
+     *
+     * @return a positive number
+     * @since 1.0
+     */
+    synchronized long getNbExchangeErrors() {
+      return nbExchangeErrors;
+    }
+
+    /**
+     * (package-private)<br>
+     * Resets the recent exchange statistics, at the end of a quarantine.
+     *
+     * <p>The mean exchange duration is seeded rather than reset, so that the resource is not
+     * preferred by the {@link SamAllocationPolicy#LOWEST_LATENCY} policy before proving its
+     * recovery.
+     *
+     * @param seedMeanExchangeNanos the mean exchange duration to start from
+     * @since 1.0
+     */
+    synchronized void resetRecentExchangeStatistics(double seedMeanExchangeNanos) {
+      nbRecentExchanges = 0;
+      meanExchangeNanos = seedMeanExchangeNanos;
+      exchangeErrorRate = 0;
+    }
+
+    /**
+     * (package-private)<br>
+     * Gets a snapshot of the allocation and exchange statistics of the resource.
+     *
+     * @return a not null map
+     * @since 1.0
+     */
+    synchronized Map<String, Long> getExchangeStatistics() {
+      Map<String, Long> statistics = new LinkedHashMap<String, Long>();
+      statistics.put("allocations", nbAllocations);
+      statistics.put("exchanges", nbExchanges);
+      statistics.put("exchangeErrors", nbExchangeErrors);
+      statistics.put("meanExchangeMicros", (long) meanExchangeNanos / 1000);
+      statistics.put("errorRatePercent", Math.round(exchangeErrorRate * 100));
+      return statistics;
+    }
+
     /**
      * Sets the free/busy status of the ManagedSamResource
      *
@@ -46,6 +46,36 @@ public abstract class SamResourceManagerFactory {
     return new SamResourceManagerDefault(plugin, samReaderFilter, maxBlockingTime, sleepTime);
   }
 
+  /**
+   * Instantiate a new SamResourceManager using several logical channels with each SAM.
+   *
+   * <p>The samReaderPlugin is used to retrieve the available SAM according to the provided filter.
+   * Each logical channel opened with a SAM is managed as an independent SAM resource.
+   *
+   * <p>Setup a plugin observer if the reader plugin is observable.
+   *
+   * @param plugin the plugin through which SAM readers are accessible
+   * @param samReaderFilter the regular expression defining how to identify SAM readers among
+   *     others.
+   * @param maxBlockingTime the maximum duration for which the allocateSamResource method will
+   *     attempt to allocate a new reader by retrying (in milliseconds).
+   * @param sleepTime the duration to wait between two retries
+   * @param nbLogicalChannels the number of logical channels to use with each SAM, including the
+   *     basic channel (between 1 and 4)
+   * @throws KeypleReaderException throw if an error occurs while getting the readers list.
+   * @return SamResourceManager working with a default plugin
+   * @since 1.0
+   */
+  public static SamResourceManager instantiate(
+      Plugin plugin,
+      String samReaderFilter,
+      int maxBlockingTime,
+      int sleepTime,
+      int nbLogicalChannels) {
+    return new SamResourceManagerDefault(
+        plugin, samReaderFilter, maxBlockingTime, sleepTime, nbLogicalChannels);
+  }
+
   public static SamResourceManager instantiate(Plugin plugin, String samReaderFilter) {
     return new SamResourceManagerDefault(
         plugin, samReaderFilter, MAX_BLOCKING_TIME, DEFAULT_SLEEP_TIME);
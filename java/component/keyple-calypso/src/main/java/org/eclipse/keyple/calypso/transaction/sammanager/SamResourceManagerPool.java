@@ -11,6 +11,8 @@
  ************************************************************************************** */
 package org.eclipse.keyple.calypso.transaction.sammanager;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.eclipse.keyple.calypso.exception.CalypsoNoSamResourceAvailableException;
 import org.eclipse.keyple.calypso.transaction.CalypsoSam;
 import org.eclipse.keyple.core.card.selection.CardResource;
@@ -33,6 +35,14 @@ public class SamResourceManagerPool extends SamResourceManager {
   protected final Plugin samReaderPlugin;
   private final int maxBlockingTime;
   private final int sleepTime;
+  /*
+   * the SAM resource created for each pool reader, reused by the following allocations of the
+   * reader as long as its channel stays open and no exchange error is reported; only the readers
+   * kept by the pool plugin across allocations are indexed after their release
+   */
+  private final ConcurrentMap<String, SamResourceManagerDefault.ManagedSamResource>
+      samResourceByReaderName =
+          new ConcurrentHashMap<String, SamResourceManagerDefault.ManagedSamResource>();
 
   /**
    * Protected constructor, use the {@link SamResourceManagerFactory}
@@ -60,6 +70,11 @@ public class SamResourceManagerPool extends SamResourceManager {
   /**
    * {@inheritDoc}
    *
+   * <p>The SAM selection is only made at the first allocation of a pool reader: the following
+   * allocations of the same reader reuse the resulting {@link CalypsoSam}, unless an exchange with
+   * the SAM failed or reported the closing of its channel during the previous allocation (e.g. SAM
+   * removed or replaced).
+   *
    * @since 0.9
    */
   @Override
@@ -75,8 +90,14 @@ public class SamResourceManagerPool extends SamResourceManager {
             ((PoolPlugin) samReaderPlugin).allocateReader(samIdentifier.getGroupReference());
         if (samReader != null) {
           SamResourceManagerDefault.ManagedSamResource managedSamResource =
-              createSamResource(samReader);
-          logger.debug("Allocation succeeded. SAM resource created.");
+              samResourceByReaderName.get(samReader.getName());
+          if (managedSamResource == null) {
+            managedSamResource = createSamResource(samReader);
+            samResourceByReaderName.put(samReader.getName(), managedSamResource);
+            logger.debug("Allocation succeeded. SAM resource created.");
+          } else {
+            logger.debug("Allocation succeeded. SAM resource reused.");
+          }
           return managedSamResource;
         }
 
@@ -118,10 +139,32 @@ public class SamResourceManagerPool extends SamResourceManager {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The SAM resource will be created again at the next allocation of the reader if an exchange
+   * with the SAM failed or reported the closing of its channel (e.g. SAM removed or replaced).
+   *
+   * <p>The SAM resources of the readers no longer provided by the pool plugin (e.g. readers removed
+   * from the pool, or readers created for a single allocation by a remote pool) are discarded.
+   *
+   * @since 0.9
+   */
   @Override
   public void freeSamResource(CardResource<CalypsoSam> samResource) {
     // virtually infinite number of readers
     logger.debug("Freeing HSM SAM resource.");
+    String readerName = samResource.getReader().getName();
+    if (samResource instanceof SamResourceManagerDefault.ManagedSamResource) {
+      SamResourceManagerDefault.ManagedSamResource managedSamResource =
+          (SamResourceManagerDefault.ManagedSamResource) samResource;
+      if (managedSamResource.getNbExchangeErrors() > 0 || managedSamResource.isChannelClosed()) {
+        logger.debug("SAM exchange error or channel closed, the SAM will be selected again.");
+        samResourceByReaderName.remove(readerName, samResource);
+      }
+    }
     ((PoolPlugin) samReaderPlugin).releaseReader(samResource.getReader());
+    // the reader names of a pool may only cover its allocated readers
+    samResourceByReaderName.keySet().retainAll(samReaderPlugin.getReaderNames());
   }
 }
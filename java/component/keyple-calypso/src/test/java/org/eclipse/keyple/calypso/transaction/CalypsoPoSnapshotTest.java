@@ -0,0 +1,165 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.calypso.transaction;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import org.eclipse.keyple.core.card.message.ApduResponse;
+import org.eclipse.keyple.core.card.message.CardSelectionResponse;
+import org.eclipse.keyple.core.card.message.SelectionStatus;
+import org.eclipse.keyple.core.util.ByteArrayUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CalypsoPoSnapshotTest {
+
+  private static final String FCI_REV31 =
+      "6F238409315449432E49434131A516BF0C13C708 0000000011223344 53070A3C23121410019000";
+  private static final String SERIAL_NUMBER = "0000000011223344";
+  private static final byte SFI_ENVIRONMENT = (byte) 0x07;
+  private static final byte SFI_CONTRACTS = (byte) 0x09;
+  private static final byte SFI_COUNTERS = (byte) 0x19;
+  private static final String REC1 = "00112233445566778899AABBCCDDEEFF";
+  private static final String REC2 = "FFEEDDCCBBAA99887766554433221100";
+  private static final String REC2_UPDATED = "0102030405060708090A0B0C0D0E0F10";
+  private static final String COUNTER1 = "000064";
+
+  private CalypsoPo calypsoPo;
+
+  @Before
+  public void setUp() {
+    CardSelectionResponse selectionData =
+        new CardSelectionResponse(
+            new SelectionStatus(
+                null, new ApduResponse(ByteArrayUtil.fromHex(FCI_REV31), null), true),
+            null);
+    calypsoPo = new CalypsoPo(selectionData);
+    calypsoPo.setFileHeader(
+        SFI_CONTRACTS,
+        FileHeader.builder()
+            .lid((short) 0x2020)
+            .recordsNumber(4)
+            .recordSize(29)
+            .type(FileHeader.FileType.LINEAR)
+            .accessConditions(ByteArrayUtil.fromHex("10100000"))
+            .keyIndexes(ByteArrayUtil.fromHex("01030101"))
+            .dfStatus((byte) 0x00)
+            .sharedReference((short) 0x3F02)
+            .build());
+    calypsoPo.setContent(SFI_ENVIRONMENT, 1, ByteArrayUtil.fromHex(REC1));
+    calypsoPo.setContent(SFI_CONTRACTS, 1, ByteArrayUtil.fromHex(REC1));
+    calypsoPo.setContent(SFI_CONTRACTS, 2, ByteArrayUtil.fromHex(REC2));
+    calypsoPo.setCounter(SFI_COUNTERS, 1, ByteArrayUtil.fromHex(COUNTER1));
+    calypsoPo.setDfRatified(true);
+    calypsoPo.setSvData(-150, 0x1234, null, null);
+  }
+
+  @Test
+  public void encode_decode_shouldRestoreTheImage() {
+    byte[] image = CalypsoPoSnapshot.encode(calypsoPo);
+    CalypsoPoSnapshot snapshot = CalypsoPoSnapshot.decode(image);
+
+    assertThat(snapshot.getApplicationSerialNumber())
+        .isEqualTo(ByteArrayUtil.fromHex(SERIAL_NUMBER));
+    assertThat(snapshot.isDfRatified()).isTrue();
+    assertThat(snapshot.getPinAttemptRemaining()).isNull();
+    assertThat(snapshot.getSvBalance()).isEqualTo(-150);
+    assertThat(snapshot.getSvLastTNum()).isEqualTo(0x1234);
+    assertThat(snapshot.getAllFiles())
+        .containsOnlyKeys(SFI_ENVIRONMENT, SFI_CONTRACTS, SFI_COUNTERS);
+    assertThat(snapshot.getFileBySfi(SFI_ENVIRONMENT).getHeader()).isNull();
+    assertThat(snapshot.getFileBySfi(SFI_ENVIRONMENT).getData().getContent())
+        .isEqualTo(ByteArrayUtil.fromHex(REC1));
+    assertThat(snapshot.getFileBySfi(SFI_CONTRACTS).getData().getContent(2))
+        .isEqualTo(ByteArrayUtil.fromHex(REC2));
+    assertThat(snapshot.getFileBySfi(SFI_COUNTERS).getData().getContentAsCounterValue(1))
+        .isEqualTo(100);
+    FileHeader header = snapshot.getFileBySfi(SFI_CONTRACTS).getHeader();
+    assertThat(header.getLid()).isEqualTo((short) 0x2020);
+    assertThat(header.getRecordsNumber()).isEqualTo(4);
+    assertThat(header.getRecordSize()).isEqualTo(29);
+    assertThat(header.getType()).isEqualTo(FileHeader.FileType.LINEAR);
+    assertThat(header.getAccessConditions()).isEqualTo(ByteArrayUtil.fromHex("10100000"));
+    assertThat(header.getKeyIndexes()).isEqualTo(ByteArrayUtil.fromHex("01030101"));
+    assertThat(header.getSharedReference()).isEqualTo((short) 0x3F02);
+
+    // the encoding is deterministic
+    assertThat(snapshot.encode()).isEqualTo(image);
+  }
+
+  @Test
+  public void encodeSessionDelta_shouldOnlyContainTheChangedRecords() {
+    CalypsoPoSnapshot reference = CalypsoPoSnapshot.decode(CalypsoPoSnapshot.encode(calypsoPo));
+    calypsoPo.backupFiles();
+    calypsoPo.setContent(SFI_CONTRACTS, 2, ByteArrayUtil.fromHex(REC2_UPDATED));
+    calypsoPo.setSvData(50, 0x1235, null, null);
+
+    byte[] delta = CalypsoPoSnapshot.encodeSessionDelta(calypsoPo);
+    byte[] image = CalypsoPoSnapshot.encode(calypsoPo);
+    assertThat(delta.length).isLessThan(image.length);
+
+    CalypsoPoSnapshot snapshot = reference.applyDelta(delta);
+    assertThat(snapshot.getFileBySfi(SFI_CONTRACTS).getData().getContent(2))
+        .isEqualTo(ByteArrayUtil.fromHex(REC2_UPDATED));
+    assertThat(snapshot.getFileBySfi(SFI_CONTRACTS).getData().getContent(1))
+        .isEqualTo(ByteArrayUtil.fromHex(REC1));
+    assertThat(snapshot.getSvBalance()).isEqualTo(50);
+    assertThat(snapshot.encode()).isEqualTo(image);
+    assertThat(snapshot.encodeDelta(reference)).isEqualTo(delta);
+    // the reference is not modified
+    assertThat(reference.getFileBySfi(SFI_CONTRACTS).getData().getContent(2))
+        .isEqualTo(ByteArrayUtil.fromHex(REC2));
+  }
+
+  @Test
+  public void getFileBySfi_whenContentIsModified_shouldNotModifyTheSnapshots() {
+    CalypsoPoSnapshot reference = CalypsoPoSnapshot.decode(CalypsoPoSnapshot.encode(calypsoPo));
+    calypsoPo.backupFiles();
+    calypsoPo.setSvData(50, 0x1235, null, null);
+    CalypsoPoSnapshot snapshot =
+        reference.applyDelta(CalypsoPoSnapshot.encodeSessionDelta(calypsoPo));
+
+    snapshot.getFileBySfi(SFI_CONTRACTS).getData().getContent(1)[0] = 0x7F;
+    snapshot.getAllFiles().get(SFI_CONTRACTS).getData().getContent(1)[0] = 0x7F;
+
+    assertThat(snapshot.getFileBySfi(SFI_CONTRACTS).getData().getContent(1))
+        .isEqualTo(ByteArrayUtil.fromHex(REC1));
+    assertThat(reference.getFileBySfi(SFI_CONTRACTS).getData().getContent(1))
+        .isEqualTo(ByteArrayUtil.fromHex(REC1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_whenVersionIsUnknown_shouldThrowIAE() {
+    byte[] image = CalypsoPoSnapshot.encode(calypsoPo);
+    image[0] = (byte) (CalypsoPoSnapshot.FORMAT_VERSION + 1);
+    CalypsoPoSnapshot.decode(image);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decode_whenImageIsTruncated_shouldThrowIAE() {
+    byte[] image = CalypsoPoSnapshot.encode(calypsoPo);
+    CalypsoPoSnapshot.decode(Arrays.copyOf(image, image.length - 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void applyDelta_whenFullImage_shouldThrowIAE() {
+    CalypsoPoSnapshot snapshot = CalypsoPoSnapshot.decode(CalypsoPoSnapshot.encode(calypsoPo));
+    snapshot.applyDelta(CalypsoPoSnapshot.encode(calypsoPo));
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void getFileBySfi_whenFileIsUnknown_shouldThrowNSEE() {
+    CalypsoPoSnapshot.decode(CalypsoPoSnapshot.encode(calypsoPo)).getFileBySfi((byte) 0x1E);
+  }
+}
@@ -17,6 +17,7 @@ import static org.assertj.core.api.Assertions.entry;
 import java.util.NoSuchElementException;
 import java.util.SortedMap;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
+import org.eclipse.keyple.core.util.json.KeypleGsonParser;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -291,4 +292,67 @@ public class FileDataTest {
     assertThat(clone).isNotSameAs(file);
     assertThat(clone.getContent(1)).isNotSameAs(file.getContent(1));
   }
+
+  @Test
+  public void cloningConstructor_whenContentIsModifiedInPlace_shouldNotModifyTheSource() {
+    file.setContent(1, data4);
+    FileData clone = new FileData(file);
+    clone.setContent(1, data1, 1);
+    clone.fillContent(1, ByteArrayUtil.fromHex("01"));
+    assertThat(file.getContent(1)).isEqualTo(ByteArrayUtil.fromHex("44444444"));
+    assertThat(clone.getContent(1)).isEqualTo(ByteArrayUtil.fromHex("45114444"));
+  }
+
+  @Test
+  public void cloningConstructor_shouldNotChange_theReferencesOfTheSource() {
+    file.setContent(1, data1);
+    byte[] content = file.getContent(1);
+    new FileData(file);
+    assertThat(file.getContent(1)).isSameAs(content);
+    assertThat(file.getAllRecordsContent().get(1)).isSameAs(content);
+  }
+
+  @Test
+  public void toJson_shouldSerialize_recordsAsAMapIndexedByRecordNumber() {
+    file.setContent(1, data1);
+    file.setContent(70, data2);
+    assertThat(KeypleGsonParser.getParser().toJson(file))
+        .isEqualTo("{\"records\":{\"1\":\"11\",\"70\":\"2222\"}}");
+  }
+
+  @Test
+  public void fromJson_shouldRestore_allRecords() {
+    FileData restored =
+        KeypleGsonParser.getParser()
+            .fromJson("{\"records\":{\"1\":\"11\",\"70\":\"2222\"}}", FileData.class);
+    assertThat(restored.getAllRecordsContent()).containsExactly(entry(1, data1), entry(70, data2));
+  }
+
+  @Test
+  public void getAllRecordsContent_shouldReflectFurtherChanges() {
+    SortedMap<Integer, byte[]> records = file.getAllRecordsContent();
+    file.setContent(3, data3);
+    file.setContent(1, data1);
+    assertThat(records).containsExactly(entry(1, data1), entry(3, data3));
+    assertThat(records.firstKey()).isEqualTo(1);
+    assertThat(records.lastKey()).isEqualTo(3);
+  }
+
+  @Test
+  public void addCyclicContent_whenManyRecords_shouldShiftAllRecords() {
+    for (int i = 1; i <= 70; i++) {
+      file.addCyclicContent(new byte[] {(byte) i});
+    }
+    assertThat(file.getAllRecordsContent()).hasSize(70);
+    assertThat(file.getContent(1)).isEqualTo(new byte[] {70});
+    assertThat(file.getContent(64)).isEqualTo(new byte[] {7});
+    assertThat(file.getContent(65)).isEqualTo(new byte[] {6});
+    assertThat(file.getContent(70)).isEqualTo(new byte[] {1});
+  }
+
+  @Test
+  public void getAllCountersValueAsArray_shouldReturnAllNonTruncatedCounters() {
+    file.setContent(1, ByteArrayUtil.fromHex("11111122222233"));
+    assertThat(file.getAllCountersValueAsArray()).containsExactly(0x111111, 0x222222);
+  }
 }
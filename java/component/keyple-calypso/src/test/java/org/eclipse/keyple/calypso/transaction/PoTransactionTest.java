@@ -17,12 +17,22 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.keyple.calypso.SelectFileControl;
 import org.eclipse.keyple.calypso.command.po.exception.CalypsoPoCommandException;
+import org.eclipse.keyple.calypso.command.sam.exception.CalypsoSamCommandException;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoAtomicTransactionException;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoAuthenticationNotVerifiedException;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoPoCloseSecureSessionException;
@@ -30,6 +40,7 @@ import org.eclipse.keyple.calypso.transaction.exception.CalypsoPoIOException;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoPoTransactionIllegalStateException;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoSessionAuthenticationException;
 import org.eclipse.keyple.calypso.transaction.exception.CalypsoUnauthorizedKvcException;
+import org.eclipse.keyple.calypso.transaction.sammanager.SamExchangeListener;
 import org.eclipse.keyple.core.card.message.AnswerToReset;
 import org.eclipse.keyple.core.card.message.ApduRequest;
 import org.eclipse.keyple.core.card.message.ApduResponse;
@@ -45,6 +56,7 @@ import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -180,6 +192,7 @@ public class PoTransactionTest {
   private static final String PO_READ_REC_SFI11_REC1_CMD = "00B2018C00";
   private static final String PO_READ_REC_SFI11_REC1_RSP = FILE11_REC1_COUNTER + SW1SW2_OK;
   private static final String PO_UPDATE_REC_SFI7_REC1_4B_CMD = "00DC013C0400112233";
+  private static final String PO_UPDATE_REC_SFI7_REC1_29B_CMD = "00DC013C1D" + FILE7_REC1_29B;
   private static final String PO_UPDATE_REC_SFI8_REC1_29B_CMD = "00DC01441D" + FILE8_REC1_29B;
   private static final String PO_UPDATE_REC_SFI8_REC1_5B_CMD = "00DC014405" + FILE8_REC1_5B;
   private static final String PO_UPDATE_REC_SFI8_REC1_4B_CMD = "00DC014404" + FILE8_REC1_4B;
@@ -269,6 +282,8 @@ public class PoTransactionTest {
   private static final String SAM_DIGEST_UPDATE_READ_REC_SFI11_REC1_RSP_CMD =
       "808C000024002211000000000000000000000000000000000000000000000000000000000000009000";
   private static final String SAM_DIGEST_UPDATE_RSP_OK_CMD = "808C0000029000";
+  private static final String SAM_DIGEST_UPDATE_UPDATE_REC_SFI7_REC1_29B_CMD =
+      "808C000022" + PO_UPDATE_REC_SFI7_REC1_29B_CMD;
   private static final String SAM_DIGEST_UPDATE_UPDATE_REC_SFI8_REC1_29B_CMD =
       "808C00002200DC01441D" + FILE8_REC1_29B;
   private static final String SAM_DIGEST_UPDATE_UPDATE_REC_SFI8_REC1_5B_CMD =
@@ -697,6 +712,455 @@ public class PoTransactionTest {
         .isEqualTo(FILE8_REC1_29B_BYTES);
   }
 
+  /* Reads of consecutive records merged into a multiple records read */
+  @Test
+  public void testProcessPoCommands_readCommandsOptimization_shouldMergeConsecutiveRecords() {
+    CalypsoPo calypsoPoRev31 = createCalypsoPo(FCI_REV31);
+    PoSecuritySettings poSecuritySettings =
+        new PoSecuritySettings.PoSecuritySettingsBuilder(samResource) //
+            .enableReadCommandsOptimization() //
+            .build();
+
+    poTransaction =
+        new PoTransaction(
+            new CardResource<CalypsoPo>(poReader, calypsoPoRev31), poSecuritySettings);
+
+    samCommandsTestSet.put(SAM_SELECT_DIVERSIFIER_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_GET_CHALLENGE_CMD, SAM_GET_CHALLENGE_RSP);
+
+    // records #1 and #2 of the SFI 7 are read with a single command
+    poCommandsTestSet.put(
+        "00B2013D3E", "011D" + FILE7_REC1_29B + "021D" + FILE7_REC2_29B + SW1SW2_OK);
+    poCommandsTestSet.put(PO_READ_REC_SFI8_REC1_CMD, PO_READ_REC_SFI8_REC1_RSP);
+
+    poTransaction.prepareReadRecordFile(FILE7, 1, 1, 29);
+    poTransaction.prepareReadRecordFile(FILE8, 1);
+    poTransaction.prepareReadRecordFile(FILE7, 2, 1, 29);
+    poTransaction.processPoCommands();
+
+    assertThat(poTransaction.getNbSavedPoApdus()).isEqualTo(1);
+    assertThat(calypsoPoRev31.getFileBySfi(FILE7).getData().getContent(1))
+        .isEqualTo(FILE7_REC1_29B_BYTES);
+    assertThat(calypsoPoRev31.getFileBySfi(FILE7).getData().getContent(2))
+        .isEqualTo(FILE7_REC2_29B_BYTES);
+    assertThat(calypsoPoRev31.getFileBySfi(FILE8).getData().getContent(1))
+        .isEqualTo(FILE8_REC1_29B_BYTES);
+  }
+
+  /* Reads of records already read in the session removed until the PO is modified */
+  @Test
+  public void testProcessPoCommands_readCommandsOptimization_shouldSkipRecordsReadInSession() {
+    CalypsoPo calypsoPoRev31 = createCalypsoPo(FCI_REV31);
+    PoSecuritySettings poSecuritySettings =
+        new PoSecuritySettings.PoSecuritySettingsBuilder(samResource) //
+            .sessionDefaultKif(AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KIF_DEBIT) //
+            .sessionDefaultKeyRecordNumber(
+                AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KEY_RECORD_NUMBER_DEBIT)
+            .enableReadCommandsOptimization()
+            .build();
+
+    poTransaction =
+        new PoTransaction(
+            new CardResource<CalypsoPo>(poReader, calypsoPoRev31), poSecuritySettings);
+
+    samCommandsTestSet.put(SAM_SELECT_DIVERSIFIER_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_GET_CHALLENGE_CMD, SAM_GET_CHALLENGE_RSP);
+
+    poCommandsTestSet.put(
+        PO_OPEN_SECURE_SESSION_SFI7_REC1_CMD, PO_OPEN_SECURE_SESSION_SFI7_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI8_REC1_CMD, PO_READ_REC_SFI8_REC1_RSP);
+    poCommandsTestSet.put(PO_UPDATE_REC_SFI8_REC1_4B_CMD, SW1SW2_OK_RSP);
+
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    poTransaction.processOpening(AccessLevel.SESSION_LVL_DEBIT);
+
+    // the record #1 of the SFI 7 has been read by the Open Secure Session command
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    poTransaction.prepareReadRecordFile(FILE8, 1);
+    poTransaction.processPoCommands();
+    assertThat(poTransaction.getNbSavedPoApdus()).isEqualTo(1);
+
+    // the record #1 of the SFI 8 must be read again after its update
+    poTransaction.prepareReadRecordFile(FILE8, 1);
+    poTransaction.prepareUpdateRecord(FILE8, 1, FILE8_REC1_4B_BYTES);
+    poTransaction.prepareReadRecordFile(FILE8, 1);
+    poTransaction.processPoCommands();
+    assertThat(poTransaction.getNbSavedPoApdus()).isEqualTo(2);
+    assertThat(calypsoPoRev31.getFileBySfi(FILE7).getData().getContent(1))
+        .isEqualTo(FILE7_REC1_29B_BYTES);
+    assertThat(calypsoPoRev31.getFileBySfi(FILE8).getData().getContent(1))
+        .isEqualTo(FILE8_REC1_29B_BYTES);
+  }
+
+  /* 64 secure sessions processed in parallel, each one with its own PO and SAM */
+  @Test
+  public void testProcessClosing_concurrentTransactions_shouldNotShareSessionState()
+      throws Exception {
+    final int nbTransactions = 64;
+
+    samCommandsTestSet.put(SAM_SELECT_DIVERSIFIER_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_GET_CHALLENGE_CMD, SAM_GET_CHALLENGE_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_INIT_OPEN_SECURE_SESSION_SFI7_REC1_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_READ_REC_SFI10_REC1_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_READ_REC_SFI10_REC1_RSP_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_DECREASE_SFI10_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_DECREASE_SFI10_RESP, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_READ_REC_SFI11_REC1_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_RSP_OK_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_CLOSE_CMD, SAM_DIGEST_CLOSE_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_AUTHENTICATE, SW1SW2_OK_RSP);
+
+    poCommandsTestSet.put(
+        PO_OPEN_SECURE_SESSION_SFI7_REC1_CMD, PO_OPEN_SECURE_SESSION_SFI7_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI10_REC1_CMD, PO_READ_REC_SFI10_REC1_RSP);
+    poCommandsTestSet.put(PO_DECREASE_SFI10_REC1_100U_CMD, PO_DECREASE_SFI10_REC1_100U_RSP);
+    poCommandsTestSet.put(PO_CLOSE_SECURE_SESSION_CMD, PO_CLOSE_SECURE_SESSION_RSP);
+    poCommandsTestSet.put(PO_RATIFICATION_CMD, PO_RATIFICATION_RSP);
+
+    // the transactions are built in the main thread, then processed concurrently
+    final List<CalypsoPo> calypsoPos = new ArrayList<CalypsoPo>();
+    final List<PoTransaction> poTransactions = new ArrayList<PoTransaction>();
+    for (int i = 0; i < nbTransactions; i++) {
+      CalypsoPo calypsoPo = createCalypsoPo(FCI_REV31);
+      Reader samReader = createMockReader("SAM" + i, false, samCommandsTestSet);
+      PoSecuritySettings poSecuritySettings =
+          new PoSecuritySettings.PoSecuritySettingsBuilder(
+                  new CardResource<CalypsoSam>(samReader, createCalypsoSam()))
+              .sessionDefaultKif(AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KIF_DEBIT)
+              .sessionDefaultKeyRecordNumber(
+                  AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KEY_RECORD_NUMBER_DEBIT)
+              .build();
+      Reader reader = createMockReader("PO" + i, true, poCommandsTestSet);
+      calypsoPos.add(calypsoPo);
+      poTransactions.add(
+          new PoTransaction(new CardResource<CalypsoPo>(reader, calypsoPo), poSecuritySettings));
+    }
+
+    final CountDownLatch startGate = new CountDownLatch(1);
+    ExecutorService executorService = Executors.newFixedThreadPool(nbTransactions);
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    try {
+      for (final PoTransaction transaction : poTransactions) {
+        futures.add(
+            executorService.submit(
+                new Callable<Void>() {
+                  @Override
+                  public Void call() throws Exception {
+                    startGate.await();
+                    transaction.prepareReadRecordFile(FILE7, 1);
+                    transaction.prepareReadRecordFile(FILE10, 1);
+                    transaction.processOpening(AccessLevel.SESSION_LVL_DEBIT);
+                    transaction.prepareDecreaseCounter(FILE10, (byte) 1, 100);
+                    transaction.prepareReleasePoChannel();
+                    transaction.processClosing();
+                    return null;
+                  }
+                }));
+      }
+      startGate.countDown();
+      for (Future<Void> future : futures) {
+        // rethrows the failure of the transaction if any
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    for (CalypsoPo calypsoPo : calypsoPos) {
+      assertThat(calypsoPo.getFileBySfi(FILE7).getData().getContent(1))
+          .isEqualTo(FILE7_REC1_29B_BYTES);
+      assertThat(calypsoPo.getFileBySfi(FILE10).getData().getContentAsCounterValue(1))
+          .isEqualTo(0x1122 - 100);
+    }
+  }
+
+  /* Session whose steps are submitted to an executor, the closing being chained by a callback */
+  @Test
+  public void testSubmitClosing_chainedFromCallback_shouldNotifyStepsInOrder() throws Exception {
+    samCommandsTestSet.put(SAM_SELECT_DIVERSIFIER_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_GET_CHALLENGE_CMD, SAM_GET_CHALLENGE_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_INIT_OPEN_SECURE_SESSION_SFI7_REC1_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_READ_REC_SFI10_REC1_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_READ_REC_SFI10_REC1_RSP_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_DECREASE_SFI10_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_DECREASE_SFI10_RESP, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_READ_REC_SFI11_REC1_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_RSP_OK_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_CLOSE_CMD, SAM_DIGEST_CLOSE_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_AUTHENTICATE, SW1SW2_OK_RSP);
+
+    poCommandsTestSet.put(
+        PO_OPEN_SECURE_SESSION_SFI7_REC1_CMD, PO_OPEN_SECURE_SESSION_SFI7_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI10_REC1_CMD, PO_READ_REC_SFI10_REC1_RSP);
+    poCommandsTestSet.put(PO_DECREASE_SFI10_REC1_100U_CMD, PO_DECREASE_SFI10_REC1_100U_RSP);
+    poCommandsTestSet.put(PO_CLOSE_SECURE_SESSION_CMD, PO_CLOSE_SECURE_SESSION_RSP);
+    poCommandsTestSet.put(PO_RATIFICATION_CMD, PO_RATIFICATION_RSP);
+
+    CalypsoPo calypsoPo = createCalypsoPo(FCI_REV31);
+    final PoTransaction transaction = createLatencyDebitTransaction("", calypsoPo);
+    final Thread testThread = Thread.currentThread();
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    final CountDownLatch endGate = new CountDownLatch(1);
+    final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    final PoTransaction.ProcessingCallback closingCallback =
+        new PoTransaction.ProcessingCallback() {
+          @Override
+          public void onSuccess() {
+            events.add("closing");
+            endGate.countDown();
+          }
+
+          @Override
+          public void onFailure(RuntimeException e) {
+            events.add("closing failure: " + e.getMessage());
+            endGate.countDown();
+          }
+        };
+    try {
+      transaction.prepareReadRecordFile(FILE7, 1);
+      transaction.prepareReadRecordFile(FILE10, 1);
+      transaction.submitOpening(
+          AccessLevel.SESSION_LVL_DEBIT,
+          executorService,
+          new PoTransaction.ProcessingCallback() {
+            @Override
+            public void onSuccess() {
+              events.add(Thread.currentThread() != testThread ? "opening" : "opening in caller");
+              transaction.prepareDecreaseCounter(FILE10, (byte) 1, 100);
+              transaction.prepareReleasePoChannel();
+              transaction.submitClosing(executorService, closingCallback);
+            }
+
+            @Override
+            public void onFailure(RuntimeException e) {
+              events.add("opening failure: " + e.getMessage());
+              endGate.countDown();
+            }
+          });
+      assertThat(endGate.await(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    assertThat(events).containsExactly("opening", "closing");
+    assertThat(calypsoPo.getFileBySfi(FILE10).getData().getContentAsCounterValue(1))
+        .isEqualTo(0x1122 - 100);
+  }
+
+  /* Failing processing submitted to an executor, the transaction being usable from the callback */
+  @Test
+  public void testSubmitPoCommands_whenFailure_shouldNotifyFailureAndReleaseTransaction() {
+    CalypsoPo calypsoPo = createCalypsoPo(FCI_REV31);
+    poTransaction = new PoTransaction(new CardResource<CalypsoPo>(poReader, calypsoPo));
+    // no response available for the read command
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    final List<RuntimeException> failures = new ArrayList<RuntimeException>();
+    PoTransaction.ProcessingCallback callback =
+        new PoTransaction.ProcessingCallback() {
+          @Override
+          public void onSuccess() {
+            shouldHaveThrown(CalypsoPoIOException.class);
+          }
+
+          @Override
+          public void onFailure(RuntimeException e) {
+            failures.add(e);
+            // the transaction is available again
+            poCommandsTestSet.put(PO_READ_REC_SFI7_REC1_CMD, PO_READ_REC_SFI7_REC1_RSP);
+            poTransaction.prepareReadRecordFile(FILE7, 1);
+            poTransaction.processPoCommands();
+          }
+        };
+    poTransaction.submitPoCommands(new DirectExecutor(), callback);
+
+    assertThat(failures).hasSize(1);
+    assertThat(failures.get(0)).isInstanceOf(CalypsoPoIOException.class);
+    assertThat(calypsoPo.getFileBySfi(FILE7).getData().getContent(1))
+        .isEqualTo(FILE7_REC1_29B_BYTES);
+  }
+
+  @Test(expected = CalypsoPoTransactionIllegalStateException.class)
+  public void testSubmitPoCommands_whenProcessingInProgress_shouldThrowISE() {
+    poTransaction =
+        new PoTransaction(new CardResource<CalypsoPo>(poReader, createCalypsoPo(FCI_REV31)));
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    PoTransaction.ProcessingCallback callback = mock(PoTransaction.ProcessingCallback.class);
+    // an executor never executing the submitted tasks
+    Executor pendingExecutor = mock(Executor.class);
+    poTransaction.submitPoCommands(pendingExecutor, callback);
+    poTransaction.submitPoCommands(pendingExecutor, callback);
+  }
+
+  @Test
+  public void testSubmitPoCommands_whenExecutorFails_shouldReleaseTransaction() {
+    CalypsoPo calypsoPo = createCalypsoPo(FCI_REV31);
+    poTransaction = new PoTransaction(new CardResource<CalypsoPo>(poReader, calypsoPo));
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    PoTransaction.ProcessingCallback callback = mock(PoTransaction.ProcessingCallback.class);
+    Executor failingExecutor = mock(Executor.class);
+    doThrow(new IllegalStateException("executor shut down"))
+        .when(failingExecutor)
+        .execute(any(Runnable.class));
+    try {
+      poTransaction.submitPoCommands(failingExecutor, callback);
+      shouldHaveThrown(IllegalStateException.class);
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // the transaction is available again
+    poCommandsTestSet.put(PO_READ_REC_SFI7_REC1_CMD, PO_READ_REC_SFI7_REC1_RSP);
+    poTransaction.processPoCommands();
+    verifyNoMoreInteractions(callback);
+    assertThat(calypsoPo.getFileBySfi(FILE7).getData().getContent(1))
+        .isEqualTo(FILE7_REC1_29B_BYTES);
+  }
+
+  @Test(expected = CalypsoPoTransactionIllegalStateException.class)
+  public void testProcessPoCommands_whenSubmittedProcessingInProgress_shouldThrowISE() {
+    poTransaction =
+        new PoTransaction(new CardResource<CalypsoPo>(poReader, createCalypsoPo(FCI_REV31)));
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    PoTransaction.ProcessingCallback callback = mock(PoTransaction.ProcessingCallback.class);
+    // an executor never executing the submitted tasks
+    Executor pendingExecutor = mock(Executor.class);
+    poTransaction.submitPoCommands(pendingExecutor, callback);
+    poTransaction.processPoCommands();
+  }
+
+  /* Closing with and without Digest Update Multiple */
+  @Test
+  public void testProcessClosing_digestUpdateMultiple_shouldReduceSamApdus() {
+    poCommandsTestSet.put(
+        PO_OPEN_SECURE_SESSION_SFI7_REC1_CMD, PO_OPEN_SECURE_SESSION_SFI7_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI10_REC1_CMD, PO_READ_REC_SFI10_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI11_REC1_CMD, PO_READ_REC_SFI11_REC1_RSP);
+    poCommandsTestSet.put(PO_DECREASE_SFI10_REC1_100U_CMD, PO_DECREASE_SFI10_REC1_100U_RSP);
+    poCommandsTestSet.put(PO_INCREASE_SFI11_REC1_100U_CMD, PO_INCREASE_SFI11_REC1_100U_RSP);
+    poCommandsTestSet.put(PO_UPDATE_REC_SFI7_REC1_4B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_WRITE_REC_SFI8_REC1_4B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_APPEND_REC_SFI9_REC1_4B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_CLOSE_SECURE_SESSION_CMD, PO_CLOSE_SECURE_SESSION_RSP);
+    poCommandsTestSet.put(PO_RATIFICATION_CMD, PO_RATIFICATION_RSP);
+
+    List<ApduRequest> standardSamApdus = new ArrayList<ApduRequest>();
+    processSessionOnLatencySam(false, standardSamApdus);
+    List<ApduRequest> packedSamApdus = new ArrayList<ApduRequest>();
+    processSessionOnLatencySam(true, packedSamApdus);
+
+    assertThat(packedSamApdus.size()).isLessThan(standardSamApdus.size());
+    // the SAM is provided with the same PO exchanges
+    assertThat(getDigestUpdateData(packedSamApdus))
+        .isNotEmpty()
+        .isEqualTo(getDigestUpdateData(standardSamApdus));
+  }
+
+  /* Session in pipelined mode, the SAM exchanges overlapping the PO ones */
+  @Test
+  public void testProcessClosing_samPipelining_shouldProvideSameDataToSam() {
+    poCommandsTestSet.put(
+        PO_OPEN_SECURE_SESSION_SFI7_REC1_CMD, PO_OPEN_SECURE_SESSION_SFI7_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI10_REC1_CMD, PO_READ_REC_SFI10_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI11_REC1_CMD, PO_READ_REC_SFI11_REC1_RSP);
+    poCommandsTestSet.put(PO_READ_REC_SFI8_REC1_CMD, PO_READ_REC_SFI8_REC1_RSP);
+    poCommandsTestSet.put(PO_DECREASE_SFI10_REC1_100U_CMD, PO_DECREASE_SFI10_REC1_100U_RSP);
+    poCommandsTestSet.put(PO_INCREASE_SFI11_REC1_100U_CMD, PO_INCREASE_SFI11_REC1_100U_RSP);
+    poCommandsTestSet.put(PO_UPDATE_REC_SFI7_REC1_4B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_WRITE_REC_SFI8_REC1_4B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_APPEND_REC_SFI9_REC1_4B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_CLOSE_SECURE_SESSION_CMD, PO_CLOSE_SECURE_SESSION_RSP);
+    poCommandsTestSet.put(PO_RATIFICATION_CMD, PO_RATIFICATION_RSP);
+
+    List<ApduRequest> sequentialSamApdus =
+        Collections.synchronizedList(new ArrayList<ApduRequest>());
+    processPipelinedSession(null, sequentialSamApdus);
+    List<ApduRequest> pipelinedSamApdus =
+        Collections.synchronizedList(new ArrayList<ApduRequest>());
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      processPipelinedSession(executorService, pipelinedSamApdus);
+      // no SAM exchange outlives the closing
+      assertThat(pipelinedSamApdus.get(pipelinedSamApdus.size() - 1).getBytes())
+          .isEqualTo(ByteArrayUtil.fromHex(SAM_DIGEST_AUTHENTICATE));
+    } finally {
+      executorService.shutdown();
+    }
+
+    // the SAM exchanges are split differently but the SAM is provided with the same data
+    assertThat(pipelinedSamApdus).hasSameSizeAs(sequentialSamApdus);
+    assertThat(getDigestUpdateData(pipelinedSamApdus))
+        .isNotEmpty()
+        .isEqualTo(getDigestUpdateData(sequentialSamApdus));
+  }
+
+  /* PO commands processed out of session in pipelined mode, the SAM being not used */
+  @Test
+  public void testProcessPoCommands_samPipelining_outOfSession_shouldNotUseSam() {
+    poCommandsTestSet.put(PO_READ_REC_SFI7_REC1_CMD, PO_READ_REC_SFI7_REC1_RSP);
+
+    List<ApduRequest> samApdus = Collections.synchronizedList(new ArrayList<ApduRequest>());
+    ExecutorService executorService = mock(ExecutorService.class);
+    poTransaction = createLatencySamTransaction(false, executorService, samApdus, poReader);
+
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    poTransaction.prepareReleasePoChannel();
+    poTransaction.processPoCommands();
+
+    assertThat(samApdus).isEmpty();
+    verifyNoMoreInteractions(executorService);
+  }
+
+  /* Opening failing in pipelined mode before the session is opened, the SAM being not used */
+  @Test
+  public void testProcessOpening_samPipelining_sessionBufferOverflow_shouldNotUseSam() {
+    List<ApduRequest> samApdus = Collections.synchronizedList(new ArrayList<ApduRequest>());
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    try {
+      poTransaction = createLatencySamTransaction(false, executorService, samApdus, poReader);
+      poTransaction.prepareReadRecordFile(FILE7, 1);
+      // 12 x update (29 b) + 1 x update (5 b) = 431 b consumed in the session buffer
+      for (int i = 0; i < 12; i++) {
+        poTransaction.prepareUpdateRecord(FILE8, (byte) 1, FILE8_REC1_29B_BYTES);
+      }
+      poTransaction.prepareUpdateRecord(FILE8, (byte) 1, FILE8_REC1_5B_BYTES);
+      try {
+        poTransaction.processOpening(AccessLevel.SESSION_LVL_DEBIT);
+        shouldHaveThrown(CalypsoAtomicTransactionException.class);
+      } catch (CalypsoAtomicTransactionException e) {
+        // no terminal challenge is requested in advance
+        assertThat(samApdus).isEmpty();
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  /* Opening failing on a SAM error status word, the exchange being notified as failed */
+  @Test
+  public void testProcessOpening_samErrorStatusWord_shouldNotifyFailedSamExchange() {
+    CalypsoPo calypsoPoRev31 = createCalypsoPo(FCI_REV31);
+    final List<Boolean> samExchangeResults = new ArrayList<Boolean>();
+    CardResource<CalypsoSam> listenedSamResource =
+        new ListenedSamResource(samResource, samExchangeResults);
+    PoSecuritySettings poSecuritySettings =
+        new PoSecuritySettings.PoSecuritySettingsBuilder(listenedSamResource)
+            .sessionDefaultKif(AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KIF_DEBIT)
+            .sessionDefaultKeyRecordNumber(
+                AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KEY_RECORD_NUMBER_DEBIT)
+            .build();
+    poTransaction =
+        new PoTransaction(
+            new CardResource<CalypsoPo>(poReader, calypsoPoRev31), poSecuritySettings);
+    samCommandsTestSet.put(SAM_SELECT_DIVERSIFIER_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_GET_CHALLENGE_CMD, "6D00");
+
+    try {
+      poTransaction.processOpening(AccessLevel.SESSION_LVL_DEBIT);
+      shouldHaveThrown(CalypsoSamCommandException.class);
+    } catch (CalypsoSamCommandException e) {
+      assertThat(samExchangeResults).containsExactly(false);
+    }
+  }
+
   /* processClosing no session open */
   @Test(expected = CalypsoPoTransactionIllegalStateException.class)
   public void testProcessClosing_noSessionOpen() {
@@ -1115,6 +1579,74 @@ public class PoTransactionTest {
     assertThat(true).isTrue();
   }
 
+  /*
+   * Look-ahead packing in multiple mode (counter in bytes): session buffer size = 430 b, 12 x 35 b
+   * for SFI 8, 12 x 35 b for SFI 7 and 2 x 10 b for SFI 10 fit in 2 sessions instead of 3
+   */
+  @Test
+  public void testProcessPoCommands_lookAheadPacking_shouldSaveSessions() {
+    CalypsoPo calypsoPoRev31 = createCalypsoPo(FCI_REV31);
+    PoSecuritySettings poSecuritySettings =
+        new PoSecuritySettings.PoSecuritySettingsBuilder(samResource) //
+            .sessionDefaultKif(AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KIF_DEBIT) //
+            .sessionDefaultKeyRecordNumber(
+                AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KEY_RECORD_NUMBER_DEBIT) //
+            .sessionModificationMode(PoTransaction.SessionSetting.ModificationMode.MULTIPLE) //
+            .enableLookAheadPacking() //
+            .build();
+
+    poTransaction =
+        new PoTransaction(
+            new CardResource<CalypsoPo>(poReader, calypsoPoRev31), poSecuritySettings);
+
+    samCommandsTestSet.put(SAM_SELECT_DIVERSIFIER_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_GET_CHALLENGE_CMD, SAM_GET_CHALLENGE_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_INIT_OPEN_SECURE_SESSION_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_UPDATE_REC_SFI7_REC1_29B_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_UPDATE_REC_SFI8_REC1_29B_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_DECREASE_SFI10_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_DECREASE_SFI10_RESP, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_UPDATE_RSP_OK_CMD, SW1SW2_OK_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_CLOSE_CMD, SAM_DIGEST_CLOSE_RSP);
+    samCommandsTestSet.put(SAM_DIGEST_AUTHENTICATE, SW1SW2_OK_RSP);
+
+    poCommandsTestSet.put(PO_OPEN_SECURE_SESSION_CMD, PO_OPEN_SECURE_SESSION_RSP);
+    poCommandsTestSet.put(PO_UPDATE_REC_SFI7_REC1_29B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_UPDATE_REC_SFI8_REC1_29B_CMD, SW1SW2_OK_RSP);
+    poCommandsTestSet.put(PO_DECREASE_SFI10_REC1_100U_CMD, PO_DECREASE_SFI10_REC1_100U_RSP);
+    poCommandsTestSet.put(PO_CLOSE_SECURE_SESSION_CMD, PO_CLOSE_SECURE_SESSION_RSP);
+
+    poTransaction.processOpening(AccessLevel.SESSION_LVL_DEBIT);
+
+    // 12 x update (29 b) = 12 x (29 + 6) = 420 consumed in the session buffer
+    for (int i = 0; i < 12; i++) {
+      poTransaction.prepareUpdateRecord(FILE8, (byte) 1, FILE8_REC1_29B_BYTES);
+    }
+    // the sequential filling would close the session here and after the next decrease
+    for (int i = 0; i < 12; i++) {
+      poTransaction.prepareUpdateRecord(FILE7, (byte) 1, FILE7_REC1_29B_BYTES);
+    }
+    // 2 x decrease (10 b consumed each), the first one completes the first session
+    poTransaction.prepareDecreaseCounter(FILE10, 1, 100);
+    poTransaction.prepareDecreaseCounter(FILE10, 1, 100);
+    poTransaction.processPoCommands();
+
+    poTransaction.prepareReleasePoChannel();
+    poTransaction.processClosing();
+
+    assertThat(poTransaction.getNbSavedSessions()).isEqualTo(1);
+    ArgumentCaptor<CardRequest> cardRequestCaptor = ArgumentCaptor.forClass(CardRequest.class);
+    verify((ProxyReader) poReader, atLeastOnce())
+        .transmitCardRequest(cardRequestCaptor.capture(), any(ChannelControl.class));
+    int nbOpenings = 0;
+    for (CardRequest cardRequest : cardRequestCaptor.getAllValues()) {
+      if (cardRequest.getApduRequests().get(0).getBytes()[1] == (byte) 0x8A) {
+        nbOpenings++;
+      }
+    }
+    assertThat(nbOpenings).isEqualTo(2);
+  }
+
   /* Standard processClosing - close not ratified */
   @Test
   public void testProcessClosing_nominalCase_closeNotRatified() {
@@ -1752,6 +2284,14 @@ public class PoTransactionTest {
 
   private ProxyReader createMockReader(
       final String name, boolean isContactless, final Map<String, String> commandTestSet) {
+    return createMockReader(name, isContactless, commandTestSet, 0);
+  }
+
+  private ProxyReader createMockReader(
+      final String name,
+      boolean isContactless,
+      final Map<String, String> commandTestSet,
+      final long latencyMillis) {
 
     // configure mock native reader
     ProxyReader mockReader = Mockito.spy(ProxyReader.class);
@@ -1761,13 +2301,17 @@ public class PoTransactionTest {
     doAnswer(
             new Answer<CardResponse>() {
               @Override
-              public CardResponse answer(InvocationOnMock invocation) {
+              public CardResponse answer(InvocationOnMock invocation)
+                  throws InterruptedException {
                 Object[] args = invocation.getArguments();
                 CardRequest cardRequest = (CardRequest) args[0];
                 List<ApduRequest> apduRequests = cardRequest.getApduRequests();
                 List<ApduResponse> apduResponses = new ArrayList<ApduResponse>();
                 try {
                   for (ApduRequest apduRequest : apduRequests) {
+                    if (latencyMillis > 0) {
+                      Thread.sleep(latencyMillis);
+                    }
                     ApduResponse apduResponse = getResponses(name, commandTestSet, apduRequest);
                     apduResponses.add(apduResponse);
                     System.out.println(
@@ -1788,6 +2332,171 @@ public class PoTransactionTest {
     return mockReader;
   }
 
+  /* SAM resource recording the result of each notified exchange */
+  private static class ListenedSamResource extends CardResource<CalypsoSam>
+      implements SamExchangeListener {
+    private final List<Boolean> samExchangeResults;
+
+    ListenedSamResource(CardResource<CalypsoSam> samResource, List<Boolean> samExchangeResults) {
+      super(samResource.getReader(), samResource.getSmartCard());
+      this.samExchangeResults = samExchangeResults;
+    }
+
+    @Override
+    public void onSamExchange(long durationNanos, boolean isSuccessful) {
+      samExchangeResults.add(isSuccessful);
+    }
+
+    @Override
+    public void onSamChannelClosed() {}
+  }
+
+  /* Executor running the tasks in the calling thread */
+  private static class DirectExecutor implements Executor {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  }
+
+  /* Debit transaction of the provided PO, on a PO reader modeling a per-APDU latency */
+  private PoTransaction createLatencyDebitTransaction(String name, CalypsoPo calypsoPo) {
+    Reader samReader = createMockReader("SAM" + name, false, samCommandsTestSet);
+    PoSecuritySettings poSecuritySettings =
+        new PoSecuritySettings.PoSecuritySettingsBuilder(
+                new CardResource<CalypsoSam>(samReader, createCalypsoSam()))
+            .sessionDefaultKif(AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KIF_DEBIT)
+            .sessionDefaultKeyRecordNumber(
+                AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KEY_RECORD_NUMBER_DEBIT)
+            .build();
+    Reader reader = createMockReader("PO" + name, true, poCommandsTestSet, 2);
+    return new PoTransaction(new CardResource<CalypsoPo>(reader, calypsoPo), poSecuritySettings);
+  }
+
+  private void processSessionOnLatencySam(
+      boolean useDigestUpdateMultiple, List<ApduRequest> samApdus) {
+    poTransaction = createLatencySamTransaction(useDigestUpdateMultiple, null, samApdus, poReader);
+
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    poTransaction.prepareReadRecordFile(FILE10, 1);
+    poTransaction.prepareReadRecordFile(FILE11, 1);
+    poTransaction.processOpening(AccessLevel.SESSION_LVL_DEBIT);
+
+    poTransaction.prepareDecreaseCounter(FILE10, (byte) 1, 100);
+    poTransaction.prepareIncreaseCounter(FILE11, (byte) 1, 100);
+    poTransaction.prepareUpdateRecord(FILE7, (byte) 1, ByteArrayUtil.fromHex(FILE7_REC1_4B));
+    poTransaction.prepareWriteRecord(FILE8, (byte) 1, ByteArrayUtil.fromHex(FILE8_REC1_4B));
+    poTransaction.prepareAppendRecord(FILE9, ByteArrayUtil.fromHex(FILE9_REC1_4B));
+    poTransaction.prepareReleasePoChannel();
+    poTransaction.processClosing();
+  }
+
+  private void processPipelinedSession(ExecutorService samExecutor, List<ApduRequest> samApdus) {
+    Reader latencyPoReader = createMockReader("PO", true, poCommandsTestSet, 2);
+    poTransaction = createLatencySamTransaction(false, samExecutor, samApdus, latencyPoReader);
+
+    poTransaction.prepareReadRecordFile(FILE7, 1);
+    poTransaction.prepareReadRecordFile(FILE10, 1);
+    poTransaction.prepareReadRecordFile(FILE11, 1);
+    poTransaction.processOpening(AccessLevel.SESSION_LVL_DEBIT);
+
+    poTransaction.prepareReadRecordFile(FILE8, 1);
+    poTransaction.processPoCommands();
+
+    poTransaction.prepareDecreaseCounter(FILE10, (byte) 1, 100);
+    poTransaction.prepareIncreaseCounter(FILE11, (byte) 1, 100);
+    poTransaction.prepareUpdateRecord(FILE7, (byte) 1, ByteArrayUtil.fromHex(FILE7_REC1_4B));
+    poTransaction.prepareWriteRecord(FILE8, (byte) 1, ByteArrayUtil.fromHex(FILE8_REC1_4B));
+    poTransaction.prepareAppendRecord(FILE9, ByteArrayUtil.fromHex(FILE9_REC1_4B));
+    poTransaction.prepareReleasePoChannel();
+    poTransaction.processClosing();
+  }
+
+  private PoTransaction createLatencySamTransaction(
+      boolean useDigestUpdateMultiple,
+      ExecutorService samExecutor,
+      List<ApduRequest> samApdus,
+      Reader reader) {
+    CalypsoPo calypsoPoRev31 = createCalypsoPo(FCI_REV31);
+    Reader samReader = createLatencySamReader(2, samApdus);
+    PoSecuritySettings.PoSecuritySettingsBuilder poSecuritySettingsBuilder =
+        new PoSecuritySettings.PoSecuritySettingsBuilder(
+                new CardResource<CalypsoSam>(samReader, createCalypsoSam()))
+            .sessionDefaultKif(AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KIF_DEBIT)
+            .sessionDefaultKeyRecordNumber(
+                AccessLevel.SESSION_LVL_DEBIT, DEFAULT_KEY_RECORD_NUMBER_DEBIT);
+    if (useDigestUpdateMultiple) {
+      poSecuritySettingsBuilder.enableDigestUpdateMultiple();
+    }
+    if (samExecutor != null) {
+      poSecuritySettingsBuilder.enableSamPipelining(samExecutor);
+    }
+    return new PoTransaction(
+        new CardResource<CalypsoPo>(reader, calypsoPoRev31), poSecuritySettingsBuilder.build());
+  }
+
+  /* SAM answering to any command after a fixed latency, and recording the received APDUs */
+  private ProxyReader createLatencySamReader(
+      final long latencyMillis, final List<ApduRequest> receivedApdus) {
+    ProxyReader mockReader = Mockito.spy(ProxyReader.class);
+    doReturn("SAM").when(mockReader).getName();
+    doReturn(false).when(mockReader).isContactless();
+
+    doAnswer(
+            new Answer<CardResponse>() {
+              @Override
+              public CardResponse answer(InvocationOnMock invocation) throws Throwable {
+                CardRequest cardRequest = (CardRequest) invocation.getArguments()[0];
+                List<ApduResponse> apduResponses = new ArrayList<ApduResponse>();
+                for (ApduRequest apduRequest : cardRequest.getApduRequests()) {
+                  Thread.sleep(latencyMillis);
+                  receivedApdus.add(apduRequest);
+                  String response;
+                  switch (apduRequest.getBytes()[1]) {
+                    case (byte) 0x84:
+                      response = SAM_GET_CHALLENGE_RSP;
+                      break;
+                    case (byte) 0x8E:
+                      response = SAM_DIGEST_CLOSE_RSP;
+                      break;
+                    default:
+                      response = SW1SW2_OK;
+                  }
+                  apduResponses.add(new ApduResponse(ByteArrayUtil.fromHex(response), null));
+                }
+                return new CardResponse(true, apduResponses);
+              }
+            })
+        .when(mockReader)
+        .transmitCardRequest(any(CardRequest.class), any(ChannelControl.class));
+    return mockReader;
+  }
+
+  /* Extracts the PO exchanges provided with the Digest Update (Multiple) commands */
+  private List<String> getDigestUpdateData(List<ApduRequest> samApdus) {
+    List<String> digestData = new ArrayList<String>();
+    for (ApduRequest apduRequest : samApdus) {
+      byte[] apdu = apduRequest.getBytes();
+      if (apdu[1] != (byte) 0x8C) {
+        continue;
+      }
+      byte[] data = Arrays.copyOfRange(apdu, 5, 5 + (apdu[4] & 0xFF));
+      if (apdu[2] == (byte) 0x80) {
+        // Digest Update Multiple: sequence of buffers preceded by their length
+        int offset = 0;
+        while (offset < data.length) {
+          int length = data[offset] & 0xFF;
+          digestData.add(
+              ByteArrayUtil.toHex(Arrays.copyOfRange(data, offset + 1, offset + 1 + length)));
+          offset += 1 + length;
+        }
+      } else {
+        digestData.add(ByteArrayUtil.toHex(data));
+      }
+    }
+    return digestData;
+  }
+
   private ApduResponse getResponses(
       String name, Map<String, String> cmdRespMap, ApduRequest apduRequest) {
     String apdu_c = ByteArrayUtil.toHex(apduRequest.getBytes());
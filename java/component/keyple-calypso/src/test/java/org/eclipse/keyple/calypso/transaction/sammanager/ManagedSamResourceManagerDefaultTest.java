@@ -14,7 +14,11 @@ package org.eclipse.keyple.calypso.transaction.sammanager;
 import static org.eclipse.keyple.calypso.transaction.sammanager.SamResourceManagerFactory.DEFAULT_SLEEP_TIME;
 import static org.eclipse.keyple.calypso.transaction.sammanager.SamResourceManagerFactory.MAX_BLOCKING_TIME;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.*;
@@ -26,7 +30,11 @@ import org.eclipse.keyple.calypso.exception.CalypsoNoSamResourceAvailableExcepti
 import org.eclipse.keyple.calypso.transaction.CalypsoSam;
 import org.eclipse.keyple.calypso.transaction.CalypsoSamTest;
 import org.eclipse.keyple.core.card.message.AnswerToReset;
+import org.eclipse.keyple.core.card.message.ApduRequest;
+import org.eclipse.keyple.core.card.message.ApduResponse;
+import org.eclipse.keyple.core.card.message.CardRequest;
 import org.eclipse.keyple.core.card.message.CardResponse;
+import org.eclipse.keyple.core.card.message.CardSelectionRequest;
 import org.eclipse.keyple.core.card.message.CardSelectionResponse;
 import org.eclipse.keyple.core.card.message.ChannelControl;
 import org.eclipse.keyple.core.card.message.ProxyReader;
@@ -35,11 +43,13 @@ import org.eclipse.keyple.core.card.selection.CardResource;
 import org.eclipse.keyple.core.card.selection.MultiSelectionProcessing;
 import org.eclipse.keyple.core.service.Plugin;
 import org.eclipse.keyple.core.service.Reader;
+import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.slf4j.Logger;
@@ -52,6 +62,7 @@ public class ManagedSamResourceManagerDefaultTest extends CalypsoBaseTest {
       LoggerFactory.getLogger(ManagedSamResourceManagerDefaultTest.class);
 
   private static final String SAM_READER_NAME = "sam-reader-name";
+  private static final String SAM_C1_ATR = "3B001122805A0180C102030411223344829000";
 
   @Before
   public void setUp() {
@@ -112,15 +123,344 @@ public class ManagedSamResourceManagerDefaultTest extends CalypsoBaseTest {
     Assert.assertTrue(stop - start < MAX_BLOCKING_TIME);
   }
 
+  @Test
+  public void freeSamResource_shouldHandOverTheSamToTheWaitingAllocationsInArrivalOrder()
+      throws Exception {
+    final SamResourceManagerDefault srm = srmSpy(".*");
+    final SamIdentifier samIdentifier =
+        SamIdentifier.builder().samRevision(SamRevision.AUTO).build();
+    CardResource<CalypsoSam> samResource =
+        srm.allocateSamResource(SamResourceManager.AllocationMode.BLOCKING, samIdentifier);
+    final List<Integer> allocationOrder = Collections.synchronizedList(new ArrayList<Integer>());
+
+    // queue the waiting allocations one after the other
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 3; i++) {
+      final int index = i;
+      Thread thread =
+          new Thread(
+              new Runnable() {
+                @Override
+                public void run() {
+                  CardResource<CalypsoSam> resource =
+                      srm.allocateSamResource(
+                          SamResourceManager.AllocationMode.BLOCKING, samIdentifier);
+                  allocationOrder.add(index);
+                  srm.freeSamResource(resource);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+      while (srm.getAllocationMetrics().get("waitingAllocations") != i + 1) {
+        Thread.sleep(1);
+      }
+    }
+
+    long start = System.currentTimeMillis();
+    srm.freeSamResource(samResource);
+    for (Thread thread : threads) {
+      thread.join(MAX_BLOCKING_TIME);
+    }
+    long stop = System.currentTimeMillis();
+
+    // assert results
+    Assert.assertEquals(Arrays.asList(0, 1, 2), allocationOrder);
+    Assert.assertTrue(stop - start < MAX_BLOCKING_TIME);
+    Map<String, Long> metrics = srm.getAllocationMetrics();
+    Assert.assertEquals(Long.valueOf(4), metrics.get("allocations"));
+    Assert.assertEquals(Long.valueOf(0), metrics.get("allocationFailures"));
+    Assert.assertEquals(Long.valueOf(0), metrics.get("waitingAllocations"));
+    Assert.assertEquals(Long.valueOf(1), metrics.get("samResources"));
+    Assert.assertEquals(Long.valueOf(0), metrics.get("busySamResources"));
+    Assert.assertTrue(metrics.get("maxAllocationWaitMicros") > 0);
+    Assert.assertTrue(metrics.get("samUtilizationPercent") > 0);
+  }
+
+  @Test
+  public void allocateSamResource_nonBlocking_whenNoFreeSam_shouldCountAFailure() {
+    SamResourceManagerDefault srm = srmSpy(".*");
+    SamIdentifier samIdentifier = SamIdentifier.builder().samRevision(SamRevision.AUTO).build();
+    CardResource<CalypsoSam> samResource =
+        srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    Boolean exceptionThrown = false;
+
+    try {
+      srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    } catch (CalypsoNoSamResourceAvailableException e) {
+      exceptionThrown = true;
+    }
+    srm.freeSamResource(samResource);
+    // a second free is ignored
+    srm.freeSamResource(samResource);
+
+    // assert results
+    Assert.assertTrue(exceptionThrown);
+    Map<String, Long> metrics = srm.getAllocationMetrics();
+    Assert.assertEquals(Long.valueOf(1), metrics.get("allocations"));
+    Assert.assertEquals(Long.valueOf(1), metrics.get("allocationFailures"));
+    Assert.assertEquals(Long.valueOf(0), metrics.get("busySamResources"));
+    Assert.assertNotNull(
+        srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier));
+  }
+
+  @Test
+  public void allocateSamResource_roundRobin_shouldAllocateTheSamInTurn() {
+    SamResourceManagerDefault srm = srmSpy(".*", "sam-reader-1", "sam-reader-2", "sam-reader-3");
+    srm.setAllocationPolicy(SamAllocationPolicy.ROUND_ROBIN);
+    SamIdentifier samIdentifier = SamIdentifier.builder().samRevision(SamRevision.AUTO).build();
+    List<String> allocatedReaders = new ArrayList<String>();
+
+    // test
+    for (int i = 0; i < 6; i++) {
+      CardResource<CalypsoSam> samResource =
+          srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+      allocatedReaders.add(samResource.getReader().getName());
+      srm.freeSamResource(samResource);
+    }
+
+    // assert results
+    Assert.assertEquals(3, new HashSet<String>(allocatedReaders.subList(0, 3)).size());
+    Assert.assertEquals(allocatedReaders.subList(0, 3), allocatedReaders.subList(3, 6));
+    for (Map<String, Long> samStatistics : srm.getSamStatistics().values()) {
+      Assert.assertEquals(Long.valueOf(2), samStatistics.get("allocations"));
+    }
+  }
+
+  @Test
+  public void allocateSamResource_lowestLatency_shouldAllocateTheFastestSam() {
+    SamResourceManagerDefault srm = srmSpy(".*", "sam-reader-1", "sam-reader-2", "sam-reader-3");
+    srm.setAllocationPolicy(SamAllocationPolicy.LOWEST_LATENCY);
+    SamIdentifier samIdentifier = SamIdentifier.builder().samRevision(SamRevision.AUTO).build();
+    Map<String, Long> exchangeMillisByReader = new HashMap<String, Long>();
+    exchangeMillisByReader.put("sam-reader-1", 5L);
+    exchangeMillisByReader.put("sam-reader-2", 1L);
+    exchangeMillisByReader.put("sam-reader-3", 10L);
+
+    // measure the exchanges with each SAM
+    List<CardResource<CalypsoSam>> samResources = new ArrayList<CardResource<CalypsoSam>>();
+    for (int i = 0; i < 3; i++) {
+      CardResource<CalypsoSam> samResource =
+          srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+      long exchangeMillis = exchangeMillisByReader.get(samResource.getReader().getName());
+      ((SamExchangeListener) samResource).onSamExchange(exchangeMillis * 1000000, true);
+      samResources.add(samResource);
+    }
+    for (CardResource<CalypsoSam> samResource : samResources) {
+      srm.freeSamResource(samResource);
+    }
+
+    // test
+    CardResource<CalypsoSam> samResource =
+        srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+
+    // assert results
+    Assert.assertEquals("sam-reader-2", samResource.getReader().getName());
+    Assert.assertEquals(
+        Long.valueOf(1000), srm.getSamStatistics().get("sam-reader-2").get("meanExchangeMicros"));
+  }
+
+  @Test
+  public void freeSamResource_whenErrorRateExceeded_shouldQuarantineTheSam() {
+    SamResourceManagerDefault srm = srmSpy(".*");
+    srm.enableQuarantine(0.5, 1000, 100);
+    SamIdentifier samIdentifier = SamIdentifier.builder().samRevision(SamRevision.AUTO).build();
+    CardResource<CalypsoSam> samResource =
+        srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    for (int i = 0; i < 10; i++) {
+      ((SamExchangeListener) samResource).onSamExchange(1000000, false);
+    }
+    srm.freeSamResource(samResource);
+    Boolean exceptionThrown = false;
+
+    // test
+    try {
+      srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    } catch (CalypsoNoSamResourceAvailableException e) {
+      exceptionThrown = true;
+    }
+    Map<String, Long> samStatistics = srm.getSamStatistics().get(SAM_READER_NAME);
+    long start = System.currentTimeMillis();
+    CardResource<CalypsoSam> out =
+        srm.allocateSamResource(SamResourceManager.AllocationMode.BLOCKING, samIdentifier);
+    long stop = System.currentTimeMillis();
+
+    // assert results
+    Assert.assertTrue(exceptionThrown);
+    Assert.assertEquals(Long.valueOf(1), samStatistics.get("quarantined"));
+    Assert.assertEquals(Long.valueOf(1), samStatistics.get("quarantines"));
+    Assert.assertEquals(Long.valueOf(10), samStatistics.get("exchangeErrors"));
+    Assert.assertEquals(Long.valueOf(100), samStatistics.get("errorRatePercent"));
+    Assert.assertSame(samResource, out);
+    Assert.assertTrue(stop - start < MAX_BLOCKING_TIME);
+    samStatistics = srm.getSamStatistics().get(SAM_READER_NAME);
+    Assert.assertEquals(Long.valueOf(0), samStatistics.get("quarantined"));
+    Assert.assertEquals(Long.valueOf(0), samStatistics.get("errorRatePercent"));
+  }
+
+  @Test
+  public void allocateSamResource_lowestLatency_afterQuarantine_shouldNotPreferTheQuarantinedSam()
+      throws InterruptedException {
+    SamResourceManagerDefault srm = srmSpy(".*", "sam-reader-1", "sam-reader-2", "sam-reader-3");
+    srm.setAllocationPolicy(SamAllocationPolicy.LOWEST_LATENCY);
+    srm.enableQuarantine(0.5, 1000, 100);
+    SamIdentifier samIdentifier = SamIdentifier.builder().samRevision(SamRevision.AUTO).build();
+    Map<String, Long> exchangeMillisByReader = new HashMap<String, Long>();
+    exchangeMillisByReader.put("sam-reader-1", 5L);
+    exchangeMillisByReader.put("sam-reader-2", 1L);
+    exchangeMillisByReader.put("sam-reader-3", 10L);
+
+    // measure the exchanges with each SAM, the slowest one failing
+    List<CardResource<CalypsoSam>> samResources = new ArrayList<CardResource<CalypsoSam>>();
+    for (int i = 0; i < 3; i++) {
+      CardResource<CalypsoSam> samResource =
+          srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+      String readerName = samResource.getReader().getName();
+      long exchangeMillis = exchangeMillisByReader.get(readerName);
+      for (int j = 0; j < 10; j++) {
+        ((SamExchangeListener) samResource)
+            .onSamExchange(exchangeMillis * 1000000, !"sam-reader-3".equals(readerName));
+      }
+      samResources.add(samResource);
+    }
+    for (CardResource<CalypsoSam> samResource : samResources) {
+      srm.freeSamResource(samResource);
+    }
+    Thread.sleep(150);
+
+    // test
+    CardResource<CalypsoSam> samResource =
+        srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+
+    // assert results
+    Assert.assertEquals("sam-reader-2", samResource.getReader().getName());
+    Map<String, Long> samStatistics = srm.getSamStatistics().get("sam-reader-3");
+    Assert.assertEquals(Long.valueOf(0), samStatistics.get("quarantined"));
+    // seeded with the median of the other SAMs
+    Assert.assertEquals(Long.valueOf(3000), samStatistics.get("meanExchangeMicros"));
+  }
+
+  @Test
+  public void allocateSamResource_withLogicalChannels_shouldProvideOneSamResourcePerChannel() {
+    // init SamResourceManager with 3 logical channels
+    ProxyReader reader = samReaderMock(SAM_READER_NAME, SAM_C1_ATR);
+    doReturn(cardResponse("019000"), cardResponse("029000"), cardResponse("9000"))
+        .when(reader)
+        .transmitCardRequest(any(CardRequest.class), any(ChannelControl.class));
+    SamResourceManagerDefault srm =
+        new SamResourceManagerDefault(
+            pluginMock(reader), ".*", MAX_BLOCKING_TIME, DEFAULT_SLEEP_TIME, 3);
+    SamIdentifier samIdentifier = SamIdentifier.builder().samRevision(SamRevision.AUTO).build();
+    Map<String, CardResource<CalypsoSam>> samResources =
+        new HashMap<String, CardResource<CalypsoSam>>();
+    Boolean exceptionThrown = false;
+
+    // test
+    for (int i = 0; i < 3; i++) {
+      CardResource<CalypsoSam> samResource =
+          srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+      samResources.put(samResource.getReader().getName(), samResource);
+    }
+    try {
+      srm.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    } catch (CalypsoNoSamResourceAvailableException e) {
+      exceptionThrown = true;
+    }
+    List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
+    apduRequests.add(new ApduRequest(ByteArrayUtil.fromHex("8084000008"), false));
+    ((ProxyReader) samResources.get(SAM_READER_NAME + "#2").getReader())
+        .transmitCardRequest(new CardRequest(apduRequests), ChannelControl.CLOSE_AFTER);
+
+    // assert results
+    Assert.assertTrue(exceptionThrown);
+    Assert.assertEquals(
+        new HashSet<String>(
+            Arrays.asList(SAM_READER_NAME, SAM_READER_NAME + "#1", SAM_READER_NAME + "#2")),
+        samResources.keySet());
+    ArgumentCaptor<CardRequest> cardRequestCaptor = ArgumentCaptor.forClass(CardRequest.class);
+    verify(reader, times(3))
+        .transmitCardRequest(cardRequestCaptor.capture(), eq(ChannelControl.KEEP_OPEN));
+    Assert.assertEquals(
+        "0070000001",
+        ByteArrayUtil.toHex(
+            cardRequestCaptor.getAllValues().get(0).getApduRequests().get(0).getBytes()));
+    Assert.assertEquals(
+        "8284000008",
+        ByteArrayUtil.toHex(
+            cardRequestCaptor.getAllValues().get(2).getApduRequests().get(0).getBytes()));
+    Assert.assertSame(
+        samResources.get(SAM_READER_NAME).getSmartCard(),
+        samResources.get(SAM_READER_NAME + "#2").getSmartCard());
+
+    // the removal of the SAM removes all its logical channels
+    srm.removeResource(reader);
+    Assert.assertEquals(Long.valueOf(0), srm.getAllocationMetrics().get("samResources"));
+  }
+
+  @Test
+  public void allocateSamResource_withLogicalChannels_onSamS1D_shouldUseTheBasicChannelOnly() {
+    // init SamResourceManager with 3 logical channels and a SAM-S1D
+    ProxyReader reader = samReaderMock(SAM_READER_NAME);
+    SamResourceManagerDefault srm =
+        new SamResourceManagerDefault(
+            pluginMock(reader), ".*", MAX_BLOCKING_TIME, DEFAULT_SLEEP_TIME, 3);
+
+    // test
+    CardResource<CalypsoSam> samResource =
+        srm.allocateSamResource(
+            SamResourceManager.AllocationMode.NON_BLOCKING,
+            SamIdentifier.builder().samRevision(SamRevision.AUTO).build());
+
+    // assert results
+    Assert.assertSame(reader, samResource.getReader());
+    Assert.assertEquals(Long.valueOf(1), srm.getAllocationMetrics().get("samResources"));
+    verify(reader, never()).transmitCardRequest(any(CardRequest.class), any(ChannelControl.class));
+  }
+
+  @Test
+  public void transmit_onLogicalChannel_whenChannelCannotBeCoded_shouldBeRejected() {
+    ProxyReader reader = Mockito.mock(ProxyReader.class);
+    when(reader.getName()).thenReturn(SAM_READER_NAME);
+    ProxyReader channelReader =
+        new SamLogicalChannelReader(reader, 1, new Object(), SamRevision.C1);
+    List<ApduRequest> apduRequests = new ArrayList<ApduRequest>();
+    apduRequests.add(new ApduRequest(ByteArrayUtil.fromHex("9484000008"), false));
+    int nbRejections = 0;
+
+    // test
+    try {
+      channelReader.transmitCardRequest(new CardRequest(apduRequests), ChannelControl.KEEP_OPEN);
+    } catch (KeypleReaderIOException e) {
+      nbRejections++;
+    }
+    try {
+      channelReader.transmitCardSelectionRequests(
+          new ArrayList<CardSelectionRequest>(),
+          MultiSelectionProcessing.FIRST_MATCH,
+          ChannelControl.KEEP_OPEN);
+    } catch (KeypleReaderIOException e) {
+      nbRejections++;
+    }
+
+    // assert results
+    Assert.assertEquals(2, nbRejections);
+    verify(reader, never()).transmitCardRequest(any(CardRequest.class), any(ChannelControl.class));
+    verify(reader, never())
+        .transmitCardSelectionRequests(
+            any(List.class), any(MultiSelectionProcessing.class), any(ChannelControl.class));
+  }
+
   /*
    * Helpers
    */
 
   CardSelectionResponse samSelectionSuccess() {
+    return samSelectionSuccess(CalypsoSamTest.ATR1);
+  }
+
+  CardSelectionResponse samSelectionSuccess(String atr) {
     SelectionStatus selectionStatus = Mockito.mock(SelectionStatus.class);
     when(selectionStatus.hasMatched()).thenReturn(true);
-    when(selectionStatus.getAtr())
-        .thenReturn(new AnswerToReset(ByteArrayUtil.fromHex(CalypsoSamTest.ATR1)));
+    when(selectionStatus.getAtr()).thenReturn(new AnswerToReset(ByteArrayUtil.fromHex(atr)));
 
     CardSelectionResponse cardSelectionResponse = Mockito.mock(CardSelectionResponse.class);
     when(cardSelectionResponse.getSelectionStatus()).thenReturn(selectionStatus);
@@ -133,30 +473,57 @@ public class ManagedSamResourceManagerDefaultTest extends CalypsoBaseTest {
 
   // get a sam manager spy with a selectable sam
   SamResourceManagerDefault srmSpy(String samFilter) {
+    return srmSpy(samFilter, SAM_READER_NAME);
+  }
+
+  // get a sam manager spy with a selectable sam in each reader
+  SamResourceManagerDefault srmSpy(String samFilter, String... readerNames) {
+    ProxyReader[] readers = new ProxyReader[readerNames.length];
+    for (int i = 0; i < readerNames.length; i++) {
+      readers[i] = samReaderMock(readerNames[i]);
+    }
+    Plugin plugin = pluginMock(readers);
+
+    return Mockito.spy(
+        new SamResourceManagerDefault(plugin, samFilter, MAX_BLOCKING_TIME, DEFAULT_SLEEP_TIME));
+  }
+
+  // get a mock reader with a selectable sam
+  ProxyReader samReaderMock(String readerName) {
+    return samReaderMock(readerName, CalypsoSamTest.ATR1);
+  }
 
+  // get a mock reader with a selectable sam having the provided ATR
+  ProxyReader samReaderMock(String readerName, String atr) {
     List<CardSelectionResponse> cardSelectionResponses = new ArrayList<CardSelectionResponse>();
-    cardSelectionResponses.add(samSelectionSuccess());
+    cardSelectionResponses.add(samSelectionSuccess(atr));
 
-    // create a mock reader
     ProxyReader reader = Mockito.mock(ProxyReader.class);
-    when(reader.getName()).thenReturn(SAM_READER_NAME);
+    when(reader.getName()).thenReturn(readerName);
     when(reader.isCardPresent()).thenReturn(true);
     doReturn(cardSelectionResponses)
         .when(reader)
         .transmitCardSelectionRequests(
             any(List.class), any(MultiSelectionProcessing.class), any(ChannelControl.class));
+    return reader;
+  }
 
-    // create a list of mock readers
-    ConcurrentMap<String, Reader> readers = new ConcurrentHashMap<String, Reader>();
-    readers.put(reader.getName(), reader);
-
-    // create the mock plugin
+  // get a mock plugin containing the provided readers
+  Plugin pluginMock(ProxyReader... readers) {
     Plugin plugin = Mockito.mock(Plugin.class);
-    when(plugin.getReaders()).thenReturn(readers);
-    when(plugin.getReader(SAM_READER_NAME)).thenReturn(reader);
+    ConcurrentMap<String, Reader> readersMap = new ConcurrentHashMap<String, Reader>();
+    when(plugin.getReaders()).thenReturn(readersMap);
+    for (ProxyReader reader : readers) {
+      readersMap.put(reader.getName(), reader);
+      when(plugin.getReader(reader.getName())).thenReturn(reader);
+    }
+    return plugin;
+  }
 
-    return Mockito.spy(
-        new SamResourceManagerDefault(plugin, samFilter, MAX_BLOCKING_TIME, DEFAULT_SLEEP_TIME));
+  CardResponse cardResponse(String apduResponse) {
+    List<ApduResponse> apduResponses = new ArrayList<ApduResponse>();
+    apduResponses.add(new ApduResponse(ByteArrayUtil.fromHex(apduResponse), null));
+    return new CardResponse(true, apduResponses);
   }
 
   SamResourceManagerDefault.ManagedSamResource samResourceMock() {
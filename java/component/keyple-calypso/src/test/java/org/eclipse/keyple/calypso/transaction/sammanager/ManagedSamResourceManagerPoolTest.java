@@ -15,7 +15,11 @@ import static org.eclipse.keyple.calypso.transaction.sammanager.SamResourceManag
 import static org.eclipse.keyple.calypso.transaction.sammanager.SamResourceManagerFactory.MAX_BLOCKING_TIME;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.util.Collections;
 import org.eclipse.keyple.calypso.CalypsoBaseTest;
 import org.eclipse.keyple.calypso.command.sam.SamRevision;
 import org.eclipse.keyple.calypso.exception.CalypsoNoSamResourceAvailableException;
@@ -105,6 +109,119 @@ public class ManagedSamResourceManagerPoolTest extends CalypsoBaseTest {
     Assert.assertTrue(stop - start < MAX_BLOCKING_TIME);
   }
 
+  @Test
+  public void allocateSamResource_shouldReuseTheSamSelectedInThePoolReader() {
+    // init plugin
+    Reader reader = readerMock();
+    PoolPlugin poolPlugin = Mockito.mock(PoolPlugin.class);
+    doReturn(reader).when(poolPlugin).allocateReader(any(String.class));
+
+    // init SamResourceManagerPool with custom pool plugin
+    SamResourceManagerPool srmSpy = srmSpy(poolPlugin);
+    SamResourceManagerDefault.ManagedSamResource samResource = samResourceMock();
+    doReturn(reader).when(samResource).getReader();
+    doReturn(samResource).when(srmSpy).createSamResource(reader);
+    doReturn(Collections.singleton(reader.getName())).when(poolPlugin).getReaderNames();
+    SamIdentifier samIdentifier =
+        SamIdentifier.builder().samRevision(SamRevision.AUTO).groupReference("any").build();
+
+    // test
+    CardResource<CalypsoSam> out1 =
+        srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    srmSpy.freeSamResource(out1);
+    CardResource<CalypsoSam> out2 =
+        srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    srmSpy.freeSamResource(out2);
+
+    // assert results
+    Assert.assertSame(samResource, out1);
+    Assert.assertSame(samResource, out2);
+    verify(srmSpy, times(1)).createSamResource(reader);
+    verify(poolPlugin, times(2)).releaseReader(reader);
+  }
+
+  @Test
+  public void allocateSamResource_afterAnExchangeError_shouldSelectTheSamAgain() {
+    // init plugin
+    Reader reader = readerMock();
+    PoolPlugin poolPlugin = Mockito.mock(PoolPlugin.class);
+    doReturn(reader).when(poolPlugin).allocateReader(any(String.class));
+
+    // init SamResourceManagerPool with custom pool plugin
+    SamResourceManagerPool srmSpy = srmSpy(poolPlugin);
+    SamResourceManagerDefault.ManagedSamResource samResource = samResourceMock();
+    doReturn(reader).when(samResource).getReader();
+    doReturn(1L).when(samResource).getNbExchangeErrors();
+    doReturn(samResource).when(srmSpy).createSamResource(reader);
+    doReturn(Collections.singleton(reader.getName())).when(poolPlugin).getReaderNames();
+    SamIdentifier samIdentifier =
+        SamIdentifier.builder().samRevision(SamRevision.AUTO).groupReference("any").build();
+
+    // test
+    CardResource<CalypsoSam> out1 =
+        srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    srmSpy.freeSamResource(out1);
+    srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+
+    // assert results
+    verify(srmSpy, times(2)).createSamResource(reader);
+  }
+
+  @Test
+  public void allocateSamResource_whenTheChannelWasClosed_shouldSelectTheSamAgain() {
+    // init plugin
+    Reader reader = readerMock();
+    PoolPlugin poolPlugin = Mockito.mock(PoolPlugin.class);
+    doReturn(reader).when(poolPlugin).allocateReader(any(String.class));
+
+    // init SamResourceManagerPool with custom pool plugin
+    SamResourceManagerPool srmSpy = srmSpy(poolPlugin);
+    SamResourceManagerDefault.ManagedSamResource samResource = samResourceMock();
+    doReturn(reader).when(samResource).getReader();
+    // an exchange reported that the channel with the SAM has been closed
+    doReturn(true).when(samResource).isChannelClosed();
+    doReturn(samResource).when(srmSpy).createSamResource(reader);
+    doReturn(Collections.singleton(reader.getName())).when(poolPlugin).getReaderNames();
+    SamIdentifier samIdentifier =
+        SamIdentifier.builder().samRevision(SamRevision.AUTO).groupReference("any").build();
+
+    // test
+    CardResource<CalypsoSam> out1 =
+        srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    srmSpy.freeSamResource(out1);
+    srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+
+    // assert results
+    verify(srmSpy, times(2)).createSamResource(reader);
+  }
+
+  @Test
+  public void freeSamResource_whenTheReaderIsNoLongerInThePool_shouldDiscardTheSamResource() {
+    // init plugin
+    Reader reader = readerMock();
+    PoolPlugin poolPlugin = Mockito.mock(PoolPlugin.class);
+    doReturn(reader).when(poolPlugin).allocateReader(any(String.class));
+    // e.g. a remote pool only knowing its allocated readers
+    doReturn(Collections.emptySet()).when(poolPlugin).getReaderNames();
+
+    // init SamResourceManagerPool with custom pool plugin
+    SamResourceManagerPool srmSpy = srmSpy(poolPlugin);
+    SamResourceManagerDefault.ManagedSamResource samResource = samResourceMock();
+    doReturn(reader).when(samResource).getReader();
+    doReturn(samResource).when(srmSpy).createSamResource(reader);
+    SamIdentifier samIdentifier =
+        SamIdentifier.builder().samRevision(SamRevision.AUTO).groupReference("any").build();
+
+    // test
+    CardResource<CalypsoSam> out1 =
+        srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+    srmSpy.freeSamResource(out1);
+    srmSpy.allocateSamResource(SamResourceManager.AllocationMode.NON_BLOCKING, samIdentifier);
+
+    // assert results
+    verify(srmSpy, times(2)).createSamResource(reader);
+  }
+
   /*
    * Helpers
    */
@@ -129,6 +246,7 @@ public class ManagedSamResourceManagerPoolTest extends CalypsoBaseTest {
 
   Reader readerMock() {
     Reader mock = Mockito.mock(Reader.class);
+    when(mock.getName()).thenReturn("sam-reader-name");
     return mock;
   }
 }
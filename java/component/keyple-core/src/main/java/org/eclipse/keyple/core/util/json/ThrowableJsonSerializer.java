@@ -12,15 +12,19 @@
 package org.eclipse.keyple.core.util.json;
 
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 
 /**
  * Serializer of a {@link java.lang.Throwable}.
  *
- * <p>Only the field "message" is serialized during the process.
+ * <p>Only the field "message" and the primitive or string fields declared by the exception classes
+ * outside the JDK (e.g. a retry delay) are serialized during the process.
  *
  * @since 1.0
  */
@@ -37,6 +41,47 @@ public class ThrowableJsonSerializer implements JsonSerializer<Throwable> {
 
     JsonObject json = new JsonObject();
     json.addProperty("message", exception.getMessage());
+    for (Class<?> exceptionClass = exception.getClass();
+        !exceptionClass.getName().startsWith("java.");
+        exceptionClass = exceptionClass.getSuperclass()) {
+      for (Field field : exceptionClass.getDeclaredFields()) {
+        if (isSerializable(field) && !json.has(field.getName())) {
+          json.add(field.getName(), jsonSerializationContext.serialize(getValue(field, exception)));
+        }
+      }
+    }
     return json;
   }
+
+  /**
+   * (private)<br>
+   * Indicates whether a field of an exception is serialized.
+   *
+   * @param field The field.
+   * @return true if the field is a primitive or string instance field.
+   */
+  private static boolean isSerializable(Field field) {
+    int modifiers = field.getModifiers();
+    return !Modifier.isStatic(modifiers)
+        && !Modifier.isTransient(modifiers)
+        && (field.getType().isPrimitive() || field.getType() == String.class);
+  }
+
+  /**
+   * (private)<br>
+   * Gets the value of a field of an exception.
+   *
+   * @param field The field.
+   * @param exception The exception.
+   * @return a nullable reference.
+   * @throws JsonIOException if the field is not accessible.
+   */
+  private static Object getValue(Field field, Throwable exception) {
+    try {
+      field.setAccessible(true);
+      return field.get(exception);
+    } catch (IllegalAccessException e) {
+      throw new JsonIOException(e);
+    }
+  }
 }
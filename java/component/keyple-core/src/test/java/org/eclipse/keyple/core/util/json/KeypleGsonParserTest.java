@@ -123,6 +123,12 @@ public class KeypleGsonParserTest {
     assertSerialization_forException(new BodyError(source), BodyError.class);
   }
 
+  @Test
+  public void serialize_exceptionWithPrimitiveField_shouldKeepTheField() {
+    RuntimeException source = new SampleFactory.MyKeypleException("message", 1000);
+    assertSerialization_forException(new BodyError(source), BodyError.class);
+  }
+
   @Test
   public void serialize_IllegalArgumentException() {
     RuntimeException source = new IllegalArgumentException("IAE message");
@@ -23,6 +23,7 @@ import org.eclipse.keyple.core.card.selection.CardSelector;
 import org.eclipse.keyple.core.card.selection.MultiSelectionProcessing;
 import org.eclipse.keyple.core.service.event.AbstractDefaultSelectionsRequest;
 import org.eclipse.keyple.core.service.event.ObservableReader;
+import org.eclipse.keyple.core.service.exception.KeypleException;
 import org.eclipse.keyple.core.service.exception.KeypleReaderException;
 import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
 import org.eclipse.keyple.core.service.exception.KeypleReaderNotFoundException;
@@ -184,6 +185,19 @@ public class SampleFactory {
     return new CardSelectionResponse(new SelectionStatus(atr, apdu, true), getACardResponse());
   }
 
+  public static class MyKeypleException extends KeypleException {
+    private final int retryAfterInMillis;
+
+    public MyKeypleException(String message, int retryAfterInMillis) {
+      super(message);
+      this.retryAfterInMillis = retryAfterInMillis;
+    }
+
+    public int getRetryAfterInMillis() {
+      return retryAfterInMillis;
+    }
+  }
+
   public static class MyKeypleUserData {
     private final String field;
 
@@ -0,0 +1,37 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.integration.common.endpoint;
+
+/**
+ * Simulates the one-way latency of a network by delaying the delivery of a message. It is used by
+ * the stub endpoints to reproduce realistic round trip times during the load tests.
+ */
+public final class StubNetworkDelay {
+
+  private StubNetworkDelay() {}
+
+  /**
+   * Blocks the current thread during the provided delay.
+   *
+   * @param delayInMillis one-way delay in milliseconds, no delay if 0 or negative
+   */
+  public static void simulate(int delayInMillis) {
+    if (delayInMillis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(delayInMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -20,6 +20,7 @@ import org.eclipse.keyple.core.service.exception.KeypleRuntimeException;
 import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.PoolRemotePluginClient;
 import org.eclipse.keyple.distributed.impl.PoolLocalServiceServerUtils;
+import org.eclipse.keyple.distributed.integration.common.endpoint.StubNetworkDelay;
 import org.eclipse.keyple.distributed.integration.common.util.JacksonParser;
 import org.eclipse.keyple.distributed.integration.common.util.NamedThreadFactory;
 import org.eclipse.keyple.distributed.spi.SyncEndpointClient;
@@ -36,9 +37,21 @@ public class StubSyncEndpointClient implements SyncEndpointClient {
   private static final ExecutorService taskPool =
       Executors.newCachedThreadPool(new NamedThreadFactory("syncPool"));;
   private final String localServiceName;
+  private final int networkDelayInMillis;
 
   public StubSyncEndpointClient(String localServiceName) {
+    this(localServiceName, 0);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param localServiceName name of the pool local service to reach
+   * @param networkDelayInMillis one-way network delay applied to the requests and the responses
+   */
+  public StubSyncEndpointClient(String localServiceName, int networkDelayInMillis) {
     this.localServiceName = localServiceName;
+    this.networkDelayInMillis = networkDelayInMillis;
   }
 
   @Override
@@ -69,11 +82,14 @@ public class StubSyncEndpointClient implements SyncEndpointClient {
     return new Callable<String>() {
       @Override
       public String call() throws Exception {
+        StubNetworkDelay.simulate(networkDelayInMillis);
+
         // Send the dto to the sync node
         List<MessageDto> responses =
             PoolLocalServiceServerUtils.getSyncNode(localServiceName)
                 .onRequest(JacksonParser.fromJson(data));
 
+        StubNetworkDelay.simulate(networkDelayInMillis);
         return JacksonParser.toJson(responses);
       }
     };
@@ -18,6 +18,7 @@ import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.RemotePluginServer;
 import org.eclipse.keyple.distributed.impl.LocalServiceClientUtils;
 import org.eclipse.keyple.distributed.integration.common.endpoint.StubNetworkConnectionException;
+import org.eclipse.keyple.distributed.integration.common.endpoint.StubNetworkDelay;
 import org.eclipse.keyple.distributed.integration.common.util.JacksonParser;
 import org.eclipse.keyple.distributed.integration.common.util.NamedThreadFactory;
 import org.eclipse.keyple.distributed.spi.AsyncEndpointClient;
@@ -36,6 +37,7 @@ public class StubAsyncEndpointClient implements AsyncEndpointClient {
   private final Boolean simulateConnectionError;
   private final AtomicInteger messageSent = new AtomicInteger();
   private final String localServiceName;
+  private final int networkDelayInMillis;
 
   /**
    * Constructor
@@ -45,6 +47,23 @@ public class StubAsyncEndpointClient implements AsyncEndpointClient {
    */
   public StubAsyncEndpointClient(
       StubAsyncEndpointServer server, Boolean simulateConnectionError, String localServiceName) {
+    this(server, simulateConnectionError, localServiceName, 0);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param server
+   * @param simulateConnectionError
+   * @param localServiceName
+   * @param networkDelayInMillis one-way network delay applied to the messages sent to the server
+   */
+  public StubAsyncEndpointClient(
+      StubAsyncEndpointServer server,
+      Boolean simulateConnectionError,
+      String localServiceName,
+      int networkDelayInMillis) {
+    this.networkDelayInMillis = networkDelayInMillis;
     this.server = server;
     this.taskPool = Executors.newCachedThreadPool(new NamedThreadFactory("client-async-pool"));
     this.simulateConnectionError = simulateConnectionError;
@@ -86,6 +105,7 @@ public class StubAsyncEndpointClient implements AsyncEndpointClient {
         new Runnable() {
           @Override
           public void run() {
+            StubNetworkDelay.simulate(networkDelayInMillis);
             String data = JacksonParser.toJson(msg);
             logger.trace("Data sent to server session {} <- {}", msg.getSessionId(), data);
             server.onData(data, thisClient);
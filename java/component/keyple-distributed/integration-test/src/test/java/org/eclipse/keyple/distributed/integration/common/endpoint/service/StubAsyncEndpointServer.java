@@ -19,6 +19,7 @@ import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.RemotePluginServer;
 import org.eclipse.keyple.distributed.impl.RemotePluginServerUtils;
 import org.eclipse.keyple.distributed.integration.common.endpoint.StubNetworkConnectionException;
+import org.eclipse.keyple.distributed.integration.common.endpoint.StubNetworkDelay;
 import org.eclipse.keyple.distributed.integration.common.util.JacksonParser;
 import org.eclipse.keyple.distributed.integration.common.util.NamedThreadFactory;
 import org.eclipse.keyple.distributed.spi.AsyncEndpointServer;
@@ -37,6 +38,7 @@ public class StubAsyncEndpointServer implements AsyncEndpointServer {
   private final ExecutorService taskPool;
 
   private boolean simulateConnectionError;
+  private volatile int networkDelayInMillis;
 
   public StubAsyncEndpointServer() {
     clients = new ConcurrentHashMap<String, StubAsyncEndpointClient>();
@@ -83,6 +85,7 @@ public class StubAsyncEndpointServer implements AsyncEndpointServer {
           @Override
           public void run() {
             try {
+              StubNetworkDelay.simulate(networkDelayInMillis);
               client.onMessage(data);
             } catch (Throwable t) {
               RemotePluginServerUtils.getAsyncNode().onError(msg.getSessionId(), t);
@@ -100,6 +103,15 @@ public class StubAsyncEndpointServer implements AsyncEndpointServer {
     this.simulateConnectionError = simulateConnectionError;
   }
 
+  /**
+   * Set the one-way network delay applied to the messages sent to the clients
+   *
+   * @param networkDelayInMillis delay in milliseconds, 0 to disable it
+   */
+  public void setNetworkDelay(int networkDelayInMillis) {
+    this.networkDelayInMillis = networkDelayInMillis;
+  }
+
   private Integer incrementCountInSession(String sessionId) {
     messageCounts.put(
         sessionId, messageCounts.get(sessionId) == null ? 1 : messageCounts.get(sessionId) + 1);
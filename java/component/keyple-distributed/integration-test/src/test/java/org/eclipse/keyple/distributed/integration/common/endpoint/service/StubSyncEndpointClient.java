@@ -16,11 +16,13 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.keyple.core.service.exception.KeypleRuntimeException;
 import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.RemotePluginServer;
 import org.eclipse.keyple.distributed.impl.RemotePluginServerUtils;
 import org.eclipse.keyple.distributed.integration.common.endpoint.StubNetworkConnectionException;
+import org.eclipse.keyple.distributed.integration.common.endpoint.StubNetworkDelay;
 import org.eclipse.keyple.distributed.integration.common.util.JacksonParser;
 import org.eclipse.keyple.distributed.integration.common.util.NamedThreadFactory;
 import org.eclipse.keyple.distributed.spi.SyncEndpointClient;
@@ -37,15 +39,27 @@ public class StubSyncEndpointClient implements SyncEndpointClient {
   private static final ExecutorService taskPool =
       Executors.newCachedThreadPool(new NamedThreadFactory("syncPool"));;
   private final Boolean simulateConnectionError;
-  private int messageSent = 0;
+  private final int networkDelayInMillis;
+  private final AtomicInteger messageSent = new AtomicInteger();
 
   public StubSyncEndpointClient(Boolean simulateConnectionError) {
+    this(simulateConnectionError, 0);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param simulateConnectionError true to simulate a host unreachable error on the 3rd request
+   * @param networkDelayInMillis one-way network delay applied to the requests and the responses
+   */
+  public StubSyncEndpointClient(Boolean simulateConnectionError, int networkDelayInMillis) {
     this.simulateConnectionError = simulateConnectionError;
+    this.networkDelayInMillis = networkDelayInMillis;
   }
 
   @Override
   public List<MessageDto> sendRequest(MessageDto msg) {
-    if (messageSent++ == 2 && simulateConnectionError) {
+    if (messageSent.getAndIncrement() == 2 && simulateConnectionError) {
       throw new StubNetworkConnectionException("Simulate a host unreacheable error");
     }
 
@@ -75,10 +89,13 @@ public class StubSyncEndpointClient implements SyncEndpointClient {
     return new Callable<String>() {
       @Override
       public String call() throws Exception {
+        StubNetworkDelay.simulate(networkDelayInMillis);
+
         // Send the dto to the sync node
         List<MessageDto> responses =
             RemotePluginServerUtils.getSyncNode().onRequest(JacksonParser.fromJson(data));
 
+        StubNetworkDelay.simulate(networkDelayInMillis);
         return JacksonParser.toJson(responses);
       }
     };
@@ -0,0 +1,154 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.integration.common.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe collector of the measures of a load test : transaction latencies, throughput, number
+ * of live threads and heap usage.
+ */
+public class LoadStatistics {
+
+  private final String name;
+  private final List<Long> latenciesInNanos;
+  private final AtomicInteger nbFailures;
+  private final AtomicLong maxUsedHeap;
+  private final ThreadMXBean threadBean;
+
+  private long startTime;
+  private long endTime;
+  private int initialThreadCount;
+
+  /**
+   * Constructor
+   *
+   * @param name name of the load test, used in the report
+   */
+  public LoadStatistics(String name) {
+    this.name = name;
+    this.latenciesInNanos = Collections.synchronizedList(new ArrayList<Long>());
+    this.nbFailures = new AtomicInteger();
+    this.maxUsedHeap = new AtomicLong();
+    this.threadBean = ManagementFactory.getThreadMXBean();
+  }
+
+  /** Starts the measures, must be invoked before launching the terminals */
+  public void start() {
+    System.gc();
+    threadBean.resetPeakThreadCount();
+    initialThreadCount = threadBean.getThreadCount();
+    sampleHeap();
+    startTime = System.nanoTime();
+  }
+
+  /** Stops the measures, must be invoked once all the terminals are done */
+  public void stop() {
+    endTime = System.nanoTime();
+    sampleHeap();
+  }
+
+  /**
+   * Records a successful transaction and samples the heap usage
+   *
+   * @param startNanos value of {@link System#nanoTime()} at the beginning of the transaction
+   */
+  public void recordSuccess(long startNanos) {
+    latenciesInNanos.add(System.nanoTime() - startNanos);
+    sampleHeap();
+  }
+
+  /** Records a failed transaction */
+  public void recordFailure() {
+    nbFailures.incrementAndGet();
+  }
+
+  public int getNbSuccesses() {
+    return latenciesInNanos.size();
+  }
+
+  public int getNbFailures() {
+    return nbFailures.get();
+  }
+
+  /**
+   * Gets the number of successful transactions per second
+   *
+   * @return 0 if the measures are not stopped
+   */
+  public double getThroughput() {
+    long duration = endTime - startTime;
+    return duration <= 0 ? 0 : getNbSuccesses() * 1000000000.0 / duration;
+  }
+
+  /**
+   * Gets a latency percentile in milliseconds, using the nearest-rank method
+   *
+   * @param percentile between 0 and 100
+   * @return 0 if no transaction succeeded
+   */
+  public double getLatencyPercentile(double percentile) {
+    List<Long> sorted;
+    synchronized (latenciesInNanos) {
+      sorted = new ArrayList<Long>(latenciesInNanos);
+    }
+    if (sorted.isEmpty()) {
+      return 0;
+    }
+    Collections.sort(sorted);
+    int rank = (int) Math.ceil(sorted.size() * percentile / 100);
+    return sorted.get(Math.max(rank, 1) - 1) / 1000000.0;
+  }
+
+  /**
+   * Gets the report of the load test
+   *
+   * @return a multi-line report
+   */
+  public String getReport() {
+    return String.format(
+        "Load test %s%n"
+            + "  transactions : %d successful, %d failed in %.0f ms%n"
+            + "  throughput   : %.1f tx/s%n"
+            + "  latency (ms) : p50=%.1f, p90=%.1f, p99=%.1f, max=%.1f%n"
+            + "  threads      : %d initial, %d peak%n"
+            + "  heap (MB)    : %.1f max used, %.1f committed",
+        name,
+        getNbSuccesses(),
+        getNbFailures(),
+        (endTime - startTime) / 1000000.0,
+        getThroughput(),
+        getLatencyPercentile(50),
+        getLatencyPercentile(90),
+        getLatencyPercentile(99),
+        getLatencyPercentile(100),
+        initialThreadCount,
+        threadBean.getPeakThreadCount(),
+        maxUsedHeap.get() / 1048576.0,
+        Runtime.getRuntime().totalMemory() / 1048576.0);
+  }
+
+  private void sampleHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    long max = maxUsedHeap.get();
+    while (used > max && !maxUsedHeap.compareAndSet(max, used)) {
+      max = maxUsedHeap.get();
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.integration.pool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.core.service.Reader;
+import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.core.service.exception.KeyplePluginNotFoundException;
+import org.eclipse.keyple.core.service.util.ContactlessCardCommonProtocols;
+import org.eclipse.keyple.distributed.PoolRemotePluginClient;
+import org.eclipse.keyple.distributed.impl.PoolLocalServiceServerFactory;
+import org.eclipse.keyple.distributed.impl.PoolRemotePluginClientFactory;
+import org.eclipse.keyple.distributed.integration.common.endpoint.pool.StubSyncEndpointClient;
+import org.eclipse.keyple.distributed.integration.common.se.StubCalypsoClassic;
+import org.eclipse.keyple.distributed.integration.common.util.CalypsoUtils;
+import org.eclipse.keyple.distributed.integration.common.util.LoadStatistics;
+import org.eclipse.keyple.distributed.integration.common.util.LoadTest;
+import org.eclipse.keyple.distributed.integration.common.util.NamedThreadFactory;
+import org.eclipse.keyple.plugin.stub.StubPoolPlugin;
+import org.eclipse.keyple.plugin.stub.StubPoolPluginFactory;
+import org.eclipse.keyple.plugin.stub.StubReader;
+import org.eclipse.keyple.plugin.stub.StubSupportedProtocols;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of the pool remote plugin : N simulated terminals execute concurrently M times the
+ * allocation of a pool reader, the selection and the reading of the event log of its {@link
+ * StubCalypsoClassic} card, then the release of the reader, over a sync node.
+ *
+ * <p>Each terminal allocates its readers in its own group reference. The load is configured with
+ * the same system properties as the {@link
+ * org.eclipse.keyple.distributed.integration.service.LoadScenario}.
+ */
+@Category(LoadTest.class)
+public class LoadScenario {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadScenario.class);
+
+  static final int NB_TERMINALS = Integer.getInteger("keyple.load.terminals", 8);
+  static final int NB_TRANSACTIONS = Integer.getInteger("keyple.load.transactions", 5);
+  static final int NETWORK_DELAY = Integer.getInteger("keyple.load.networkDelay", 2);
+  static final int TIMEOUT = Integer.getInteger("keyple.load.timeout", 60);
+
+  static final String LOAD_POOL_PLUGIN_NAME = "loadStubPoolPlugin";
+  static final String GROUP_REFERENCE_PREFIX = "loadGroup_";
+
+  @Rule public TestName testName = new TestName();
+
+  String localServiceName;
+  StubPoolPlugin localPoolPlugin;
+  PoolRemotePluginClient poolRemotePluginClient;
+
+  ExecutorService terminalPool;
+
+  @Before
+  public void setUp() {
+    localServiceName = testName.getMethodName() + "_load";
+    terminalPool = Executors.newFixedThreadPool(NB_TERMINALS, new NamedThreadFactory("terminal"));
+
+    initPoolReaders();
+
+    PoolLocalServiceServerFactory.builder()
+        .withServiceName(localServiceName)
+        .withSyncNode()
+        .withPoolPlugins(localPoolPlugin.getName())
+        .getService();
+
+    poolRemotePluginClient =
+        (PoolRemotePluginClient)
+            SmartCardService.getInstance()
+                .registerPlugin(
+                    PoolRemotePluginClientFactory.builder()
+                        .withDefaultPluginName()
+                        .withSyncNode(new StubSyncEndpointClient(localServiceName, NETWORK_DELAY))
+                        .build());
+  }
+
+  @After
+  public void tearDown() {
+    SmartCardService.getInstance().unregisterPlugin(poolRemotePluginClient.getName());
+    for (int i = 0; i < NB_TERMINALS; i++) {
+      localPoolPlugin.unplugPoolReaders(GROUP_REFERENCE_PREFIX + i);
+    }
+    terminalPool.shutdownNow();
+  }
+
+  /** N terminals execute concurrently M allocations of a pool reader over a sync node. */
+  @Test
+  public void sync_concurrentTerminals_poolReaderAllocations_successful() throws Exception {
+    LoadStatistics statistics =
+        new LoadStatistics(
+            String.format(
+                "%s (%d terminals x %d transactions, network delay %d ms)",
+                localServiceName, NB_TERMINALS, NB_TRANSACTIONS, NETWORK_DELAY));
+
+    statistics.start();
+    List<Future<?>> terminals = new ArrayList<Future<?>>(NB_TERMINALS);
+    for (int i = 0; i < NB_TERMINALS; i++) {
+      terminals.add(terminalPool.submit(executeTerminal(GROUP_REFERENCE_PREFIX + i, statistics)));
+    }
+    for (Future<?> terminal : terminals) {
+      terminal.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+    statistics.stop();
+
+    logger.info(statistics.getReport());
+
+    assertThat(statistics.getNbFailures()).isZero();
+    assertThat(statistics.getNbSuccesses()).isEqualTo(NB_TERMINALS * NB_TRANSACTIONS);
+  }
+
+  /** Plug one stub pool reader by terminal, each one in its own group reference */
+  void initPoolReaders() {
+    try {
+      localPoolPlugin =
+          (StubPoolPlugin) SmartCardService.getInstance().getPlugin(LOAD_POOL_PLUGIN_NAME);
+    } catch (KeyplePluginNotFoundException e) {
+      localPoolPlugin =
+          (StubPoolPlugin)
+              SmartCardService.getInstance()
+                  .registerPlugin(new StubPoolPluginFactory(LOAD_POOL_PLUGIN_NAME, null, null));
+    }
+    for (int i = 0; i < NB_TERMINALS; i++) {
+      StubReader poolReader =
+          (StubReader)
+              localPoolPlugin.plugPoolReader(
+                  GROUP_REFERENCE_PREFIX + i, "loadPoolReader_" + i, new StubCalypsoClassic());
+      poolReader.activateProtocol(
+          StubSupportedProtocols.ISO_14443_4.name(),
+          ContactlessCardCommonProtocols.ISO_14443_4.name());
+    }
+  }
+
+  /**
+   * Simulates a terminal : a pool reader is allocated for each transaction, its card is selected
+   * and its event log is read, then the reader is released
+   */
+  Runnable executeTerminal(final String groupReference, final LoadStatistics statistics) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < NB_TRANSACTIONS; i++) {
+          long startNanos = System.nanoTime();
+          Reader remoteReader = null;
+          try {
+            remoteReader = poolRemotePluginClient.allocateReader(groupReference);
+            CalypsoPo calypsoPo =
+                (CalypsoPo)
+                    CalypsoUtils.getCardSelection()
+                        .processExplicitSelections(remoteReader)
+                        .getActiveSmartCard();
+            if (CalypsoUtils.readEventLog(calypsoPo, remoteReader, logger) != null) {
+              statistics.recordSuccess(startNanos);
+            } else {
+              statistics.recordFailure();
+            }
+          } catch (RuntimeException e) {
+            logger.error("Transaction {} failed in {}", i, groupReference, e);
+            statistics.recordFailure();
+          } finally {
+            if (remoteReader != null) {
+              poolRemotePluginClient.releaseReader(remoteReader);
+            }
+          }
+        }
+      }
+    };
+  }
+}
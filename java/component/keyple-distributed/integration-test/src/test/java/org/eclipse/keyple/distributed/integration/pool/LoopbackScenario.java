@@ -0,0 +1,53 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.integration.pool;
+
+import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.distributed.PoolRemotePluginClient;
+import org.eclipse.keyple.distributed.impl.PoolLocalServiceServerFactory;
+import org.eclipse.keyple.distributed.impl.PoolLocalServiceServerUtils;
+import org.eclipse.keyple.distributed.impl.PoolRemotePluginClientFactory;
+import org.eclipse.keyple.distributed.impl.StubLoopbackSyncEndpointClient;
+import org.junit.Before;
+
+/**
+ * Runs the sync scenarios with the pool remote plugin directly connected to the pool local service
+ * through the in-process loopback stub endpoint.
+ */
+public class LoopbackScenario extends SyncScenario {
+
+  @Override
+  @Before
+  public void setUp() {
+    initNativePoolStubPlugin();
+
+    localServiceName = testName.getMethodName() + "_loopback";
+
+    poolLocalServiceServer =
+        PoolLocalServiceServerFactory.builder()
+            .withServiceName(localServiceName)
+            .withSyncNode()
+            .withPoolPlugins(localPoolPlugin.getName())
+            .getService();
+
+    poolRemotePluginClient =
+        (PoolRemotePluginClient)
+            SmartCardService.getInstance()
+                .registerPlugin(
+                    PoolRemotePluginClientFactory.builder()
+                        .withDefaultPluginName()
+                        .withSyncNode(
+                            new StubLoopbackSyncEndpointClient(
+                                PoolLocalServiceServerUtils.getSyncNode(localServiceName)))
+                        .build());
+  }
+}
@@ -0,0 +1,240 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.integration.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.core.service.exception.KeyplePluginNotFoundException;
+import org.eclipse.keyple.core.service.util.ContactlessCardCommonProtocols;
+import org.eclipse.keyple.distributed.LocalServiceClient;
+import org.eclipse.keyple.distributed.RemoteServiceParameters;
+import org.eclipse.keyple.distributed.impl.LocalServiceClientFactory;
+import org.eclipse.keyple.distributed.impl.RemotePluginServerFactory;
+import org.eclipse.keyple.distributed.integration.common.app.RemotePluginServerObserver;
+import org.eclipse.keyple.distributed.integration.common.endpoint.service.StubAsyncEndpointClient;
+import org.eclipse.keyple.distributed.integration.common.endpoint.service.StubAsyncEndpointServer;
+import org.eclipse.keyple.distributed.integration.common.endpoint.service.StubSyncEndpointClient;
+import org.eclipse.keyple.distributed.integration.common.model.UserInput;
+import org.eclipse.keyple.distributed.integration.common.model.UserOutputDataDto;
+import org.eclipse.keyple.distributed.integration.common.se.StubCalypsoClassic;
+import org.eclipse.keyple.distributed.integration.common.util.LoadStatistics;
+import org.eclipse.keyple.distributed.integration.common.util.LoadTest;
+import org.eclipse.keyple.distributed.integration.common.util.NamedThreadFactory;
+import org.eclipse.keyple.plugin.stub.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Load test of the remote plugin : N simulated terminals, each one owning a local stub reader,
+ * execute concurrently M remote services with {@link StubCalypsoClassic} cards, over a sync or an
+ * async node. Each remote service performs a remote selection followed by the reading of the event
+ * log of the card, without secure session.
+ *
+ * <p>A report containing the throughput, the latency percentiles, the number of threads and the
+ * heap usage is logged at the end of each scenario.
+ *
+ * <p>The load can be configured with the following system properties :
+ *
+ * <ul>
+ *   <li><b>keyple.load.terminals</b> : number of concurrent terminals (default 8).
+ *   <li><b>keyple.load.transactions</b> : number of transactions by terminal (default 5).
+ *   <li><b>keyple.load.networkDelay</b> : one-way network delay in milliseconds injected in the
+ *       stub endpoints (default 2).
+ *   <li><b>keyple.load.timeout</b> : max duration of a scenario in seconds (default 60).
+ * </ul>
+ */
+@Category(LoadTest.class)
+public class LoadScenario {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadScenario.class);
+
+  static final int NB_TERMINALS = Integer.getInteger("keyple.load.terminals", 8);
+  static final int NB_TRANSACTIONS = Integer.getInteger("keyple.load.transactions", 5);
+  static final int NETWORK_DELAY = Integer.getInteger("keyple.load.networkDelay", 2);
+  static final int TIMEOUT = Integer.getInteger("keyple.load.timeout", 60);
+
+  static final String TERMINAL_READER_PREFIX = "loadReader_";
+
+  @Rule public TestName testName = new TestName();
+
+  String localServiceName;
+  StubPlugin localPlugin;
+  List<StubReader> terminalReaders;
+  LocalServiceClient localService;
+
+  ExecutorService terminalPool;
+  ExecutorService serverPool;
+
+  @Before
+  public void setUp() {
+    localServiceName = testName.getMethodName() + "_load";
+    terminalPool = Executors.newFixedThreadPool(NB_TERMINALS, new NamedThreadFactory("terminal"));
+    serverPool = Executors.newCachedThreadPool(new NamedThreadFactory("remote-pool"));
+
+    // the remote plugin is configured by each scenario
+    BaseScenario.unRegisterRemotePlugin();
+
+    initTerminalReaders();
+  }
+
+  @After
+  public void tearDown() {
+    for (StubReader terminalReader : terminalReaders) {
+      localPlugin.unplugReader(terminalReader.getName(), true);
+    }
+    BaseScenario.unRegisterRemotePlugin();
+    terminalPool.shutdownNow();
+    serverPool.shutdownNow();
+  }
+
+  /** N terminals execute concurrently M remote services over a sync node. */
+  @Test
+  public void sync_concurrentTerminals_remoteTransactions_successful() throws Exception {
+    SmartCardService.getInstance()
+        .registerPlugin(
+            RemotePluginServerFactory.builder()
+                .withDefaultPluginName()
+                .withSyncNode()
+                .withPluginObserver(new RemotePluginServerObserver())
+                .usingEventNotificationPool(serverPool)
+                .build());
+
+    localService =
+        LocalServiceClientFactory.builder()
+            .withServiceName(localServiceName)
+            .withSyncNode(new StubSyncEndpointClient(false, NETWORK_DELAY))
+            .withoutReaderObservation()
+            .getService();
+
+    executeLoad();
+  }
+
+  /** N terminals execute concurrently M remote services over an async node. */
+  @Test
+  public void async_concurrentTerminals_remoteTransactions_successful() throws Exception {
+    StubAsyncEndpointServer serverEndpoint = new StubAsyncEndpointServer();
+    serverEndpoint.setNetworkDelay(NETWORK_DELAY);
+
+    SmartCardService.getInstance()
+        .registerPlugin(
+            RemotePluginServerFactory.builder()
+                .withDefaultPluginName()
+                .withAsyncNode(serverEndpoint)
+                .withPluginObserver(new RemotePluginServerObserver())
+                .usingEventNotificationPool(serverPool)
+                .build());
+
+    localService =
+        LocalServiceClientFactory.builder()
+            .withServiceName(localServiceName)
+            .withAsyncNode(
+                new StubAsyncEndpointClient(serverEndpoint, false, localServiceName, NETWORK_DELAY))
+            .usingDefaultTimeout()
+            .withoutReaderObservation()
+            .getService();
+
+    executeLoad();
+  }
+
+  /** Plug one stub reader by terminal in the local stub plugin */
+  void initTerminalReaders() {
+    try {
+      localPlugin =
+          (StubPlugin) SmartCardService.getInstance().getPlugin(BaseScenario.NATIVE_PLUGIN_NAME);
+    } catch (KeyplePluginNotFoundException e) {
+      localPlugin =
+          (StubPlugin)
+              SmartCardService.getInstance()
+                  .registerPlugin(
+                      new StubPluginFactory(BaseScenario.NATIVE_PLUGIN_NAME, null, null));
+    }
+    terminalReaders = new ArrayList<StubReader>(NB_TERMINALS);
+    for (int i = 0; i < NB_TERMINALS; i++) {
+      String readerName = TERMINAL_READER_PREFIX + i;
+      localPlugin.plugReader(readerName, true, true);
+      StubReader terminalReader = (StubReader) localPlugin.getReader(readerName);
+      terminalReader.activateProtocol(
+          StubSupportedProtocols.ISO_14443_4.name(),
+          ContactlessCardCommonProtocols.ISO_14443_4.name());
+      terminalReaders.add(terminalReader);
+    }
+  }
+
+  /** Launch all the terminals, wait for their termination, log the report and check it */
+  void executeLoad() throws Exception {
+    LoadStatistics statistics =
+        new LoadStatistics(
+            String.format(
+                "%s (%d terminals x %d transactions, network delay %d ms)",
+                localServiceName, NB_TERMINALS, NB_TRANSACTIONS, NETWORK_DELAY));
+
+    statistics.start();
+    List<Future<?>> terminals = new ArrayList<Future<?>>(NB_TERMINALS);
+    for (StubReader terminalReader : terminalReaders) {
+      terminals.add(terminalPool.submit(executeTerminal(terminalReader, statistics)));
+    }
+    for (Future<?> terminal : terminals) {
+      terminal.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+    statistics.stop();
+
+    logger.info(statistics.getReport());
+
+    assertThat(statistics.getNbFailures()).isZero();
+    assertThat(statistics.getNbSuccesses()).isEqualTo(NB_TERMINALS * NB_TRANSACTIONS);
+  }
+
+  /**
+   * Simulates a terminal : a new card is presented for each transaction, then the server selects
+   * it and reads its event log remotely
+   */
+  Runnable executeTerminal(final StubReader terminalReader, final LoadStatistics statistics) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < NB_TRANSACTIONS; i++) {
+          UserInput user = new UserInput().setUserId(terminalReader.getName() + "_user" + i);
+          terminalReader.insertCard(new StubCalypsoClassic());
+          long startNanos = System.nanoTime();
+          try {
+            UserOutputDataDto output =
+                localService.executeRemoteService(
+                    RemoteServiceParameters.builder(BaseScenario.SERVICE_ID_3, terminalReader)
+                        .withUserInputData(user)
+                        .build(),
+                    UserOutputDataDto.class);
+            if (output.isSuccessful() && user.getUserId().equals(output.getUserId())) {
+              statistics.recordSuccess(startNanos);
+            } else {
+              statistics.recordFailure();
+            }
+          } catch (RuntimeException e) {
+            logger.error("Transaction {} failed on {}", i, terminalReader.getName(), e);
+            statistics.recordFailure();
+          } finally {
+            terminalReader.removeCard();
+          }
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,31 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.integration.service;
+
+import org.eclipse.keyple.distributed.impl.RemotePluginServerUtils;
+import org.eclipse.keyple.distributed.impl.StubLoopbackSyncEndpointClient;
+import org.junit.Before;
+
+/**
+ * Runs the sync scenarios with the local service directly connected to the remote plugin through
+ * the in-process loopback stub endpoint.
+ */
+public class LoopbackScenario extends SyncScenario {
+
+  @Override
+  @Before
+  public void setUp() {
+    super.setUp();
+    localServiceName = testName.getMethodName() + "_loopback";
+    clientSyncEndpoint = new StubLoopbackSyncEndpointClient(RemotePluginServerUtils.getSyncNode());
+  }
+}
@@ -0,0 +1,293 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.integration.transaction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import org.eclipse.keyple.calypso.transaction.CalypsoPo;
+import org.eclipse.keyple.calypso.transaction.PoTransaction;
+import org.eclipse.keyple.core.card.selection.CardResource;
+import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.core.service.exception.KeyplePluginNotFoundException;
+import org.eclipse.keyple.core.service.util.ContactlessCardCommonProtocols;
+import org.eclipse.keyple.distributed.integration.common.se.StubCalypsoClassic;
+import org.eclipse.keyple.distributed.integration.common.util.CalypsoClassicInfo;
+import org.eclipse.keyple.distributed.integration.common.util.CalypsoUtils;
+import org.eclipse.keyple.distributed.integration.common.util.LoadStatistics;
+import org.eclipse.keyple.distributed.integration.common.util.LoadTest;
+import org.eclipse.keyple.distributed.integration.common.util.NamedThreadFactory;
+import org.eclipse.keyple.plugin.stub.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TestName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the submitted processing steps of {@link PoTransaction} against the blocking ones :
+ * N simulated terminals execute concurrently M transactions with {@link StubCalypsoClassic} cards
+ * on a server thread pool smaller than the number of terminals.
+ *
+ * <p>Each card is selected by its terminal, then the server performs the reading of its event log,
+ * then after a terminal-side time (e.g. the display of the event log to the user) the reading of
+ * its contract list. With the blocking API, a server thread is held during the whole transaction,
+ * terminal-side time included. With the submitted API ({@link
+ * PoTransaction#submitPoCommands(Executor, PoTransaction.ProcessingCallback)}), a server thread is
+ * held only during the exchanges of each step. The exchanges themselves remain blocking in both
+ * cases: the gain is expected only when the terminal-side time dominates.
+ *
+ * <p>The load can be configured with the system properties of the {@link
+ * org.eclipse.keyple.distributed.integration.service.LoadScenario} and with the following ones :
+ *
+ * <ul>
+ *   <li><b>keyple.load.serverThreads</b> : number of threads of the server pool (default 2).
+ *   <li><b>keyple.load.thinkTime</b> : terminal-side time between the two steps of a transaction
+ *       in milliseconds (default 20).
+ * </ul>
+ */
+@Category(LoadTest.class)
+public class LoadScenario {
+
+  private static final Logger logger = LoggerFactory.getLogger(LoadScenario.class);
+
+  static final int NB_TERMINALS = Integer.getInteger("keyple.load.terminals", 8);
+  static final int NB_TRANSACTIONS = Integer.getInteger("keyple.load.transactions", 5);
+  static final int NB_SERVER_THREADS = Integer.getInteger("keyple.load.serverThreads", 2);
+  static final int THINK_TIME = Integer.getInteger("keyple.load.thinkTime", 20);
+  static final int TIMEOUT = Integer.getInteger("keyple.load.timeout", 60);
+
+  static final String LOAD_PLUGIN_NAME = "loadStubPlugin";
+  static final String TERMINAL_READER_PREFIX = "loadTransactionReader_";
+
+  @Rule public TestName testName = new TestName();
+
+  StubPlugin localPlugin;
+  List<StubReader> terminalReaders;
+
+  ExecutorService terminalPool;
+  ExecutorService serverPool;
+  ScheduledExecutorService terminalTimer;
+
+  @Before
+  public void setUp() {
+    terminalPool = Executors.newFixedThreadPool(NB_TERMINALS, new NamedThreadFactory("terminal"));
+    serverPool = Executors.newFixedThreadPool(NB_SERVER_THREADS, new NamedThreadFactory("server"));
+    terminalTimer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("timer"));
+    initTerminalReaders();
+  }
+
+  @After
+  public void tearDown() {
+    for (StubReader terminalReader : terminalReaders) {
+      localPlugin.unplugReader(terminalReader.getName(), true);
+    }
+    terminalPool.shutdownNow();
+    serverPool.shutdownNow();
+    terminalTimer.shutdownNow();
+  }
+
+  /** N terminals execute concurrently M transactions with the blocking processing steps. */
+  @Test
+  public void blockingProcessing_concurrentTerminals_transactions_successful() throws Exception {
+    executeLoad(false);
+  }
+
+  /** N terminals execute concurrently M transactions with the submitted processing steps. */
+  @Test
+  public void submittedProcessing_concurrentTerminals_transactions_successful() throws Exception {
+    executeLoad(true);
+  }
+
+  /** Plug one stub reader by terminal in the local stub plugin */
+  void initTerminalReaders() {
+    try {
+      localPlugin = (StubPlugin) SmartCardService.getInstance().getPlugin(LOAD_PLUGIN_NAME);
+    } catch (KeyplePluginNotFoundException e) {
+      localPlugin =
+          (StubPlugin)
+              SmartCardService.getInstance()
+                  .registerPlugin(new StubPluginFactory(LOAD_PLUGIN_NAME, null, null));
+    }
+    terminalReaders = new ArrayList<StubReader>(NB_TERMINALS);
+    for (int i = 0; i < NB_TERMINALS; i++) {
+      String readerName = TERMINAL_READER_PREFIX + i;
+      localPlugin.plugReader(readerName, true, true);
+      StubReader terminalReader = (StubReader) localPlugin.getReader(readerName);
+      terminalReader.activateProtocol(
+          StubSupportedProtocols.ISO_14443_4.name(),
+          ContactlessCardCommonProtocols.ISO_14443_4.name());
+      terminalReaders.add(terminalReader);
+    }
+  }
+
+  /** Launch all the terminals, wait for their termination, log the report and check it */
+  void executeLoad(boolean isSubmitted) throws Exception {
+    LoadStatistics statistics =
+        new LoadStatistics(
+            String.format(
+                "%s (%d terminals x %d transactions, %d server threads, think time %d ms)",
+                testName.getMethodName(),
+                NB_TERMINALS,
+                NB_TRANSACTIONS,
+                NB_SERVER_THREADS,
+                THINK_TIME));
+
+    statistics.start();
+    List<Future<?>> terminals = new ArrayList<Future<?>>(NB_TERMINALS);
+    for (StubReader terminalReader : terminalReaders) {
+      terminals.add(
+          terminalPool.submit(executeTerminal(terminalReader, isSubmitted, statistics)));
+    }
+    for (Future<?> terminal : terminals) {
+      terminal.get(TIMEOUT, TimeUnit.SECONDS);
+    }
+    statistics.stop();
+
+    logger.info(statistics.getReport());
+
+    assertThat(statistics.getNbFailures()).isZero();
+    assertThat(statistics.getNbSuccesses()).isEqualTo(NB_TERMINALS * NB_TRANSACTIONS);
+  }
+
+  /**
+   * Simulates a terminal : a new card is presented and selected for each transaction, the terminal
+   * waiting for the end of the transaction performed by the server pool before removing it
+   */
+  Runnable executeTerminal(
+      final StubReader terminalReader,
+      final boolean isSubmitted,
+      final LoadStatistics statistics) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < NB_TRANSACTIONS; i++) {
+          terminalReader.insertCard(new StubCalypsoClassic());
+          long startNanos = System.nanoTime();
+          try {
+            final PoTransaction poTransaction = newPoTransaction(terminalReader);
+            boolean isSuccessful =
+                isSubmitted
+                    ? executeSubmittedTransaction(poTransaction)
+                    : serverPool
+                        .submit(
+                            new Callable<Boolean>() {
+                              @Override
+                              public Boolean call() throws Exception {
+                                return executeBlockingTransaction(poTransaction);
+                              }
+                            })
+                        .get(TIMEOUT, TimeUnit.SECONDS);
+            if (isSuccessful) {
+              statistics.recordSuccess(startNanos);
+            } else {
+              statistics.recordFailure();
+            }
+          } catch (Exception e) {
+            logger.error("Transaction {} failed on {}", i, terminalReader.getName(), e);
+            statistics.recordFailure();
+          } finally {
+            terminalReader.removeCard();
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Executes a transaction with the blocking processing steps, the server thread being held during
+   * the terminal-side time
+   */
+  boolean executeBlockingTransaction(PoTransaction poTransaction) throws InterruptedException {
+    poTransaction.prepareReadRecordFile(
+        CalypsoClassicInfo.SFI_EventLog, CalypsoClassicInfo.RECORD_NUMBER_1);
+    poTransaction.processPoCommands();
+    Thread.sleep(THINK_TIME);
+    poTransaction.prepareReadRecordFile(
+        CalypsoClassicInfo.SFI_ContractList, CalypsoClassicInfo.RECORD_NUMBER_1);
+    poTransaction.prepareReleasePoChannel();
+    poTransaction.processPoCommands();
+    return true;
+  }
+
+  /**
+   * Executes a transaction with the submitted processing steps, the terminal-side time being
+   * scheduled without holding a server thread
+   */
+  boolean executeSubmittedTransaction(final PoTransaction poTransaction)
+      throws InterruptedException {
+    final CountDownLatch endGate = new CountDownLatch(1);
+    final List<RuntimeException> failures = new CopyOnWriteArrayList<RuntimeException>();
+    final PoTransaction.ProcessingCallback secondStepCallback =
+        new PoTransaction.ProcessingCallback() {
+          @Override
+          public void onSuccess() {
+            endGate.countDown();
+          }
+
+          @Override
+          public void onFailure(RuntimeException e) {
+            failures.add(e);
+            endGate.countDown();
+          }
+        };
+    PoTransaction.ProcessingCallback firstStepCallback =
+        new PoTransaction.ProcessingCallback() {
+          @Override
+          public void onSuccess() {
+            terminalTimer.schedule(
+                new Runnable() {
+                  @Override
+                  public void run() {
+                    poTransaction.prepareReadRecordFile(
+                        CalypsoClassicInfo.SFI_ContractList, CalypsoClassicInfo.RECORD_NUMBER_1);
+                    poTransaction.prepareReleasePoChannel();
+                    poTransaction.submitPoCommands(serverPool, secondStepCallback);
+                  }
+                },
+                THINK_TIME,
+                TimeUnit.MILLISECONDS);
+          }
+
+          @Override
+          public void onFailure(RuntimeException e) {
+            failures.add(e);
+            endGate.countDown();
+          }
+        };
+    poTransaction.prepareReadRecordFile(
+        CalypsoClassicInfo.SFI_EventLog, CalypsoClassicInfo.RECORD_NUMBER_1);
+    poTransaction.submitPoCommands(serverPool, firstStepCallback);
+    if (!endGate.await(TIMEOUT, TimeUnit.SECONDS)) {
+      return false;
+    }
+    if (!failures.isEmpty()) {
+      throw failures.get(0);
+    }
+    return true;
+  }
+
+  /** Selects the card presented to the terminal and creates its transaction */
+  PoTransaction newPoTransaction(StubReader terminalReader) {
+    CalypsoPo calypsoPo =
+        (CalypsoPo)
+            CalypsoUtils.getCardSelection()
+                .processExplicitSelections(terminalReader)
+                .getActiveSmartCard();
+    return new PoTransaction(new CardResource<CalypsoPo>(terminalReader, calypsoPo));
+  }
+}
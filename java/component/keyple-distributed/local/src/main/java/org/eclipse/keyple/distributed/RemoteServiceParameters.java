@@ -30,6 +30,9 @@ import org.eclipse.keyple.core.util.Assert;
  *       smart card content to transmit to the remote ticketing service. For example, for Calypso
  *       ticketing application, this object will be a <b>CalypsoPo</b> or a <b>CalypsoSam</b>,
  *       depending on the context.
+ *   <li><b>priority</b> (optional) : The priority of the remote service execution, used by the
+ *       admission control of the server when it is saturated (the highest value first, 0 by
+ *       default).
  * </ul>
  *
  * @since 1.0
@@ -40,6 +43,7 @@ public class RemoteServiceParameters {
   private final Reader localReader;
   private final Object userInputData;
   private final AbstractSmartCard initialCardContent;
+  private final int priority;
 
   private RemoteServiceParameters(Builder builder) {
 
@@ -51,6 +55,7 @@ public class RemoteServiceParameters {
     localReader = builder.localReader;
     userInputData = builder.userInputData;
     initialCardContent = builder.initialCardContent;
+    priority = builder.priority;
   }
 
   /**
@@ -74,6 +79,7 @@ public class RemoteServiceParameters {
     private final Reader localReader;
     private Object userInputData;
     private AbstractSmartCard initialCardContent;
+    private int priority;
 
     private Builder(String serviceId, Reader localReader) {
       this.serviceId = serviceId;
@@ -108,6 +114,22 @@ public class RemoteServiceParameters {
       return this;
     }
 
+    /**
+     * Sets the priority of the remote service execution (optional).
+     *
+     * <p>When the admission control of the server is activated and the server is saturated, the
+     * executions having the highest priority are admitted first, e.g. to favour the ticketing
+     * transactions over the status checks.
+     *
+     * @param priority The priority (0 by default, the highest value first).
+     * @return the builder instance
+     * @since 1.0
+     */
+    public Builder withPriority(int priority) {
+      this.priority = priority;
+      return this;
+    }
+
     /**
      * Builds the object.
      *
@@ -158,4 +180,14 @@ public class RemoteServiceParameters {
   public AbstractSmartCard getInitialCardContent() {
     return initialCardContent;
   }
+
+  /**
+   * Gets the priority of the remote service execution.
+   *
+   * @return 0 by default.
+   * @since 1.0
+   */
+  public int getPriority() {
+    return priority;
+  }
 }
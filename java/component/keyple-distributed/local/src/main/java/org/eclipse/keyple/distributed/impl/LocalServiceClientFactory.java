@@ -61,6 +61,36 @@ public final class LocalServiceClientFactory {
      * @throws IllegalArgumentException if a service already exists with the same name.
      */
     LocalServiceClient getService();
+
+    /**
+     * Activates the compression of the bodies of the messages exchanged with the server (optional).
+     *
+     * <p>The client node then indicates to the server that it accepts compressed bodies. Once the
+     * server node has advertised in its messages that it accepts them too, the client node
+     * compresses (deflate) the bodies of the messages it sends when their size in bytes (UTF-8)
+     * exceeds the provided threshold. The server node compresses the bodies of its messages with
+     * its own threshold, which is 1024 bytes.
+     *
+     * @param thresholdInBytes The size (in bytes) above which a body is compressed (positive or
+     *     zero, 0 meaning that all the bodies are compressed).
+     * @return next configuration step
+     * @throws IllegalArgumentException If the threshold is negative.
+     * @since 1.0
+     */
+    BuilderStep withCompression(int thresholdInBytes);
+
+    /**
+     * Activates the latency tracing of the messages exchanged with the server (optional).
+     *
+     * <p>The client node then assigns a trace id to the messages it sends, and both the client and
+     * server nodes timestamp the traced messages (sent, received and handled) and record per
+     * action histograms of the transit, queue, handling and round trip latencies. The breakdown of
+     * each traced message is logged at debug level.
+     *
+     * @return next configuration step
+     * @since 1.0
+     */
+    BuilderStep withLatencyTracing();
   }
 
   /**
@@ -177,6 +207,8 @@ public final class LocalServiceClientFactory {
     private ObservableReaderEventFilter eventFilter;
     private int timeoutInSec;
     private String serviceName;
+    private Integer compressionThreshold;
+    private boolean isLatencyTracingActivated;
 
     private Step() {}
 
@@ -275,9 +307,45 @@ public final class LocalServiceClientFactory {
             withReaderObservation);
         service.bindSyncNodeClient(syncEndpoint, null, null);
       }
+
+      // activate the compression if requested
+      if (compressionThreshold != null) {
+        logger.info(
+            "Activate the compression of the messages above {} bytes", compressionThreshold);
+        service.activateNodeCompression(compressionThreshold);
+      }
+
+      // activate the latency tracing if requested
+      if (isLatencyTracingActivated) {
+        logger.info("Activate the latency tracing of the messages");
+        service.activateNodeLatencyTracing();
+      }
       return service;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withCompression(int thresholdInBytes) {
+      Assert.getInstance().greaterOrEqual(thresholdInBytes, 0, "thresholdInBytes");
+      this.compressionThreshold = thresholdInBytes;
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withLatencyTracing() {
+      this.isLatencyTracingActivated = true;
+      return this;
+    }
+
     /**
      * {@inheritDoc}
      *
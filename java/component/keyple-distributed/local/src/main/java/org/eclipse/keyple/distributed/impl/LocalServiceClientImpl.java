@@ -140,6 +140,9 @@ final class LocalServiceClientImpl extends AbstractLocalService
       // send messageDto through the node
       MessageDto receivedDto = node.sendRequest(remoteServiceDto);
 
+      // the execution may have been rejected by the admission control of the server
+      checkError(receivedDto);
+
       T userOutputData;
 
       // start observation if needed
@@ -232,7 +235,7 @@ final class LocalServiceClientImpl extends AbstractLocalService
       String sessionId = generateSessionId();
 
       // Build an event message with the user data
-      MessageDto eventMessageDto = buildEventMessage(event, userData, sessionId);
+      MessageDto eventMessageDto = buildEventMessage(localReader, event, userData, sessionId);
 
       try {
         // Open a new session on the node
@@ -342,6 +345,7 @@ final class LocalServiceClientImpl extends AbstractLocalService
     JsonObject body = new JsonObject();
 
     body.addProperty("serviceId", parameters.getServiceId());
+    body.addProperty("priority", parameters.getPriority());
 
     Object userInputData = parameters.getUserInputData();
     if (userInputData != null) {
@@ -357,6 +361,9 @@ final class LocalServiceClientImpl extends AbstractLocalService
         "isObservable",
         withReaderObservation && (parameters.getLocalReader() instanceof ObservableReader));
 
+    // Push the immutable properties of the local reader to avoid further requests
+    body.addProperty("isReaderContactless", parameters.getLocalReader().isContactless());
+
     return new MessageDto()
         .setSessionId(sessionId)
         .setAction(MessageDto.Action.EXECUTE_REMOTE_SERVICE.name())
@@ -368,18 +375,20 @@ final class LocalServiceClientImpl extends AbstractLocalService
    * (private)<br>
    * Build the message associated to the READER_EVENT action.
    *
+   * @param localReader The local reader.
    * @param readerEvent The reader event.
    * @param userInputData The user input data.
    * @param sessionId The session id to use.
    * @return a not null reference.
    */
   private MessageDto buildEventMessage(
-      ReaderEvent readerEvent, Object userInputData, String sessionId) {
+      ProxyReader localReader, ReaderEvent readerEvent, Object userInputData, String sessionId) {
 
     JsonObject body = new JsonObject();
 
     body.add("readerEvent", KeypleGsonParser.getParser().toJsonTree(readerEvent));
     body.add("userInputData", KeypleGsonParser.getParser().toJsonTree(userInputData));
+    body.addProperty("isReaderContactless", localReader.isContactless());
 
     return new MessageDto()
         .setSessionId(sessionId)
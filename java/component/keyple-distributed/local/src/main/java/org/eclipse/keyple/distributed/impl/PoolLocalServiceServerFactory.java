@@ -53,6 +53,21 @@ public final class PoolLocalServiceServerFactory {
    * @since 1.0
    */
   public interface BuilderStep {
+    /**
+     * Configures the max time an allocation request waits for a reader when all the readers of the
+     * requested group are already allocated (optional).
+     *
+     * <p>The waiting requests of a group are served in their arrival order. By default, an
+     * allocation request fails immediately if no reader is available. Note that the waiting
+     * request blocks the thread handling the message.
+     *
+     * @param timeoutInMillis The timeout in milliseconds (0 to fail immediately).
+     * @return next configuration step
+     * @throws IllegalArgumentException If the timeout is negative.
+     * @since 1.0
+     */
+    BuilderStep withAllocationTimeout(int timeoutInMillis);
+
     /**
      * Builds and gets the service.
      *
@@ -134,6 +149,7 @@ public final class PoolLocalServiceServerFactory {
     private AsyncEndpointServer asyncEndpoint;
     private String[] poolPluginNames;
     private String serviceName;
+    private int allocationTimeout;
 
     private Step() {}
 
@@ -204,6 +220,18 @@ public final class PoolLocalServiceServerFactory {
       return this;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withAllocationTimeout(int timeoutInMillis) {
+      Assert.getInstance().greaterOrEqual(timeoutInMillis, 0, "timeoutInMillis");
+      this.allocationTimeout = timeoutInMillis;
+      return this;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -221,6 +249,13 @@ public final class PoolLocalServiceServerFactory {
         logger.info("Create a new PoolLocalServiceServer with a SyncNodeServer");
       }
 
+      // configure the waiting of the allocation requests if requested
+      if (allocationTimeout > 0) {
+        logger.info(
+            "Activate the allocation wait queue with a timeout of {} ms", allocationTimeout);
+        poolLocalServiceServerImpl.setAllocationTimeout(allocationTimeout);
+      }
+
       return poolLocalServiceServerImpl;
     }
   }
@@ -12,11 +12,18 @@
 package org.eclipse.keyple.distributed.impl;
 
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.keyple.core.card.message.ProxyReader;
 import org.eclipse.keyple.core.service.PoolPlugin;
 import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.core.service.exception.KeypleAllocationNoReaderException;
 import org.eclipse.keyple.core.service.exception.KeypleAllocationReaderException;
 import org.eclipse.keyple.core.service.exception.KeypleException;
 import org.eclipse.keyple.core.service.exception.KeypleReaderNotFoundException;
@@ -24,6 +31,8 @@ import org.eclipse.keyple.core.util.json.BodyError;
 import org.eclipse.keyple.core.util.json.KeypleGsonParser;
 import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.PoolLocalServiceServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * (package-private)<br>
@@ -34,11 +43,39 @@ import org.eclipse.keyple.distributed.PoolLocalServiceServer;
 final class PoolLocalServiceServerImpl extends AbstractLocalService
     implements PoolLocalServiceServer {
 
+  private static final Logger logger = LoggerFactory.getLogger(PoolLocalServiceServerImpl.class);
+
+  /*
+   * Max period between two allocation attempts of a waiting request, in order to take into account
+   * the readers released outside of this service.
+   */
+  private static final long ALLOCATION_RETRY_PERIOD = 100;
+
+  /* Period between two reclaims of the readers whose lease has expired. */
+  private static final long LEASE_RECLAIM_PERIOD = 1000;
+
   private static Map<String, PoolLocalServiceServerImpl> serviceByName;
   private final String[] poolPluginNames;
 
+  private final Map<String, String> poolPluginNameByGroupReference;
+  private final Map<String, String> poolPluginNameByReaderName;
+  private final Map<String, String> groupReferenceByReaderName;
+  private final Map<String, LinkedList<Object>> allocationQueueByGroupReference;
+  private final Map<String, String> sessionIdByReaderName;
+  private final ConcurrentMap<String, Lease> leaseByReaderName;
+  private final ConcurrentMap<String, Long> revocationExpiryBySessionId;
+  private volatile int allocationTimeout;
+  private ScheduledExecutorService leaseScheduler;
+
   private PoolLocalServiceServerImpl(String[] poolPluginNames) {
     this.poolPluginNames = poolPluginNames;
+    this.poolPluginNameByGroupReference = new ConcurrentHashMap<String, String>();
+    this.poolPluginNameByReaderName = new ConcurrentHashMap<String, String>();
+    this.groupReferenceByReaderName = new ConcurrentHashMap<String, String>();
+    this.allocationQueueByGroupReference = new HashMap<String, LinkedList<Object>>();
+    this.sessionIdByReaderName = new ConcurrentHashMap<String, String>();
+    this.leaseByReaderName = new ConcurrentHashMap<String, Lease>();
+    this.revocationExpiryBySessionId = new ConcurrentHashMap<String, Long>();
   }
 
   /**
@@ -81,6 +118,20 @@ final class PoolLocalServiceServerImpl extends AbstractLocalService
     return serviceByName.get(serviceName);
   }
 
+  /**
+   * (package-private)<br>
+   * Sets the max time an allocation request waits for a reader when its group is exhausted.
+   *
+   * <p>The waiting requests of a group are served in their arrival order (FIFO) each time a reader
+   * of this group is released by this service.
+   *
+   * @param allocationTimeout The timeout in milliseconds (0 to fail immediately).
+   * @since 1.0
+   */
+  void setAllocationTimeout(int allocationTimeout) {
+    this.allocationTimeout = allocationTimeout;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -90,20 +141,26 @@ final class PoolLocalServiceServerImpl extends AbstractLocalService
   void onMessage(MessageDto msg) {
     MessageDto response;
     ProxyReader reader;
-    PoolPlugin poolPlugin;
     try {
       switch (MessageDto.Action.valueOf(msg.getAction())) {
         case ALLOCATE_READER:
-          String groupReference =
-              KeypleGsonParser.getParser()
-                  .fromJson(msg.getBody(), JsonObject.class)
-                  .get("groupReference")
-                  .getAsString();
-          poolPlugin = getAPoolPlugin(groupReference);
-          reader = (ProxyReader) poolPlugin.allocateReader(groupReference);
-          response = new MessageDto(msg).setLocalReaderName(reader.getName()).setBody(null);
+          JsonObject allocateRequestBody =
+              KeypleGsonParser.getParser().fromJson(msg.getBody(), JsonObject.class);
+          String groupReference = allocateRequestBody.get("groupReference").getAsString();
+          long leaseDuration =
+              allocateRequestBody.has("leaseDuration")
+                  ? allocateRequestBody.get("leaseDuration").getAsLong()
+                  : 0;
+          reader = allocateReader(groupReference, leaseDuration, msg.getSessionId());
+          JsonObject allocateBody = new JsonObject();
+          allocateBody.addProperty("isReaderContactless", reader.isContactless());
+          response =
+              new MessageDto(msg)
+                  .setLocalReaderName(reader.getName())
+                  .setBody(allocateBody.toString());
           break;
         case RELEASE_READER:
+          checkAllocation(msg);
           releaseReader(msg.getLocalReaderName());
           response = new MessageDto(msg).setBody(null);
           break;
@@ -114,7 +171,16 @@ final class PoolLocalServiceServerImpl extends AbstractLocalService
               "readerGroupReferences", KeypleGsonParser.getParser().toJsonTree(groupReferences));
           response = new MessageDto(msg).setBody(body.toString());
           break;
+        case RENEW_READER_LEASES:
+          List<String> revokedReaderNames = renewReaderLeases(msg.getBody());
+          JsonObject renewBody = new JsonObject();
+          renewBody.add(
+              "revokedLocalReaderNames",
+              KeypleGsonParser.getParser().toJsonTree(revokedReaderNames));
+          response = new MessageDto(msg).setBody(renewBody.toString());
+          break;
         default:
+          checkAllocation(msg);
           reader = findReader(msg.getLocalReaderName());
           response = executeLocally(reader, msg);
           break;
@@ -128,20 +194,271 @@ final class PoolLocalServiceServerImpl extends AbstractLocalService
     node.sendMessage(response);
   }
 
+  /**
+   * (private)<br>
+   * Allocates a reader of the provided group.
+   *
+   * <p>If the group is exhausted and an allocation timeout is set, the request is queued until a
+   * reader of the group is released or the timeout expires.
+   *
+   * @param groupReference non nullable instance of a group reference
+   * @param leaseDuration lease duration in milliseconds requested by the client, 0 if the reader is
+   *     allocated until its release
+   * @param sessionId non nullable id of the session of the allocation
+   * @return non nullable instance of the allocated reader
+   * @throws KeypleAllocationReaderException if no pool plugin containing group reference is found
+   * @throws KeypleAllocationNoReaderException if no reader is available in the group
+   */
+  private ProxyReader allocateReader(String groupReference, long leaseDuration, String sessionId) {
+    PoolPlugin poolPlugin = getAPoolPlugin(groupReference);
+    if (allocationTimeout <= 0) {
+      return allocateReader(poolPlugin, groupReference, leaseDuration, sessionId);
+    }
+    LinkedList<Object> allocationQueue = getAllocationQueue(groupReference);
+    Object ticket = new Object();
+    long deadline = System.currentTimeMillis() + allocationTimeout;
+    synchronized (allocationQueue) {
+      allocationQueue.addLast(ticket);
+      try {
+        while (true) {
+          // only the oldest request of the group can try to allocate a reader
+          if (allocationQueue.getFirst() == ticket) {
+            try {
+              return allocateReader(poolPlugin, groupReference, leaseDuration, sessionId);
+            } catch (KeypleAllocationNoReaderException e) {
+              // group exhausted, wait for a release
+            }
+          }
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            throw new KeypleAllocationNoReaderException(
+                "No reader is available in the groupReference : "
+                    + groupReference
+                    + " after "
+                    + allocationTimeout
+                    + " ms");
+          }
+          if (logger.isTraceEnabled()) {
+            logger.trace(
+                "Wait for a reader in the groupReference {} ({} pending requests)",
+                groupReference,
+                allocationQueue.size());
+          }
+          allocationQueue.wait(Math.min(remaining, ALLOCATION_RETRY_PERIOD));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new KeypleAllocationNoReaderException(
+            "Interrupted while waiting for a reader in the groupReference : " + groupReference, e);
+      } finally {
+        allocationQueue.remove(ticket);
+        allocationQueue.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Allocates a reader on the provided pool plugin and indexes it with the session of the
+   * allocation.
+   *
+   * <p>If the group is exhausted, the readers of the group whose lease has expired are released
+   * before a new attempt.
+   *
+   * @param poolPlugin non nullable instance of a pool plugin
+   * @param groupReference non nullable instance of a group reference
+   * @param leaseDuration lease duration in milliseconds, 0 if the reader is allocated until its
+   *     release
+   * @param sessionId non nullable id of the session of the allocation
+   * @return non nullable instance of the allocated reader
+   */
+  private ProxyReader allocateReader(
+      PoolPlugin poolPlugin, String groupReference, long leaseDuration, String sessionId) {
+    ProxyReader reader;
+    try {
+      reader = (ProxyReader) poolPlugin.allocateReader(groupReference);
+    } catch (KeypleAllocationNoReaderException e) {
+      if (!releaseExpiredLeases(groupReference)) {
+        throw e;
+      }
+      reader = (ProxyReader) poolPlugin.allocateReader(groupReference);
+    }
+    poolPluginNameByReaderName.put(reader.getName(), poolPlugin.getName());
+    groupReferenceByReaderName.put(reader.getName(), groupReference);
+    sessionIdByReaderName.put(reader.getName(), sessionId);
+    if (leaseDuration > 0) {
+      leaseByReaderName.put(
+          reader.getName(),
+          new Lease(sessionId, leaseDuration, System.currentTimeMillis() + leaseDuration));
+      startLeaseReclaim();
+    }
+    return reader;
+  }
+
+  /**
+   * (private)<br>
+   * Checks that the reader targeted by a message is allocated to the session of the message.
+   *
+   * <p>A client whose lease has been reclaimed can not reach anymore the reader, even if it has
+   * been allocated to another client meanwhile.
+   *
+   * @param msg non nullable message targeting a reader
+   * @throws KeypleAllocationReaderException if the reader is not allocated to the session
+   */
+  private void checkAllocation(MessageDto msg) {
+    String readerName = msg.getLocalReaderName();
+    String allocationSessionId = readerName != null ? sessionIdByReaderName.get(readerName) : null;
+    boolean isAllocated =
+        allocationSessionId != null
+            ? allocationSessionId.equals(msg.getSessionId())
+            : !revocationExpiryBySessionId.containsKey(msg.getSessionId());
+    if (!isAllocated) {
+      throw new KeypleAllocationReaderException(
+          "The reader " + readerName + " is not allocated to the session " + msg.getSessionId());
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Starts, if not already done, the periodic reclaim of the readers whose lease has expired.
+   */
+  private synchronized void startLeaseReclaim() {
+    if (leaseScheduler != null) {
+      return;
+    }
+    leaseScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+              @Override
+              public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PoolLocalServiceServer-lease");
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+    leaseScheduler.scheduleAtFixedRate(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              releaseExpiredLeases(null);
+            } catch (RuntimeException e) {
+              // the next reclaim will be attempted anyway
+              logger.error("Unable to reclaim the expired leases of the pool readers", e);
+            }
+          }
+        },
+        LEASE_RECLAIM_PERIOD,
+        LEASE_RECLAIM_PERIOD,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * (private)<br>
+   * Releases the readers whose lease has expired, i.e. the readers allocated by a client which did
+   * not renew their lease in time (e.g. a crashed client).
+   *
+   * <p>The sessions of the reclaimed leases are rejected during one more lease duration, the time
+   * for a client still alive to learn the revocation at its next renewal.
+   *
+   * @param groupReference group reference of the readers to reclaim, null to reclaim all groups
+   * @return true if at least one reader has been released
+   */
+  private boolean releaseExpiredLeases(String groupReference) {
+    boolean isReleased = false;
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, Long> revocation : revocationExpiryBySessionId.entrySet()) {
+      if (revocation.getValue() < now) {
+        revocationExpiryBySessionId.remove(revocation.getKey(), revocation.getValue());
+      }
+    }
+    for (Map.Entry<String, Lease> entry : leaseByReaderName.entrySet()) {
+      String readerName = entry.getKey();
+      Lease lease = entry.getValue();
+      if (lease.expiry < now
+          && (groupReference == null
+              || groupReference.equals(groupReferenceByReaderName.get(readerName)))
+          && leaseByReaderName.remove(readerName, lease)) {
+        logger.warn("The lease of the reader {} has expired, release it", readerName);
+        revocationExpiryBySessionId.put(lease.sessionId, now + lease.duration);
+        releaseReader(readerName);
+        isReleased = true;
+      }
+    }
+    return isReleased;
+  }
+
+  /**
+   * (private)<br>
+   * Renews the leases of the readers provided in the body of a RENEW_READER_LEASES message.
+   *
+   * <p>A lease is renewed only if it is still active and belongs to the provided allocation
+   * session.
+   *
+   * @param body non nullable json body containing the allocation session ids by local reader name
+   *     and the lease duration
+   * @return non nullable list of the provided reader names which are not leased anymore
+   */
+  private List<String> renewReaderLeases(String body) {
+    JsonObject renewRequestBody = KeypleGsonParser.getParser().fromJson(body, JsonObject.class);
+    long leaseDuration = renewRequestBody.get("leaseDuration").getAsLong();
+    Map<String, String> sessionIdByReaderNameToRenew =
+        KeypleGsonParser.getParser()
+            .fromJson(
+                renewRequestBody.get("sessionIdByLocalReaderName"),
+                new TypeToken<HashMap<String, String>>() {}.getType());
+    List<String> revokedReaderNames = new ArrayList<String>();
+    long expiry = System.currentTimeMillis() + leaseDuration;
+    for (Map.Entry<String, String> entry : sessionIdByReaderNameToRenew.entrySet()) {
+      String readerName = entry.getKey();
+      Lease lease = leaseByReaderName.get(readerName);
+      if (lease == null
+          || !lease.sessionId.equals(entry.getValue())
+          || !leaseByReaderName.replace(
+              readerName, lease, new Lease(lease.sessionId, leaseDuration, expiry))) {
+        revokedReaderNames.add(readerName);
+      }
+    }
+    return revokedReaderNames;
+  }
+
+  /**
+   * (private)<br>
+   * Gets or creates the allocation wait queue of a group.
+   *
+   * @param groupReference non nullable instance of a group reference
+   * @return non nullable queue, also used as the monitor of the group
+   */
+  private LinkedList<Object> getAllocationQueue(String groupReference) {
+    synchronized (allocationQueueByGroupReference) {
+      LinkedList<Object> allocationQueue = allocationQueueByGroupReference.get(groupReference);
+      if (allocationQueue == null) {
+        allocationQueue = new LinkedList<Object>();
+        allocationQueueByGroupReference.put(groupReference, allocationQueue);
+      }
+      return allocationQueue;
+    }
+  }
+
   /**
    * (private)<br>
    * Retrieve a pool plugin that contains a specific groupReference
    *
+   * <p>The group references are indexed by pool plugin, the index is rebuilt when a group reference
+   * is unknown in order to take into account the readers plugged since the last build.
+   *
    * @param groupReference non nullable instance of a group instance
    * @return non nullable instance of a pool plugin
    * @throws KeypleAllocationReaderException if no pool plugin containing group reference is found
    */
   private PoolPlugin getAPoolPlugin(String groupReference) {
-    for (String poolPluginName : poolPluginNames) {
-      PoolPlugin poolPlugin = (PoolPlugin) SmartCardService.getInstance().getPlugin(poolPluginName);
-      if (poolPlugin.getReaderGroupReferences().contains(groupReference)) {
-        return poolPlugin;
-      }
+    String poolPluginName = poolPluginNameByGroupReference.get(groupReference);
+    if (poolPluginName == null) {
+      getAllGroupReferences();
+      poolPluginName = poolPluginNameByGroupReference.get(groupReference);
+    }
+    if (poolPluginName != null) {
+      return (PoolPlugin) SmartCardService.getInstance().getPlugin(poolPluginName);
     }
     throw new KeypleAllocationReaderException(
         "No reader pool plugin containing group reference '"
@@ -151,27 +468,64 @@ final class PoolLocalServiceServerImpl extends AbstractLocalService
 
   /**
    * (private)<br>
-   * Concatenate group references of all registered pool plugins.
+   * Concatenate group references of all registered pool plugins and rebuild the group reference
+   * index.
    *
    * @return non nullable instance of a group references, can be empty
    */
   private SortedSet<String> getAllGroupReferences() {
     SortedSet<String> allGroupReferences = new TreeSet<String>();
+    Map<String, String> index = new HashMap<String, String>();
     for (String poolPluginName : poolPluginNames) {
       PoolPlugin poolPlugin = (PoolPlugin) SmartCardService.getInstance().getPlugin(poolPluginName);
-      allGroupReferences.addAll(poolPlugin.getReaderGroupReferences());
+      for (String groupReference : poolPlugin.getReaderGroupReferences()) {
+        allGroupReferences.add(groupReference);
+        if (!index.containsKey(groupReference)) {
+          index.put(groupReference, poolPluginName);
+        }
+      }
     }
+    poolPluginNameByGroupReference.keySet().retainAll(index.keySet());
+    poolPluginNameByGroupReference.putAll(index);
     return allGroupReferences;
   }
 
   /**
    * (private)<br>
-   * Release reader with given reader name
+   * Release reader with given reader name and wake up the allocation requests waiting for its
+   * group.
    *
    * @param readerName non nullable value of a reader name
    * @throws KeypleReaderNotFoundException if no reader is found with given reader name
    */
   private void releaseReader(String readerName) {
+    String poolPluginName = poolPluginNameByReaderName.remove(readerName);
+    String groupReference = groupReferenceByReaderName.remove(readerName);
+    sessionIdByReaderName.remove(readerName);
+    leaseByReaderName.remove(readerName);
+    if (poolPluginName != null) {
+      PoolPlugin poolPlugin = (PoolPlugin) SmartCardService.getInstance().getPlugin(poolPluginName);
+      poolPlugin.releaseReader(poolPlugin.getReader(readerName));
+    } else {
+      // the reader was not allocated by this service, search it
+      releaseUnindexedReader(readerName);
+    }
+    if (groupReference != null) {
+      LinkedList<Object> allocationQueue = getAllocationQueue(groupReference);
+      synchronized (allocationQueue) {
+        allocationQueue.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Release reader with given reader name by searching it in all pool plugins
+   *
+   * @param readerName non nullable value of a reader name
+   * @throws KeypleReaderNotFoundException if no reader is found with given reader name
+   */
+  private void releaseUnindexedReader(String readerName) {
     for (String poolPluginName : poolPluginNames) {
       PoolPlugin poolPlugin = (PoolPlugin) SmartCardService.getInstance().getPlugin(poolPluginName);
       if (poolPlugin.getReaderNames().contains(readerName)) {
@@ -191,6 +545,13 @@ final class PoolLocalServiceServerImpl extends AbstractLocalService
    * @throws KeypleReaderNotFoundException if no reader is found with this name
    */
   private ProxyReader findReader(String localReaderName) {
+    String indexedPoolPluginName =
+        localReaderName != null ? poolPluginNameByReaderName.get(localReaderName) : null;
+    if (indexedPoolPluginName != null) {
+      PoolPlugin plugin =
+          (PoolPlugin) SmartCardService.getInstance().getPlugin(indexedPoolPluginName);
+      return (ProxyReader) plugin.getReader(localReaderName);
+    }
     for (String poolPluginName : poolPluginNames) {
       PoolPlugin plugin = (PoolPlugin) SmartCardService.getInstance().getPlugin(poolPluginName);
       try {
@@ -201,4 +562,21 @@ final class PoolLocalServiceServerImpl extends AbstractLocalService
     }
     throw new KeypleReaderNotFoundException(localReaderName);
   }
+
+  /**
+   * (private)<br>
+   * Lease of a reader allocated to a client session.
+   */
+  private static final class Lease {
+
+    private final String sessionId;
+    private final long duration;
+    private final long expiry;
+
+    private Lease(String sessionId, long duration, long expiry) {
+      this.sessionId = sessionId;
+      this.duration = duration;
+      this.expiry = expiry;
+    }
+  }
 }
@@ -12,12 +12,14 @@
 package org.eclipse.keyple.distributed.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 import static org.mockito.Mockito.*;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import org.eclipse.keyple.core.card.message.*;
@@ -26,10 +28,12 @@ import org.eclipse.keyple.core.service.Plugin;
 import org.eclipse.keyple.core.service.PluginFactory;
 import org.eclipse.keyple.core.service.SmartCardService;
 import org.eclipse.keyple.core.service.event.ReaderEvent;
+import org.eclipse.keyple.core.util.json.BodyError;
 import org.eclipse.keyple.core.util.json.KeypleGsonParser;
 import org.eclipse.keyple.distributed.LocalServiceClient;
 import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.RemoteServiceParameters;
+import org.eclipse.keyple.distributed.RemoteServiceRejectedException;
 import org.eclipse.keyple.distributed.spi.AsyncEndpointClient;
 import org.eclipse.keyple.distributed.spi.DoNotPropagateEventException;
 import org.eclipse.keyple.distributed.spi.ObservableReaderEventFilter;
@@ -259,6 +263,50 @@ public class LocalServiceClientTest extends BaseLocalTest {
     assertThat(output).isNotNull().isEqualToComparingFieldByField(outputData);
   }
 
+  @Test
+  public void executeRemoteService_whenRejectedByTheServer_shouldThrowTheRejection() {
+    // init
+    final MessageDto[] request = new MessageDto[1];
+    syncClientEndpoint =
+        new SyncEndpointClient() {
+          @Override
+          public List<MessageDto> sendRequest(MessageDto msg) {
+            request[0] = msg;
+            return Collections.singletonList(
+                new MessageDto(msg)
+                    .setAction(MessageDto.Action.ERROR.name())
+                    .setServerNodeId("serverNodeId")
+                    .setBody(
+                        parser.toJson(
+                            new BodyError(new RemoteServiceRejectedException("saturated", 500)))));
+          }
+        };
+    LocalServiceClient localServiceClient =
+        LocalServiceClientFactory.builder()
+            .withServiceName(localServiceName)
+            .withSyncNode(syncClientEndpoint) //
+            .withReaderObservation(eventFilter) //
+            .getService();
+    RemoteServiceParameters params =
+        RemoteServiceParameters.builder(serviceId, observableReaderMocked) //
+            .withPriority(5) //
+            .build();
+
+    // test
+    try {
+      localServiceClient.executeRemoteService(params, MyKeypleUserData.class);
+      failBecauseExceptionWasNotThrown(RemoteServiceRejectedException.class);
+    } catch (RemoteServiceRejectedException e) {
+      // the retry-after hint of the server is transmitted
+      assertThat(e.getRetryAfterInMillis()).isEqualTo(500);
+    }
+
+    // verify the priority of the request and that no remote reader is registered
+    JsonObject body = parser.fromJson(request[0].getBody(), JsonObject.class);
+    assertThat(body.get("priority").getAsInt()).isEqualTo(5);
+    assertThat(getMapOfRemoteReaderByLocalName(localServiceClient)).isEmpty();
+  }
+
   @Test
   public void onUpdate_doNotPropagateEvent() {
     // init
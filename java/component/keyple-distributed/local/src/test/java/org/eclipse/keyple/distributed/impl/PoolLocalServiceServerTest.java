@@ -16,12 +16,16 @@ import static org.mockito.Mockito.*;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 import org.assertj.core.util.Sets;
 import org.eclipse.keyple.core.service.Plugin;
 import org.eclipse.keyple.core.service.PluginFactory;
 import org.eclipse.keyple.core.service.PoolPlugin;
 import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.core.service.exception.KeypleAllocationNoReaderException;
 import org.eclipse.keyple.core.service.exception.KeypleAllocationReaderException;
 import org.eclipse.keyple.core.service.exception.KeyplePluginNotFoundException;
 import org.eclipse.keyple.core.service.exception.KeypleReaderNotFoundException;
@@ -180,6 +184,131 @@ public class PoolLocalServiceServerTest extends BaseLocalTest {
     assertThat(e).isEqualToComparingFieldByFieldRecursively(getExceptionFromDto(response));
   }
 
+  @Test
+  public void onAllocateReader_twice_shouldUse_groupReferenceIndex() {
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(getAllocateReaderDto());
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(getAllocateReaderDto());
+    verify(asyncServer, times(2)).sendMessage(any(MessageDto.class));
+    verify(poolPluginMock, times(1)).getReaderGroupReferences();
+    verify(poolPluginMock, times(2)).allocateReader(groupReference);
+  }
+
+  @Test
+  public void onAllocateReader_whenGroupExhausted_shouldWaitForAReader() {
+    service.setAllocationTimeout(2000);
+    doThrow(new KeypleAllocationNoReaderException(""))
+        .doReturn(readerMocked)
+        .when(poolPluginMock)
+        .allocateReader(groupReference);
+    MessageDto request = getAllocateReaderDto();
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(getAllocateReaderDto());
+    response = captureResponse();
+    assertMetadataMatches(request, response);
+    assertThat(response.getAction()).isEqualTo(MessageDto.Action.ALLOCATE_READER.name());
+    assertThat(response.getLocalReaderName()).isEqualTo(readerMocked.getName());
+  }
+
+  @Test
+  public void onAllocateReader_whenGroupExhaustedAfterTimeout_shouldPropagate_NoReaderException() {
+    service.setAllocationTimeout(200);
+    doThrow(new KeypleAllocationNoReaderException(""))
+        .when(poolPluginMock)
+        .allocateReader(groupReference);
+    MessageDto request = getAllocateReaderDto();
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(getAllocateReaderDto());
+    response = captureResponse();
+    assertMetadataMatches(request, response);
+    assertThat(getExceptionFromDto(response))
+        .isInstanceOf(KeypleAllocationNoReaderException.class);
+  }
+
+  @Test
+  public void onAllocateReader_whenGroupExhausted_shouldRelease_expiredLeases() throws Exception {
+    doReturn(readerMocked)
+        .doThrow(new KeypleAllocationNoReaderException(""))
+        .doReturn(readerMocked)
+        .when(poolPluginMock)
+        .allocateReader(groupReference);
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getAllocateReaderDto().setBody(getAllocateReaderBody(1)));
+    Thread.sleep(10);
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getAllocateReaderDto().setBody(getAllocateReaderBody(1)));
+    verify(poolPluginMock, times(1)).releaseReader(readerMocked);
+    verify(asyncServer, times(2)).sendMessage(responseCaptor.capture());
+    assertThat(responseCaptor.getValue().getAction())
+        .isEqualTo(MessageDto.Action.ALLOCATE_READER.name());
+  }
+
+  @Test
+  public void onRenewReaderLeases_shouldRevoke_readersNotLeased() {
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getAllocateReaderDto().setBody(getAllocateReaderBody(60000)));
+    Map<String, String> sessionIdByLocalReaderName = new HashMap<String, String>();
+    sessionIdByLocalReaderName.put(readerName, sessionId);
+    sessionIdByLocalReaderName.put("unknownReader", sessionId);
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getRenewReaderLeasesDto(sessionIdByLocalReaderName));
+    verify(asyncServer, times(2)).sendMessage(responseCaptor.capture());
+    assertThat(getRevokedReaderNamesFromDto(responseCaptor.getValue()))
+        .containsExactly("unknownReader");
+  }
+
+  @Test
+  public void onRenewReaderLeases_withAnotherSession_shouldRevoke_lease() {
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getAllocateReaderDto().setBody(getAllocateReaderBody(60000)));
+    Map<String, String> sessionIdByLocalReaderName = new HashMap<String, String>();
+    sessionIdByLocalReaderName.put(readerName, "anotherSession");
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getRenewReaderLeasesDto(sessionIdByLocalReaderName));
+    verify(asyncServer, times(2)).sendMessage(responseCaptor.capture());
+    assertThat(getRevokedReaderNamesFromDto(responseCaptor.getValue())).containsExactly(readerName);
+  }
+
+  @Test
+  public void onTransmit_fromAnotherSession_shouldThrow_KARE() {
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(getAllocateReaderDto());
+    MessageDto request = getIsCardPresentDto("anotherSession").setLocalReaderName(readerName);
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(request);
+    verify(asyncServer, times(2)).sendMessage(responseCaptor.capture());
+    assertMetadataMatches(request, responseCaptor.getValue());
+    assertThat(getExceptionFromDto(responseCaptor.getValue()))
+        .isInstanceOf(KeypleAllocationReaderException.class);
+    verify(readerMocked, never()).isCardPresent();
+  }
+
+  @Test
+  public void onReleaseReader_fromReclaimedSession_shouldThrow_KARE() throws Exception {
+    doReturn(readerMocked)
+        .doThrow(new KeypleAllocationNoReaderException(""))
+        .doReturn(readerMocked)
+        .when(poolPluginMock)
+        .allocateReader(groupReference);
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getAllocateReaderDto().setBody(getAllocateReaderBody(1)));
+    Thread.sleep(10);
+    // the expired lease is reclaimed and the reader is allocated to another session
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(
+            getAllocateReaderDto()
+                .setSessionId("anotherSession")
+                .setBody(getAllocateReaderBody(60000)));
+    MessageDto request = getReleaseReaderDto();
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(request);
+    verify(asyncServer, times(3)).sendMessage(responseCaptor.capture());
+    assertThat(getExceptionFromDto(responseCaptor.getValue()))
+        .isInstanceOf(KeypleAllocationReaderException.class);
+    verify(poolPluginMock, times(1)).releaseReader(readerMocked);
+  }
+
+  @Test
+  public void expiredLease_shouldBe_reclaimedPeriodically() {
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName)
+        .onMessage(getAllocateReaderDto().setBody(getAllocateReaderBody(1)));
+    verify(poolPluginMock, timeout(5000).times(1)).releaseReader(readerMocked);
+  }
+
   @Test
   public void onAllocateReader_withNoPlugin_shouldThrow_KPNFE() {
     SmartCardService.getInstance().unregisterPlugin(poolPluginName);
@@ -198,6 +327,14 @@ public class PoolLocalServiceServerTest extends BaseLocalTest {
     verify(poolPluginMock, times(1)).releaseReader(readerMocked);
   }
 
+  @Test
+  public void onReleaseReader_afterAllocation_shouldUse_readerIndex() {
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(getAllocateReaderDto());
+    PoolLocalServiceServerUtils.getAsyncNode(localServiceName).onMessage(getReleaseReaderDto());
+    verify(poolPluginMock, times(1)).releaseReader(readerMocked);
+    verify(poolPluginMock, never()).getReaderNames();
+  }
+
   @Test
   public void onReleaseReader_withNoPlugin_shouldThrow_KPNFE() {
     doReturn(Sets.newTreeSet()).when(poolPluginMock).getReaderNames();
@@ -285,6 +422,13 @@ public class PoolLocalServiceServerTest extends BaseLocalTest {
         .setBody(body.toString());
   }
 
+  private String getAllocateReaderBody(long leaseDuration) {
+    JsonObject body = new JsonObject();
+    body.addProperty("groupReference", groupReference);
+    body.addProperty("leaseDuration", leaseDuration);
+    return body.toString();
+  }
+
   private MessageDto getReleaseReaderDto() {
     return new MessageDto()
         .setAction(MessageDto.Action.RELEASE_READER.name())
@@ -295,6 +439,28 @@ public class PoolLocalServiceServerTest extends BaseLocalTest {
         .setBody(null);
   }
 
+  private MessageDto getRenewReaderLeasesDto(Map<String, String> sessionIdByLocalReaderName) {
+    JsonObject body = new JsonObject();
+    body.add(
+        "sessionIdByLocalReaderName",
+        KeypleGsonParser.getParser().toJsonTree(sessionIdByLocalReaderName));
+    body.addProperty("leaseDuration", 60000);
+    return new MessageDto()
+        .setAction(MessageDto.Action.RENEW_READER_LEASES.name())
+        .setClientNodeId(clientNodeId)
+        .setSessionId("renewSession")
+        .setBody(body.toString());
+  }
+
+  private List<String> getRevokedReaderNamesFromDto(MessageDto response) {
+    return KeypleGsonParser.getParser()
+        .fromJson(
+            KeypleGsonParser.getParser()
+                .fromJson(response.getBody(), JsonObject.class)
+                .get("revokedLocalReaderNames"),
+            List.class);
+  }
+
   private MessageDto getGroupReferencesDto() {
     return new MessageDto()
         .setAction(MessageDto.Action.GET_READER_GROUP_REFERENCES.name())
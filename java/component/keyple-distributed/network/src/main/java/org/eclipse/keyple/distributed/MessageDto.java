@@ -36,6 +36,12 @@ public class MessageDto {
   private String localReaderName;
   private String remoteReaderName;
   private String body;
+  private String contentEncoding;
+  private String acceptEncoding;
+  private String traceId;
+  private Long sentTimestamp;
+  private Long receivedTimestamp;
+  private Long handledTimestamp;
 
   /**
    * Action enum (for internal use only).
@@ -61,6 +67,7 @@ public class MessageDto {
     ALLOCATE_READER,
     RELEASE_READER,
     GET_READER_GROUP_REFERENCES,
+    RENEW_READER_LEASES,
     ERROR
   }
 
@@ -85,6 +92,12 @@ public class MessageDto {
     localReaderName = from.getLocalReaderName();
     remoteReaderName = from.getRemoteReaderName();
     body = from.getBody();
+    contentEncoding = from.getContentEncoding();
+    acceptEncoding = from.getAcceptEncoding();
+    traceId = from.getTraceId();
+    sentTimestamp = from.getSentTimestamp();
+    receivedTimestamp = from.getReceivedTimestamp();
+    handledTimestamp = from.getHandledTimestamp();
   }
 
   /**
@@ -246,4 +259,143 @@ public class MessageDto {
     this.body = body;
     return this;
   }
+
+  /**
+   * Gets the name of the compression algorithm applied to the body (e.g. "deflate").
+   *
+   * @return a null string if the body is not compressed.
+   * @since 1.0
+   */
+  public final String getContentEncoding() {
+    return contentEncoding;
+  }
+
+  /**
+   * This setter method must only be used during the deserialization process.
+   *
+   * @param contentEncoding The content encoding to set.
+   * @return the object instance.
+   * @since 1.0
+   */
+  public final MessageDto setContentEncoding(String contentEncoding) {
+    this.contentEncoding = contentEncoding;
+    return this;
+  }
+
+  /**
+   * Gets the name of the compression algorithm supported by the client node which sent the
+   * message.<br>
+   * The server node uses it to know if it can compress the bodies of the messages it sends back to
+   * this client node.
+   *
+   * @return a null string if the client node does not accept compressed bodies.
+   * @since 1.0
+   */
+  public final String getAcceptEncoding() {
+    return acceptEncoding;
+  }
+
+  /**
+   * This setter method must only be used during the deserialization process.
+   *
+   * @param acceptEncoding The accepted encoding to set.
+   * @return the object instance.
+   * @since 1.0
+   */
+  public final MessageDto setAcceptEncoding(String acceptEncoding) {
+    this.acceptEncoding = acceptEncoding;
+    return this;
+  }
+
+  /**
+   * Gets the trace id shared by all the messages of a traced exchange.<br>
+   * It is set only if the latency tracing is activated on the client node.
+   *
+   * @return a null string if the message is not traced.
+   * @since 1.0
+   */
+  public final String getTraceId() {
+    return traceId;
+  }
+
+  /**
+   * This setter method must only be used during the deserialization process.
+   *
+   * @param traceId The trace id to set.
+   * @return the object instance.
+   * @since 1.0
+   */
+  public final MessageDto setTraceId(String traceId) {
+    this.traceId = traceId;
+    return this;
+  }
+
+  /**
+   * Gets the time (in milliseconds since epoch) at which the message was transmitted by the sender
+   * node to its endpoint.
+   *
+   * @return null if the message is not traced.
+   * @since 1.0
+   */
+  public final Long getSentTimestamp() {
+    return sentTimestamp;
+  }
+
+  /**
+   * This setter method must only be used during the deserialization process.
+   *
+   * @param sentTimestamp The timestamp to set.
+   * @return the object instance.
+   * @since 1.0
+   */
+  public final MessageDto setSentTimestamp(Long sentTimestamp) {
+    this.sentTimestamp = sentTimestamp;
+    return this;
+  }
+
+  /**
+   * Gets the time (in milliseconds since epoch) at which the message was received by the recipient
+   * node from its endpoint.
+   *
+   * @return null if the message is not traced or not yet received.
+   * @since 1.0
+   */
+  public final Long getReceivedTimestamp() {
+    return receivedTimestamp;
+  }
+
+  /**
+   * This setter method must only be used during the deserialization process.
+   *
+   * @param receivedTimestamp The timestamp to set.
+   * @return the object instance.
+   * @since 1.0
+   */
+  public final MessageDto setReceivedTimestamp(Long receivedTimestamp) {
+    this.receivedTimestamp = receivedTimestamp;
+    return this;
+  }
+
+  /**
+   * Gets the time (in milliseconds since epoch) at which the message was dispatched by the
+   * recipient node to its handler or to the task awaiting it.
+   *
+   * @return null if the message is not traced or not yet handled.
+   * @since 1.0
+   */
+  public final Long getHandledTimestamp() {
+    return handledTimestamp;
+  }
+
+  /**
+   * This setter method must only be used during the deserialization process.
+   *
+   * @param handledTimestamp The timestamp to set.
+   * @return the object instance.
+   * @since 1.0
+   */
+  public final MessageDto setHandledTimestamp(Long handledTimestamp) {
+    this.handledTimestamp = handledTimestamp;
+    return this;
+  }
 }
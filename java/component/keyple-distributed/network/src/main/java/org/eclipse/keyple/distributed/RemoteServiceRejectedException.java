@@ -0,0 +1,47 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed;
+
+import org.eclipse.keyple.core.service.exception.KeypleException;
+
+/**
+ * This exception is thrown when a remote service execution is rejected by the admission control of
+ * the server because it is saturated.
+ *
+ * <p>The client can retry the execution later, after the delay suggested by the server.
+ *
+ * @since 1.0
+ */
+public class RemoteServiceRejectedException extends KeypleException {
+
+  private final int retryAfterInMillis;
+
+  /**
+   * @param message The message to identify the exception context.
+   * @param retryAfterInMillis The delay suggested by the server before retrying.
+   * @since 1.0
+   */
+  public RemoteServiceRejectedException(String message, int retryAfterInMillis) {
+    super(message);
+    this.retryAfterInMillis = retryAfterInMillis;
+  }
+
+  /**
+   * Gets the delay suggested by the server before retrying the remote service execution.
+   *
+   * @return a positive number of milliseconds.
+   * @since 1.0
+   */
+  public int getRetryAfterInMillis() {
+    return retryAfterInMillis;
+  }
+}
@@ -11,6 +11,7 @@
  ************************************************************************************** */
 package org.eclipse.keyple.distributed.impl;
 
+import java.util.Map;
 import java.util.UUID;
 import org.eclipse.keyple.core.util.json.BodyError;
 import org.eclipse.keyple.core.util.json.KeypleGsonParser;
@@ -109,6 +110,41 @@ abstract class AbstractMessageHandler {
     node = new SyncNodeServerImpl(this, 20);
   }
 
+  /**
+   * (package-private)<br>
+   * Activates the compression of the message bodies on the bound client node.<br>
+   * It must be invoked by the factory during the initialization phase, after the node binding.
+   *
+   * @param thresholdInBytes The size (in bytes) above which a body is compressed.
+   * @since 1.0
+   */
+  void activateNodeCompression(int thresholdInBytes) {
+    node.activateCompression(thresholdInBytes);
+  }
+
+  /**
+   * (package-private)<br>
+   * Activates the latency tracing of the messages on the bound client node.<br>
+   * It must be invoked by the factory during the initialization phase, after the node binding.
+   *
+   * @since 1.0
+   */
+  void activateNodeLatencyTracing() {
+    node.activateLatencyTracing();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets a snapshot of the latency histograms recorded by the bound node, by phase and by action
+   * (key format : "PHASE/ACTION").
+   *
+   * @return a not null map.
+   * @since 1.0
+   */
+  Map<String, LatencyHistogram> getLatencyHistograms() {
+    return node.tracer.getHistograms();
+  }
+
   /**
    * (package-private)<br>
    * If message contains an error, throws the embedded exception.
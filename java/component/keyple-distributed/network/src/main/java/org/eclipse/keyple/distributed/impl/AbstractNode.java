@@ -51,6 +51,41 @@ abstract class AbstractNode {
    */
   private final int timeout;
 
+  /**
+   * (package-private)<br>
+   * The compressor of the message bodies.
+   *
+   * @since 1.0
+   */
+  volatile MessageBodyCompressor compressor;
+
+  /**
+   * (private)<br>
+   * Indicates if the node compresses the bodies of the messages it sends (client node only).
+   */
+  private volatile boolean isCompressionActivated;
+
+  /**
+   * (private)<br>
+   * Indicates if the last message received from the server advertised that the server accepts
+   * compressed bodies (client node only).
+   */
+  private volatile boolean isCompressionAcceptedByServer;
+
+  /**
+   * (package-private)<br>
+   * The latency tracer of the traced messages.
+   *
+   * @since 1.0
+   */
+  final MessageLatencyTracer tracer;
+
+  /**
+   * (private)<br>
+   * Indicates if the node initiates the tracing of the messages it sends (client node only).
+   */
+  private boolean isLatencyTracingActivated;
+
   /**
    * (package-private)<br>
    *
@@ -62,6 +97,127 @@ abstract class AbstractNode {
     this.nodeId = UUID.randomUUID().toString();
     this.handler = handler;
     this.timeout = timeoutInSecond * 1000;
+    this.compressor = new MessageBodyCompressor(MessageBodyCompressor.DEFAULT_THRESHOLD);
+    this.isCompressionActivated = false;
+    this.isCompressionAcceptedByServer = false;
+    this.tracer = new MessageLatencyTracer();
+    this.isLatencyTracingActivated = false;
+  }
+
+  /**
+   * (package-private)<br>
+   * Activates the compression of the message bodies exchanged with the server (client node only).
+   *
+   * <p>The node then indicates to the server in each message that it accepts compressed bodies.
+   * Once the server has advertised in its messages that it accepts them too, the node compresses
+   * the bodies of the messages it sends when their size exceeds the provided threshold.
+   *
+   * @param thresholdInBytes The size (in bytes) above which a body is compressed.
+   * @since 1.0
+   */
+  void activateCompression(int thresholdInBytes) {
+    this.compressor = new MessageBodyCompressor(thresholdInBytes);
+    this.isCompressionActivated = true;
+  }
+
+  /**
+   * (package-private)<br>
+   * Activates the latency tracing of the messages exchanged with the server (client node only).
+   *
+   * <p>The node then assigns a trace id to each message it sends, which is propagated by the
+   * server to all the messages of the same exchange. Both nodes timestamp the traced messages and
+   * record the latencies of each phase by action.
+   *
+   * @since 1.0
+   */
+  void activateLatencyTracing() {
+    this.isLatencyTracingActivated = true;
+  }
+
+  /**
+   * (package-private)<br>
+   * Prepares a message to be sent by a client node to the server : timestamps it if the latency
+   * tracing is activated, and if the compression is activated, then indicates that compressed
+   * bodies are accepted and compresses the body if needed and if the server accepts compressed
+   * bodies.
+   *
+   * @param msg The message to prepare (must be not null).
+   * @return a not null reference.
+   * @since 1.0
+   */
+  MessageDto prepareClientMessage(MessageDto msg) {
+    tracer.onSend(msg, isLatencyTracingActivated);
+    if (!isCompressionActivated) {
+      return msg;
+    }
+    msg.setAcceptEncoding(MessageBodyCompressor.DEFLATE);
+    return isCompressionAcceptedByServer ? compressor.compress(msg) : msg;
+  }
+
+  /**
+   * (package-private)<br>
+   * Reads a message received by a client node from the server : records whether the server
+   * accepts compressed bodies if the compression is activated, then decompresses the body if
+   * needed.
+   *
+   * @param msg The received message (must be not null).
+   * @return a not null reference.
+   * @throws IllegalArgumentException if the encoding is not supported or the body is corrupted.
+   * @since 1.0
+   */
+  MessageDto readServerMessage(MessageDto msg) {
+    if (isCompressionActivated) {
+      isCompressionAcceptedByServer = isCompressionAccepted(msg);
+    }
+    return compressor.decompress(msg);
+  }
+
+  /**
+   * (package-private)<br>
+   * Prepares a message to be sent by a server node to a client : timestamps it if it is traced,
+   * and if the client accepts compressed bodies, then indicates that compressed bodies are
+   * accepted too and compresses the body if needed.
+   *
+   * @param msg The message to prepare (must be not null).
+   * @param isCompressionAccepted true if the client accepts compressed bodies.
+   * @return a not null reference.
+   * @since 1.0
+   */
+  MessageDto prepareServerMessage(MessageDto msg, boolean isCompressionAccepted) {
+    tracer.onSend(msg, false);
+    if (!isCompressionAccepted) {
+      return msg;
+    }
+    msg.setAcceptEncoding(MessageBodyCompressor.DEFLATE);
+    return compressor.compress(msg);
+  }
+
+  /**
+   * (package-private)<br>
+   * Dispatches a received message to the handler, recording the queue and handling latencies if
+   * the message is traced.
+   *
+   * @param msg The message to dispatch (must be not null).
+   * @since 1.0
+   */
+  void dispatchToHandler(MessageDto msg) {
+    tracer.onHandle(msg);
+    long start = System.nanoTime();
+    handler.onMessage(msg);
+    tracer.record(MessageLatencyTracer.Phase.HANDLING, msg, start);
+  }
+
+  /**
+   * (package-private)<br>
+   * Checks if the provided message received from a client indicates that the client accepts
+   * compressed bodies.
+   *
+   * @param msg The received message (must be not null).
+   * @return true if the client accepts compressed bodies.
+   * @since 1.0
+   */
+  static boolean isCompressionAccepted(MessageDto msg) {
+    return MessageBodyCompressor.DEFLATE.equals(msg.getAcceptEncoding());
   }
 
   /**
@@ -178,6 +334,14 @@ abstract class AbstractNode {
      */
     Throwable error;
 
+    /**
+     * (package-private)<br>
+     * The trace id of the last traced message received in this session (server node only).
+     *
+     * @since 1.0
+     */
+    volatile String traceId;
+
     /**
      * (package-private)<br>
      * Constructor
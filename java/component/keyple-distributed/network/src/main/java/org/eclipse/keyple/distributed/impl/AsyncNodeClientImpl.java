@@ -85,7 +85,10 @@ final class AsyncNodeClientImpl extends AbstractNode implements AsyncNodeClient
   MessageDto sendRequest(MessageDto msg) {
     msg.setClientNodeId(nodeId);
     SessionManager manager = sessionManagers.get(msg.getSessionId());
-    return manager.sendRequest(msg);
+    long start = System.nanoTime();
+    MessageDto response = manager.sendRequest(prepareClientMessage(msg));
+    tracer.record(MessageLatencyTracer.Phase.ROUND_TRIP, msg, start);
+    return response;
   }
 
   /**
@@ -97,7 +100,7 @@ final class AsyncNodeClientImpl extends AbstractNode implements AsyncNodeClient
   void sendMessage(MessageDto msg) {
     msg.setClientNodeId(nodeId);
     SessionManager manager = sessionManagers.get(msg.getSessionId());
-    manager.sendMessage(msg);
+    manager.sendMessage(prepareClientMessage(msg));
   }
 
   /**
@@ -117,14 +120,16 @@ final class AsyncNodeClientImpl extends AbstractNode implements AsyncNodeClient
 
     SessionManager manager = getManagerForEndpoint(msg.getSessionId());
     if (manager != null) {
-      MessageDto.Action action = MessageDto.Action.valueOf(msg.getAction());
+      MessageDto message = readServerMessage(msg);
+      tracer.onReceive(message);
+      MessageDto.Action action = MessageDto.Action.valueOf(message.getAction());
       switch (action) {
         case PLUGIN_EVENT:
         case READER_EVENT:
-          manager.onEvent(msg);
+          manager.onEvent(message);
           break;
         default:
-          manager.onResponse(msg);
+          manager.onResponse(message);
       }
     }
   }
@@ -266,6 +271,7 @@ final class AsyncNodeClientImpl extends AbstractNode implements AsyncNodeClient
      */
     private synchronized void onResponse(MessageDto msg) {
       checkState(SessionManagerState.SEND_REQUEST_BEGIN);
+      tracer.onHandle(msg);
       response = msg;
       state = SessionManagerState.SEND_REQUEST_END;
       notifyAll();
@@ -278,7 +284,7 @@ final class AsyncNodeClientImpl extends AbstractNode implements AsyncNodeClient
      * @param msg The event received from the endpoint.
      */
     private void onEvent(MessageDto msg) {
-      handler.onMessage(msg);
+      dispatchToHandler(msg);
     }
 
     /**
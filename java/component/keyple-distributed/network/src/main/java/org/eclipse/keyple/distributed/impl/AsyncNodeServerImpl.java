@@ -66,7 +66,13 @@ final class AsyncNodeServerImpl extends AbstractNode implements AsyncNodeServer
   MessageDto sendRequest(MessageDto msg) {
     msg.setServerNodeId(nodeId);
     SessionManager manager = getManagerForHandler(msg.getSessionId());
-    return manager.sendRequest(msg);
+    if (msg.getTraceId() == null) {
+      msg.setTraceId(manager.traceId);
+    }
+    long start = System.nanoTime();
+    MessageDto response = manager.sendRequest(msg);
+    tracer.record(MessageLatencyTracer.Phase.ROUND_TRIP, msg, start);
+    return response;
   }
 
   /**
@@ -78,6 +84,9 @@ final class AsyncNodeServerImpl extends AbstractNode implements AsyncNodeServer
   void sendMessage(MessageDto msg) {
     msg.setServerNodeId(nodeId);
     SessionManager manager = getManagerForHandler(msg.getSessionId());
+    if (msg.getTraceId() == null) {
+      msg.setTraceId(manager.traceId);
+    }
     manager.sendMessage(msg);
   }
 
@@ -121,13 +130,20 @@ final class AsyncNodeServerImpl extends AbstractNode implements AsyncNodeServer
         .notEmpty(msg.getAction(), "action") //
         .notEmpty(msg.getClientNodeId(), "clientNodeId");
 
+    MessageDto message = compressor.decompress(msg);
+    tracer.onReceive(message);
+
     // Get or create a new session manager
-    SessionManager manager = sessionManagers.get(msg.getSessionId());
+    SessionManager manager = sessionManagers.get(message.getSessionId());
     if (manager == null) {
-      manager = new SessionManager(msg.getSessionId());
-      sessionManagers.put(msg.getSessionId(), manager);
+      manager = new SessionManager(message.getSessionId());
+      sessionManagers.put(message.getSessionId(), manager);
+    }
+    manager.isCompressionAccepted = isCompressionAccepted(message);
+    if (message.getTraceId() != null) {
+      manager.traceId = message.getTraceId();
     }
-    manager.onMessage(msg);
+    manager.onMessage(message);
   }
 
   /**
@@ -162,6 +178,12 @@ final class AsyncNodeServerImpl extends AbstractNode implements AsyncNodeServer
    */
   private class SessionManager extends AbstractSessionManager {
 
+    /**
+     * (private)<br>
+     * Indicates if the client accepts compressed bodies.
+     */
+    private volatile boolean isCompressionAccepted;
+
     /**
      * (private)<br>
      * Constructor
@@ -200,12 +222,13 @@ final class AsyncNodeServerImpl extends AbstractNode implements AsyncNodeServer
           SessionManagerState.SEND_REQUEST_END, //
           SessionManagerState.SEND_MESSAGE);
       if (state == SessionManagerState.SEND_REQUEST_BEGIN) {
+        tracer.onHandle(msg);
         response = msg;
         state = SessionManagerState.SEND_REQUEST_END;
         notifyAll();
       } else {
         state = SessionManagerState.ON_MESSAGE;
-        handler.onMessage(msg);
+        dispatchToHandler(msg);
       }
     }
 
@@ -220,7 +243,7 @@ final class AsyncNodeServerImpl extends AbstractNode implements AsyncNodeServer
       checkIfExternalErrorOccurred();
       state = SessionManagerState.SEND_REQUEST_BEGIN;
       response = null;
-      endpoint.sendMessage(msg);
+      endpoint.sendMessage(prepareServerMessage(msg, isCompressionAccepted));
       waitForState(SessionManagerState.SEND_REQUEST_END);
       return response;
     }
@@ -234,7 +257,7 @@ final class AsyncNodeServerImpl extends AbstractNode implements AsyncNodeServer
     private synchronized void sendMessage(MessageDto msg) {
       checkIfExternalErrorOccurred();
       state = SessionManagerState.SEND_MESSAGE;
-      endpoint.sendMessage(msg);
+      endpoint.sendMessage(prepareServerMessage(msg, isCompressionAccepted));
       checkIfExternalErrorOccurred();
     }
 
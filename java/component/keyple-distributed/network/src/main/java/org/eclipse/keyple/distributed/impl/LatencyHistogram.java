@@ -0,0 +1,158 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * (package-private)<br>
+ * Latency Histogram.
+ *
+ * <p>Thread-safe histogram of latencies expressed in microseconds, using exponential buckets : the
+ * bucket {@code i} contains the values between {@code 2^i} (inclusive) and {@code 2^(i+1)}
+ * (exclusive). The percentiles are therefore approximated by the upper bound of their bucket.
+ *
+ * @since 1.0
+ */
+final class LatencyHistogram {
+
+  private static final int NB_BUCKETS = 32;
+
+  private final AtomicLongArray buckets;
+  private final AtomicLong count;
+  private final AtomicLong totalMicros;
+  private final AtomicLong maxMicros;
+
+  /**
+   * (package-private)<br>
+   *
+   * @since 1.0
+   */
+  LatencyHistogram() {
+    this.buckets = new AtomicLongArray(NB_BUCKETS);
+    this.count = new AtomicLong();
+    this.totalMicros = new AtomicLong();
+    this.maxMicros = new AtomicLong();
+  }
+
+  /**
+   * (package-private)<br>
+   * Records a latency.
+   *
+   * @param micros The latency in microseconds (negative values are recorded as 0).
+   * @since 1.0
+   */
+  void record(long micros) {
+    long value = micros > 0 ? micros : 0;
+    buckets.incrementAndGet(getBucketIndex(value));
+    count.incrementAndGet();
+    totalMicros.addAndGet(value);
+    long max = maxMicros.get();
+    while (value > max && !maxMicros.compareAndSet(max, value)) {
+      max = maxMicros.get();
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of recorded latencies.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  long getCount() {
+    return count.get();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the mean latency in microseconds.
+   *
+   * @return 0 if no latency was recorded.
+   * @since 1.0
+   */
+  long getMeanMicros() {
+    long nb = count.get();
+    return nb == 0 ? 0 : totalMicros.get() / nb;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the max latency in microseconds.
+   *
+   * @return 0 if no latency was recorded.
+   * @since 1.0
+   */
+  long getMaxMicros() {
+    return maxMicros.get();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets an approximation by excess of the provided percentile in microseconds.
+   *
+   * @param percentile The percentile (between 0 and 100).
+   * @return 0 if no latency was recorded.
+   * @since 1.0
+   */
+  long getPercentileMicros(double percentile) {
+    long nb = count.get();
+    if (nb == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(nb * percentile / 100);
+    long cumulated = 0;
+    for (int i = 0; i < NB_BUCKETS; i++) {
+      cumulated += buckets.get(i);
+      if (cumulated >= rank) {
+        return Math.min(1L << (i + 1), maxMicros.get());
+      }
+    }
+    return maxMicros.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public String toString() {
+    return "count="
+        + getCount()
+        + ", mean="
+        + getMeanMicros()
+        + "us, p50="
+        + getPercentileMicros(50)
+        + "us, p99="
+        + getPercentileMicros(99)
+        + "us, max="
+        + getMaxMicros()
+        + "us";
+  }
+
+  /**
+   * (private)<br>
+   * Gets the index of the bucket containing the provided value.
+   *
+   * @param micros A positive value.
+   * @return an index between 0 and {@link #NB_BUCKETS} - 1.
+   */
+  private static int getBucketIndex(long micros) {
+    if (micros < 2) {
+      return 0;
+    }
+    int index = 63 - Long.numberOfLeadingZeros(micros);
+    return index < NB_BUCKETS ? index : NB_BUCKETS - 1;
+  }
+}
@@ -0,0 +1,353 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.eclipse.keyple.distributed.MessageDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * (package-private)<br>
+ * Message Body Compressor.
+ *
+ * <p>Compresses the body of the {@link MessageDto} using the <b>deflate</b> algorithm when its size
+ * exceeds a threshold, and decompresses the compressed bodies received from the peer node.
+ *
+ * <p>The compressed body is encoded in Base64 in order to remain a valid JSON string value. The
+ * body is sent uncompressed if the compression does not reduce its size.
+ *
+ * <p>It also keeps statistics about the compression ratio and the CPU time spent.
+ *
+ * @since 1.0
+ */
+final class MessageBodyCompressor {
+
+  private static final Logger logger = LoggerFactory.getLogger(MessageBodyCompressor.class);
+
+  /**
+   * (package-private)<br>
+   * The name of the deflate encoding.
+   *
+   * @since 1.0
+   */
+  static final String DEFLATE = "deflate";
+
+  /**
+   * (package-private)<br>
+   * The default threshold (in bytes) above which a body is compressed.
+   *
+   * @since 1.0
+   */
+  static final int DEFAULT_THRESHOLD = 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final char[] BASE64_CHARS =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+  private static final int[] BASE64_VALUES = new int[128];
+
+  static {
+    for (int i = 0; i < BASE64_VALUES.length; i++) {
+      BASE64_VALUES[i] = -1;
+    }
+    for (int i = 0; i < BASE64_CHARS.length; i++) {
+      BASE64_VALUES[BASE64_CHARS[i]] = i;
+    }
+  }
+
+  private final int threshold;
+  private final AtomicLong compressedMessages;
+  private final AtomicLong originalBytes;
+  private final AtomicLong compressedBytes;
+  private final AtomicLong compressionTimeNanos;
+  private final AtomicLong decompressedMessages;
+  private final AtomicLong decompressionTimeNanos;
+
+  /**
+   * (package-private)<br>
+   *
+   * @param threshold The size (in bytes) above which a body is compressed.
+   * @since 1.0
+   */
+  MessageBodyCompressor(int threshold) {
+    this.threshold = threshold;
+    this.compressedMessages = new AtomicLong();
+    this.originalBytes = new AtomicLong();
+    this.compressedBytes = new AtomicLong();
+    this.compressionTimeNanos = new AtomicLong();
+    this.decompressedMessages = new AtomicLong();
+    this.decompressionTimeNanos = new AtomicLong();
+  }
+
+  /**
+   * (package-private)<br>
+   * Compresses the body of the provided message if its size in bytes (UTF-8) exceeds the
+   * threshold.
+   *
+   * @param msg The message to compress (must be not null).
+   * @return The provided message if the body was not compressed, otherwise a copy of the message
+   *     containing the compressed body.
+   * @since 1.0
+   */
+  MessageDto compress(MessageDto msg) {
+
+    String body = msg.getBody();
+    // a char is encoded with at most 3 bytes in UTF-8
+    if (body == null || msg.getContentEncoding() != null || 3L * body.length() < threshold) {
+      return msg;
+    }
+
+    long start = System.nanoTime();
+    byte[] input = body.getBytes(UTF_8);
+    if (input.length < threshold) {
+      return msg;
+    }
+    String compressedBody = encodeBase64(deflate(input));
+    long elapsed = System.nanoTime() - start;
+
+    if (compressedBody.length() >= input.length) {
+      // No gain
+      return msg;
+    }
+
+    compressedMessages.incrementAndGet();
+    originalBytes.addAndGet(input.length);
+    compressedBytes.addAndGet(compressedBody.length());
+    compressionTimeNanos.addAndGet(elapsed);
+
+    if (logger.isTraceEnabled()) {
+      logger.trace(
+          "Body of message {} compressed from {} to {} bytes in {} us",
+          msg.getAction(),
+          input.length,
+          compressedBody.length(),
+          elapsed / 1000);
+    }
+
+    return new MessageDto(msg).setContentEncoding(DEFLATE).setBody(compressedBody);
+  }
+
+  /**
+   * (package-private)<br>
+   * Decompresses the body of the provided message if it is compressed.
+   *
+   * @param msg The message to decompress (must be not null).
+   * @return The provided message if the body was not compressed, otherwise a copy of the message
+   *     containing the decompressed body.
+   * @throws IllegalArgumentException if the encoding is not supported or the body is corrupted.
+   * @since 1.0
+   */
+  MessageDto decompress(MessageDto msg) {
+
+    String encoding = msg.getContentEncoding();
+    if (encoding == null) {
+      return msg;
+    }
+    if (!DEFLATE.equals(encoding)) {
+      throw new IllegalArgumentException("Unsupported content encoding : " + encoding);
+    }
+
+    long start = System.nanoTime();
+    String body =
+        msg.getBody() != null ? new String(inflate(decodeBase64(msg.getBody())), UTF_8) : null;
+    long elapsed = System.nanoTime() - start;
+
+    decompressedMessages.incrementAndGet();
+    decompressionTimeNanos.addAndGet(elapsed);
+
+    if (logger.isTraceEnabled()) {
+      logger.trace("Body of message {} decompressed in {} us", msg.getAction(), elapsed / 1000);
+    }
+
+    return new MessageDto(msg).setContentEncoding(null).setBody(body);
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the global compression ratio (original size / compressed size) of the compressed
+   * messages.
+   *
+   * @return 1 if no message was compressed.
+   * @since 1.0
+   */
+  double getCompressionRatio() {
+    long compressed = compressedBytes.get();
+    return compressed == 0 ? 1 : (double) originalBytes.get() / compressed;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of messages compressed.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  long getCompressedMessagesCount() {
+    return compressedMessages.get();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the average CPU time (in nanoseconds) spent to compress a message.
+   *
+   * @return 0 if no message was compressed.
+   * @since 1.0
+   */
+  long getAverageCompressionTimeNanos() {
+    long count = compressedMessages.get();
+    return count == 0 ? 0 : compressionTimeNanos.get() / count;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the average CPU time (in nanoseconds) spent to decompress a message.
+   *
+   * @return 0 if no message was decompressed.
+   * @since 1.0
+   */
+  long getAverageDecompressionTimeNanos() {
+    long count = decompressedMessages.get();
+    return count == 0 ? 0 : decompressionTimeNanos.get() / count;
+  }
+
+  /**
+   * (private)<br>
+   * Deflates the provided data.
+   *
+   * @param input The data to compress.
+   * @return a not null array.
+   */
+  private static byte[] deflate(byte[] input) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2 + 16);
+      byte[] buffer = new byte[1024];
+      while (!deflater.finished()) {
+        int length = deflater.deflate(buffer);
+        output.write(buffer, 0, length);
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Inflates the provided data.
+   *
+   * @param input The data to decompress.
+   * @return a not null array.
+   * @throws IllegalArgumentException if the data is corrupted.
+   */
+  private static byte[] inflate(byte[] input) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input);
+      ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+      byte[] buffer = new byte[1024];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalArgumentException("Truncated compressed body");
+        }
+        output.write(buffer, 0, length);
+      }
+      return output.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Corrupted compressed body", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Encodes the provided data in Base64 (with padding).
+   *
+   * @param data The data to encode.
+   * @return a not null string.
+   */
+  private static String encodeBase64(byte[] data) {
+    StringBuilder sb = new StringBuilder((data.length + 2) / 3 * 4);
+    for (int i = 0; i < data.length; i += 3) {
+      int b0 = data[i] & 0xFF;
+      int b1 = i + 1 < data.length ? data[i + 1] & 0xFF : 0;
+      int b2 = i + 2 < data.length ? data[i + 2] & 0xFF : 0;
+      sb.append(BASE64_CHARS[b0 >> 2]);
+      sb.append(BASE64_CHARS[((b0 & 0x03) << 4) | (b1 >> 4)]);
+      sb.append(i + 1 < data.length ? BASE64_CHARS[((b1 & 0x0F) << 2) | (b2 >> 6)] : '=');
+      sb.append(i + 2 < data.length ? BASE64_CHARS[b2 & 0x3F] : '=');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * (private)<br>
+   * Decodes the provided Base64 string (with padding).
+   *
+   * @param data The string to decode.
+   * @return a not null array.
+   * @throws IllegalArgumentException if the string is not a valid Base64 string.
+   */
+  private static byte[] decodeBase64(String data) {
+    if (data.length() % 4 != 0) {
+      throw new IllegalArgumentException("Invalid Base64 length");
+    }
+    int padding = 0;
+    if (data.endsWith("==")) {
+      padding = 2;
+    } else if (data.endsWith("=")) {
+      padding = 1;
+    }
+    byte[] output = new byte[data.length() / 4 * 3 - padding];
+    int index = 0;
+    for (int i = 0; i < data.length(); i += 4) {
+      int c0 = base64Value(data.charAt(i));
+      int c1 = base64Value(data.charAt(i + 1));
+      int c2 = data.charAt(i + 2) == '=' ? 0 : base64Value(data.charAt(i + 2));
+      int c3 = data.charAt(i + 3) == '=' ? 0 : base64Value(data.charAt(i + 3));
+      int triple = (c0 << 18) | (c1 << 12) | (c2 << 6) | c3;
+      output[index++] = (byte) (triple >> 16);
+      if (index < output.length) {
+        output[index++] = (byte) (triple >> 8);
+      }
+      if (index < output.length) {
+        output[index++] = (byte) triple;
+      }
+    }
+    return output;
+  }
+
+  /**
+   * (private)<br>
+   * Gets the 6-bit value of a Base64 char.
+   *
+   * @param c The char.
+   * @return a value between 0 and 63.
+   * @throws IllegalArgumentException if the char is not a Base64 char.
+   */
+  private static int base64Value(char c) {
+    int value = c < 128 ? BASE64_VALUES[c] : -1;
+    if (value < 0) {
+      throw new IllegalArgumentException("Invalid Base64 char : " + c);
+    }
+    return value;
+  }
+}
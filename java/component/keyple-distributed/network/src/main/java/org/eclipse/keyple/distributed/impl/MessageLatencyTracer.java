@@ -0,0 +1,209 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.eclipse.keyple.distributed.MessageDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * (package-private)<br>
+ * Message Latency Tracer.
+ *
+ * <p>Timestamps the traced {@link MessageDto} (the ones having a trace id) when they are sent,
+ * received and handled by a node, and records the latencies of each phase in a {@link
+ * LatencyHistogram} by phase and by action.
+ *
+ * <p>Note that the {@link Phase#TRANSIT} latency is computed using the clocks of two different
+ * nodes, so it is only relevant if these clocks are synchronized.
+ *
+ * @since 1.0
+ */
+final class MessageLatencyTracer {
+
+  private static final Logger logger = LoggerFactory.getLogger(MessageLatencyTracer.class);
+
+  /**
+   * (package-private)<br>
+   * The traced phases.
+   *
+   * @since 1.0
+   */
+  enum Phase {
+    /** From the sending by the peer node to the reception by the node (endpoints and network). */
+    TRANSIT,
+    /** From the reception by the node to the dispatch to the handler or the awaiting task. */
+    QUEUE,
+    /** Processing of the message by the handler. */
+    HANDLING,
+    /** From the sending of a request to the reception of its response. */
+    ROUND_TRIP
+  }
+
+  private final ConcurrentMap<String, LatencyHistogram> histograms;
+
+  /**
+   * (package-private)<br>
+   *
+   * @since 1.0
+   */
+  MessageLatencyTracer() {
+    this.histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+  }
+
+  /**
+   * (package-private)<br>
+   * Timestamps a message before its sending.
+   *
+   * @param msg The message to send (must be not null).
+   * @param isTraceOrigin true if a trace id must be generated when the message has none.
+   * @since 1.0
+   */
+  void onSend(MessageDto msg, boolean isTraceOrigin) {
+    if (msg.getTraceId() == null) {
+      if (!isTraceOrigin) {
+        return;
+      }
+      msg.setTraceId(UUID.randomUUID().toString());
+    }
+    msg.setSentTimestamp(System.currentTimeMillis())
+        .setReceivedTimestamp(null)
+        .setHandledTimestamp(null);
+  }
+
+  /**
+   * (package-private)<br>
+   * Timestamps a message after its reception and records its transit latency.
+   *
+   * @param msg The received message (must be not null).
+   * @since 1.0
+   */
+  void onReceive(MessageDto msg) {
+    if (msg.getTraceId() == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    msg.setReceivedTimestamp(now);
+    if (msg.getSentTimestamp() != null) {
+      record(Phase.TRANSIT, msg.getAction(), (now - msg.getSentTimestamp()) * 1000);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Timestamps a message when it is dispatched and records its queue latency.
+   *
+   * @param msg The received message (must be not null).
+   * @since 1.0
+   */
+  void onHandle(MessageDto msg) {
+    if (msg.getTraceId() == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    msg.setHandledTimestamp(now);
+    if (msg.getReceivedTimestamp() != null) {
+      record(Phase.QUEUE, msg.getAction(), (now - msg.getReceivedTimestamp()) * 1000);
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "[{}] {} handled, sent={}, received={}, handled={}",
+          msg.getTraceId(),
+          msg.getAction(),
+          msg.getSentTimestamp(),
+          msg.getReceivedTimestamp(),
+          now);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Records the latency of a phase if the provided message is traced.
+   *
+   * @param phase The phase.
+   * @param msg The message associated to the phase (must be not null).
+   * @param startNanos The value of {@link System#nanoTime()} at the beginning of the phase.
+   * @since 1.0
+   */
+  void record(Phase phase, MessageDto msg, long startNanos) {
+    if (msg.getTraceId() == null) {
+      return;
+    }
+    long micros = (System.nanoTime() - startNanos) / 1000;
+    record(phase, msg.getAction(), micros);
+    if (logger.isDebugEnabled()) {
+      logger.debug("[{}] {} {} took {} us", msg.getTraceId(), msg.getAction(), phase, micros);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the histogram associated to the provided phase and action.
+   *
+   * @param phase The phase.
+   * @param action The action.
+   * @return null if nothing was recorded for this phase and action.
+   * @since 1.0
+   */
+  LatencyHistogram getHistogram(Phase phase, MessageDto.Action action) {
+    return histograms.get(buildKey(phase, action.name()));
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets a snapshot of all the histograms sorted by key ("PHASE/ACTION").
+   *
+   * @return a not null map.
+   * @since 1.0
+   */
+  Map<String, LatencyHistogram> getHistograms() {
+    return new TreeMap<String, LatencyHistogram>(histograms);
+  }
+
+  /**
+   * (private)<br>
+   * Records a latency in the histogram associated to the provided phase and action.
+   *
+   * @param phase The phase.
+   * @param action The action.
+   * @param micros The latency in microseconds.
+   */
+  private void record(Phase phase, String action, long micros) {
+    String key = buildKey(phase, action);
+    LatencyHistogram histogram = histograms.get(key);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      LatencyHistogram existing = histograms.putIfAbsent(key, histogram);
+      if (existing != null) {
+        histogram = existing;
+      }
+    }
+    histogram.record(micros);
+  }
+
+  /**
+   * (private)<br>
+   * Builds the key of a histogram.
+   *
+   * @param phase The phase.
+   * @param action The action.
+   * @return a not empty string.
+   */
+  private static String buildKey(Phase phase, String action) {
+    return phase.name() + "/" + action;
+  }
+}
@@ -0,0 +1,624 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import com.google.gson.JsonObject;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.eclipse.keyple.core.util.Assert;
+import org.eclipse.keyple.core.util.json.KeypleGsonParser;
+import org.eclipse.keyple.distributed.MessageDto;
+import org.eclipse.keyple.distributed.spi.SyncEndpointClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sharded implementation of a {@link SyncEndpointClient}.
+ *
+ * <p>It distributes the sessions of a client node across several server nodes, each one being
+ * reached through its own {@link SyncEndpointClient} (e.g. one endpoint by <b>RemotePluginServer
+ * </b> instance) :
+ *
+ * <ul>
+ *   <li>A new session (e.g. a remote service execution) is routed to a server node chosen using
+ *       the configured {@link RoutingStrategy}.
+ *   <li>All the following messages of a session are routed to the same server node, until the end
+ *       of the session (<b>TERMINATE_SERVICE</b> or <b>ERROR</b> response). The session of a pool
+ *       reader allocation (<b>ALLOCATE_READER</b>), used by all the requests of the allocated
+ *       reader, ends with the <b>RELEASE_READER</b> response. The other pool requests (<b>
+ *       GET_READER_GROUP_REFERENCES</b> and <b>RENEW_READER_LEASES</b>) are single exchange
+ *       sessions.
+ *   <li>The messages targeting a remote reader (e.g. the reader events) are routed to the server
+ *       node which created it, until it is unregistered or until an <b>ERROR</b> response.
+ *   <li>The event polling messages (<b>CHECK_PLUGIN_EVENT</b> and <b>CHECK_READER_EVENT</b>) are
+ *       sent in parallel to all the server nodes and their responses are merged. In long polling
+ *       mode, the events of a server node may therefore be delayed up to the polling duration by
+ *       the other server nodes.
+ *   <li>When a server node fails to handle the first message of a session, it is considered
+ *       unhealthy during a configurable period. The session is failed over to another node only
+ *       if the message is known not to have been delivered, i.e. if the exception thrown by the
+ *       endpoint is or is caused by a {@link ConnectException}, a {@link NoRouteToHostException}
+ *       or an {@link UnknownHostException}: any other failure (e.g. a read timeout) is thrown
+ *       because the server node may have started to execute the request (e.g. a remote service).
+ *       The failures occurring during a session are not failed over because the state of the
+ *       session is owned by its server node.
+ * </ul>
+ *
+ * <p>It is meant to be used with a client node configured with {@code withSyncNode(...)}, like any
+ * other sync endpoint.
+ *
+ * @since 1.0
+ */
+public final class ShardedSyncEndpointClient implements SyncEndpointClient {
+
+  private static final Logger logger = LoggerFactory.getLogger(ShardedSyncEndpointClient.class);
+
+  private static final int NB_VIRTUAL_NODES = 128;
+  private static final int DEFAULT_UNHEALTHY_PERIOD = 5000;
+
+  /**
+   * Strategy used to choose the server node of a new session.
+   *
+   * @since 1.0
+   */
+  public enum RoutingStrategy {
+
+    /**
+     * The server node is chosen on a consistent hash ring using the local reader name (or the
+     * session id if there is none), so that a given local reader is always served by the same
+     * server node while this one is healthy, and only the sessions of a removed or unhealthy node
+     * are moved.
+     *
+     * @since 1.0
+     */
+    CONSISTENT_HASHING,
+
+    /**
+     * The server node having the least number of outstanding requests is chosen.
+     *
+     * @since 1.0
+     */
+    LEAST_OUTSTANDING_REQUESTS
+  }
+
+  private final List<SyncEndpointClient> endpoints;
+  private final RoutingStrategy routingStrategy;
+  private final int unhealthyPeriodInMillis;
+  private final TreeMap<Integer, Integer> hashRing;
+  private final AtomicIntegerArray nbOutstandingRequests;
+  private final AtomicLongArray unhealthyUntil;
+  private final ConcurrentMap<String, Integer> endpointIndexBySessionId;
+  private final ConcurrentMap<String, Integer> endpointIndexByRemoteReaderName;
+  private final Set<String> allocationSessionIds;
+  private final MessageBodyCompressor decompressor;
+  private final ExecutorService pollingPool;
+
+  /**
+   * Creates a sharded endpoint whose server nodes are considered unhealthy during 5 seconds after
+   * a failure.
+   *
+   * @param endpoints The endpoints of the server nodes (must be not empty and contain not null
+   *     elements).
+   * @param routingStrategy The routing strategy of the new sessions (must be not null).
+   * @throws IllegalArgumentException If an argument is null or empty.
+   * @since 1.0
+   */
+  public ShardedSyncEndpointClient(
+      List<SyncEndpointClient> endpoints, RoutingStrategy routingStrategy) {
+    this(endpoints, routingStrategy, DEFAULT_UNHEALTHY_PERIOD);
+  }
+
+  /**
+   * Creates a sharded endpoint.
+   *
+   * @param endpoints The endpoints of the server nodes (must be not empty and contain not null
+   *     elements).
+   * @param routingStrategy The routing strategy of the new sessions (must be not null).
+   * @param unhealthyPeriodInMillis The period during which a failed server node does not receive
+   *     any new session, unless all the server nodes are unhealthy (must be positive).
+   * @throws IllegalArgumentException If an argument is null, empty or out of range.
+   * @since 1.0
+   */
+  public ShardedSyncEndpointClient(
+      List<SyncEndpointClient> endpoints,
+      RoutingStrategy routingStrategy,
+      int unhealthyPeriodInMillis) {
+    Assert.getInstance()
+        .notEmpty(endpoints, "endpoints")
+        .notNull(routingStrategy, "routingStrategy")
+        .greaterOrEqual(unhealthyPeriodInMillis, 0, "unhealthyPeriodInMillis");
+    for (SyncEndpointClient endpoint : endpoints) {
+      Assert.getInstance().notNull(endpoint, "endpoint");
+    }
+    this.endpoints = new ArrayList<SyncEndpointClient>(endpoints);
+    this.routingStrategy = routingStrategy;
+    this.unhealthyPeriodInMillis = unhealthyPeriodInMillis;
+    this.hashRing = new TreeMap<Integer, Integer>();
+    for (int i = 0; i < this.endpoints.size(); i++) {
+      for (int j = 0; j < NB_VIRTUAL_NODES; j++) {
+        hashRing.put(hash("endpoint-" + i + "#" + j), i);
+      }
+    }
+    this.nbOutstandingRequests = new AtomicIntegerArray(this.endpoints.size());
+    this.unhealthyUntil = new AtomicLongArray(this.endpoints.size());
+    this.endpointIndexBySessionId = new ConcurrentHashMap<String, Integer>();
+    this.endpointIndexByRemoteReaderName = new ConcurrentHashMap<String, Integer>();
+    this.allocationSessionIds =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    this.decompressor = new MessageBodyCompressor(MessageBodyCompressor.DEFAULT_THRESHOLD);
+    this.pollingPool =
+        Executors.newCachedThreadPool(
+            new ThreadFactory() {
+              @Override
+              public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ShardedSyncEndpointClient-polling");
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The message is routed to the server node owning its session or its remote reader, if any,
+   * otherwise to a healthy server node chosen using the routing strategy. The event polling
+   * messages are sent to all the server nodes.
+   *
+   * @since 1.0
+   */
+  @Override
+  public List<MessageDto> sendRequest(MessageDto msg) {
+
+    if (isPolling(msg)) {
+      return broadcast(msg);
+    }
+
+    Integer endpointIndex = getAffinity(msg);
+    if (endpointIndex != null) {
+      try {
+        return send(endpointIndex, msg, false);
+      } catch (RuntimeException e) {
+        removeSession(msg.getSessionId());
+        throw e;
+      }
+    }
+
+    // new session : fail over to the other server nodes if the message was not delivered
+    boolean[] excluded = new boolean[endpoints.size()];
+    RuntimeException lastException = null;
+    for (int i = 0; i < endpoints.size(); i++) {
+      int index = chooseEndpoint(msg, excluded);
+      excluded[index] = true;
+      try {
+        return send(index, msg, false);
+      } catch (RuntimeException e) {
+        unhealthyUntil.set(index, System.currentTimeMillis() + unhealthyPeriodInMillis);
+        if (!isNotDelivered(e)) {
+          // the server node may have received the message, it must not be executed twice
+          throw e;
+        }
+        logger.warn(
+            "Server node #{} failed to open the session {}, try another one : {}",
+            index,
+            msg.getSessionId(),
+            e.getMessage());
+        lastException = e;
+      }
+    }
+    throw lastException;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the index of the server node currently associated to a session.
+   *
+   * @param sessionId The session id.
+   * @return null if the session is not associated to any server node.
+   * @since 1.0
+   */
+  Integer getEndpointIndexBySessionId(String sessionId) {
+    return endpointIndexBySessionId.get(sessionId);
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of sessions currently associated to a server node.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  int getNbSessions() {
+    return endpointIndexBySessionId.size();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of outstanding requests of a server node.
+   *
+   * @param endpointIndex The index of the server node.
+   * @return a positive number.
+   * @since 1.0
+   */
+  int getNbOutstandingRequests(int endpointIndex) {
+    return nbOutstandingRequests.get(endpointIndex);
+  }
+
+  /**
+   * (package-private)<br>
+   * Indicates if a server node is currently considered healthy.
+   *
+   * @param endpointIndex The index of the server node.
+   * @return true if the server node is healthy.
+   * @since 1.0
+   */
+  boolean isHealthy(int endpointIndex) {
+    return unhealthyUntil.get(endpointIndex) <= System.currentTimeMillis();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the index of the server node currently associated to a remote reader.
+   *
+   * @param remoteReaderName The remote reader name.
+   * @return null if the remote reader is not associated to any server node.
+   * @since 1.0
+   */
+  Integer getEndpointIndexByRemoteReaderName(String remoteReaderName) {
+    return endpointIndexByRemoteReaderName.get(remoteReaderName);
+  }
+
+  /**
+   * (private)<br>
+   * Indicates if a message is an event polling message.
+   *
+   * @param msg The message.
+   * @return true if it is a <b>CHECK_PLUGIN_EVENT</b> or a <b>CHECK_READER_EVENT</b> message.
+   */
+  private static boolean isPolling(MessageDto msg) {
+    String action = msg.getAction();
+    return MessageDto.Action.CHECK_PLUGIN_EVENT.name().equals(action)
+        || MessageDto.Action.CHECK_READER_EVENT.name().equals(action);
+  }
+
+  /**
+   * (private)<br>
+   * Sends an event polling message to all the server nodes in parallel and merges their
+   * responses.
+   *
+   * <p>The failures of some server nodes are logged, the polling fails only if all the server
+   * nodes fail.
+   *
+   * @param msg The event polling message.
+   * @return the merged responses.
+   */
+  private List<MessageDto> broadcast(final MessageDto msg) {
+    List<Future<List<MessageDto>>> futures = new ArrayList<Future<List<MessageDto>>>();
+    for (int i = 1; i < endpoints.size(); i++) {
+      final int index = i;
+      futures.add(
+          pollingPool.submit(
+              new Callable<List<MessageDto>>() {
+                @Override
+                public List<MessageDto> call() {
+                  return send(index, msg, true);
+                }
+              }));
+    }
+    List<MessageDto> responses = new ArrayList<MessageDto>();
+    RuntimeException lastException = null;
+    int nbFailures = 0;
+    // the first server node is polled by the current thread
+    try {
+      addAll(responses, send(0, msg, true));
+    } catch (RuntimeException e) {
+      logPollingFailure(0, msg, e);
+      lastException = e;
+      nbFailures++;
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        addAll(responses, futures.get(i).get());
+      } catch (ExecutionException e) {
+        RuntimeException cause =
+            e.getCause() instanceof RuntimeException
+                ? (RuntimeException) e.getCause()
+                : new IllegalStateException(e.getCause());
+        logPollingFailure(i + 1, msg, cause);
+        lastException = cause;
+        nbFailures++;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancel(futures);
+        throw new IllegalStateException("Interrupted while polling the server nodes", e);
+      }
+    }
+    if (nbFailures == endpoints.size()) {
+      throw lastException;
+    }
+    return responses;
+  }
+
+  /**
+   * (private)<br>
+   * Adds the responses of a server node to the merged responses.
+   *
+   * @param responses The merged responses.
+   * @param nodeResponses The responses of a server node (nullable).
+   */
+  private static void addAll(List<MessageDto> responses, List<MessageDto> nodeResponses) {
+    if (nodeResponses != null) {
+      responses.addAll(nodeResponses);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Cancels the pending pollings.
+   *
+   * @param futures The pollings.
+   */
+  private static void cancel(List<Future<List<MessageDto>>> futures) {
+    for (Future<List<MessageDto>> future : futures) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Logs the failure of a server node to handle an event polling message.
+   *
+   * @param endpointIndex The index of the server node.
+   * @param msg The event polling message.
+   * @param e The failure.
+   */
+  private static void logPollingFailure(int endpointIndex, MessageDto msg, RuntimeException e) {
+    logger.warn(
+        "Server node #{} failed to handle the {} message : {}",
+        endpointIndex,
+        msg.getAction(),
+        e.getMessage());
+  }
+
+  /**
+   * (private)<br>
+   * Indicates if a failure of an endpoint means that the message was not delivered to its server
+   * node.
+   *
+   * @param e The failure.
+   * @return true if the failure is caused by a connection error.
+   */
+  private static boolean isNotDelivered(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof ConnectException
+          || cause instanceof NoRouteToHostException
+          || cause instanceof UnknownHostException) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * (private)<br>
+   * Gets the server node owning the session or the remote reader targeted by a message.
+   *
+   * @param msg The message.
+   * @return null if the message does not belong to a known session or remote reader.
+   */
+  private Integer getAffinity(MessageDto msg) {
+    Integer endpointIndex = null;
+    if (msg.getSessionId() != null) {
+      endpointIndex = endpointIndexBySessionId.get(msg.getSessionId());
+    }
+    if (endpointIndex == null && msg.getRemoteReaderName() != null) {
+      endpointIndex = endpointIndexByRemoteReaderName.get(msg.getRemoteReaderName());
+    }
+    return endpointIndex;
+  }
+
+  /**
+   * (private)<br>
+   * Chooses the server node of a new session among the not excluded ones, giving priority to the
+   * healthy ones.
+   *
+   * @param msg The first message of the session.
+   * @param excluded The server nodes already tried.
+   * @return the index of a server node.
+   */
+  private int chooseEndpoint(MessageDto msg, boolean[] excluded) {
+    int index = chooseEndpoint(msg, excluded, true);
+    return index != -1 ? index : chooseEndpoint(msg, excluded, false);
+  }
+
+  /**
+   * (private)<br>
+   * Chooses the server node of a new session using the routing strategy.
+   *
+   * @param msg The first message of the session.
+   * @param excluded The server nodes already tried.
+   * @param isHealthyRequired true if only the healthy server nodes must be chosen.
+   * @return -1 if there is no eligible server node.
+   */
+  private int chooseEndpoint(MessageDto msg, boolean[] excluded, boolean isHealthyRequired) {
+    if (routingStrategy == RoutingStrategy.CONSISTENT_HASHING) {
+      String key = msg.getLocalReaderName() != null ? msg.getLocalReaderName() : msg.getSessionId();
+      Map.Entry<Integer, Integer> entry = hashRing.ceilingEntry(hash(String.valueOf(key)));
+      for (int i = 0; i < hashRing.size(); i++) {
+        if (entry == null) {
+          entry = hashRing.firstEntry();
+        }
+        int index = entry.getValue();
+        if (!excluded[index] && (!isHealthyRequired || isHealthy(index))) {
+          return index;
+        }
+        entry = hashRing.higherEntry(entry.getKey());
+      }
+      return -1;
+    }
+    int bestIndex = -1;
+    for (int index = 0; index < endpoints.size(); index++) {
+      if (!excluded[index]
+          && (!isHealthyRequired || isHealthy(index))
+          && (bestIndex == -1
+              || nbOutstandingRequests.get(index) < nbOutstandingRequests.get(bestIndex))) {
+        bestIndex = index;
+      }
+    }
+    return bestIndex;
+  }
+
+  /**
+   * (private)<br>
+   * Sends a message to a server node and updates the affinities according to the responses.
+   *
+   * @param endpointIndex The index of the server node.
+   * @param msg The message to send.
+   * @param isPolling true if the message is an event polling message, whose session is not bound
+   *     to the server node.
+   * @return the responses of the server node.
+   */
+  private List<MessageDto> send(int endpointIndex, MessageDto msg, boolean isPolling) {
+    List<MessageDto> responses;
+    nbOutstandingRequests.incrementAndGet(endpointIndex);
+    try {
+      responses = endpoints.get(endpointIndex).sendRequest(msg);
+    } finally {
+      nbOutstandingRequests.decrementAndGet(endpointIndex);
+    }
+    // the session is bound to the server node as long as it responds within the session
+    if (responses != null) {
+      for (MessageDto response : responses) {
+        updateAffinities(endpointIndex, msg.getAction(), response, isPolling);
+      }
+    }
+    return responses;
+  }
+
+  /**
+   * (private)<br>
+   * Updates the affinities of the session and of the remote reader of a response.
+   *
+   * @param endpointIndex The index of the server node which sent the response.
+   * @param requestAction The action of the request.
+   * @param response The response.
+   * @param isPolling true if the response is the response of an event polling message.
+   */
+  private void updateAffinities(
+      int endpointIndex, String requestAction, MessageDto response, boolean isPolling) {
+    String action = response.getAction();
+    boolean isTerminateService = MessageDto.Action.TERMINATE_SERVICE.name().equals(action);
+    boolean isError = MessageDto.Action.ERROR.name().equals(action);
+    if (response.getRemoteReaderName() != null) {
+      if (isError || (isTerminateService && isRemoteReaderUnregistered(response))) {
+        endpointIndexByRemoteReaderName.remove(response.getRemoteReaderName());
+      } else {
+        endpointIndexByRemoteReaderName.put(response.getRemoteReaderName(), endpointIndex);
+      }
+    }
+    String sessionId = response.getSessionId();
+    if (sessionId != null && !isPolling) {
+      if (isTerminateService
+          || isSingleExchange(requestAction)
+          || (isError && !allocationSessionIds.contains(sessionId))) {
+        removeSession(sessionId);
+      } else {
+        endpointIndexBySessionId.put(sessionId, endpointIndex);
+        if (!isError && MessageDto.Action.ALLOCATE_READER.name().equals(requestAction)) {
+          // the errors of the allocated reader requests do not end its session
+          allocationSessionIds.add(sessionId);
+        }
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Indicates if the response to a request ends its session.
+   *
+   * @param requestAction The action of the request.
+   * @return true if the request is a <b>RELEASE_READER</b>, a <b>GET_READER_GROUP_REFERENCES</b>
+   *     or a <b>RENEW_READER_LEASES</b> request.
+   */
+  private static boolean isSingleExchange(String requestAction) {
+    return MessageDto.Action.RELEASE_READER.name().equals(requestAction)
+        || MessageDto.Action.GET_READER_GROUP_REFERENCES.name().equals(requestAction)
+        || MessageDto.Action.RENEW_READER_LEASES.name().equals(requestAction);
+  }
+
+  /**
+   * (private)<br>
+   * Removes the affinity of a session.
+   *
+   * @param sessionId The session id.
+   */
+  private void removeSession(String sessionId) {
+    if (sessionId != null) {
+      endpointIndexBySessionId.remove(sessionId);
+      allocationSessionIds.remove(sessionId);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Indicates if a <b>TERMINATE_SERVICE</b> response unregisters its remote reader.
+   *
+   * @param response The response, whose body may be compressed.
+   * @return false if the body does not contain the information.
+   */
+  private boolean isRemoteReaderUnregistered(MessageDto response) {
+    String json = decompressor.decompress(response).getBody();
+    if (json == null) {
+      return false;
+    }
+    JsonObject body = KeypleGsonParser.getParser().fromJson(json, JsonObject.class);
+    return body.has("unregisterRemoteReader") && body.get("unregisterRemoteReader").getAsBoolean();
+  }
+
+  /**
+   * (private)<br>
+   * Computes a well distributed hash of a string.
+   *
+   * @param value The string.
+   * @return a hash.
+   */
+  private static int hash(String value) {
+    // finalization mix of MurmurHash3
+    int h = value.hashCode();
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
@@ -86,7 +86,8 @@ final class SyncNodeClientImpl extends AbstractNode implements SyncNodeClient {
   MessageDto sendRequest(MessageDto msg) {
 
     msg.setClientNodeId(nodeId);
-    List<MessageDto> responses = endpoint.sendRequest(msg);
+    long start = System.nanoTime();
+    List<MessageDto> responses = endpoint.sendRequest(prepareClientMessage(msg));
 
     if (responses == null || responses.isEmpty()) {
       return null;
@@ -98,7 +99,11 @@ final class SyncNodeClientImpl extends AbstractNode implements SyncNodeClient {
           .notEmpty(response.getAction(), "action") //
           .notEmpty(response.getClientNodeId(), "clientNodeId") //
           .notEmpty(response.getServerNodeId(), "serverNodeId");
-      return response;
+      MessageDto message = readServerMessage(response);
+      tracer.onReceive(message);
+      tracer.onHandle(message);
+      tracer.record(MessageLatencyTracer.Phase.ROUND_TRIP, msg, start);
+      return message;
     } else {
       throw new IllegalStateException(
           "The list returned by the client endpoint should have contained a single element but contains "
@@ -115,7 +120,7 @@ final class SyncNodeClientImpl extends AbstractNode implements SyncNodeClient {
   @Override
   void sendMessage(MessageDto msg) {
     msg.setClientNodeId(nodeId);
-    endpoint.sendRequest(msg);
+    endpoint.sendRequest(prepareClientMessage(msg));
   }
 
   /**
@@ -231,14 +236,16 @@ final class SyncNodeClientImpl extends AbstractNode implements SyncNodeClient {
     private void checkForEvents() {
       List<MessageDto> responses;
       try {
-        responses = endpoint.sendRequest(msg);
+        responses = endpoint.sendRequest(prepareClientMessage(msg));
       } catch (Exception e) {
         logger.error("Server connection error", e);
         responses = retryRequest();
       }
       if (responses != null && !responses.isEmpty()) {
         for (MessageDto event : responses) {
-          handler.onMessage(event);
+          MessageDto message = readServerMessage(event);
+          tracer.onReceive(message);
+          dispatchToHandler(message);
         }
       }
     }
@@ -285,7 +292,7 @@ final class SyncNodeClientImpl extends AbstractNode implements SyncNodeClient {
      */
     private List<MessageDto> sendRequestSilently() {
       try {
-        return endpoint.sendRequest(msg);
+        return endpoint.sendRequest(prepareClientMessage(msg));
       } catch (Exception e) {
         return null;
       }
@@ -76,19 +76,43 @@ final class SyncNodeServerImpl extends AbstractNode implements SyncNodeServer {
         .notEmpty(msg.getAction(), "action") //
         .notEmpty(msg.getClientNodeId(), "clientNodeId");
 
+    MessageDto message = compressor.decompress(msg);
+    tracer.onReceive(message);
+
     List<MessageDto> responses;
-    MessageDto.Action action = MessageDto.Action.valueOf(msg.getAction());
+    MessageDto.Action action = MessageDto.Action.valueOf(message.getAction());
     switch (action) {
       case CHECK_PLUGIN_EVENT:
-        responses = checkEvents(msg, pluginManagers);
+        responses = checkEvents(message, pluginManagers);
         break;
       case CHECK_READER_EVENT:
-        responses = checkEvents(msg, readerManagers);
+        responses = checkEvents(message, readerManagers);
         break;
       default:
-        responses = processOnRequest(msg);
+        responses = processOnRequest(message);
+    }
+    return prepareResponses(responses, isCompressionAccepted(message));
+  }
+
+  /**
+   * (private)<br>
+   * Prepares the responses to return to the client, timestamping them if they are traced and
+   * compressing their bodies if needed.
+   *
+   * @param responses The responses (can be null).
+   * @param isCompressionAccepted true if the client accepts compressed bodies.
+   * @return a not null list.
+   */
+  private List<MessageDto> prepareResponses(
+      List<MessageDto> responses, boolean isCompressionAccepted) {
+    if (responses == null) {
+      return new ArrayList<MessageDto>(0);
     }
-    return responses != null ? responses : new ArrayList<MessageDto>(0);
+    List<MessageDto> preparedResponses = new ArrayList<MessageDto>(responses.size());
+    for (MessageDto response : responses) {
+      preparedResponses.add(prepareServerMessage(response, isCompressionAccepted));
+    }
+    return preparedResponses;
   }
 
   /**
@@ -133,7 +157,13 @@ final class SyncNodeServerImpl extends AbstractNode implements SyncNodeServer {
     msg.setServerNodeId(nodeId);
     SessionManager manager = sessionManagers.get(msg.getSessionId());
     try {
-      return manager.sendRequest(msg);
+      if (msg.getTraceId() == null) {
+        msg.setTraceId(manager.traceId);
+      }
+      long start = System.nanoTime();
+      MessageDto response = manager.sendRequest(msg);
+      tracer.record(MessageLatencyTracer.Phase.ROUND_TRIP, msg, start);
+      return response;
     } catch (RuntimeException e) {
       sessionManagers.remove(msg.getSessionId());
       throw e;
@@ -215,6 +245,9 @@ final class SyncNodeServerImpl extends AbstractNode implements SyncNodeServer {
       throw new IllegalStateException("Session is closed");
     }
     try {
+      if (msg.getTraceId() == null) {
+        msg.setTraceId(manager.traceId);
+      }
       manager.sendMessage(msg);
     } finally {
       sessionManagers.remove(msg.getSessionId());
@@ -257,13 +290,17 @@ final class SyncNodeServerImpl extends AbstractNode implements SyncNodeServer {
      */
     private synchronized MessageDto onRequest(MessageDto msg) {
       checkState(SessionManagerState.INITIALIZED, SessionManagerState.SEND_REQUEST_BEGIN);
+      if (msg.getTraceId() != null) {
+        traceId = msg.getTraceId();
+      }
       if (state == SessionManagerState.INITIALIZED) {
         // Process the message as a client request
         state = SessionManagerState.ON_REQUEST;
-        handler.onMessage(msg);
+        dispatchToHandler(msg);
       } else {
         // State is SEND_REQUEST_BEGIN
         // Process the message as a client response
+        tracer.onHandle(msg);
         postMessageAndNotify(msg, SessionManagerState.SEND_REQUEST_END);
       }
       waitForState(SessionManagerState.SEND_MESSAGE, SessionManagerState.SEND_REQUEST_BEGIN);
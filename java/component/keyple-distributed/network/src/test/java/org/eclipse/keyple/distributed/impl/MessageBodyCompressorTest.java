@@ -0,0 +1,134 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.eclipse.keyple.distributed.MessageDto;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageBodyCompressorTest {
+
+  MessageBodyCompressor compressor;
+  String largeBody;
+  String smallBody;
+
+  {
+    StringBuilder sb = new StringBuilder("{\"cardSelectionResponses\":[");
+    for (int i = 0; i < 50; i++) {
+      sb.append("{\"apdu\":\"6F238409315449432E49434131A516BF0C13C70800000000C0E11FA6530\"},");
+    }
+    sb.append("{}]}");
+    largeBody = sb.toString();
+    smallBody = "{\"channelControl\":\"KEEP_OPEN\"}";
+  }
+
+  MessageDto buildMessage(String body) {
+    return new MessageDto()
+        .setSessionId("sessionId")
+        .setAction(MessageDto.Action.TRANSMIT_CARD_SELECTION.name())
+        .setClientNodeId("clientNodeId")
+        .setServerNodeId("serverNodeId")
+        .setBody(body);
+  }
+
+  @Before
+  public void setUp() {
+    compressor = new MessageBodyCompressor(MessageBodyCompressor.DEFAULT_THRESHOLD);
+  }
+
+  @Test
+  public void compress_whenBodyIsBelowThreshold_shouldReturnSameMessage() {
+    MessageDto msg = buildMessage(smallBody);
+    assertThat(compressor.compress(msg)).isSameAs(msg);
+    assertThat(compressor.getCompressedMessagesCount()).isZero();
+  }
+
+  @Test
+  public void compress_whenBodySizeInBytesExceedsThreshold_shouldCompress() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 700; i++) {
+      sb.append('\u00e9');
+    }
+    // 700 chars but 1400 bytes in UTF-8
+    MessageDto msg = buildMessage(sb.toString());
+    assertThat(compressor.compress(msg).getContentEncoding())
+        .isEqualTo(MessageBodyCompressor.DEFLATE);
+  }
+
+  @Test
+  public void compress_whenBodyIsNull_shouldReturnSameMessage() {
+    MessageDto msg = buildMessage(null);
+    assertThat(compressor.compress(msg)).isSameAs(msg);
+  }
+
+  @Test
+  public void compress_whenBodyIsAboveThreshold_shouldReturnCompressedCopy() {
+    MessageDto msg = buildMessage(largeBody);
+    MessageDto compressed = compressor.compress(msg);
+    assertThat(compressed).isNotSameAs(msg);
+    assertThat(compressed.getContentEncoding()).isEqualTo(MessageBodyCompressor.DEFLATE);
+    assertThat(compressed.getBody().length()).isLessThan(largeBody.length());
+    assertThat(compressed.getSessionId()).isEqualTo(msg.getSessionId());
+    assertThat(compressed.getAction()).isEqualTo(msg.getAction());
+    assertThat(msg.getBody()).isEqualTo(largeBody);
+    assertThat(msg.getContentEncoding()).isNull();
+  }
+
+  @Test
+  public void decompress_whenBodyIsCompressed_shouldRestoreOriginalBody() {
+    MessageDto compressed = compressor.compress(buildMessage(largeBody));
+    MessageDto decompressed = compressor.decompress(compressed);
+    assertThat(decompressed.getBody()).isEqualTo(largeBody);
+    assertThat(decompressed.getContentEncoding()).isNull();
+  }
+
+  @Test
+  public void decompress_whenBodyIsNotCompressed_shouldReturnSameMessage() {
+    MessageDto msg = buildMessage(smallBody);
+    assertThat(compressor.decompress(msg)).isSameAs(msg);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decompress_whenEncodingIsUnknown_shouldThrowIAE() {
+    compressor.decompress(buildMessage(smallBody).setContentEncoding("gzip"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decompress_whenBodyIsCorrupted_shouldThrowIAE() {
+    compressor.decompress(
+        buildMessage("AAECAwQFBgcICQ==").setContentEncoding(MessageBodyCompressor.DEFLATE));
+  }
+
+  @Test
+  public void getCompressionRatio_shouldReportStatistics() {
+    assertThat(compressor.getCompressionRatio()).isEqualTo(1);
+    compressor.compress(buildMessage(largeBody));
+    compressor.compress(buildMessage(largeBody));
+    assertThat(compressor.getCompressedMessagesCount()).isEqualTo(2);
+    assertThat(compressor.getCompressionRatio()).isGreaterThan(2);
+    assertThat(compressor.getAverageCompressionTimeNanos()).isPositive();
+  }
+
+  @Test
+  public void compress_decompress_whenBodyContainsNonAsciiChars_shouldRestoreOriginalBody() {
+    compressor = new MessageBodyCompressor(0);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      sb.append("Données échangées ").append(i);
+    }
+    String body = sb.toString();
+    assertThat(compressor.decompress(compressor.compress(buildMessage(body))).getBody())
+        .isEqualTo(body);
+  }
+}
@@ -0,0 +1,122 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.eclipse.keyple.distributed.MessageDto;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageLatencyTracerTest {
+
+  MessageLatencyTracer tracer;
+
+  MessageDto buildMessage() {
+    return new MessageDto()
+        .setSessionId("sessionId")
+        .setAction(MessageDto.Action.TRANSMIT.name())
+        .setClientNodeId("clientNodeId")
+        .setServerNodeId("serverNodeId")
+        .setBody("body");
+  }
+
+  @Before
+  public void setUp() {
+    tracer = new MessageLatencyTracer();
+  }
+
+  @Test
+  public void onSend_whenNotTraceOriginAndNoTraceId_shouldNotTimestamp() {
+    MessageDto msg = buildMessage();
+    tracer.onSend(msg, false);
+    assertThat(msg.getTraceId()).isNull();
+    assertThat(msg.getSentTimestamp()).isNull();
+  }
+
+  @Test
+  public void onSend_whenTraceOrigin_shouldGenerateTraceIdAndTimestamp() {
+    MessageDto msg = buildMessage();
+    tracer.onSend(msg, true);
+    assertThat(msg.getTraceId()).isNotEmpty();
+    assertThat(msg.getSentTimestamp()).isNotNull();
+    assertThat(msg.getReceivedTimestamp()).isNull();
+    assertThat(msg.getHandledTimestamp()).isNull();
+  }
+
+  @Test
+  public void onSend_whenTraceIdExists_shouldKeepItAndResetReceptionTimestamps() {
+    MessageDto msg =
+        buildMessage().setTraceId("traceId").setReceivedTimestamp(1L).setHandledTimestamp(2L);
+    tracer.onSend(msg, false);
+    assertThat(msg.getTraceId()).isEqualTo("traceId");
+    assertThat(msg.getSentTimestamp()).isNotNull();
+    assertThat(msg.getReceivedTimestamp()).isNull();
+    assertThat(msg.getHandledTimestamp()).isNull();
+  }
+
+  @Test
+  public void onReceive_onHandle_whenTraced_shouldRecordTransitAndQueueLatencies() {
+    MessageDto msg = buildMessage();
+    tracer.onSend(msg, true);
+    msg.setSentTimestamp(msg.getSentTimestamp() - 20);
+
+    tracer.onReceive(msg);
+    tracer.onHandle(msg);
+
+    assertThat(msg.getReceivedTimestamp()).isGreaterThanOrEqualTo(msg.getSentTimestamp());
+    assertThat(msg.getHandledTimestamp()).isGreaterThanOrEqualTo(msg.getReceivedTimestamp());
+    LatencyHistogram transit =
+        tracer.getHistogram(MessageLatencyTracer.Phase.TRANSIT, MessageDto.Action.TRANSMIT);
+    assertThat(transit.getCount()).isEqualTo(1);
+    assertThat(transit.getMaxMicros()).isGreaterThanOrEqualTo(20000);
+    assertThat(tracer.getHistogram(MessageLatencyTracer.Phase.QUEUE, MessageDto.Action.TRANSMIT))
+        .isNotNull();
+    assertThat(tracer.getHistograms()).containsKeys("QUEUE/TRANSMIT", "TRANSIT/TRANSMIT");
+  }
+
+  @Test
+  public void onReceive_whenNotTraced_shouldNotRecord() {
+    MessageDto msg = buildMessage();
+    tracer.onReceive(msg);
+    tracer.onHandle(msg);
+    tracer.record(MessageLatencyTracer.Phase.HANDLING, msg, System.nanoTime());
+    assertThat(msg.getReceivedTimestamp()).isNull();
+    assertThat(tracer.getHistograms()).isEmpty();
+  }
+
+  @Test
+  public void record_whenTraced_shouldRecordThePhase() {
+    MessageDto msg = buildMessage().setTraceId("traceId");
+    tracer.record(MessageLatencyTracer.Phase.ROUND_TRIP, msg, System.nanoTime() - 5000000);
+    LatencyHistogram roundTrip =
+        tracer.getHistogram(MessageLatencyTracer.Phase.ROUND_TRIP, MessageDto.Action.TRANSMIT);
+    assertThat(roundTrip.getCount()).isEqualTo(1);
+    assertThat(roundTrip.getMeanMicros()).isGreaterThanOrEqualTo(5000);
+  }
+
+  @Test
+  public void latencyHistogram_shouldComputePercentilesByExcess() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.getPercentileMicros(50)).isZero();
+    for (int i = 1; i <= 99; i++) {
+      histogram.record(100);
+    }
+    histogram.record(10000);
+    assertThat(histogram.getCount()).isEqualTo(100);
+    assertThat(histogram.getMaxMicros()).isEqualTo(10000);
+    assertThat(histogram.getPercentileMicros(50)).isBetween(100L, 128L);
+    assertThat(histogram.getPercentileMicros(99)).isBetween(100L, 128L);
+    assertThat(histogram.getPercentileMicros(100)).isEqualTo(10000);
+    assertThat(histogram.toString()).contains("count=100");
+  }
+}
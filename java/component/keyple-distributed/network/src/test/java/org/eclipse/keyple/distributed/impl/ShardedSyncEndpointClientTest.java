@@ -0,0 +1,474 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.await;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.distributed.MessageDto;
+import org.eclipse.keyple.distributed.SyncNodeServer;
+import org.eclipse.keyple.distributed.spi.SyncEndpointClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedSyncEndpointClientTest {
+
+  static final int NB_SERVERS = 3;
+
+  List<ServerNode> servers;
+  List<SyncEndpointClient> endpoints;
+  ShardedSyncEndpointClient endpoint;
+  CountDownLatch unblock;
+
+  /** In-process server node responding with the action contained in the request body. */
+  class ServerNode implements SyncNodeServer {
+
+    final String name;
+    final List<String> sessionIds = Collections.synchronizedList(new ArrayList<String>());
+    volatile boolean isFailing;
+    volatile boolean isTimingOut;
+    volatile boolean isBlocking;
+
+    ServerNode(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public List<MessageDto> onRequest(MessageDto msg) {
+      if (isFailing) {
+        throw new IllegalStateException(
+            "server " + name + " is down", new ConnectException("Connection refused"));
+      }
+      if (isBlocking) {
+        try {
+          unblock.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      sessionIds.add(msg.getSessionId());
+      if (isTimingOut) {
+        throw new IllegalStateException(
+            "server " + name + " is too slow", new SocketTimeoutException("Read timed out"));
+      }
+      MessageDto response =
+          new MessageDto(msg)
+              .setServerNodeId(name)
+              .setAction(msg.getBody())
+              .setRemoteReaderName("remoteReader@" + name)
+              .setBody(
+                  MessageDto.Action.TERMINATE_SERVICE.name().equals(msg.getBody())
+                      ? "{\"unregisterRemoteReader\":true}"
+                      : null);
+      return Collections.singletonList(response);
+    }
+  }
+
+  MessageDto message(String sessionId, String localReaderName, MessageDto.Action responseAction) {
+    return new MessageDto()
+        .setSessionId(sessionId)
+        .setAction(MessageDto.Action.EXECUTE_REMOTE_SERVICE.name())
+        .setClientNodeId("clientNodeId")
+        .setLocalReaderName(localReaderName)
+        .setBody(responseAction.name());
+  }
+
+  ServerNode serverOf(List<MessageDto> responses) {
+    for (ServerNode server : servers) {
+      if (server.name.equals(responses.get(0).getServerNodeId())) {
+        return server;
+      }
+    }
+    throw new IllegalStateException("unknown server");
+  }
+
+  @Before
+  public void setUp() {
+    unblock = new CountDownLatch(1);
+    servers = new ArrayList<ServerNode>();
+    endpoints = new ArrayList<SyncEndpointClient>();
+    for (int i = 0; i < NB_SERVERS; i++) {
+      ServerNode server = new ServerNode("server" + i);
+      servers.add(server);
+      endpoints.add(new StubLoopbackSyncEndpointClient(server));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    unblock.countDown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_whenNoEndpoint_shouldThrowIAE() {
+    new ShardedSyncEndpointClient(
+        new ArrayList<SyncEndpointClient>(),
+        ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING);
+  }
+
+  @Test
+  public void sendRequest_consistentHashing_shouldRouteALocalReaderAlwaysToTheSameServer() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING);
+    Set<String> usedServers = new HashSet<String>();
+    for (int i = 0; i < 30; i++) {
+      String localReaderName = "localReader" + i;
+      ServerNode server =
+          serverOf(
+              endpoint.sendRequest(
+                  message(
+                      "session" + i + "a",
+                      localReaderName,
+                      MessageDto.Action.TERMINATE_SERVICE)));
+      ServerNode server2 =
+          serverOf(
+              endpoint.sendRequest(
+                  message(
+                      "session" + i + "b",
+                      localReaderName,
+                      MessageDto.Action.TERMINATE_SERVICE)));
+      assertThat(server2).isSameAs(server);
+      usedServers.add(server.name);
+    }
+    assertThat(usedServers).hasSize(NB_SERVERS);
+    assertThat(endpoint.getNbSessions()).isZero();
+  }
+
+  @Test
+  public void sendRequest_shouldKeepTheSessionAffinityUntilItsEnd() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.LEAST_OUTSTANDING_REQUESTS);
+
+    ServerNode server =
+        serverOf(
+            endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT)));
+    Integer endpointIndex = endpoint.getEndpointIndexBySessionId("session1");
+    assertThat(endpointIndex).isEqualTo(servers.indexOf(server));
+
+    for (int i = 0; i < 5; i++) {
+      assertThat(
+              serverOf(
+                  endpoint.sendRequest(
+                      message("session1", "localReader", MessageDto.Action.TRANSMIT))))
+          .isSameAs(server);
+    }
+    assertThat(
+            serverOf(
+                endpoint.sendRequest(
+                    message("session1", "localReader", MessageDto.Action.TERMINATE_SERVICE))))
+        .isSameAs(server);
+    assertThat(endpoint.getEndpointIndexBySessionId("session1")).isNull();
+  }
+
+  @Test
+  public void sendRequest_onRemoteReader_shouldRouteToTheServerWhichCreatedIt() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING);
+    ServerNode server =
+        serverOf(
+            endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT)));
+
+    // the events would be spread over all the servers if they were routed by local reader name
+    for (int i = 0; i < 20; i++) {
+      MessageDto readerEvent =
+          message("event" + i, "localReader" + i, MessageDto.Action.TRANSMIT)
+              .setAction(MessageDto.Action.READER_EVENT.name())
+              .setRemoteReaderName("remoteReader@" + server.name);
+      assertThat(serverOf(endpoint.sendRequest(readerEvent))).isSameAs(server);
+    }
+  }
+
+  @Test
+  public void sendRequest_whenErrorResponse_shouldClearTheAffinities() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING);
+    ServerNode server =
+        serverOf(
+            endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT)));
+    assertThat(endpoint.getEndpointIndexByRemoteReaderName("remoteReader@" + server.name))
+        .isNotNull();
+
+    endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.ERROR));
+
+    assertThat(endpoint.getEndpointIndexBySessionId("session1")).isNull();
+    assertThat(endpoint.getEndpointIndexByRemoteReaderName("remoteReader@" + server.name))
+        .isNull();
+  }
+
+  @Test
+  public void sendRequest_onSingleExchangePoolRequests_shouldNotKeepTheirSessions() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.LEAST_OUTSTANDING_REQUESTS);
+
+    for (MessageDto.Action action :
+        new MessageDto.Action[] {
+          MessageDto.Action.GET_READER_GROUP_REFERENCES, MessageDto.Action.RENEW_READER_LEASES
+        }) {
+      endpoint.sendRequest(
+          message("session_" + action.name(), null, action).setAction(action.name()));
+    }
+
+    assertThat(endpoint.getNbSessions()).isZero();
+  }
+
+  @Test
+  public void sendRequest_onPoolReader_shouldKeepTheAllocationSessionUntilTheRelease() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.LEAST_OUTSTANDING_REQUESTS);
+    ServerNode server =
+        serverOf(
+            endpoint.sendRequest(
+                message("session1", null, MessageDto.Action.ALLOCATE_READER)
+                    .setAction(MessageDto.Action.ALLOCATE_READER.name())));
+
+    // the errors of the allocated reader do not end its session
+    endpoint.sendRequest(
+        message("session1", "localReader", MessageDto.Action.ERROR)
+            .setAction(MessageDto.Action.TRANSMIT.name()));
+    assertThat(
+            serverOf(
+                endpoint.sendRequest(
+                    message("session1", "localReader", MessageDto.Action.TRANSMIT)
+                        .setAction(MessageDto.Action.TRANSMIT.name()))))
+        .isSameAs(server);
+
+    assertThat(
+            serverOf(
+                endpoint.sendRequest(
+                    message("session1", "localReader", MessageDto.Action.RELEASE_READER)
+                        .setAction(MessageDto.Action.RELEASE_READER.name()))))
+        .isSameAs(server);
+    assertThat(endpoint.getNbSessions()).isZero();
+  }
+
+  @Test
+  public void sendRequest_whenCompressedTerminateService_shouldUnregisterTheRemoteReader() {
+    StringBuilder userOutputData = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      userOutputData.append("output");
+    }
+    final String body =
+        "{\"unregisterRemoteReader\":true,\"userOutputData\":\"" + userOutputData + "\"}";
+    SyncEndpointClient compressingEndpoint =
+        new SyncEndpointClient() {
+          @Override
+          public List<MessageDto> sendRequest(MessageDto msg) {
+            MessageDto response =
+                new MessageDto(msg)
+                    .setAction(msg.getBody())
+                    .setRemoteReaderName("remoteReader")
+                    .setBody(
+                        MessageDto.Action.TERMINATE_SERVICE.name().equals(msg.getBody())
+                            ? body
+                            : null);
+            return Collections.singletonList(new MessageBodyCompressor(0).compress(response));
+          }
+        };
+    endpoint =
+        new ShardedSyncEndpointClient(
+            Collections.singletonList(compressingEndpoint),
+            ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING);
+
+    endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT));
+    assertThat(endpoint.getEndpointIndexByRemoteReaderName("remoteReader")).isEqualTo(0);
+
+    List<MessageDto> responses =
+        endpoint.sendRequest(
+            message("session1", "localReader", MessageDto.Action.TERMINATE_SERVICE));
+    assertThat(responses.get(0).getContentEncoding()).isNotNull();
+    assertThat(endpoint.getEndpointIndexByRemoteReaderName("remoteReader")).isNull();
+    assertThat(endpoint.getNbSessions()).isZero();
+  }
+
+  @Test
+  public void sendRequest_whenPolling_shouldPollAllTheServersWithoutSessionAffinity() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING);
+    servers.get(1).isFailing = true;
+
+    for (int i = 0; i < 5; i++) {
+      MessageDto poll =
+          message("poll" + i, null, MessageDto.Action.PLUGIN_EVENT)
+              .setAction(MessageDto.Action.CHECK_PLUGIN_EVENT.name());
+      List<MessageDto> responses = endpoint.sendRequest(poll);
+
+      // the responses of the healthy servers are merged
+      Set<String> respondingServers = new HashSet<String>();
+      for (MessageDto response : responses) {
+        respondingServers.add(response.getServerNodeId());
+      }
+      assertThat(respondingServers).containsOnly("server0", "server2");
+    }
+    assertThat(servers.get(0).sessionIds).hasSize(5);
+    assertThat(servers.get(2).sessionIds).hasSize(5);
+    assertThat(endpoint.getNbSessions()).isZero();
+  }
+
+  @Test
+  public void sendRequest_whenPollingAndAllServersFail_shouldThrowTheLastException() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING);
+    for (ServerNode server : servers) {
+      server.isFailing = true;
+    }
+    try {
+      endpoint.sendRequest(
+          message("poll", null, MessageDto.Action.READER_EVENT)
+              .setAction(MessageDto.Action.CHECK_READER_EVENT.name()));
+      failBecauseExceptionWasNotThrown(IllegalStateException.class);
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("is down");
+    }
+  }
+
+  @Test
+  public void sendRequest_whenServerFails_shouldFailOverNewSessions() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING, 60000);
+    ServerNode server =
+        serverOf(
+            endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT)));
+    int failingIndex = servers.indexOf(server);
+    server.isFailing = true;
+
+    // the pending session is not failed over
+    try {
+      endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT));
+      failBecauseExceptionWasNotThrown(IllegalStateException.class);
+    } catch (IllegalStateException e) {
+      assertThat(endpoint.getEndpointIndexBySessionId("session1")).isNull();
+    }
+
+    // a new session of the same local reader is failed over
+    ServerNode server2 =
+        serverOf(
+            endpoint.sendRequest(message("session2", "localReader", MessageDto.Action.TRANSMIT)));
+    assertThat(server2).isNotSameAs(server);
+    assertThat(endpoint.isHealthy(failingIndex)).isFalse();
+
+    // the unhealthy server does not receive any new session
+    for (int i = 0; i < 20; i++) {
+      endpoint.sendRequest(
+          message("session3-" + i, "localReader" + i, MessageDto.Action.TERMINATE_SERVICE));
+    }
+    assertThat(server.sessionIds).containsExactly("session1");
+  }
+
+  @Test
+  public void sendRequest_whenServerTimesOut_shouldNotFailOverTheNewSession() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.CONSISTENT_HASHING, 60000);
+    ServerNode server =
+        serverOf(
+            endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT)));
+    int slowIndex = servers.indexOf(server);
+    server.isTimingOut = true;
+
+    // the request may have been executed by the server, it must not be sent twice
+    try {
+      endpoint.sendRequest(
+          message("session2", "localReader", MessageDto.Action.TERMINATE_SERVICE));
+      failBecauseExceptionWasNotThrown(IllegalStateException.class);
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("is too slow");
+    }
+    assertThat(endpoint.isHealthy(slowIndex)).isFalse();
+    for (ServerNode otherServer : servers) {
+      if (otherServer != server) {
+        assertThat(otherServer.sessionIds).doesNotContain("session2");
+      }
+    }
+    assertThat(server.sessionIds).containsExactly("session1", "session2");
+  }
+
+  @Test
+  public void sendRequest_whenAllServersFail_shouldThrowTheLastException() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.LEAST_OUTSTANDING_REQUESTS);
+    for (ServerNode server : servers) {
+      server.isFailing = true;
+    }
+    try {
+      endpoint.sendRequest(message("session1", "localReader", MessageDto.Action.TRANSMIT));
+      failBecauseExceptionWasNotThrown(IllegalStateException.class);
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("is down");
+    }
+    for (int i = 0; i < NB_SERVERS; i++) {
+      assertThat(endpoint.isHealthy(i)).isFalse();
+    }
+  }
+
+  @Test
+  public void sendRequest_leastOutstandingRequests_shouldAvoidTheBusyServer() {
+    endpoint =
+        new ShardedSyncEndpointClient(
+            endpoints, ShardedSyncEndpointClient.RoutingStrategy.LEAST_OUTSTANDING_REQUESTS);
+    final ServerNode busyServer = servers.get(0);
+    busyServer.isBlocking = true;
+    new Thread() {
+      @Override
+      public void run() {
+        endpoint.sendRequest(message("busy", "localReader", MessageDto.Action.TERMINATE_SERVICE));
+      }
+    }.start();
+    await()
+        .atMost(1, TimeUnit.SECONDS)
+        .until(
+            new Callable<Boolean>() {
+              @Override
+              public Boolean call() {
+                return endpoint.getNbOutstandingRequests(0) == 1;
+              }
+            });
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(
+              serverOf(
+                  endpoint.sendRequest(
+                      message("session" + i, "localReader", MessageDto.Action.TERMINATE_SERVICE))))
+          .isNotSameAs(busyServer);
+    }
+    unblock.countDown();
+    await()
+        .atMost(1, TimeUnit.SECONDS)
+        .until(
+            new Callable<Boolean>() {
+              @Override
+              public Boolean call() {
+                return busyServer.sessionIds.contains("busy");
+              }
+            });
+  }
+}
@@ -0,0 +1,59 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.keyple.core.util.Assert;
+import org.eclipse.keyple.distributed.MessageDto;
+import org.eclipse.keyple.distributed.SyncNodeServer;
+import org.eclipse.keyple.distributed.spi.SyncEndpointClient;
+
+/**
+ * Stub implementation of a {@link SyncEndpointClient}, only for testing. It connects a client node
+ * directly to a {@link SyncNodeServer} node of the same JVM, without any network layer.
+ *
+ * <p>It is not a serialization-free transport : the message bodies remain the JSON strings built
+ * and parsed by the handlers, only the transport of the {@link MessageDto} envelopes is skipped.
+ * The envelopes are copied in both directions so that the client and the server nodes never share
+ * the same instance, all their fields being immutable values.
+ *
+ * <p>The server node must be initialized before the client component, e.g. {@code new
+ * StubLoopbackSyncEndpointClient(RemotePluginServerUtils.getSyncNode())}.
+ */
+public final class StubLoopbackSyncEndpointClient implements SyncEndpointClient {
+
+  private final SyncNodeServer server;
+
+  /**
+   * Constructor
+   *
+   * @param server the server node to connect to (must be not null)
+   */
+  public StubLoopbackSyncEndpointClient(SyncNodeServer server) {
+    Assert.getInstance().notNull(server, "server");
+    this.server = server;
+  }
+
+  @Override
+  public List<MessageDto> sendRequest(MessageDto msg) {
+    List<MessageDto> responses = server.onRequest(new MessageDto(msg));
+    if (responses == null || responses.isEmpty()) {
+      return responses;
+    }
+    List<MessageDto> copies = new ArrayList<MessageDto>(responses.size());
+    for (MessageDto response : responses) {
+      copies.add(new MessageDto(response));
+    }
+    return copies;
+  }
+}
@@ -0,0 +1,67 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.List;
+import org.eclipse.keyple.distributed.MessageDto;
+import org.eclipse.keyple.distributed.SyncNodeServer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class LoopbackSyncEndpointClientTest {
+
+  SyncNodeServer server;
+  StubLoopbackSyncEndpointClient endpoint;
+  MessageDto request;
+  MessageDto response;
+
+  @Before
+  public void setUp() {
+    server = mock(SyncNodeServer.class);
+    endpoint = new StubLoopbackSyncEndpointClient(server);
+    request =
+        new MessageDto()
+            .setSessionId("sessionId")
+            .setAction(MessageDto.Action.TRANSMIT.name())
+            .setClientNodeId("clientNodeId")
+            .setBody("request");
+    response = new MessageDto(request).setServerNodeId("serverNodeId").setBody("response");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_whenServerIsNull_shouldThrowIAE() {
+    new StubLoopbackSyncEndpointClient(null);
+  }
+
+  @Test
+  public void sendRequest_shouldTransmitACopyToTheServerAndReturnACopyOfTheResponses() {
+    ArgumentCaptor<MessageDto> captor = ArgumentCaptor.forClass(MessageDto.class);
+    doReturn(Collections.singletonList(response)).when(server).onRequest(captor.capture());
+
+    List<MessageDto> responses = endpoint.sendRequest(request);
+
+    assertThat(captor.getValue()).isNotSameAs(request).isEqualToComparingFieldByField(request);
+    assertThat(responses).hasSize(1);
+    assertThat(responses.get(0)).isNotSameAs(response).isEqualToComparingFieldByField(response);
+  }
+
+  @Test
+  public void sendRequest_whenNoResponse_shouldReturnAnEmptyList() {
+    doReturn(Collections.emptyList()).when(server).onRequest(any(MessageDto.class));
+    assertThat(endpoint.sendRequest(request)).isEmpty();
+  }
+}
@@ -252,6 +252,34 @@ public class SyncNodeClientTest extends AbstractSyncNodeTest {
     verifyZeroInteractions(handler);
   }
 
+  @Test
+  public void sendRequest_whenCompressionIsActivated_shouldCompressOnlyOnceTheServerAcceptsIt() {
+    SyncNodeClientImpl node = new SyncNodeClientImpl(handler, endpoint, null, null);
+    node.activateCompression(0);
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      body.append("{\"apdu\":\"00B2014400\"},");
+    }
+    msg.setBody(body.toString());
+
+    // the server has not advertised that it accepts compressed bodies yet
+    node.sendRequest(msg);
+    assertThat(endpoint.messages.get(0).getAcceptEncoding())
+        .isEqualTo(MessageBodyCompressor.DEFLATE);
+    assertThat(endpoint.messages.get(0).getContentEncoding()).isNull();
+
+    response.setAcceptEncoding(MessageBodyCompressor.DEFLATE);
+    node.sendRequest(msg);
+    assertThat(endpoint.messages.get(1).getContentEncoding())
+        .isEqualTo(MessageBodyCompressor.DEFLATE);
+
+    // a server no longer advertising it does not receive compressed bodies anymore
+    response.setAcceptEncoding(null);
+    node.sendRequest(msg);
+    node.sendRequest(msg);
+    assertThat(endpoint.messages.get(3).getContentEncoding()).isNull();
+  }
+
   @Test
   public void sendMessage_shouldCallEndpoint() {
     SyncNodeClientImpl node = new SyncNodeClientImpl(handler, endpoint, null, null);
@@ -17,6 +17,7 @@ import java.util.*;
 import org.eclipse.keyple.core.card.message.*;
 import org.eclipse.keyple.core.card.selection.MultiSelectionProcessing;
 import org.eclipse.keyple.core.plugin.AbstractReader;
+import org.eclipse.keyple.core.service.event.ReaderEvent;
 import org.eclipse.keyple.core.util.json.BodyError;
 import org.eclipse.keyple.core.util.json.KeypleGsonParser;
 import org.eclipse.keyple.distributed.MessageDto;
@@ -36,6 +37,11 @@ abstract class AbstractRemoteReader extends AbstractReader {
   private final String localReaderName;
   private final String sessionId;
 
+  private volatile Boolean isContactless;
+  private volatile long cardPresenceCacheTtl;
+  private volatile Boolean isCardPresent;
+  private volatile long cardPresenceTimestamp;
+
   /**
    * (package-private)<br>
    *
@@ -52,7 +58,30 @@ abstract class AbstractRemoteReader extends AbstractReader {
       AbstractNode node,
       String sessionId,
       String clientNodeId) {
-    super(pluginName, UUID.randomUUID().toString());
+    this(pluginName, UUID.randomUUID().toString(), localReaderName, node, sessionId, clientNodeId);
+  }
+
+  /**
+   * (package-private)<br>
+   * Creates a remote reader having the provided name instead of a random one, which avoids the cost
+   * of a secure random generation when the caller is able to generate unique names cheaply.
+   *
+   * @param pluginName The name of the plugin (must be not null).
+   * @param name The unique name of the remote reader (must be not null).
+   * @param localReaderName The name of the local reader (must be not null).
+   * @param node The associated node (must be not null).
+   * @param sessionId Session Id (can be null)
+   * @param clientNodeId Client node Id (can be null)
+   * @since 1.0
+   */
+  AbstractRemoteReader(
+      String pluginName,
+      String name,
+      String localReaderName,
+      AbstractNode node,
+      String sessionId,
+      String clientNodeId) {
+    super(pluginName, name);
     this.localReaderName = localReaderName;
     this.node = node;
     this.sessionId = sessionId;
@@ -120,11 +149,21 @@ abstract class AbstractRemoteReader extends AbstractReader {
   @Override
   public boolean isCardPresent() {
 
+    // Use the cached value if it is still valid
+    Boolean cachedValue = getCachedCardPresence();
+    if (cachedValue != null) {
+      return cachedValue;
+    }
+
     // Send the message as a request
     MessageDto response = sendRequest(MessageDto.Action.IS_CARD_PRESENT, null);
 
     // Extract the response
-    return KeypleGsonParser.getParser().fromJson(response.getBody(), Boolean.class);
+    boolean result = KeypleGsonParser.getParser().fromJson(response.getBody(), Boolean.class);
+    if (cardPresenceCacheTtl > 0) {
+      setCardPresence(result);
+    }
+    return result;
   }
 
   /**
@@ -167,10 +206,95 @@ abstract class AbstractRemoteReader extends AbstractReader {
    */
   @Override
   public boolean isContactless() {
-    MessageDto response = sendRequest(MessageDto.Action.IS_READER_CONTACTLESS, null);
 
-    // Extract the response
-    return KeypleGsonParser.getParser().fromJson(response.getBody(), Boolean.class);
+    // The transmission mode of a reader never changes, it is requested only once
+    if (isContactless == null) {
+      MessageDto response = sendRequest(MessageDto.Action.IS_READER_CONTACTLESS, null);
+
+      // Extract the response
+      isContactless = KeypleGsonParser.getParser().fromJson(response.getBody(), Boolean.class);
+    }
+    return isContactless;
+  }
+
+  /**
+   * (package-private)<br>
+   * Sets the transmission mode of the local reader when it is already known (e.g. when it is
+   * provided by the local service in the first message of the session), in order to avoid a
+   * network exchange when {@link #isContactless()} is invoked.
+   *
+   * @param isContactless true if the local reader is contactless.
+   * @since 1.0
+   */
+  void setContactless(boolean isContactless) {
+    this.isContactless = isContactless;
+  }
+
+  /**
+   * (package-private)<br>
+   * Sets the time to live of the card presence cache.
+   *
+   * <p>When the TTL is strictly positive, the result of {@link #isCardPresent()} is reused during
+   * this period instead of being requested again to the local reader. The cache is updated or
+   * invalidated when a reader event is received.
+   *
+   * @param cardPresenceCacheTtl The TTL in milliseconds (0 to disable the cache).
+   * @since 1.0
+   */
+  void setCardPresenceCacheTtl(long cardPresenceCacheTtl) {
+    this.cardPresenceCacheTtl = cardPresenceCacheTtl;
+    this.isCardPresent = null;
+  }
+
+  /**
+   * (package-private)<br>
+   * Updates the card presence cache according to a reader event received from the local service.
+   *
+   * @param eventType The type of the reader event (must be not null).
+   * @since 1.0
+   */
+  void updateCardPresence(ReaderEvent.EventType eventType) {
+    if (cardPresenceCacheTtl <= 0) {
+      return;
+    }
+    switch (eventType) {
+      case CARD_INSERTED:
+      case CARD_MATCHED:
+        setCardPresence(true);
+        break;
+      case CARD_REMOVED:
+        setCardPresence(false);
+        break;
+      default:
+        isCardPresent = null;
+        break;
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Stores the card presence in the cache.
+   *
+   * @param isCardPresent The card presence.
+   */
+  private void setCardPresence(boolean isCardPresent) {
+    this.cardPresenceTimestamp = System.currentTimeMillis();
+    this.isCardPresent = isCardPresent;
+  }
+
+  /**
+   * (private)<br>
+   * Gets the cached card presence if it is still valid.
+   *
+   * @return null if the cache is disabled, empty or expired.
+   */
+  private Boolean getCachedCardPresence() {
+    Boolean cachedValue = isCardPresent;
+    if (cachedValue != null
+        && System.currentTimeMillis() - cardPresenceTimestamp < cardPresenceCacheTtl) {
+      return cachedValue;
+    }
+    return null;
   }
 
   /**
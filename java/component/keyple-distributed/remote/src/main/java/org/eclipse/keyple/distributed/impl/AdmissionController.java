@@ -0,0 +1,535 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.keyple.distributed.RemoteServiceRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * (package-private)<br>
+ * Admission Controller of the remote service sessions.
+ *
+ * <p>It limits the number of concurrent sessions globally and by service id. When a limit is
+ * reached, the new sessions are queued by priority (the highest first, then by arrival order)
+ * during a bounded period, and are rejected with a {@link RemoteServiceRejectedException} carrying
+ * a retry-after hint when the queue is full or when the period has elapsed.
+ *
+ * <p>A session is admitted when it is the best ranked waiting session whose service has a free
+ * slot, so that a saturated service never blocks the sessions of the other services.
+ *
+ * <p>The admission never blocks the calling thread : the outcome of a queued session is notified
+ * later to its {@link AdmissionCallback} by the internal scheduler, when a slot is released or
+ * when its queueing time has elapsed.
+ *
+ * @since 1.0
+ */
+final class AdmissionController {
+
+  private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+  private final int maxConcurrentSessions;
+  private final int maxQueuedSessions;
+  private final int maxQueueingTimeInMillis;
+  private final int retryAfterInMillis;
+  private final ConcurrentMap<String, Integer> maxConcurrentSessionsByServiceId;
+
+  private long maxSessionDurationInMillis;
+
+  private final Map<String, String> serviceIdBySessionId;
+  private final Map<String, Long> activationDateBySessionId;
+  private final Map<String, Integer> nbActiveSessionsByServiceId;
+  private final List<Ticket> waitingTickets;
+  private long nextSequenceNumber;
+  private ScheduledFuture<?> expirationTask;
+  private final ScheduledExecutorService scheduler;
+
+  private final AtomicLong nbAdmittedSessions;
+  private final AtomicLong nbQueuedSessions;
+  private final AtomicLong nbRejectedSessions;
+  private final AtomicLong nbExpiredSessions;
+
+  /**
+   * (package-private)<br>
+   *
+   * @param maxConcurrentSessions The max number of concurrent sessions for all the services.
+   * @param maxQueuedSessions The max number of sessions waiting for admission (0 to reject the new
+   *     sessions as soon as a limit is reached).
+   * @param maxQueueingTimeInMillis The max time a session can wait for admission.
+   * @param retryAfterInMillis The delay suggested to the rejected clients before retrying.
+   * @since 1.0
+   */
+  AdmissionController(
+      int maxConcurrentSessions,
+      int maxQueuedSessions,
+      int maxQueueingTimeInMillis,
+      int retryAfterInMillis) {
+    this.maxConcurrentSessions = maxConcurrentSessions;
+    this.maxQueuedSessions = maxQueuedSessions;
+    this.maxQueueingTimeInMillis = maxQueueingTimeInMillis;
+    this.retryAfterInMillis = retryAfterInMillis;
+    this.maxConcurrentSessionsByServiceId = new ConcurrentHashMap<String, Integer>();
+    this.serviceIdBySessionId = new HashMap<String, String>();
+    // the oldest session first
+    this.activationDateBySessionId = new LinkedHashMap<String, Long>();
+    this.nbActiveSessionsByServiceId = new HashMap<String, Integer>();
+    this.waitingTickets = new ArrayList<Ticket>();
+    this.nbAdmittedSessions = new AtomicLong();
+    this.nbQueuedSessions = new AtomicLong();
+    this.nbRejectedSessions = new AtomicLong();
+    this.nbExpiredSessions = new AtomicLong();
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+              @Override
+              public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "admission-controller");
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+  }
+
+  /**
+   * (package-private)<br>
+   * Limits the number of concurrent sessions of a service.
+   *
+   * @param serviceId The service id.
+   * @param maxConcurrentSessions The max number of concurrent sessions of the service.
+   * @since 1.0
+   */
+  void setMaxConcurrentSessions(String serviceId, int maxConcurrentSessions) {
+    maxConcurrentSessionsByServiceId.put(serviceId, maxConcurrentSessions);
+  }
+
+  /**
+   * (package-private)<br>
+   * Limits the duration of the sessions : the slot of a session which has not been released in
+   * time (e.g. client crashed or remote service never terminated) is released at the next
+   * admission.
+   *
+   * @param maxSessionDurationInMillis The max duration of a session (0 for no limit).
+   * @since 1.0
+   */
+  synchronized void setMaxSessionDuration(long maxSessionDurationInMillis) {
+    this.maxSessionDurationInMillis = maxSessionDurationInMillis;
+  }
+
+  /**
+   * (package-private)<br>
+   * Admits a new session, or queues it until a slot is free without blocking the calling thread.
+   *
+   * <p>The callback is invoked by the calling thread if the session is admitted or rejected
+   * immediately, otherwise later by the internal scheduler.
+   *
+   * @param sessionId The session id.
+   * @param serviceId The service id.
+   * @param priority The priority of the session (the highest value first).
+   * @param callback The callback to notify of the outcome of the admission.
+   * @since 1.0
+   */
+  void admit(String sessionId, String serviceId, int priority, AdmissionCallback callback) {
+    List<Ticket> admittedTickets;
+    RemoteServiceRejectedException rejection = null;
+    boolean isAdmitted = false;
+    synchronized (this) {
+      expireSessions();
+      admittedTickets = pollAdmittedTickets();
+      if (hasFreeSlot(serviceId)) {
+        // no waiting session can be admitted instead
+        activate(sessionId, serviceId);
+        isAdmitted = true;
+      } else if (waitingTickets.size() >= maxQueuedSessions || maxQueueingTimeInMillis <= 0) {
+        rejection = reject(sessionId, serviceId, "the admission queue is full");
+      } else {
+        // wait in the queue for a free slot
+        Ticket ticket = new Ticket(sessionId, serviceId, priority, nextSequenceNumber++, callback);
+        insert(ticket);
+        nbQueuedSessions.incrementAndGet();
+        scheduleDeadline(ticket);
+        scheduleExpiration();
+      }
+    }
+    notifyAdmitted(admittedTickets);
+    if (isAdmitted) {
+      callback.onAdmitted();
+    } else if (rejection != null) {
+      callback.onRejected(rejection);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Releases the slot of a session, if it was admitted, then admits the waiting sessions which
+   * can use it.
+   *
+   * @param sessionId The session id.
+   * @since 1.0
+   */
+  void release(String sessionId) {
+    List<Ticket> admittedTickets;
+    synchronized (this) {
+      deactivate(sessionId);
+      admittedTickets = pollAdmittedTickets();
+    }
+    notifyAdmitted(admittedTickets);
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets a snapshot of the metrics of the admission control.
+   *
+   * @return a not null map containing the total numbers of admitted, queued, rejected and expired
+   *     sessions and the current numbers of active and waiting sessions.
+   * @since 1.0
+   */
+  synchronized Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<String, Long>();
+    metrics.put("admitted", nbAdmittedSessions.get());
+    metrics.put("queued", nbQueuedSessions.get());
+    metrics.put("rejected", nbRejectedSessions.get());
+    metrics.put("expired", nbExpiredSessions.get());
+    metrics.put("active", (long) serviceIdBySessionId.size());
+    metrics.put("waiting", (long) waitingTickets.size());
+    return metrics;
+  }
+
+  /**
+   * (private)<br>
+   * Deactivates a session and frees its slot, if it was admitted.
+   *
+   * @param sessionId The session id.
+   */
+  private void deactivate(String sessionId) {
+    String serviceId = serviceIdBySessionId.remove(sessionId);
+    if (serviceId == null) {
+      return;
+    }
+    activationDateBySessionId.remove(sessionId);
+    int nbActiveSessions = nbActiveSessionsByServiceId.get(serviceId) - 1;
+    if (nbActiveSessions == 0) {
+      nbActiveSessionsByServiceId.remove(serviceId);
+    } else {
+      nbActiveSessionsByServiceId.put(serviceId, nbActiveSessions);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Releases the slots of the sessions which have exceeded the max session duration.
+   */
+  private void expireSessions() {
+    if (maxSessionDurationInMillis <= 0) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    List<String> expiredSessionIds = new ArrayList<String>();
+    for (Map.Entry<String, Long> entry : activationDateBySessionId.entrySet()) {
+      if (now - entry.getValue() < maxSessionDurationInMillis) {
+        // the following sessions are more recent
+        break;
+      }
+      expiredSessionIds.add(entry.getKey());
+    }
+    for (String sessionId : expiredSessionIds) {
+      logger.warn("The session {} has expired, its admission slot is released", sessionId);
+      nbExpiredSessions.incrementAndGet();
+      deactivate(sessionId);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Gets the delay before the expiration of the oldest session.
+   *
+   * @return Long.MAX_VALUE if no session can expire.
+   */
+  private long getNextExpirationDelay() {
+    if (maxSessionDurationInMillis <= 0 || activationDateBySessionId.isEmpty()) {
+      return Long.MAX_VALUE;
+    }
+    long oldestActivationDate = activationDateBySessionId.values().iterator().next();
+    return Math.max(
+        1, oldestActivationDate + maxSessionDurationInMillis - System.currentTimeMillis());
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the current number of active sessions of a service.
+   *
+   * @param serviceId The service id.
+   * @return a positive number.
+   * @since 1.0
+   */
+  synchronized int getNbActiveSessions(String serviceId) {
+    Integer nbActiveSessions = nbActiveSessionsByServiceId.get(serviceId);
+    return nbActiveSessions != null ? nbActiveSessions : 0;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public String toString() {
+    return "AdmissionController" + getMetrics();
+  }
+
+  /**
+   * (private)<br>
+   * Activates the waiting sessions whose service has a free slot, in rank order.
+   *
+   * @return a not null list containing the tickets of the admitted sessions.
+   */
+  private List<Ticket> pollAdmittedTickets() {
+    List<Ticket> admittedTickets = new ArrayList<Ticket>();
+    Iterator<Ticket> iterator = waitingTickets.iterator();
+    while (iterator.hasNext() && serviceIdBySessionId.size() < maxConcurrentSessions) {
+      Ticket ticket = iterator.next();
+      if (hasFreeSlot(ticket.serviceId)) {
+        iterator.remove();
+        ticket.deadlineTask.cancel(false);
+        activate(ticket.sessionId, ticket.serviceId);
+        admittedTickets.add(ticket);
+      }
+    }
+    return admittedTickets;
+  }
+
+  /**
+   * (private)<br>
+   * Notifies the admitted waiting sessions, by the internal scheduler so that the thread releasing
+   * a slot never executes the start of another session.
+   *
+   * @param admittedTickets The tickets of the admitted sessions.
+   */
+  private void notifyAdmitted(List<Ticket> admittedTickets) {
+    for (final Ticket ticket : admittedTickets) {
+      scheduler.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              ticket.callback.onAdmitted();
+            }
+          });
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Schedules the rejection of a waiting session when its queueing time has elapsed.
+   *
+   * @param ticket The ticket of the session.
+   */
+  private void scheduleDeadline(final Ticket ticket) {
+    ticket.deadlineTask =
+        scheduler.schedule(
+            new Runnable() {
+              @Override
+              public void run() {
+                RemoteServiceRejectedException rejection;
+                synchronized (AdmissionController.this) {
+                  if (!waitingTickets.remove(ticket)) {
+                    // already admitted
+                    return;
+                  }
+                  rejection =
+                      reject(
+                          ticket.sessionId,
+                          ticket.serviceId,
+                          "the admission queueing time has elapsed");
+                }
+                ticket.callback.onRejected(rejection);
+              }
+            },
+            maxQueueingTimeInMillis,
+            TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * (private)<br>
+   * Schedules the release of the oldest session at its expiration while some sessions are
+   * waiting, unless it is already scheduled.
+   */
+  private void scheduleExpiration() {
+    long nextExpirationDelay = getNextExpirationDelay();
+    if (expirationTask != null
+        || waitingTickets.isEmpty()
+        || nextExpirationDelay == Long.MAX_VALUE) {
+      return;
+    }
+    expirationTask =
+        scheduler.schedule(
+            new Runnable() {
+              @Override
+              public void run() {
+                List<Ticket> admittedTickets;
+                synchronized (AdmissionController.this) {
+                  expirationTask = null;
+                  expireSessions();
+                  admittedTickets = pollAdmittedTickets();
+                  scheduleExpiration();
+                }
+                notifyAdmitted(admittedTickets);
+              }
+            },
+            nextExpirationDelay,
+            TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * (private)<br>
+   * Indicates if a service has a free slot.
+   *
+   * @param serviceId The service id.
+   * @return true if a new session of the service can be activated.
+   */
+  private boolean hasFreeSlot(String serviceId) {
+    if (serviceIdBySessionId.size() >= maxConcurrentSessions) {
+      return false;
+    }
+    Integer maxServiceSessions = maxConcurrentSessionsByServiceId.get(serviceId);
+    return maxServiceSessions == null || getNbActiveSessions(serviceId) < maxServiceSessions;
+  }
+
+  /**
+   * (private)<br>
+   * Inserts a ticket in the waiting list according to its rank.
+   *
+   * @param ticket The ticket.
+   */
+  private void insert(Ticket ticket) {
+    int index = waitingTickets.size();
+    while (index > 0 && ticket.isBefore(waitingTickets.get(index - 1))) {
+      index--;
+    }
+    waitingTickets.add(index, ticket);
+  }
+
+  /**
+   * (private)<br>
+   * Activates an admitted session.
+   *
+   * @param sessionId The session id.
+   * @param serviceId The service id.
+   */
+  private void activate(String sessionId, String serviceId) {
+    serviceIdBySessionId.put(sessionId, serviceId);
+    activationDateBySessionId.put(sessionId, System.currentTimeMillis());
+    nbActiveSessionsByServiceId.put(serviceId, getNbActiveSessions(serviceId) + 1);
+    nbAdmittedSessions.incrementAndGet();
+  }
+
+  /**
+   * (private)<br>
+   * Builds the exception rejecting a session.
+   *
+   * @param sessionId The session id.
+   * @param serviceId The service id.
+   * @param reason The reason of the rejection.
+   * @return a not null reference.
+   */
+  private RemoteServiceRejectedException reject(
+      String sessionId, String serviceId, String reason) {
+    nbRejectedSessions.incrementAndGet();
+    if (logger.isDebugEnabled()) {
+      logger.debug(
+          "Reject the session {} of the service {} because {}, {}",
+          sessionId,
+          serviceId,
+          reason,
+          getMetrics());
+    }
+    return new RemoteServiceRejectedException(
+        "The remote service " + serviceId + " is rejected because " + reason,
+        retryAfterInMillis);
+  }
+
+  /**
+   * (private)<br>
+   * Ticket of a session waiting for admission.
+   */
+  private static final class Ticket {
+
+    private final String sessionId;
+    private final String serviceId;
+    private final int priority;
+    private final long sequenceNumber;
+    private final AdmissionCallback callback;
+    private ScheduledFuture<?> deadlineTask;
+
+    private Ticket(
+        String sessionId,
+        String serviceId,
+        int priority,
+        long sequenceNumber,
+        AdmissionCallback callback) {
+      this.sessionId = sessionId;
+      this.serviceId = serviceId;
+      this.priority = priority;
+      this.sequenceNumber = sequenceNumber;
+      this.callback = callback;
+    }
+
+    /**
+     * (private)<br>
+     * Indicates if this ticket must be served before another one.
+     *
+     * @param other The other ticket.
+     * @return true if this ticket has a higher priority, or the same priority and an earlier
+     *     arrival.
+     */
+    private boolean isBefore(Ticket other) {
+      return priority > other.priority
+          || (priority == other.priority && sequenceNumber < other.sequenceNumber);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Callback notified of the outcome of the admission of a session.
+   *
+   * @since 1.0
+   */
+  interface AdmissionCallback {
+
+    /**
+     * Invoked when the session is admitted.
+     *
+     * @since 1.0
+     */
+    void onAdmitted();
+
+    /**
+     * Invoked when the session is rejected.
+     *
+     * @param e The rejection, containing the retry-after hint.
+     * @since 1.0
+     */
+    void onRejected(RemoteServiceRejectedException e);
+  }
+}
@@ -0,0 +1,243 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * (package-private)<br>
+ * Event Notification Executor.
+ *
+ * <p>Executes the event notification tasks on a thread pool, with the following guarantees :
+ *
+ * <ul>
+ *   <li>the tasks having the same key (e.g. the events of the same remote reader) are executed
+ *       serially in their submission order, the tasks having different keys are executed in
+ *       parallel.
+ *   <li>the number of pending tasks (queued or running) is bounded : when the limit is reached,
+ *       the submitting thread (i.e. the thread of the node) is blocked until a task completes,
+ *       which propagates the back pressure to the network endpoint.
+ * </ul>
+ *
+ * @since 1.0
+ */
+final class EventNotificationExecutor {
+
+  private static final Logger logger = LoggerFactory.getLogger(EventNotificationExecutor.class);
+
+  private final ExecutorService pool;
+  private final int maxPendingTasks;
+  private final Semaphore permits;
+  private final Map<String, LinkedList<Runnable>> tasksByKey;
+
+  private final AtomicInteger nbPendingTasks;
+  private final AtomicInteger maxNbPendingTasksReached;
+  private final AtomicLong nbCompletedTasks;
+  private final AtomicLong nbBlockedSubmissions;
+
+  /**
+   * (package-private)<br>
+   *
+   * @param pool The thread pool executing the tasks (must be not null).
+   * @param maxPendingTasks The max number of pending tasks (strictly positive).
+   * @since 1.0
+   */
+  EventNotificationExecutor(ExecutorService pool, int maxPendingTasks) {
+    this.pool = pool;
+    this.maxPendingTasks = maxPendingTasks;
+    this.permits = new Semaphore(maxPendingTasks);
+    this.tasksByKey = new HashMap<String, LinkedList<Runnable>>();
+    this.nbPendingTasks = new AtomicInteger();
+    this.maxNbPendingTasksReached = new AtomicInteger();
+    this.nbCompletedTasks = new AtomicLong();
+    this.nbBlockedSubmissions = new AtomicLong();
+  }
+
+  /**
+   * (package-private)<br>
+   * Submits a task, blocks the current thread while the max number of pending tasks is reached.
+   *
+   * @param key The ordering key of the task (must be not null).
+   * @param task The task (must be not null).
+   * @throws RejectedExecutionException If the thread pool rejects the task.
+   * @since 1.0
+   */
+  void execute(final String key, Runnable task) {
+    if (!permits.tryAcquire()) {
+      nbBlockedSubmissions.incrementAndGet();
+      if (logger.isDebugEnabled()) {
+        logger.debug("Event notification queue is full, block the submission of {}", key);
+      }
+      permits.acquireUninterruptibly();
+    }
+    int nbPending = nbPendingTasks.incrementAndGet();
+    int maxNbPending = maxNbPendingTasksReached.get();
+    while (nbPending > maxNbPending
+        && !maxNbPendingTasksReached.compareAndSet(maxNbPending, nbPending)) {
+      maxNbPending = maxNbPendingTasksReached.get();
+    }
+
+    synchronized (tasksByKey) {
+      LinkedList<Runnable> tasks = tasksByKey.get(key);
+      if (tasks != null) {
+        // a worker is already running for this key, it will execute the task
+        tasks.addLast(task);
+        return;
+      }
+      tasks = new LinkedList<Runnable>();
+      tasks.addLast(task);
+      tasksByKey.put(key, tasks);
+    }
+    try {
+      pool.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              executeTasks(key);
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      LinkedList<Runnable> tasks;
+      synchronized (tasksByKey) {
+        tasks = tasksByKey.remove(key);
+      }
+      releasePermits(tasks.size());
+      throw e;
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of tasks queued or running.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  int getNbPendingTasks() {
+    return nbPendingTasks.get();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the max number of pending tasks reached since the creation.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  int getMaxNbPendingTasksReached() {
+    return maxNbPendingTasksReached.get();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of keys having pending tasks.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  int getNbActiveKeys() {
+    synchronized (tasksByKey) {
+      return tasksByKey.size();
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of completed tasks.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  long getNbCompletedTasks() {
+    return nbCompletedTasks.get();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of submissions which have been blocked because the queue was full.
+   *
+   * @return a positive number.
+   * @since 1.0
+   */
+  long getNbBlockedSubmissions() {
+    return nbBlockedSubmissions.get();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 1.0
+   */
+  @Override
+  public String toString() {
+    return "pending="
+        + getNbPendingTasks()
+        + "/"
+        + maxPendingTasks
+        + ", maxPending="
+        + getMaxNbPendingTasksReached()
+        + ", activeKeys="
+        + getNbActiveKeys()
+        + ", completed="
+        + getNbCompletedTasks()
+        + ", blockedSubmissions="
+        + getNbBlockedSubmissions();
+  }
+
+  /**
+   * (private)<br>
+   * Executes serially the tasks of a key until its queue is empty.
+   *
+   * @param key The key.
+   */
+  private void executeTasks(String key) {
+    while (true) {
+      Runnable task;
+      synchronized (tasksByKey) {
+        LinkedList<Runnable> tasks = tasksByKey.get(key);
+        task = tasks.pollFirst();
+        if (task == null) {
+          tasksByKey.remove(key);
+          return;
+        }
+      }
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        logger.error("Unexpected error while notifying an event of {}", key, e);
+      } finally {
+        nbCompletedTasks.incrementAndGet();
+        releasePermits(1);
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Releases permits of pending tasks.
+   *
+   * @param nbTasks The number of tasks no more pending.
+   */
+  private void releasePermits(int nbTasks) {
+    nbPendingTasks.addAndGet(-nbTasks);
+    permits.release(nbTasks);
+  }
+}
@@ -14,7 +14,6 @@ package org.eclipse.keyple.distributed.impl;
 import com.google.gson.JsonObject;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
 import org.eclipse.keyple.core.plugin.ObservableReaderNotifier;
 import org.eclipse.keyple.core.service.event.AbstractDefaultSelectionsRequest;
 import org.eclipse.keyple.core.service.event.ObservableReader;
@@ -39,7 +38,7 @@ final class ObservableRemoteReaderImpl extends AbstractRemoteReader
   private static final Logger logger = LoggerFactory.getLogger(ObservableRemoteReaderImpl.class);
 
   private final List<ReaderObserver> observers;
-  private final ExecutorService eventNotificationPool;
+  private final EventNotificationExecutor eventNotificationExecutor;
 
   /**
    * (package-private)<br>
@@ -49,7 +48,7 @@ final class ObservableRemoteReaderImpl extends AbstractRemoteReader
    * @param node The associated node (must be not null).
    * @param sessionId Associated session Id (can be null)
    * @param clientNodeId Associated client node Id (can be null)
-   * @param eventNotificationPool The thread pool used to notify ReaderEvent (must be not null).
+   * @param eventNotificationExecutor The executor used to notify ReaderEvent (must be not null).
    * @since 1.0
    */
   ObservableRemoteReaderImpl(
@@ -58,10 +57,36 @@ final class ObservableRemoteReaderImpl extends AbstractRemoteReader
       AbstractNode node,
       String sessionId,
       String clientNodeId,
-      ExecutorService eventNotificationPool) {
+      EventNotificationExecutor eventNotificationExecutor) {
     super(pluginName, localReaderName, node, sessionId, clientNodeId);
     this.observers = new ArrayList<ReaderObserver>();
-    this.eventNotificationPool = eventNotificationPool;
+    this.eventNotificationExecutor = eventNotificationExecutor;
+  }
+
+  /**
+   * (package-private)<br>
+   * Creates an observable remote reader having the provided name.
+   *
+   * @param pluginName The name of the plugin (must be not null).
+   * @param name The unique name of the remote reader (must be not null).
+   * @param localReaderName The name of the local reader (must be not null).
+   * @param node The associated node (must be not null).
+   * @param sessionId Associated session Id (can be null)
+   * @param clientNodeId Associated client node Id (can be null)
+   * @param eventNotificationExecutor The executor used to notify ReaderEvent (must be not null).
+   * @since 1.0
+   */
+  ObservableRemoteReaderImpl(
+      String pluginName,
+      String name,
+      String localReaderName,
+      AbstractNode node,
+      String sessionId,
+      String clientNodeId,
+      EventNotificationExecutor eventNotificationExecutor) {
+    super(pluginName, name, localReaderName, node, sessionId, clientNodeId);
+    this.observers = new ArrayList<ReaderObserver>();
+    this.eventNotificationExecutor = eventNotificationExecutor;
   }
 
   /**
@@ -79,11 +104,14 @@ final class ObservableRemoteReaderImpl extends AbstractRemoteReader
           event.getEventType().name());
     }
 
+    updateCardPresence(event.getEventType());
+
     List<ReaderObserver> observersCopy = new ArrayList<ReaderObserver>(observers);
 
-    /* Notify each observer of the readerEvent in a separate thread */
+    /* Notify each observer of the readerEvent in a separate task, ordered by reader */
     for (final ObservableReader.ReaderObserver observer : observersCopy) {
-      eventNotificationPool.execute(
+      eventNotificationExecutor.execute(
+          getName(),
           new Runnable() {
             @Override
             public void run() {
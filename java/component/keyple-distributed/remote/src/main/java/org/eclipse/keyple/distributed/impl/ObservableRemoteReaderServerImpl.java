@@ -58,6 +58,7 @@ final class ObservableRemoteReaderServerImpl extends AbstractRemoteReaderServer
   @Override
   public void notifyObservers(ReaderEvent event) {
     if (masterReader != null) {
+      reader.updateCardPresence(event.getEventType());
       masterReader.notifyObservers(event);
     } else {
       reader.notifyObservers(event);
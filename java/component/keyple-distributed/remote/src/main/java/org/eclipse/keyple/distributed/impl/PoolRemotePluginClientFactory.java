@@ -171,6 +171,56 @@ public final class PoolRemotePluginClientFactory implements PluginFactory {
      * @since 1.0
      */
     PoolRemotePluginClientFactory build();
+
+    /**
+     * Activates the compression of the bodies of the messages exchanged with the server (optional).
+     *
+     * <p>The client node then indicates to the server that it accepts compressed bodies. Once the
+     * server node has advertised in its messages that it accepts them too, the client node
+     * compresses (deflate) the bodies of the messages it sends when their size in bytes (UTF-8)
+     * exceeds the provided threshold. The server node compresses the bodies of its messages with
+     * its own threshold, which is 1024 bytes.
+     *
+     * @param thresholdInBytes The size (in bytes) above which a body is compressed (positive or
+     *     zero, 0 meaning that all the bodies are compressed).
+     * @return next configuration step
+     * @throws IllegalArgumentException If the threshold is negative.
+     * @since 1.0
+     */
+    BuilderStep withCompression(int thresholdInBytes);
+
+    /**
+     * Activates the latency tracing of the messages exchanged with the server (optional).
+     *
+     * <p>The client node then assigns a trace id to the messages it sends, and both the client and
+     * server nodes timestamp the traced messages (sent, received and handled) and record per
+     * action histograms of the transit, queue, handling and round trip latencies. The breakdown of
+     * each traced message is logged at debug level.
+     *
+     * @return next configuration step
+     * @since 1.0
+     */
+    BuilderStep withLatencyTracing();
+
+    /**
+     * Activates the leasing of the pool readers (optional).
+     *
+     * <p>The plugin then keeps the provided number of idle readers pre-allocated for each group
+     * reference already requested, so that the allocations are served locally. The released
+     * readers are kept locally (up to this number) instead of being released on the server. The
+     * readers are allocated with a lease renewed in the background, the server releases the
+     * readers whose lease has expired (e.g. when the client crashed).
+     *
+     * <p>The logical channel of a released reader is closed before it is kept locally. The leasing
+     * is stopped and the leased readers are released on the server once the plugin is unregistered.
+     *
+     * @param nbIdleReadersByGroup The number of idle readers to keep by group reference (positive).
+     * @param leaseDurationInMillis The duration of a lease in milliseconds (strictly positive).
+     * @return next configuration step
+     * @throws IllegalArgumentException If a parameter is out of range.
+     * @since 1.0
+     */
+    BuilderStep withReaderLeasing(int nbIdleReadersByGroup, int leaseDurationInMillis);
   }
 
   /** The builder pattern to create the factory instance. */
@@ -180,6 +230,10 @@ public final class PoolRemotePluginClientFactory implements PluginFactory {
     private SyncEndpointClient syncEndpoint;
     private int timeoutInSec;
     private String pluginName;
+    private Integer compressionThreshold;
+    private boolean isLatencyTracingActivated;
+    private int nbIdleReadersByGroup;
+    private int leaseDuration;
 
     /**
      * {@inheritDoc}
@@ -268,7 +322,66 @@ public final class PoolRemotePluginClientFactory implements PluginFactory {
         plugin.bindSyncNodeClient(syncEndpoint, null, null);
       }
 
+      if (compressionThreshold != null) {
+        logger.info(
+            "Activate the compression of the messages above {} bytes", compressionThreshold);
+        plugin.activateNodeCompression(compressionThreshold);
+      }
+
+      // activate the latency tracing if requested
+      if (isLatencyTracingActivated) {
+        logger.info("Activate the latency tracing of the messages");
+        plugin.activateNodeLatencyTracing();
+      }
+
+      // activate the leasing of the pool readers if requested
+      if (leaseDuration > 0) {
+        logger.info(
+            "Activate the leasing of {} idle readers by group with a lease of {} ms",
+            nbIdleReadersByGroup,
+            leaseDuration);
+        plugin.activateReaderLeasing(nbIdleReadersByGroup, leaseDuration);
+      }
+
       return new PoolRemotePluginClientFactory(plugin);
     }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withCompression(int thresholdInBytes) {
+      Assert.getInstance().greaterOrEqual(thresholdInBytes, 0, "thresholdInBytes");
+      this.compressionThreshold = thresholdInBytes;
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withLatencyTracing() {
+      this.isLatencyTracingActivated = true;
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withReaderLeasing(int nbIdleReadersByGroup, int leaseDurationInMillis) {
+      Assert.getInstance()
+          .greaterOrEqual(nbIdleReadersByGroup, 0, "nbIdleReadersByGroup")
+          .greaterOrEqual(leaseDurationInMillis, 1, "leaseDurationInMillis");
+      this.nbIdleReadersByGroup = nbIdleReadersByGroup;
+      this.leaseDuration = leaseDurationInMillis;
+      return this;
+    }
   }
 }
@@ -12,6 +12,9 @@
 package org.eclipse.keyple.distributed.impl;
 
 import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.concurrent.ConcurrentHashMap;
@@ -32,6 +35,8 @@ import org.eclipse.keyple.distributed.PoolRemotePluginClient;
 final class PoolRemotePluginClientImpl extends AbstractRemotePlugin
     implements PoolRemotePluginClient {
 
+  private ReaderLeaseManager leaseManager;
+
   /**
    * (package-private)<br>
    *
@@ -43,6 +48,22 @@ final class PoolRemotePluginClientImpl extends AbstractRemotePlugin
     super(name);
   }
 
+  /**
+   * (package-private)<br>
+   * Activates the leasing of the pool readers.
+   *
+   * <p>The plugin then keeps a number of readers pre-allocated by group reference, allocated with a
+   * lease renewed in the background. The released readers are kept locally to serve the next
+   * allocations of their group without any network exchange.
+   *
+   * @param nbIdleReadersByGroup The number of idle readers to keep by group reference.
+   * @param leaseDuration The duration of a lease in milliseconds.
+   * @since 1.0
+   */
+  void activateReaderLeasing(int nbIdleReadersByGroup, long leaseDuration) {
+    leaseManager = new ReaderLeaseManager(this, nbIdleReadersByGroup, leaseDuration);
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -84,6 +105,30 @@ final class PoolRemotePluginClientImpl extends AbstractRemotePlugin
    */
   @Override
   public Reader allocateReader(String groupReference) {
+    RemoteReaderImpl reader = null;
+    if (leaseManager != null) {
+      reader = leaseManager.pollIdleReader(groupReference);
+    }
+    if (reader == null) {
+      reader = allocateRemoteReader(groupReference);
+    }
+    readers.put(reader.getName(), reader);
+    if (leaseManager != null) {
+      // pre-allocate the next readers of the group in the background
+      leaseManager.scheduleRefill(groupReference);
+    }
+    return reader;
+  }
+
+  /**
+   * (package-private)<br>
+   * Allocates a reader on the server, with a lease if the leasing is activated.
+   *
+   * @param groupReference The group reference.
+   * @return a not null reference.
+   * @since 1.0
+   */
+  RemoteReaderImpl allocateRemoteReader(String groupReference) {
     String sessionId = generateSessionId();
     try {
       // Open a new session on the node, session will be closed with the release reader method
@@ -91,6 +136,9 @@ final class PoolRemotePluginClientImpl extends AbstractRemotePlugin
 
       JsonObject body = new JsonObject();
       body.addProperty("groupReference", groupReference);
+      if (leaseManager != null) {
+        body.addProperty("leaseDuration", leaseManager.getLeaseDuration());
+      }
       MessageDto request =
           new MessageDto()
               .setAction(MessageDto.Action.ALLOCATE_READER.name())
@@ -107,7 +155,18 @@ final class PoolRemotePluginClientImpl extends AbstractRemotePlugin
               node,
               sessionId,
               response.getClientNodeId());
-      readers.put(reader.getName(), reader);
+
+      // the transmission mode of the local reader may be provided by the server
+      if (response.getBody() != null) {
+        JsonObject responseBody =
+            KeypleGsonParser.getParser().fromJson(response.getBody(), JsonObject.class);
+        if (responseBody.has("isReaderContactless")) {
+          reader.setContactless(responseBody.get("isReaderContactless").getAsBoolean());
+        }
+      }
+      if (leaseManager != null) {
+        leaseManager.onReaderLeased(reader, groupReference);
+      }
 
       return reader;
     } catch (RuntimeException e) {
@@ -131,19 +190,42 @@ final class PoolRemotePluginClientImpl extends AbstractRemotePlugin
 
     RemoteReaderImpl remoteReaderImpl = (RemoteReaderImpl) reader;
 
+    // unregister reader
+    readers.remove(reader.getName());
+
+    if (remoteReaderImpl.isRevoked()) {
+      // the reader is not allocated to this client anymore on the server
+      discardRemoteReader(remoteReaderImpl);
+      return;
+    }
+
+    // keep the reader locally if its lease is still needed
+    if (leaseManager == null || !leaseManager.offerIdleReader(remoteReaderImpl)) {
+      releaseRemoteReader(remoteReaderImpl);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Releases a reader on the server and closes its session.
+   *
+   * @param remoteReaderImpl The reader to release.
+   * @since 1.0
+   */
+  void releaseRemoteReader(RemoteReaderImpl remoteReaderImpl) {
+    if (leaseManager != null) {
+      leaseManager.onReaderReleased(remoteReaderImpl);
+    }
     try {
 
       MessageDto request =
           new MessageDto()
               .setAction(MessageDto.Action.RELEASE_READER.name())
-              .setRemoteReaderName(reader.getName())
+              .setRemoteReaderName(remoteReaderImpl.getName())
               .setLocalReaderName(remoteReaderImpl.getLocalReaderName())
               .setSessionId(remoteReaderImpl.getSessionId())
               .setBody(null);
 
-      // unregister reader
-      readers.remove(reader.getName());
-
       // it is assumed a session is already open on the node, else an error is thrown
       MessageDto response = node.sendRequest(request);
       checkError(response);
@@ -154,6 +236,77 @@ final class PoolRemotePluginClientImpl extends AbstractRemotePlugin
     }
   }
 
+  /**
+   * (package-private)<br>
+   * Renews the leases of the provided readers on the server.
+   *
+   * <p>Each lease is identified by the session of the allocation, so that the server does not renew
+   * the lease of a reader which has been reclaimed and allocated to another client meanwhile.
+   *
+   * @param sessionIdByLocalReaderName The allocation session ids of the leased readers, indexed by
+   *     local reader name.
+   * @return a not null list containing the names of the readers whose lease could not be renewed.
+   * @since 1.0
+   */
+  List<String> renewReaderLeases(Map<String, String> sessionIdByLocalReaderName) {
+    String sessionId = generateSessionId();
+    try {
+      // Open a new session on the node, session will be closed at the end of this operation
+      node.openSession(sessionId);
+
+      JsonObject body = new JsonObject();
+      body.add(
+          "sessionIdByLocalReaderName",
+          KeypleGsonParser.getParser().toJsonTree(sessionIdByLocalReaderName));
+      body.addProperty("leaseDuration", leaseManager.getLeaseDuration());
+      MessageDto request =
+          new MessageDto()
+              .setAction(MessageDto.Action.RENEW_READER_LEASES.name())
+              .setSessionId(sessionId)
+              .setBody(body.toString());
+
+      MessageDto response = node.sendRequest(request);
+
+      checkError(response);
+      return KeypleGsonParser.getParser()
+          .fromJson(
+              KeypleGsonParser.getParser()
+                  .fromJson(response.getBody(), JsonObject.class)
+                  .get("revokedLocalReaderNames"),
+              new TypeToken<ArrayList<String>>() {}.getType());
+
+    } finally {
+      node.closeSessionSilently(sessionId);
+    }
+  }
+
+  /**
+   * (package-private)<br>
+   * Closes the session of a reader which is not allocated anymore on the server.
+   *
+   * @param remoteReaderImpl The revoked reader.
+   * @since 1.0
+   */
+  void discardRemoteReader(RemoteReaderImpl remoteReaderImpl) {
+    node.closeSessionSilently(remoteReaderImpl.getSessionId());
+  }
+
+  /**
+   * (package-private)<br>
+   * Stops the leasing of the pool readers, if activated, and releases on the server all the leased
+   * readers, idle or in use.
+   *
+   * <p>Invoked when the plugin is unregistered.
+   *
+   * @since 1.0
+   */
+  void unregister() {
+    if (leaseManager != null) {
+      leaseManager.shutdown();
+    }
+    readers.clear();
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -0,0 +1,315 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import java.util.*;
+import java.util.concurrent.*;
+import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.core.service.exception.KeyplePluginNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * (package-private)<br>
+ * Reader Lease Manager of a {@link PoolRemotePluginClientImpl}.
+ *
+ * <p>Keeps a number of idle readers pre-allocated by group reference, in order to serve the
+ * allocations locally. The leases of all the leased readers (idle or in use) are renewed in the
+ * background before their expiry. The readers whose lease has been revoked by the server are
+ * discarded.
+ *
+ * <p>The logical channel of a released reader is closed before it is kept as idle reader.
+ *
+ * <p>Once the plugin has been registered, the manager stops by itself when the plugin is
+ * unregistered from the {@link SmartCardService}, which does not notify the pool plugins.
+ *
+ * @since 1.0
+ */
+final class ReaderLeaseManager {
+
+  private static final Logger logger = LoggerFactory.getLogger(ReaderLeaseManager.class);
+
+  private final PoolRemotePluginClientImpl plugin;
+  private final int nbIdleReadersByGroup;
+  private final long leaseDuration;
+
+  private final ConcurrentMap<String, Queue<RemoteReaderImpl>> idleReadersByGroupReference;
+  private final ConcurrentMap<String, RemoteReaderImpl> leasedReaderByName;
+  private final ConcurrentMap<String, String> groupReferenceByReaderName;
+  private final ConcurrentMap<String, Boolean> refillingGroupReferences;
+  private final ScheduledExecutorService scheduler;
+  private volatile boolean isPluginRegistered;
+
+  /**
+   * (package-private)<br>
+   * Creates the manager and schedules the renewal of the leases.
+   *
+   * @param plugin The associated plugin.
+   * @param nbIdleReadersByGroup The number of idle readers to keep by group reference.
+   * @param leaseDuration The duration of a lease in milliseconds.
+   * @since 1.0
+   */
+  ReaderLeaseManager(
+      final PoolRemotePluginClientImpl plugin, int nbIdleReadersByGroup, long leaseDuration) {
+    this.plugin = plugin;
+    this.nbIdleReadersByGroup = nbIdleReadersByGroup;
+    this.leaseDuration = leaseDuration;
+    this.idleReadersByGroupReference = new ConcurrentHashMap<String, Queue<RemoteReaderImpl>>();
+    this.leasedReaderByName = new ConcurrentHashMap<String, RemoteReaderImpl>();
+    this.groupReferenceByReaderName = new ConcurrentHashMap<String, String>();
+    this.refillingGroupReferences = new ConcurrentHashMap<String, Boolean>();
+    final String threadName = plugin.getName() + "-lease";
+    this.scheduler =
+        Executors.newScheduledThreadPool(
+            2,
+            new ThreadFactory() {
+              @Override
+              public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, threadName);
+                thread.setDaemon(true);
+                return thread;
+              }
+            });
+    long renewalPeriod = Math.max(leaseDuration / 3, 1);
+    this.scheduler.scheduleAtFixedRate(
+        new Runnable() {
+          @Override
+          public void run() {
+            if (isPluginUnregistered()) {
+              plugin.unregister();
+            } else {
+              renewLeases();
+            }
+          }
+        },
+        renewalPeriod,
+        renewalPeriod,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the duration of a lease.
+   *
+   * @return a positive number of milliseconds.
+   * @since 1.0
+   */
+  long getLeaseDuration() {
+    return leaseDuration;
+  }
+
+  /**
+   * (package-private)<br>
+   * Hands out an idle reader of the provided group.
+   *
+   * @param groupReference The group reference.
+   * @return null if no idle reader is available.
+   * @since 1.0
+   */
+  RemoteReaderImpl pollIdleReader(String groupReference) {
+    RemoteReaderImpl reader = getIdleReaders(groupReference).poll();
+    if (logger.isTraceEnabled()) {
+      logger.trace(
+          "Allocation in the groupReference {} served {}",
+          groupReference,
+          reader != null ? "locally" : "remotely");
+    }
+    return reader;
+  }
+
+  /**
+   * (package-private)<br>
+   * Registers a reader newly allocated with a lease.
+   *
+   * @param reader The leased reader.
+   * @param groupReference Its group reference.
+   * @since 1.0
+   */
+  void onReaderLeased(RemoteReaderImpl reader, String groupReference) {
+    leasedReaderByName.put(reader.getName(), reader);
+    groupReferenceByReaderName.put(reader.getName(), groupReference);
+  }
+
+  /**
+   * (package-private)<br>
+   * Keeps a released reader as idle reader if its group is not full.
+   *
+   * @param reader The released reader.
+   * @return false if the reader must be released on the server.
+   * @since 1.0
+   */
+  boolean offerIdleReader(RemoteReaderImpl reader) {
+    String groupReference = groupReferenceByReaderName.get(reader.getName());
+    if (groupReference == null) {
+      // the lease has been revoked
+      return false;
+    }
+    Queue<RemoteReaderImpl> idleReaders = getIdleReaders(groupReference);
+    if (idleReaders.size() >= nbIdleReadersByGroup || scheduler.isShutdown()) {
+      return false;
+    }
+    try {
+      // the next user gets the reader with a closed logical channel
+      reader.releaseChannel();
+    } catch (RuntimeException e) {
+      logger.debug(
+          "Unable to release the channel of the reader {} : {}", reader.getName(), e.getMessage());
+      return false;
+    }
+    idleReaders.offer(reader);
+    return true;
+  }
+
+  /**
+   * (package-private)<br>
+   * Unregisters a reader released on the server.
+   *
+   * @param reader The released reader.
+   * @since 1.0
+   */
+  void onReaderReleased(RemoteReaderImpl reader) {
+    leasedReaderByName.remove(reader.getName());
+    groupReferenceByReaderName.remove(reader.getName());
+  }
+
+  /**
+   * (package-private)<br>
+   * Stops the renewal of the leases and releases on the server all the leased readers, idle or in
+   * use.
+   *
+   * @since 1.0
+   */
+  void shutdown() {
+    scheduler.shutdown();
+    for (Queue<RemoteReaderImpl> idleReaders : idleReadersByGroupReference.values()) {
+      idleReaders.clear();
+    }
+    for (RemoteReaderImpl reader : new ArrayList<RemoteReaderImpl>(leasedReaderByName.values())) {
+      try {
+        plugin.releaseRemoteReader(reader);
+      } catch (RuntimeException e) {
+        // the lease will expire on the server
+        logger.warn("Unable to release the reader {} : {}", reader.getName(), e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Indicates if the plugin has been unregistered from the {@link SmartCardService}.
+   *
+   * @return false if the plugin is registered or has never been registered.
+   */
+  private boolean isPluginUnregistered() {
+    boolean isRegistered;
+    try {
+      isRegistered = SmartCardService.getInstance().getPlugin(plugin.getName()) == plugin;
+    } catch (KeyplePluginNotFoundException e) {
+      isRegistered = false;
+    }
+    if (isRegistered) {
+      isPluginRegistered = true;
+      return false;
+    }
+    return isPluginRegistered;
+  }
+
+  /**
+   * (private)<br>
+   * Gets or creates the queue of the idle readers of a group.
+   *
+   * @param groupReference The group reference.
+   * @return a not null queue.
+   */
+  private Queue<RemoteReaderImpl> getIdleReaders(String groupReference) {
+    Queue<RemoteReaderImpl> idleReaders = idleReadersByGroupReference.get(groupReference);
+    if (idleReaders == null) {
+      idleReaders = new ConcurrentLinkedQueue<RemoteReaderImpl>();
+      Queue<RemoteReaderImpl> existing =
+          idleReadersByGroupReference.putIfAbsent(groupReference, idleReaders);
+      if (existing != null) {
+        idleReaders = existing;
+      }
+    }
+    return idleReaders;
+  }
+
+  /**
+   * (package-private)<br>
+   * Schedules the pre-allocation of the missing idle readers of a group, if it is not already
+   * scheduled.
+   *
+   * @param groupReference The group reference.
+   * @since 1.0
+   */
+  void scheduleRefill(final String groupReference) {
+    if (scheduler.isShutdown()
+        || refillingGroupReferences.putIfAbsent(groupReference, Boolean.TRUE) != null) {
+      return;
+    }
+    scheduler.execute(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Queue<RemoteReaderImpl> idleReaders = getIdleReaders(groupReference);
+              while (idleReaders.size() < nbIdleReadersByGroup && !scheduler.isShutdown()) {
+                idleReaders.offer(plugin.allocateRemoteReader(groupReference));
+              }
+            } catch (RuntimeException e) {
+              logger.debug(
+                  "Unable to pre-allocate a reader in the groupReference {} : {}",
+                  groupReference,
+                  e.getMessage());
+            } finally {
+              refillingGroupReferences.remove(groupReference);
+            }
+          }
+        });
+  }
+
+  /**
+   * (private)<br>
+   * Renews the leases of all the leased readers and discards the revoked ones.
+   */
+  private void renewLeases() {
+    if (leasedReaderByName.isEmpty()) {
+      return;
+    }
+    Map<String, RemoteReaderImpl> readerByLocalName = new HashMap<String, RemoteReaderImpl>();
+    Map<String, String> sessionIdByLocalReaderName = new HashMap<String, String>();
+    for (RemoteReaderImpl reader : leasedReaderByName.values()) {
+      readerByLocalName.put(reader.getLocalReaderName(), reader);
+      sessionIdByLocalReaderName.put(reader.getLocalReaderName(), reader.getSessionId());
+    }
+    try {
+      List<String> revokedLocalReaderNames = plugin.renewReaderLeases(sessionIdByLocalReaderName);
+      for (String localReaderName : revokedLocalReaderNames) {
+        RemoteReaderImpl reader = readerByLocalName.get(localReaderName);
+        String groupReference = groupReferenceByReaderName.get(reader.getName());
+        onReaderReleased(reader);
+        if (groupReference != null && getIdleReaders(groupReference).remove(reader)) {
+          plugin.discardRemoteReader(reader);
+        } else {
+          // the next requests fail immediately, the reader is discarded when released
+          reader.revoke();
+          logger.warn(
+              "The lease of the reader {} has been revoked by the server while in use",
+              localReaderName);
+        }
+      }
+    } catch (RuntimeException e) {
+      // the next renewal will be attempted anyway
+      logger.error("Unable to renew the leases of the pool readers", e);
+    }
+  }
+}
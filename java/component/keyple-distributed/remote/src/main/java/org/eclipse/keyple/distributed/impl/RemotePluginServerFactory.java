@@ -11,8 +11,13 @@
  ************************************************************************************** */
 package org.eclipse.keyple.distributed.impl;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.keyple.core.service.Plugin;
 import org.eclipse.keyple.core.service.PluginFactory;
 import org.eclipse.keyple.core.service.event.ObservablePlugin;
@@ -34,6 +39,8 @@ public final class RemotePluginServerFactory implements PluginFactory {
   private static final Logger logger = LoggerFactory.getLogger(RemotePluginServerFactory.class);
 
   static final String DEFAULT_PLUGIN_NAME = "DefaultRemotePluginServer";
+  static final int DEFAULT_NB_EVENT_NOTIFICATION_THREADS = 16;
+  static final int DEFAULT_MAX_PENDING_EVENTS = 1000;
 
   private RemotePluginServer plugin;
 
@@ -153,20 +160,49 @@ public final class RemotePluginServerFactory implements PluginFactory {
     /**
      * Configures the plugin to use the default pool for events notification.
      *
-     * <p>The thread pool used by default is a {@link Executors#newCachedThreadPool()}. From the
-     * documentation, "it creates new threads as needed, but will reuse previously constructed
-     * threads when they are available."
+     * <p>The default pool is equivalent to {@link #usingBoundedEventNotificationPool(int, int)}
+     * with 16 threads and at most 1000 pending notifications.
      *
      * @return next configuration step
      * @since 1.0
      */
     BuilderStep usingDefaultEventNotificationPool();
 
+    /**
+     * Configures the plugin to use a bounded pool for events notification.
+     *
+     * <p>The notifications of the events of the same remote reader are executed serially in their
+     * reception order, the notifications of different remote readers are executed in parallel by
+     * at most the provided number of threads.
+     *
+     * <p>When the max number of pending notifications is reached, the thread of the node receiving
+     * the event is blocked until a notification completes, which propagates the back pressure to
+     * the network endpoint.
+     *
+     * <p>The {@link PluginEvent} notifying the start of a remote service is not executed by this
+     * pool : the observer notification of a remote service usually lasts as long as the service
+     * itself (see {@link RemotePluginServer}), so it is executed by a dedicated cached thread
+     * pool, in order not to hold the threads delivering the {@link ReaderEvent}s and not to cap
+     * the number of concurrent remote services. This number can be limited with {@link
+     * BuilderStep#withAdmissionControl(int, int, int, int)}.
+     *
+     * @param nbThreads The max number of threads (strictly positive).
+     * @param maxPendingEvents The max number of notifications queued or running (strictly
+     *     positive).
+     * @return next configuration step
+     * @throws IllegalArgumentException If a parameter is out of range.
+     * @since 1.0
+     */
+    BuilderStep usingBoundedEventNotificationPool(int nbThreads, int maxPendingEvents);
+
     /**
      * Configures the plugin to use a custom thread pool for events notification.
      *
      * <p>The custom pool should be flexible enough to handle many concurrent tasks as each {@link
-     * ReaderEvent} and {@link PluginEvent} are executed asynchronously.
+     * ReaderEvent} and {@link PluginEvent} are executed asynchronously, the notification of the
+     * start of a remote service lasting as long as the service itself. The notifications of the
+     * events of the same remote reader are nevertheless executed serially in their reception order.
+     * The number of pending notifications is not bounded.
      *
      * @param eventNotificationPool non nullable instance of a executor service
      * @return next configuration step
@@ -181,6 +217,81 @@ public final class RemotePluginServerFactory implements PluginFactory {
    * @since 1.0
    */
   public interface BuilderStep {
+    /**
+     * Activates a short-lived cache of the card presence on the remote readers (optional).
+     *
+     * <p>During the provided period, the result of {@code isCardPresent()} is reused instead of
+     * being requested again to the local reader. The cache is updated by the reader events
+     * received from the local service.
+     *
+     * @param ttlInMillis The time to live of the cached value in milliseconds (0 to disable it).
+     * @return next configuration step
+     * @throws IllegalArgumentException If the TTL is negative.
+     * @since 1.0
+     */
+    BuilderStep withCardPresenceCache(int ttlInMillis);
+
+    /**
+     * Activates the admission control of the remote service sessions (optional).
+     *
+     * <p>When the max number of concurrent sessions is reached, globally or for the service id of a
+     * new session, the new session waits for a free slot in a queue ordered by the priority
+     * provided by the client (the highest first), then by arrival order. It is rejected with a
+     * {@link org.eclipse.keyple.distributed.RemoteServiceRejectedException} containing the
+     * provided retry-after hint if the queue is full or if it waits longer than the provided time.
+     *
+     * <p>The slot of a session is released when {@code terminateService} is invoked on its remote
+     * reader, when the creation of its remote reader fails or when a plugin observer fails while
+     * processing its {@code READER_CONNECTED} event. Use {@link #withMaxSessionDuration(int)} to
+     * also release the slots of the sessions which never end (e.g. client crash).
+     *
+     * <p>The waiting sessions do not block the thread of the node which received them : they are
+     * started by an internal scheduler thread once admitted.
+     *
+     * @param maxConcurrentSessions The max number of concurrent sessions (at least 1).
+     * @param maxQueuedSessions The max number of waiting sessions (0 to reject the new sessions as
+     *     soon as a limit is reached).
+     * @param maxQueueingTimeInMillis The max waiting time of a session.
+     * @param retryAfterInMillis The delay suggested to the rejected clients before retrying.
+     * @return next configuration step
+     * @throws IllegalArgumentException If a value is out of range.
+     * @since 1.0
+     */
+    BuilderStep withAdmissionControl(
+        int maxConcurrentSessions,
+        int maxQueuedSessions,
+        int maxQueueingTimeInMillis,
+        int retryAfterInMillis);
+
+    /**
+     * Limits the number of concurrent sessions of a service (optional).
+     *
+     * <p>This limit is applied only if the admission control is activated, e.g. to prevent the low
+     * value services from using all the resources during the peaks.
+     *
+     * @param serviceId The service id.
+     * @param maxConcurrentSessions The max number of concurrent sessions of the service (at least
+     *     1).
+     * @return next configuration step
+     * @throws IllegalArgumentException If the service id is null or empty or if the number is out
+     *     of range.
+     * @since 1.0
+     */
+    BuilderStep withServiceConcurrencyLimit(String serviceId, int maxConcurrentSessions);
+
+    /**
+     * Limits the duration of the remote service sessions (optional).
+     *
+     * <p>This limit is applied only if the admission control is activated : the slot of a session
+     * which has not been released after the provided duration is released at the next admission.
+     *
+     * @param maxSessionDurationInMillis The max duration of a session (at least 1).
+     * @return next configuration step
+     * @throws IllegalArgumentException If the duration is out of range.
+     * @since 1.0
+     */
+    BuilderStep withMaxSessionDuration(int maxSessionDurationInMillis);
+
     /**
      * Builds the plugin factory instance.
      *
@@ -196,8 +307,15 @@ public final class RemotePluginServerFactory implements PluginFactory {
 
     private AsyncEndpointServer asyncEndpoint;
     private ExecutorService eventNotificationPool;
+    private int maxPendingEvents;
+    private ExecutorService serviceNotificationPool;
     private ObservablePlugin.PluginObserver observer;
     private String pluginName;
+    private int cardPresenceCacheTtl;
+    private AdmissionController admissionController;
+    private int maxSessionDuration;
+    private final Map<String, Integer> maxConcurrentSessionsByServiceId =
+        new HashMap<String, Integer>();
 
     /**
      * {@inheritDoc}
@@ -263,7 +381,32 @@ public final class RemotePluginServerFactory implements PluginFactory {
      */
     @Override
     public BuilderStep usingDefaultEventNotificationPool() {
-      this.eventNotificationPool = Executors.newCachedThreadPool();
+      return usingBoundedEventNotificationPool(
+          DEFAULT_NB_EVENT_NOTIFICATION_THREADS, DEFAULT_MAX_PENDING_EVENTS);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep usingBoundedEventNotificationPool(int nbThreads, int maxPendingEvents) {
+      Assert.getInstance()
+          .greaterOrEqual(nbThreads, 1, "nbThreads")
+          .greaterOrEqual(maxPendingEvents, 1, "maxPendingEvents");
+      ThreadPoolExecutor pool =
+          new ThreadPoolExecutor(
+              nbThreads,
+              nbThreads,
+              60,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>());
+      pool.allowCoreThreadTimeOut(true);
+      this.eventNotificationPool = pool;
+      this.maxPendingEvents = maxPendingEvents;
+      // the service notifications last as long as the services, they are executed apart
+      this.serviceNotificationPool = Executors.newCachedThreadPool();
       return this;
     }
 
@@ -276,6 +419,72 @@ public final class RemotePluginServerFactory implements PluginFactory {
     public BuilderStep usingEventNotificationPool(ExecutorService eventNotificationPool) {
       Assert.getInstance().notNull(eventNotificationPool, "eventNotificationPool");
       this.eventNotificationPool = eventNotificationPool;
+      this.maxPendingEvents = Integer.MAX_VALUE;
+      this.serviceNotificationPool = eventNotificationPool;
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withCardPresenceCache(int ttlInMillis) {
+      Assert.getInstance().greaterOrEqual(ttlInMillis, 0, "ttlInMillis");
+      this.cardPresenceCacheTtl = ttlInMillis;
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withAdmissionControl(
+        int maxConcurrentSessions,
+        int maxQueuedSessions,
+        int maxQueueingTimeInMillis,
+        int retryAfterInMillis) {
+      Assert.getInstance()
+          .greaterOrEqual(maxConcurrentSessions, 1, "maxConcurrentSessions")
+          .greaterOrEqual(maxQueuedSessions, 0, "maxQueuedSessions")
+          .greaterOrEqual(maxQueueingTimeInMillis, 0, "maxQueueingTimeInMillis")
+          .greaterOrEqual(retryAfterInMillis, 0, "retryAfterInMillis");
+      this.admissionController =
+          new AdmissionController(
+              maxConcurrentSessions,
+              maxQueuedSessions,
+              maxQueueingTimeInMillis,
+              retryAfterInMillis);
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withServiceConcurrencyLimit(String serviceId, int maxConcurrentSessions) {
+      Assert.getInstance()
+          .notEmpty(serviceId, "serviceId")
+          .greaterOrEqual(maxConcurrentSessions, 1, "maxConcurrentSessions");
+      maxConcurrentSessionsByServiceId.put(serviceId, maxConcurrentSessions);
+      return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 1.0
+     */
+    @Override
+    public BuilderStep withMaxSessionDuration(int maxSessionDurationInMillis) {
+      Assert.getInstance()
+          .greaterOrEqual(maxSessionDurationInMillis, 1, "maxSessionDurationInMillis");
+      this.maxSessionDuration = maxSessionDurationInMillis;
       return this;
     }
 
@@ -287,7 +496,9 @@ public final class RemotePluginServerFactory implements PluginFactory {
     @Override
     public RemotePluginServerFactory build() {
 
-      RemotePluginServerImpl plugin = new RemotePluginServerImpl(pluginName, eventNotificationPool);
+      RemotePluginServerImpl plugin =
+          new RemotePluginServerImpl(
+              pluginName, eventNotificationPool, maxPendingEvents, serviceNotificationPool);
 
       if (asyncEndpoint != null) {
         logger.info("Create a new RemotePluginServer with a AsyncNodeServer");
@@ -299,6 +510,22 @@ public final class RemotePluginServerFactory implements PluginFactory {
 
       plugin.addObserver(observer);
 
+      // activate the card presence cache if requested
+      if (cardPresenceCacheTtl > 0) {
+        logger.info("Activate the card presence cache with a TTL of {} ms", cardPresenceCacheTtl);
+        plugin.activateCardPresenceCache(cardPresenceCacheTtl);
+      }
+
+      // activate the admission control if requested
+      if (admissionController != null) {
+        logger.info("Activate the admission control of the remote service sessions");
+        for (Map.Entry<String, Integer> entry : maxConcurrentSessionsByServiceId.entrySet()) {
+          admissionController.setMaxConcurrentSessions(entry.getKey(), entry.getValue());
+        }
+        admissionController.setMaxSessionDuration(maxSessionDuration);
+        plugin.activateAdmissionControl(admissionController);
+      }
+
       return new RemotePluginServerFactory(plugin);
     }
   }
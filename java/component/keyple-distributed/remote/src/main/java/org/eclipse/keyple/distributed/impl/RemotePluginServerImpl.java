@@ -16,17 +16,20 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 import org.eclipse.keyple.core.service.Reader;
 import org.eclipse.keyple.core.service.event.PluginEvent;
 import org.eclipse.keyple.core.service.event.ReaderEvent;
 import org.eclipse.keyple.core.service.exception.KeypleReaderException;
 import org.eclipse.keyple.core.service.exception.KeypleReaderNotFoundException;
 import org.eclipse.keyple.core.util.Assert;
+import org.eclipse.keyple.core.util.json.BodyError;
 import org.eclipse.keyple.core.util.json.KeypleGsonParser;
 import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.ObservableRemoteReaderServer;
 import org.eclipse.keyple.distributed.RemotePluginServer;
 import org.eclipse.keyple.distributed.RemoteReaderServer;
+import org.eclipse.keyple.distributed.RemoteServiceRejectedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,8 +43,17 @@ final class RemotePluginServerImpl extends AbstractRemotePlugin implements Remot
 
   private static final Logger logger = LoggerFactory.getLogger(RemotePluginServerImpl.class);
   private static final String USER_INPUT_DATA = "userInputData";
+  private static final String IS_READER_CONTACTLESS = "isReaderContactless";
+  private static final String PRIORITY = "priority";
 
-  private final ExecutorService eventNotificationPool;
+  private final EventNotificationExecutor eventNotificationExecutor;
+  private final EventNotificationExecutor serviceNotificationExecutor;
+  private final String readerNamePrefix;
+  private final AtomicLong readerNameCounter;
+  private final ConcurrentMap<String, Set<String>> slaveReaderNamesByMasterReaderName;
+
+  private long cardPresenceCacheTtl;
+  private AdmissionController admissionController;
 
   /** The observers of this object */
   private final List<PluginObserver> observers;
@@ -61,9 +73,60 @@ final class RemotePluginServerImpl extends AbstractRemotePlugin implements Remot
    * @since 1.0
    */
   RemotePluginServerImpl(String name, ExecutorService eventNotificationPool) {
+    this(name, eventNotificationPool, Integer.MAX_VALUE, eventNotificationPool);
+  }
+
+  /**
+   * (package-private)<br>
+   * Instantiates a new RemotePluginServer whose reader event notifications are executed by the
+   * provided pool, ordered by remote reader and bounded to the provided number of pending
+   * notifications.
+   *
+   * <p>The notifications of the start of the remote services, which last as long as the services,
+   * are executed apart by the provided service notification pool, without bound.
+   *
+   * @param name The name of the plugin.
+   * @param eventNotificationPool The thread pool used to notify the reader events.
+   * @param maxPendingEvents The max number of pending notifications before blocking the node.
+   * @param serviceNotificationPool The thread pool used to notify the start of the services.
+   * @since 1.0
+   */
+  RemotePluginServerImpl(
+      String name,
+      ExecutorService eventNotificationPool,
+      int maxPendingEvents,
+      ExecutorService serviceNotificationPool) {
     super(name);
-    this.eventNotificationPool = eventNotificationPool;
+    this.eventNotificationExecutor =
+        new EventNotificationExecutor(eventNotificationPool, maxPendingEvents);
+    this.serviceNotificationExecutor =
+        new EventNotificationExecutor(serviceNotificationPool, Integer.MAX_VALUE);
     this.observers = new ArrayList<PluginObserver>();
+    this.readerNamePrefix = UUID.randomUUID().toString() + "-";
+    this.readerNameCounter = new AtomicLong();
+    this.slaveReaderNamesByMasterReaderName = new ConcurrentHashMap<String, Set<String>>();
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the executor of the event notifications, which provides the metrics of its queue.
+   *
+   * @return a not null reference.
+   * @since 1.0
+   */
+  EventNotificationExecutor getEventNotificationExecutor() {
+    return eventNotificationExecutor;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the executor of the notifications of the start of the remote services.
+   *
+   * @return a not null reference.
+   * @since 1.0
+   */
+  EventNotificationExecutor getServiceNotificationExecutor() {
+    return serviceNotificationExecutor;
   }
 
   /**
@@ -85,19 +148,21 @@ final class RemotePluginServerImpl extends AbstractRemotePlugin implements Remot
   void onMessage(MessageDto message) {
     switch (MessageDto.Action.valueOf(message.getAction())) {
       case EXECUTE_REMOTE_SERVICE:
-
-        // create a remote reader from message parameters
-        final AbstractRemoteReaderServer remoteReader = createMasterReader(message);
-        readers.put(remoteReader.getName(), remoteReader);
-        notifyObservers(
-            new PluginEvent(
-                getName(), remoteReader.getName(), PluginEvent.EventType.READER_CONNECTED));
+        final JsonObject body =
+            KeypleGsonParser.getParser().fromJson(message.getBody(), JsonObject.class);
+
+        if (admissionController == null) {
+          startSession(message, body);
+        } else {
+          // start the session when admitted, without blocking the thread of the node
+          admitSession(message, body);
+        }
         break;
       case READER_EVENT:
         Assert.getInstance().notNull(message.getRemoteReaderName(), "remoteReaderName");
 
         ObservableRemoteReaderServerImpl delegateRemoteReader = createSlaveReader(message);
-        readers.put(delegateRemoteReader.getName(), delegateRemoteReader);
+        registerSlaveReader(delegateRemoteReader);
 
         // notify observers of this event
         ReaderEvent readerEvent =
@@ -144,22 +209,25 @@ final class RemotePluginServerImpl extends AbstractRemotePlugin implements Remot
           (ObservableRemoteReaderServerImpl) remoteReader;
       if (observableReader.getMasterReader() != null) {
         // is observer and slave, remove it
-        readers.remove(remoteReader.getName());
+        unregisterSlaveReader(observableReader);
         if (observableReader.countObservers() == 0) {
-          // and master has no observer, remove and unregister master
-          readers.remove(observableReader.getMasterReader().getName());
+          // and master has no observer, remove and unregister master with its other slaves
+          unregisterMasterReader(observableReader.getMasterReader());
           unregisterRemoteReader = true;
         }
       } else {
         // is master
         if (observableReader.countObservers() == 0) {
-          // has no observer, remove it, unregister
-          readers.remove(remoteReader.getName());
+          // has no observer, remove it with its slaves, unregister
+          unregisterMasterReader(observableReader);
           unregisterRemoteReader = true;
         }
       }
     }
 
+    // the remote service session is over
+    releaseSession(remoteReader.getSessionId());
+
     JsonObject body = new JsonObject();
     body.addProperty("userOutputData", KeypleGsonParser.getParser().toJson(userOutputData));
     body.addProperty("unregisterRemoteReader", unregisterRemoteReader);
@@ -244,42 +312,302 @@ final class RemotePluginServerImpl extends AbstractRemotePlugin implements Remot
     return observers.size();
   }
 
+  /**
+   * (package-private)<br>
+   * Activates the cache of the card presence on the remote readers created from now on.
+   *
+   * @param cardPresenceCacheTtl The time to live of the cache in milliseconds (0 to disable it).
+   * @since 1.0
+   */
+  void activateCardPresenceCache(long cardPresenceCacheTtl) {
+    this.cardPresenceCacheTtl = cardPresenceCacheTtl;
+  }
+
+  /**
+   * (package-private)<br>
+   * Activates the admission control of the remote service sessions.
+   *
+   * @param admissionController The admission controller to use.
+   * @since 1.0
+   */
+  void activateAdmissionControl(AdmissionController admissionController) {
+    this.admissionController = admissionController;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the admission controller of the remote service sessions.
+   *
+   * @return null if the admission control is not activated.
+   * @since 1.0
+   */
+  AdmissionController getAdmissionController() {
+    return admissionController;
+  }
+
+  /**
+   * (package-private)<br>
+   * Gets the number of slave readers currently registered for the provided master reader.
+   *
+   * @param masterReaderName The name of the master reader.
+   * @return 0 if the master reader is unknown or released.
+   * @since 1.0
+   */
+  int countSlaveReaders(String masterReaderName) {
+    Set<String> slaveReaderNames = slaveReaderNamesByMasterReaderName.get(masterReaderName);
+    return slaveReaderNames != null ? slaveReaderNames.size() : 0;
+  }
+
+  /**
+   * (private)<br>
+   * Starts a new remote service session : creates its remote reader from the message parameters
+   * and notifies the plugin observers.
+   *
+   * @param message The EXECUTE_REMOTE_SERVICE message.
+   * @param body The body of the message.
+   */
+  private void startSession(MessageDto message, JsonObject body) {
+    final AbstractRemoteReaderServer remoteReader;
+    try {
+      remoteReader = createMasterReader(message, body);
+    } catch (RuntimeException e) {
+      releaseSession(message.getSessionId());
+      throw e;
+    }
+    if (remoteReader instanceof ObservableRemoteReaderServer) {
+      slaveReaderNamesByMasterReaderName.put(
+          remoteReader.getName(),
+          Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()));
+    }
+    readers.put(remoteReader.getName(), remoteReader);
+    notifyObservers(
+        new PluginEvent(getName(), remoteReader.getName(), PluginEvent.EventType.READER_CONNECTED),
+        remoteReader);
+  }
+
+  /**
+   * (private)<br>
+   * Submits a new remote service session to the admission control. The session is started once
+   * admitted, possibly by another thread. If the session is rejected or cannot be started, an
+   * error containing the cause (e.g. a {@link RemoteServiceRejectedException}) is sent to the
+   * client.
+   *
+   * @param message The EXECUTE_REMOTE_SERVICE message.
+   * @param body The body of the message.
+   */
+  private void admitSession(final MessageDto message, final JsonObject body) {
+    int priority = body.has(PRIORITY) ? body.get(PRIORITY).getAsInt() : 0;
+    admissionController.admit(
+        message.getSessionId(),
+        body.get("serviceId").getAsString(),
+        priority,
+        new AdmissionController.AdmissionCallback() {
+          @Override
+          public void onAdmitted() {
+            try {
+              startSession(message, body);
+            } catch (RuntimeException e) {
+              logger.error(
+                  "[{}] The remote service session {} cannot be started",
+                  getName(),
+                  message.getSessionId(),
+                  e);
+              sendError(message, e);
+            }
+          }
+
+          @Override
+          public void onRejected(RemoteServiceRejectedException e) {
+            sendError(message, e);
+          }
+        });
+  }
+
+  /**
+   * (private)<br>
+   * Sends an error in response to a message.
+   *
+   * @param message The message.
+   * @param e The error.
+   */
+  private void sendError(MessageDto message, RuntimeException e) {
+    node.sendMessage(
+        new MessageDto(message) //
+            .setAction(MessageDto.Action.ERROR.name()) //
+            .setBody(KeypleGsonParser.getParser().toJson(new BodyError(e))));
+  }
+
+  /**
+   * (private)<br>
+   * Releases the admission slot of a remote service session, if any.
+   *
+   * @param sessionId The session id.
+   */
+  private void releaseSession(String sessionId) {
+    if (admissionController != null && sessionId != null) {
+      admissionController.release(sessionId);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Generates a unique remote reader name.
+   *
+   * <p>The name is made of a random prefix computed once by plugin instance and of a counter, in
+   * order to avoid a secure random generation for each remote service and each reader event while
+   * keeping the names unique across the restarts of the server.
+   *
+   * @return a not empty string.
+   */
+  private String generateReaderName() {
+    return readerNamePrefix + Long.toHexString(readerNameCounter.incrementAndGet());
+  }
+
+  /**
+   * (private)<br>
+   * Registers a slave reader and attaches it to its master reader, so that it is released at the
+   * latest with its master reader.
+   *
+   * @param slaveReader The slave reader.
+   * @throws KeypleReaderNotFoundException if the master reader has been released meanwhile.
+   */
+  private void registerSlaveReader(ObservableRemoteReaderServerImpl slaveReader) {
+    String masterReaderName = slaveReader.getMasterReader().getName();
+    Set<String> slaveReaderNames = slaveReaderNamesByMasterReaderName.get(masterReaderName);
+    if (slaveReaderNames == null) {
+      throw new KeypleReaderNotFoundException(masterReaderName);
+    }
+    synchronized (slaveReaderNames) {
+      if (slaveReaderNamesByMasterReaderName.get(masterReaderName) != slaveReaderNames) {
+        throw new KeypleReaderNotFoundException(masterReaderName);
+      }
+      readers.put(slaveReader.getName(), slaveReader);
+      slaveReaderNames.add(slaveReader.getName());
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Removes a slave reader and detaches it from its master reader.
+   *
+   * @param slaveReader The slave reader.
+   */
+  private void unregisterSlaveReader(ObservableRemoteReaderServerImpl slaveReader) {
+    readers.remove(slaveReader.getName());
+    Set<String> slaveReaderNames =
+        slaveReaderNamesByMasterReaderName.get(slaveReader.getMasterReader().getName());
+    if (slaveReaderNames != null) {
+      slaveReaderNames.remove(slaveReader.getName());
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Removes a master reader and all the slave readers still attached to it.
+   *
+   * @param masterReader The master reader.
+   */
+  private void unregisterMasterReader(ObservableRemoteReaderServerImpl masterReader) {
+    readers.remove(masterReader.getName());
+    Set<String> slaveReaderNames =
+        slaveReaderNamesByMasterReaderName.remove(masterReader.getName());
+    if (slaveReaderNames == null) {
+      return;
+    }
+    synchronized (slaveReaderNames) {
+      for (String slaveReaderName : slaveReaderNames) {
+        readers.remove(slaveReaderName);
+      }
+      if (!slaveReaderNames.isEmpty() && logger.isTraceEnabled()) {
+        logger.trace(
+            "[{}] Released {} slave readers of the remote reader {}",
+            getName(),
+            slaveReaderNames.size(),
+            masterReader.getName());
+      }
+      slaveReaderNames.clear();
+    }
+  }
+
   /**
    * (private)<br>
-   * Notify observers of an event. Each observer is notified in a separate thread.
+   * Notify observers of an event. Each observer is notified in a separate task of the service
+   * notification executor, the notifications of the events of the same reader are ordered.
+   *
+   * <p>If an observer fails, the remote service of the reader is aborted.
    *
    * @param event non nullable instance of event
+   * @param remoteReader The remote reader of the remote service.
    */
-  private void notifyObservers(final PluginEvent event) {
+  private void notifyObservers(
+      final PluginEvent event, final AbstractRemoteReaderServer remoteReader) {
+    // the plugin events are not ordered with the reader events, whose notification may be awaited
+    // by the plugin observer
+    String key = "PLUGIN_EVENT:" + event.getReaderNames().first();
     for (final PluginObserver observer : observers) {
-      eventNotificationPool.execute(
+      serviceNotificationExecutor.execute(
+          key,
           new Runnable() {
             @Override
             public void run() {
-              observer.update(event);
+              try {
+                observer.update(event);
+              } catch (RuntimeException e) {
+                abortService(remoteReader, e);
+              }
             }
           });
     }
   }
 
+  /**
+   * (private)<br>
+   * Aborts a remote service whose execution failed on the server side : the remote reader is
+   * removed with its slave readers, the admission slot of the session is released and the error
+   * is sent to the client.
+   *
+   * <p>Nothing is done if the remote reader has already been removed by {@link
+   * #terminateService(String, Object)}.
+   *
+   * @param remoteReader The remote reader of the remote service.
+   * @param e The error.
+   */
+  private void abortService(AbstractRemoteReaderServer remoteReader, RuntimeException e) {
+    logger.error(
+        "[{}] The remote service of the reader {} failed", getName(), remoteReader.getName(), e);
+    if (readers.remove(remoteReader.getName()) == null) {
+      return;
+    }
+    if (remoteReader instanceof ObservableRemoteReaderServerImpl) {
+      unregisterMasterReader((ObservableRemoteReaderServerImpl) remoteReader);
+    }
+    releaseSession(remoteReader.getSessionId());
+    node.sendMessage(
+        new MessageDto() //
+            .setAction(MessageDto.Action.ERROR.name()) //
+            .setRemoteReaderName(remoteReader.getName()) //
+            .setSessionId(remoteReader.getSessionId()) //
+            .setClientNodeId(remoteReader.getClientNodeId()) //
+            .setBody(KeypleGsonParser.getParser().toJson(new BodyError(e))));
+  }
+
   /**
    * (private)<br>
    * Create a server remote reader based on incoming message. Can be an observable or not.
    *
    * @param message incoming message
+   * @param body The body of the incoming message.
    * @return non null instance of AbstractRemoteReaderServer
    */
-  private AbstractRemoteReaderServer createMasterReader(MessageDto message) {
+  private AbstractRemoteReaderServer createMasterReader(MessageDto message, JsonObject body) {
 
-    final JsonObject body =
-        KeypleGsonParser.getParser().fromJson(message.getBody(), JsonObject.class);
     final String serviceId = body.get("serviceId").getAsString();
     final String userInputData =
         body.has(USER_INPUT_DATA) ? body.get(USER_INPUT_DATA).toString() : null;
     final String initialCardContent =
         body.has("initialCardContent") ? body.get("initialCardContent").toString() : null;
     boolean isObservable = body.has("isObservable") && body.get("isObservable").getAsBoolean();
-    final String remoteReaderName = UUID.randomUUID().toString();
+    final String remoteReaderName = generateReaderName();
     final String sessionId = message.getSessionId();
     final String clientNodeId = message.getClientNodeId();
 
@@ -296,12 +624,21 @@ final class RemotePluginServerImpl extends AbstractRemotePlugin implements Remot
     if (isObservable) {
       ObservableRemoteReaderImpl observableRemoteReaderImpl =
           new ObservableRemoteReaderImpl(
-              getName(), remoteReaderName, node, sessionId, clientNodeId, eventNotificationPool);
+              getName(),
+              remoteReaderName,
+              remoteReaderName,
+              node,
+              sessionId,
+              clientNodeId,
+              eventNotificationExecutor);
+      initReaderMetadata(observableRemoteReaderImpl, body);
       return new ObservableRemoteReaderServerImpl(
           observableRemoteReaderImpl, serviceId, userInputData, initialCardContent, null);
     } else {
       RemoteReaderImpl remoteReaderImpl =
-          new RemoteReaderImpl(getName(), remoteReaderName, node, sessionId, clientNodeId);
+          new RemoteReaderImpl(
+              getName(), remoteReaderName, remoteReaderName, node, sessionId, clientNodeId);
+      initReaderMetadata(remoteReaderImpl, body);
       return new RemoteReaderServerImpl(
           remoteReaderImpl, serviceId, userInputData, initialCardContent);
     }
@@ -323,16 +660,38 @@ final class RemotePluginServerImpl extends AbstractRemotePlugin implements Remot
 
     String userInputData = body.has(USER_INPUT_DATA) ? body.get(USER_INPUT_DATA).toString() : null;
 
+    // the name of the slave reader is derived from its master one, without any random generation
+    final String slaveReaderName =
+        observableRemoteReaderServer.getName()
+            + "/"
+            + Long.toHexString(readerNameCounter.incrementAndGet());
     ObservableRemoteReaderImpl observableRemoteReader =
         new ObservableRemoteReaderImpl(
             getName(),
-            UUID.randomUUID().toString(),
+            slaveReaderName,
+            slaveReaderName,
             node,
             message.getSessionId(),
             message.getClientNodeId(),
-            eventNotificationPool);
+            eventNotificationExecutor);
+    initReaderMetadata(observableRemoteReader, body);
     // create a temporary remote reader for this event
     return new ObservableRemoteReaderServerImpl(
         observableRemoteReader, null, userInputData, null, observableRemoteReaderServer);
   }
+
+  /**
+   * (private)<br>
+   * Initializes the cached metadata of a remote reader using the properties of the local reader
+   * provided by the local service in the incoming message, if any.
+   *
+   * @param remoteReader The remote reader to initialize.
+   * @param body The body of the incoming message.
+   */
+  private void initReaderMetadata(AbstractRemoteReader remoteReader, JsonObject body) {
+    if (body.has(IS_READER_CONTACTLESS)) {
+      remoteReader.setContactless(body.get(IS_READER_CONTACTLESS).getAsBoolean());
+    }
+    remoteReader.setCardPresenceCacheTtl(cardPresenceCacheTtl);
+  }
 }
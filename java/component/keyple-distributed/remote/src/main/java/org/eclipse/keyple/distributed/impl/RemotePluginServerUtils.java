@@ -11,6 +11,7 @@
  ************************************************************************************** */
 package org.eclipse.keyple.distributed.impl;
 
+import java.util.Map;
 import org.eclipse.keyple.core.service.SmartCardService;
 import org.eclipse.keyple.core.service.exception.KeyplePluginNotFoundException;
 import org.eclipse.keyple.core.util.Assert;
@@ -121,4 +122,28 @@ public final class RemotePluginServerUtils {
     throw new IllegalStateException(
         "The RemotePluginServer is not configured with a SyncNodeServer");
   }
+
+  /**
+   * Gets the metrics of the admission control of the remote plugin having the provided name.
+   *
+   * <p>The map contains the total numbers of <b>admitted</b>, <b>queued</b> and <b>rejected</b>
+   * remote service sessions since the start of the plugin, and the current numbers of
+   * <b>active</b> and <b>waiting</b> sessions.
+   *
+   * @param pluginName The name of the remote plugin.
+   * @return A not null map.
+   * @throws IllegalArgumentException If the plugin name is null.
+   * @throws KeyplePluginNotFoundException If the plugin is not registered.
+   * @throws IllegalStateException If the admission control is not activated.
+   * @since 1.0
+   */
+  public static Map<String, Long> getAdmissionControlMetrics(String pluginName) {
+    Assert.getInstance().notNull(pluginName, PLUGIN_NAME);
+    RemotePluginServerImpl plugin = (RemotePluginServerImpl) getRemotePlugin(pluginName);
+    if (plugin.getAdmissionController() == null) {
+      throw new IllegalStateException(
+          "The admission control of the RemotePluginServer is not activated");
+    }
+    return plugin.getAdmissionController().getMetrics();
+  }
 }
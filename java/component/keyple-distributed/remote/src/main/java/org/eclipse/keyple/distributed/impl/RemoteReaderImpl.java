@@ -11,6 +11,10 @@
  ************************************************************************************** */
 package org.eclipse.keyple.distributed.impl;
 
+import com.google.gson.JsonObject;
+import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
+import org.eclipse.keyple.distributed.MessageDto;
+
 /**
  * (package-private)<br>
  * Remote Reader
@@ -19,6 +23,8 @@ package org.eclipse.keyple.distributed.impl;
  */
 final class RemoteReaderImpl extends AbstractRemoteReader {
 
+  private volatile boolean isRevoked;
+
   /**
    * (package-private)<br>
    *
@@ -37,4 +43,66 @@ final class RemoteReaderImpl extends AbstractRemoteReader {
       String clientNodeId) {
     super(pluginName, localReaderName, node, sessionId, clientNodeId);
   }
+
+  /**
+   * (package-private)<br>
+   * Creates a remote reader having the provided name.
+   *
+   * @param pluginName The name of the plugin (must be not null).
+   * @param name The unique name of the remote reader (must be not null).
+   * @param localReaderName The name of the local reader (must be not null).
+   * @param node The associated node (must be not null).
+   * @param sessionId Session Id (can be null)
+   * @param clientNodeId Associated client node Id (can be null)
+   * @since 1.0
+   */
+  RemoteReaderImpl(
+      String pluginName,
+      String name,
+      String localReaderName,
+      AbstractNode node,
+      String sessionId,
+      String clientNodeId) {
+    super(pluginName, name, localReaderName, node, sessionId, clientNodeId);
+  }
+
+  /**
+   * (package-private)<br>
+   * Marks the reader as revoked, i.e. it is not allocated to this client anymore on the server, its
+   * lease having expired.
+   *
+   * <p>The next requests fail immediately instead of reaching a reader which may have been
+   * allocated to another client.
+   *
+   * @since 1.0
+   */
+  void revoke() {
+    isRevoked = true;
+  }
+
+  /**
+   * (package-private)<br>
+   * Indicates whether the reader has been revoked by the server.
+   *
+   * @return true if the reader is revoked.
+   * @since 1.0
+   */
+  boolean isRevoked() {
+    return isRevoked;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws KeypleReaderIOException If the reader has been revoked by the server.
+   * @since 1.0
+   */
+  @Override
+  MessageDto sendRequest(MessageDto.Action action, JsonObject body) {
+    if (isRevoked) {
+      throw new KeypleReaderIOException(
+          "The lease of the reader " + getLocalReaderName() + " has been revoked by the server");
+    }
+    return super.sendRequest(action, body);
+  }
 }
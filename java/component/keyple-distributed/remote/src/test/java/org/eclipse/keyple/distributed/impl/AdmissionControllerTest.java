@@ -0,0 +1,204 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.await;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.json.BodyError;
+import org.eclipse.keyple.core.util.json.KeypleGsonParser;
+import org.eclipse.keyple.distributed.RemoteServiceRejectedException;
+import org.junit.Test;
+
+public class AdmissionControllerTest {
+
+  AdmissionController controller;
+  final List<String> admittedSessions = Collections.synchronizedList(new ArrayList<String>());
+  final List<String> rejectedSessions = Collections.synchronizedList(new ArrayList<String>());
+
+  final List<RemoteServiceRejectedException> rejections =
+      Collections.synchronizedList(new ArrayList<RemoteServiceRejectedException>());
+
+  void admit(final String sessionId, String serviceId, int priority) {
+    controller.admit(
+        sessionId,
+        serviceId,
+        priority,
+        new AdmissionController.AdmissionCallback() {
+          @Override
+          public void onAdmitted() {
+            admittedSessions.add(sessionId);
+          }
+
+          @Override
+          public void onRejected(RemoteServiceRejectedException e) {
+            rejectedSessions.add(sessionId);
+            rejections.add(e);
+          }
+        });
+  }
+
+  Callable<Boolean> nbAdmittedSessionsIs(final int nbAdmittedSessions) {
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return admittedSessions.size() == nbAdmittedSessions;
+      }
+    };
+  }
+
+  Callable<Boolean> nbRejectedSessionsIs(final int nbRejectedSessions) {
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return rejectedSessions.size() == nbRejectedSessions;
+      }
+    };
+  }
+
+  @Test
+  public void admit_underTheLimits_shouldAdmitImmediately() {
+    controller = new AdmissionController(2, 0, 0, 100);
+    admit("s1", "A", 0);
+    admit("s2", "B", 0);
+    assertThat(controller.getNbActiveSessions("A")).isEqualTo(1);
+    assertThat(controller.getMetrics()).containsEntry("admitted", 2L).containsEntry("active", 2L);
+  }
+
+  @Test
+  public void admit_whenServiceLimitIsReachedAndNoQueue_shouldRejectWithRetryAfter() {
+    controller = new AdmissionController(10, 0, 0, 250);
+    controller.setMaxConcurrentSessions("status", 1);
+    admit("s1", "status", 0);
+    admit("s2", "status", 0);
+    assertThat(rejectedSessions).containsExactly("s2");
+    assertThat(rejections.get(0).getRetryAfterInMillis()).isEqualTo(250);
+    // the other services are not limited
+    admit("s3", "ticketing", 0);
+    assertThat(controller.getMetrics())
+        .containsEntry("admitted", 2L)
+        .containsEntry("rejected", 1L)
+        .containsEntry("queued", 0L);
+  }
+
+  @Test
+  public void admit_whenQueued_shouldBeAdmittedAfterARelease() {
+    controller = new AdmissionController(1, 10, 5000, 100);
+    admit("s1", "A", 0);
+    admit("s2", "A", 0);
+    assertThat(controller.getMetrics()).containsEntry("waiting", 1L);
+    assertThat(admittedSessions).containsExactly("s1");
+
+    controller.release("s1");
+    await().atMost(1, TimeUnit.SECONDS).until(nbAdmittedSessionsIs(2));
+    assertThat(admittedSessions).containsExactly("s1", "s2");
+    assertThat(controller.getMetrics())
+        .containsEntry("queued", 1L)
+        .containsEntry("waiting", 0L)
+        .containsEntry("active", 1L);
+  }
+
+  @Test
+  public void admit_whenQueued_shouldAdmitTheHighestPriorityFirst() {
+    controller = new AdmissionController(1, 10, 5000, 100);
+    admit("s1", "A", 0);
+    admit("low", "A", 0);
+    admit("high", "B", 10);
+    assertThat(controller.getMetrics()).containsEntry("waiting", 2L);
+
+    controller.release("s1");
+    await().atMost(1, TimeUnit.SECONDS).until(nbAdmittedSessionsIs(2));
+    assertThat(admittedSessions).containsExactly("s1", "high");
+
+    controller.release("high");
+    await().atMost(1, TimeUnit.SECONDS).until(nbAdmittedSessionsIs(3));
+    assertThat(admittedSessions).containsExactly("s1", "high", "low");
+  }
+
+  @Test
+  public void admit_whenAWaitingServiceIsSaturated_shouldNotBlockTheOtherServices() {
+    controller = new AdmissionController(10, 10, 5000, 100);
+    controller.setMaxConcurrentSessions("A", 1);
+    admit("s1", "A", 0);
+    admit("s2", "A", 10);
+    assertThat(controller.getMetrics()).containsEntry("waiting", 1L);
+
+    admit("s3", "B", 0);
+    assertThat(controller.getNbActiveSessions("B")).isEqualTo(1);
+    controller.release("s1");
+    await().atMost(1, TimeUnit.SECONDS).until(nbAdmittedSessionsIs(3));
+    assertThat(admittedSessions).containsExactly("s1", "s3", "s2");
+  }
+
+  @Test
+  public void admit_whenQueueingTimeElapses_shouldReject() {
+    controller = new AdmissionController(1, 10, 100, 100);
+    admit("s1", "A", 0);
+    long start = System.currentTimeMillis();
+    admit("s2", "A", 0);
+    assertThat(rejectedSessions).isEmpty();
+    await().atMost(1, TimeUnit.SECONDS).until(nbRejectedSessionsIs(1));
+    assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(100);
+    assertThat(rejectedSessions).containsExactly("s2");
+    assertThat(controller.getMetrics())
+        .containsEntry("queued", 1L)
+        .containsEntry("rejected", 1L)
+        .containsEntry("waiting", 0L);
+  }
+
+  @Test
+  public void admit_whenASessionHasExpired_shouldReleaseItsSlot() throws InterruptedException {
+    controller = new AdmissionController(1, 0, 0, 100);
+    controller.setMaxSessionDuration(50);
+    admit("s1", "A", 0);
+    Thread.sleep(100);
+    admit("s2", "A", 0);
+    assertThat(controller.getMetrics())
+        .containsEntry("admitted", 2L)
+        .containsEntry("expired", 1L)
+        .containsEntry("active", 1L);
+  }
+
+  @Test
+  public void admit_whenQueuedAndASessionExpires_shouldBeAdmitted() {
+    controller = new AdmissionController(1, 10, 5000, 100);
+    controller.setMaxSessionDuration(200);
+    admit("s1", "A", 0);
+    admit("s2", "A", 0);
+    await().atMost(1, TimeUnit.SECONDS).until(nbAdmittedSessionsIs(2));
+    assertThat(admittedSessions).containsExactly("s1", "s2");
+    assertThat(controller.getMetrics()).containsEntry("expired", 1L);
+  }
+
+  @Test
+  public void release_whenSessionIsUnknown_shouldDoNothing() {
+    controller = new AdmissionController(1, 0, 0, 100);
+    controller.release("unknown");
+    assertThat(controller.getMetrics()).containsEntry("active", 0L);
+  }
+
+  @Test
+  public void rejection_shouldBeTransmittedWithItsRetryAfterHint() {
+    String json =
+        KeypleGsonParser.getParser()
+            .toJson(new BodyError(new RemoteServiceRejectedException("saturated", 300)));
+    BodyError bodyError = KeypleGsonParser.getParser().fromJson(json, BodyError.class);
+    assertThat(bodyError.getException()).isInstanceOf(RemoteServiceRejectedException.class);
+    assertThat(((RemoteServiceRejectedException) bodyError.getException()).getRetryAfterInMillis())
+        .isEqualTo(300);
+  }
+}
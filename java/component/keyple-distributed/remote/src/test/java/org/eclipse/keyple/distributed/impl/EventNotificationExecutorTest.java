@@ -0,0 +1,138 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.distributed.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EventNotificationExecutorTest {
+
+  ExecutorService pool;
+  EventNotificationExecutor executor;
+
+  @Before
+  public void setUp() {
+    pool = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  Runnable addTo(final List<Integer> events, final int event, final long durationInMillis) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(durationInMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        events.add(event);
+      }
+    };
+  }
+
+  Callable<Boolean> isCompleted(final long nbTasks) {
+    return new Callable<Boolean>() {
+      @Override
+      public Boolean call() throws Exception {
+        return executor.getNbCompletedTasks() == nbTasks
+            && executor.getNbPendingTasks() == 0
+            && executor.getNbActiveKeys() == 0;
+      }
+    };
+  }
+
+  @Test
+  public void execute_withSameKey_shouldExecuteTasksInOrder() {
+    executor = new EventNotificationExecutor(pool, 100);
+    List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+    for (int i = 0; i < 20; i++) {
+      // the first tasks are slower, they would be overtaken without ordering
+      executor.execute("reader1", addTo(events, i, i < 5 ? 20 : 0));
+    }
+    await().atMost(5, TimeUnit.SECONDS).until(isCompleted(20));
+    for (int i = 0; i < 20; i++) {
+      assertThat(events.get(i)).isEqualTo(i);
+    }
+  }
+
+  @Test
+  public void execute_withDifferentKeys_shouldExecuteTasksInParallel() throws Exception {
+    executor = new EventNotificationExecutor(pool, 100);
+    final CountDownLatch latch = new CountDownLatch(2);
+    final CountDownLatch released = new CountDownLatch(1);
+    for (String key : new String[] {"reader1", "reader2"}) {
+      executor.execute(
+          key,
+          new Runnable() {
+            @Override
+            public void run() {
+              latch.countDown();
+              try {
+                released.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          });
+    }
+    assertThat(latch.await(1, TimeUnit.SECONDS)).isTrue();
+    assertThat(executor.getNbActiveKeys()).isEqualTo(2);
+    released.countDown();
+    await().atMost(1, TimeUnit.SECONDS).until(isCompleted(2));
+  }
+
+  @Test
+  public void execute_whenQueueIsFull_shouldBlockTheSubmission() {
+    executor = new EventNotificationExecutor(pool, 2);
+    List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+    long start = System.currentTimeMillis();
+    executor.execute("reader1", addTo(events, 0, 100));
+    executor.execute("reader1", addTo(events, 1, 0));
+    // blocked until the first task completes
+    executor.execute("reader1", addTo(events, 2, 0));
+    assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(90);
+    await().atMost(1, TimeUnit.SECONDS).until(isCompleted(3));
+    assertThat(events).containsExactly(0, 1, 2);
+    assertThat(executor.getNbBlockedSubmissions()).isEqualTo(1);
+    assertThat(executor.getMaxNbPendingTasksReached()).isEqualTo(2);
+  }
+
+  @Test
+  public void execute_whenTaskFails_shouldContinueWithNextTasks() {
+    executor = new EventNotificationExecutor(pool, 10);
+    List<Integer> events = Collections.synchronizedList(new ArrayList<Integer>());
+    executor.execute(
+        "reader1",
+        new Runnable() {
+          @Override
+          public void run() {
+            throw new IllegalStateException("observer failure");
+          }
+        });
+    executor.execute("reader1", addTo(events, 1, 0));
+    await().atMost(1, TimeUnit.SECONDS).until(isCompleted(2));
+    assertThat(events).containsExactly(1);
+    assertThat(executor.toString()).contains("pending=0/10");
+  }
+}
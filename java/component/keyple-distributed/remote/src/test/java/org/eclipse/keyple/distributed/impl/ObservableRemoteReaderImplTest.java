@@ -66,7 +66,12 @@ public class ObservableRemoteReaderImplTest {
     observer = new MockObserver();
     reader =
         new ObservableRemoteReaderImpl(
-            pluginName, localReaderName, node, "sessionId", null, notificationPool);
+            pluginName,
+            localReaderName,
+            node,
+            "sessionId",
+            null,
+            new EventNotificationExecutor(notificationPool, Integer.MAX_VALUE));
   }
 
   @Test
@@ -12,17 +12,24 @@
 package org.eclipse.keyple.distributed.impl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.shouldHaveThrown;
 import static org.mockito.Mockito.when;
 
 import com.google.gson.JsonObject;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.assertj.core.util.Sets;
 import org.eclipse.keyple.core.service.Reader;
 import org.eclipse.keyple.core.service.SmartCardService;
 import org.eclipse.keyple.core.service.exception.KeypleAllocationNoReaderException;
 import org.eclipse.keyple.core.service.exception.KeyplePluginNotFoundException;
+import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
 import org.eclipse.keyple.core.service.exception.KeypleReaderNotFoundException;
 import org.eclipse.keyple.core.util.json.BodyError;
 import org.eclipse.keyple.core.util.json.KeypleGsonParser;
@@ -173,6 +180,155 @@ public class PoolRemotePluginClientTest {
     remotePoolPlugin.releaseReader(reader);
   }
 
+  @Test
+  public void allocateReader_withLeasing_shouldRequest_aLease() {
+    MockSyncEndpoint syncEndpoint = new MockSyncEndpoint().setNbAllocationsMax(1);
+    remotePoolPlugin =
+        (PoolRemotePluginClientImpl)
+            PoolRemotePluginClientFactory.builder()
+                .withPluginName(pluginName)
+                .withSyncNode(syncEndpoint)
+                .withReaderLeasing(1, 60000)
+                .build()
+                .getPlugin();
+    remotePoolPlugin.allocateReader(groupReference);
+    MessageDto request = syncEndpoint.requests.get(0);
+    assertThat(request.getAction()).isEqualTo(MessageDto.Action.ALLOCATE_READER.name());
+    assertThat(
+            KeypleGsonParser.getParser()
+                .fromJson(request.getBody(), JsonObject.class)
+                .get("leaseDuration")
+                .getAsLong())
+        .isEqualTo(60000);
+  }
+
+  @Test
+  public void releaseReader_withLeasing_shouldKeep_readerLocally() {
+    MockSyncEndpoint syncEndpoint = new MockSyncEndpoint().setNbAllocationsMax(1);
+    remotePoolPlugin =
+        (PoolRemotePluginClientImpl)
+            PoolRemotePluginClientFactory.builder()
+                .withPluginName(pluginName)
+                .withSyncNode(syncEndpoint)
+                .withReaderLeasing(1, 60000)
+                .build()
+                .getPlugin();
+    remoteReader = remotePoolPlugin.allocateReader(groupReference);
+    remotePoolPlugin.releaseReader(remoteReader);
+    assertThat(remotePoolPlugin.getReaders()).isEmpty();
+
+    // the reader is handed out again without any network exchange
+    Reader reader = remotePoolPlugin.allocateReader(groupReference);
+    assertThat(reader).isSameAs(remoteReader);
+    assertThat(remotePoolPlugin.getReader(reader.getName())).isNotNull();
+    List<String> actions = new ArrayList<String>();
+    for (MessageDto request : new ArrayList<MessageDto>(syncEndpoint.requests)) {
+      actions.add(request.getAction());
+    }
+    assertThat(actions)
+        .doesNotContain(MessageDto.Action.RELEASE_READER.name())
+        .contains(MessageDto.Action.RELEASE_CHANNEL.name());
+  }
+
+  @Test
+  public void releaseReader_withLeasing_whenChannelReleaseFails_shouldRelease_readerOnServer() {
+    MockSyncEndpoint syncEndpoint = new MockSyncEndpoint().setNbAllocationsMax(1);
+    remotePoolPlugin =
+        (PoolRemotePluginClientImpl)
+            PoolRemotePluginClientFactory.builder()
+                .withPluginName(pluginName)
+                .withSyncNode(syncEndpoint)
+                .withReaderLeasing(1, 60000)
+                .build()
+                .getPlugin();
+    remoteReader = remotePoolPlugin.allocateReader(groupReference);
+    syncEndpoint.setChannelReleaseException(new KeypleReaderIOException("reader removed"));
+    remotePoolPlugin.releaseReader(remoteReader);
+
+    List<String> actions = new ArrayList<String>();
+    for (MessageDto request : new ArrayList<MessageDto>(syncEndpoint.requests)) {
+      actions.add(request.getAction());
+    }
+    assertThat(actions).contains(MessageDto.Action.RELEASE_READER.name());
+  }
+
+  @Test
+  public void unregister_withLeasing_shouldRelease_allLeasedReaders() {
+    // the background pre-allocation may allocate a third reader
+    MockSyncEndpoint syncEndpoint = new MockSyncEndpoint().setNbAllocationsMax(3);
+    remotePoolPlugin =
+        (PoolRemotePluginClientImpl)
+            PoolRemotePluginClientFactory.builder()
+                .withPluginName(pluginName)
+                .withSyncNode(syncEndpoint)
+                .withReaderLeasing(1, 60000)
+                .build()
+                .getPlugin();
+    Reader inUseReader = remotePoolPlugin.allocateReader(groupReference);
+    Reader idleReader = remotePoolPlugin.allocateReader(groupReference);
+    remotePoolPlugin.releaseReader(idleReader);
+
+    remotePoolPlugin.unregister();
+
+    List<String> releasedReaderNames = new ArrayList<String>();
+    for (MessageDto request : new ArrayList<MessageDto>(syncEndpoint.requests)) {
+      if (MessageDto.Action.RELEASE_READER.name().equals(request.getAction())) {
+        releasedReaderNames.add(request.getRemoteReaderName());
+      }
+    }
+    assertThat(releasedReaderNames).contains(inUseReader.getName(), idleReader.getName());
+    assertThat(remotePoolPlugin.getReaders()).isEmpty();
+  }
+
+  @Test
+  public void renewReaderLeases_onSuccess_shouldReturn_revokedReaders() {
+    MockSyncEndpoint syncEndpoint = new MockSyncEndpoint();
+    remotePoolPlugin =
+        (PoolRemotePluginClientImpl)
+            PoolRemotePluginClientFactory.builder()
+                .withPluginName(pluginName)
+                .withSyncNode(syncEndpoint)
+                .withReaderLeasing(1, 60000)
+                .build()
+                .getPlugin();
+    Map<String, String> sessionIdByLocalReaderName = new HashMap<String, String>();
+    sessionIdByLocalReaderName.put("localReaderName", "session1");
+    sessionIdByLocalReaderName.put("revokedReaderName", "session2");
+    List<String> revokedReaderNames =
+        remotePoolPlugin.renewReaderLeases(sessionIdByLocalReaderName);
+    assertThat(revokedReaderNames).containsExactly("revokedReaderName");
+    assertThat(
+            KeypleGsonParser.getParser()
+                .fromJson(syncEndpoint.requests.get(0).getBody(), JsonObject.class)
+                .getAsJsonObject("sessionIdByLocalReaderName")
+                .get("revokedReaderName")
+                .getAsString())
+        .isEqualTo("session2");
+  }
+
+  @Test
+  public void releaseReader_whenRevoked_shouldFailFast_andNotRelease_onServer() {
+    MockSyncEndpoint syncEndpoint = new MockSyncEndpoint();
+    remotePoolPlugin =
+        (PoolRemotePluginClientImpl)
+            PoolRemotePluginClientFactory.builder()
+                .withPluginName(pluginName)
+                .withSyncNode(syncEndpoint)
+                .build()
+                .getPlugin();
+    RemoteReaderImpl reader = (RemoteReaderImpl) remotePoolPlugin.allocateReader(groupReference);
+    reader.revoke();
+    try {
+      reader.isCardPresent();
+      shouldHaveThrown(KeypleReaderIOException.class);
+    } catch (KeypleReaderIOException e) {
+      // expected
+    }
+    remotePoolPlugin.releaseReader(reader);
+    assertThat(syncEndpoint.requests).hasSize(1);
+    assertThat(remotePoolPlugin.getReaders()).isEmpty();
+  }
+
   @Test
   public void getReferenceGroups_onSuccess_shouldReturn_result() {
     syncEndpoint = new MockSyncEndpoint();
@@ -272,14 +428,38 @@ public class PoolRemotePluginClientTest {
   class MockSyncEndpoint implements SyncEndpointClient {
 
     RuntimeException exception;
+    RuntimeException channelReleaseException;
+    int nbAllocationsMax = Integer.MAX_VALUE;
+    final AtomicInteger nbAllocations = new AtomicInteger();
+    final List<MessageDto> requests = Collections.synchronizedList(new ArrayList<MessageDto>());
 
     public MockSyncEndpoint setException(RuntimeException exception) {
       this.exception = exception;
       return this;
     }
 
+    public MockSyncEndpoint setChannelReleaseException(RuntimeException exception) {
+      this.channelReleaseException = exception;
+      return this;
+    }
+
+    public MockSyncEndpoint setNbAllocationsMax(int nbAllocationsMax) {
+      this.nbAllocationsMax = nbAllocationsMax;
+      return this;
+    }
+
     @Override
     public List<MessageDto> sendRequest(MessageDto msg) {
+      requests.add(msg);
+      if (MessageDto.Action.ALLOCATE_READER.name().equals(msg.getAction())
+          && nbAllocations.incrementAndGet() > nbAllocationsMax) {
+        return Arrays.asList(
+            getResponse(msg, new KeypleAllocationNoReaderException("no more reader")));
+      }
+      if (MessageDto.Action.RELEASE_CHANNEL.name().equals(msg.getAction())
+          && channelReleaseException != null) {
+        return Arrays.asList(getResponse(msg, channelReleaseException));
+      }
       return Arrays.asList(getResponse(msg, exception));
     }
   }
@@ -295,6 +475,7 @@ public class PoolRemotePluginClientTest {
 
     switch (MessageDto.Action.valueOf(msg.getAction())) {
       case RELEASE_READER:
+      case RELEASE_CHANNEL:
         return new MessageDto(msg).setBody(null).setServerNodeId(serverNodeId);
       case ALLOCATE_READER:
         return new MessageDto(msg)
@@ -306,6 +487,12 @@ public class PoolRemotePluginClientTest {
         body = new JsonObject();
         body.add("readerGroupReferences", KeypleGsonParser.getParser().toJsonTree(groupReferences));
         return new MessageDto(msg).setBody(body.toString()).setServerNodeId(serverNodeId);
+      case RENEW_READER_LEASES:
+        body = new JsonObject();
+        body.add(
+            "revokedLocalReaderNames",
+            KeypleGsonParser.getParser().toJsonTree(Arrays.asList("revokedReaderName")));
+        return new MessageDto(msg).setBody(body.toString()).setServerNodeId(serverNodeId);
       case IS_CARD_PRESENT:
         String bodyJson = KeypleGsonParser.getParser().toJson(true, Boolean.class);
 
@@ -15,20 +15,36 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
 import static org.mockito.Mockito.*;
 
+import com.google.gson.JsonObject;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.keyple.core.service.SmartCardService;
+import org.eclipse.keyple.core.service.event.ObservablePlugin;
+import org.eclipse.keyple.core.service.event.PluginEvent;
 import org.eclipse.keyple.core.service.event.ObservableReader;
+import org.eclipse.keyple.core.service.event.ReaderEvent;
+import org.eclipse.keyple.core.util.json.BodyError;
+import org.eclipse.keyple.core.util.json.KeypleGsonParser;
 import org.eclipse.keyple.distributed.MessageDto;
 import org.eclipse.keyple.distributed.ObservableRemoteReaderServer;
+import org.eclipse.keyple.distributed.RemoteServiceRejectedException;
 import org.eclipse.keyple.distributed.spi.AsyncEndpointServer;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class RemotePluginServerImplTest extends RemoteServerBase {
 
+  private static final Logger logger = LoggerFactory.getLogger(RemotePluginServerImplTest.class);
+
   String pluginName = "pluginName";
 
   @Before
@@ -119,6 +135,20 @@ public class RemotePluginServerImplTest extends RemoteServerBase {
     await().atMost(1, TimeUnit.SECONDS).until(validReaderConnectEvent());
   }
 
+  @Test
+  public void onMessage_executeRemoteService_withReaderContactless_shouldCacheIt() {
+    String sessionId = UUID.randomUUID().toString();
+    MessageDto message = executeRemoteServiceMessage(sessionId, false);
+    JsonObject body = KeypleGsonParser.getParser().fromJson(message.getBody(), JsonObject.class);
+    body.addProperty("isReaderContactless", true);
+    message.setBody(body.toString());
+    remotePlugin.onMessage(message);
+    AbstractRemoteReaderServer remoteReader =
+        (AbstractRemoteReaderServer) remotePlugin.getReaders().values().iterator().next();
+    assertThat(remoteReader.isContactless()).isTrue();
+    verify(node, never()).sendRequest(any(MessageDto.class));
+  }
+
   @Test
   public void terminateService_onRemoteReader_withObserver_doNotDeleteRemoteReader() {
 
@@ -255,4 +285,239 @@ public class RemotePluginServerImplTest extends RemoteServerBase {
 
     assertThat(remotePlugin.getReaders()).isEmpty(); // every reader is removed
   }
+
+  @Test
+  public void onEvent_shouldDeriveTheSlaveReaderNameFromTheMasterOne() {
+    remotePlugin.onMessage(executeRemoteServiceMessage(UUID.randomUUID().toString(), true));
+    await().atMost(1, TimeUnit.SECONDS).until(validReaderConnectEvent());
+    String remoteReaderName = remotePlugin.getReaders().values().iterator().next().getName();
+
+    remotePlugin.onMessage(readerEventMessage(UUID.randomUUID().toString(), remoteReaderName));
+    remotePlugin.onMessage(readerEventMessage(UUID.randomUUID().toString(), remoteReaderName));
+    await().atMost(1, TimeUnit.SECONDS).until(validSeInsertedEvent(remoteReaderName, 2));
+
+    assertThat(remotePlugin.countSlaveReaders(remoteReaderName)).isEqualTo(2);
+    for (String slaveReaderName : readerObserver.remoteReaderNames) {
+      assertThat(slaveReaderName).startsWith(remoteReaderName + "/");
+    }
+  }
+
+  @Test
+  public void terminateService_onSlaveReader_unregisterRemoteReader_shouldReleaseAllSlaveReaders() {
+    remotePlugin.onMessage(executeRemoteServiceMessage(UUID.randomUUID().toString(), true));
+    await().atMost(1, TimeUnit.SECONDS).until(validReaderConnectEvent());
+    String remoteReaderName = remotePlugin.getReaders().values().iterator().next().getName();
+
+    // two events, only the last one is terminated
+    remotePlugin.onMessage(readerEventMessage(UUID.randomUUID().toString(), remoteReaderName));
+    await().atMost(1, TimeUnit.SECONDS).until(validSeInsertedEvent(remoteReaderName, 1));
+    remotePlugin.onMessage(readerEventMessage(UUID.randomUUID().toString(), remoteReaderName));
+    await().atMost(1, TimeUnit.SECONDS).until(validSeInsertedEvent(remoteReaderName, 2));
+    assertThat(remotePlugin.getReaders()).hasSize(3);
+
+    ((ObservableRemoteReaderServer) remotePlugin.getReader(remoteReaderName)).clearObservers();
+    readerObserver.terminateService(userOutputData);
+
+    validateTerminateServiceResponse(messageArgumentCaptor.getValue(), true);
+    assertThat(remotePlugin.getReaders()).isEmpty(); // the pending slave reader is released too
+    assertThat(remotePlugin.countSlaveReaders(remoteReaderName)).isZero();
+  }
+
+  @Test
+  public void onEvent_tapStorm_shouldReleaseEverySlaveReader() {
+    final int nbEvents = 5000;
+    final AtomicInteger nbTerminatedServices = new AtomicInteger();
+    pluginObserver.attachObserver = false;
+
+    remotePlugin.onMessage(executeRemoteServiceMessage(UUID.randomUUID().toString(), true));
+    await().atMost(1, TimeUnit.SECONDS).until(validReaderConnectEvent());
+    final String remoteReaderName = remotePlugin.getReaders().values().iterator().next().getName();
+    ((ObservableRemoteReaderServer) remotePlugin.getReader(remoteReaderName))
+        .addObserver(
+            new ObservableReader.ReaderObserver() {
+              @Override
+              public void update(ReaderEvent event) {
+                remotePlugin.terminateService(event.getReaderName(), userOutputData);
+                nbTerminatedServices.incrementAndGet();
+              }
+            });
+
+    // storm of taps on the same local reader
+    Runtime runtime = Runtime.getRuntime();
+    long usedMemoryBefore = runtime.totalMemory() - runtime.freeMemory();
+    long start = System.nanoTime();
+    for (int i = 0; i < nbEvents; i++) {
+      remotePlugin.onMessage(readerEventMessage(UUID.randomUUID().toString(), remoteReaderName));
+    }
+    await()
+        .atMost(30, TimeUnit.SECONDS)
+        .until(
+            new Callable<Boolean>() {
+              @Override
+              public Boolean call() {
+                return nbTerminatedServices.get() == nbEvents;
+              }
+            });
+    long elapsedNanos = System.nanoTime() - start;
+    long usedMemoryAfter = runtime.totalMemory() - runtime.freeMemory();
+
+    logger.info(
+        "Tap storm of {} events handled in {} ms ({} events/s), used heap delta: {} KB, {}",
+        nbEvents,
+        elapsedNanos / 1000000,
+        nbEvents * 1000000000L / Math.max(elapsedNanos, 1),
+        (usedMemoryAfter - usedMemoryBefore) / 1024,
+        remotePlugin.getEventNotificationExecutor());
+
+    // only the master reader remains, no slave reader is leaked
+    assertThat(remotePlugin.getReaders()).hasSize(1).containsKey(remoteReaderName);
+    assertThat(remotePlugin.countSlaveReaders(remoteReaderName)).isZero();
+  }
+
+  @Test
+  public void onMessage_executeRemoteService_whenSaturated_shouldRejectTheSession() {
+    remotePlugin.activateAdmissionControl(new AdmissionController(1, 0, 0, 200));
+    pluginObserver.attachObserver = false;
+
+    remotePlugin.onMessage(executeRemoteServiceMessage("session1", false));
+    await().atMost(1, TimeUnit.SECONDS).until(validReaderConnectEvent());
+    remotePlugin.onMessage(executeRemoteServiceMessage("session2", false));
+
+    // the second session is rejected with an error
+    MessageDto errorMsg = messageArgumentCaptor.getValue();
+    assertThat(errorMsg.getAction()).isEqualTo(MessageDto.Action.ERROR.name());
+    assertThat(errorMsg.getSessionId()).isEqualTo("session2");
+    BodyError bodyError =
+        KeypleGsonParser.getParser().fromJson(errorMsg.getBody(), BodyError.class);
+    assertThat(bodyError.getException()).isInstanceOf(RemoteServiceRejectedException.class);
+    assertThat(((RemoteServiceRejectedException) bodyError.getException()).getRetryAfterInMillis())
+        .isEqualTo(200);
+    assertThat(remotePlugin.getReaders()).hasSize(1);
+
+    // the slot is released at the end of the first session
+    String remoteReaderName = remotePlugin.getReaders().values().iterator().next().getName();
+    remotePlugin.terminateService(remoteReaderName, userOutputData);
+    assertThat(remotePlugin.getAdmissionController().getMetrics())
+        .containsEntry("admitted", 1L)
+        .containsEntry("rejected", 1L)
+        .containsEntry("active", 0L);
+    remotePlugin.onMessage(executeRemoteServiceMessage("session3", false));
+    assertThat(remotePlugin.getReaders()).hasSize(1);
+  }
+
+  @Test
+  public void onMessage_executeRemoteService_whenQueued_shouldStartTheSessionAfterARelease() {
+    remotePlugin.activateAdmissionControl(new AdmissionController(1, 10, 5000, 200));
+    pluginObserver.attachObserver = false;
+
+    remotePlugin.onMessage(executeRemoteServiceMessage("session1", false));
+    await().atMost(1, TimeUnit.SECONDS).until(validReaderConnectEvent());
+    final String remoteReaderName = remotePlugin.getReaders().keySet().iterator().next();
+
+    // the second session is queued without blocking the thread of the node
+    remotePlugin.onMessage(executeRemoteServiceMessage("session2", false));
+    assertThat(remotePlugin.getReaders()).hasSize(1);
+    assertThat(remotePlugin.getAdmissionController().getMetrics()).containsEntry("waiting", 1L);
+
+    // the second session is started at the end of the first one
+    remotePlugin.terminateService(remoteReaderName, userOutputData);
+    await()
+        .atMost(1, TimeUnit.SECONDS)
+        .until(
+            new Callable<Boolean>() {
+              @Override
+              public Boolean call() {
+                return remotePlugin.getReaders().size() == 1
+                    && !remotePlugin.getReaders().containsKey(remoteReaderName);
+              }
+            });
+    assertThat(remotePlugin.getAdmissionController().getMetrics())
+        .containsEntry("admitted", 2L)
+        .containsEntry("waiting", 0L);
+  }
+
+  @Test
+  public void onMessage_executeRemoteService_whenAnObserverFails_shouldAbortTheSession() {
+    remotePlugin.activateAdmissionControl(new AdmissionController(1, 0, 0, 200));
+    remotePlugin.addObserver(
+        new ObservablePlugin.PluginObserver() {
+          @Override
+          public void update(PluginEvent event) {
+            throw new IllegalStateException("observer failure");
+          }
+        });
+
+    remotePlugin.onMessage(executeRemoteServiceMessage("session1", true));
+
+    // the error is sent to the client
+    verify(node, timeout(1000)).sendMessage(any(MessageDto.class));
+    MessageDto errorMsg = messageArgumentCaptor.getValue();
+    assertThat(errorMsg.getAction()).isEqualTo(MessageDto.Action.ERROR.name());
+    assertThat(errorMsg.getSessionId()).isEqualTo("session1");
+    BodyError bodyError =
+        KeypleGsonParser.getParser().fromJson(errorMsg.getBody(), BodyError.class);
+    assertThat(bodyError.getException()).isInstanceOf(IllegalStateException.class);
+
+    // the reader is removed and the slot is released
+    assertThat(remotePlugin.getReaders()).isEmpty();
+    assertThat(remotePlugin.getAdmissionController().getMetrics()).containsEntry("active", 0L);
+  }
+
+  @Test
+  public void onMessage_executeRemoteService_whenServicesAreRunning_shouldNotHoldTheEventPool()
+      throws InterruptedException {
+    final CountDownLatch endOfServices = new CountDownLatch(1);
+    final AtomicInteger nbRunningServices = new AtomicInteger();
+    final CountDownLatch eventDelivered = new CountDownLatch(1);
+    ExecutorService eventPool = Executors.newSingleThreadExecutor();
+    ExecutorService servicePool = Executors.newCachedThreadPool();
+    try {
+      remotePlugin = new RemotePluginServerImpl(remotePluginName, eventPool, 10, servicePool);
+      remotePlugin.node = node;
+      remotePlugin.addObserver(
+          new ObservablePlugin.PluginObserver() {
+            @Override
+            public void update(PluginEvent event) {
+              // the service lasts until the end of the test
+              nbRunningServices.incrementAndGet();
+              try {
+                endOfServices.await(5, TimeUnit.SECONDS);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            }
+          });
+
+      for (int i = 0; i < 3; i++) {
+        remotePlugin.onMessage(executeRemoteServiceMessage("session" + i, false));
+      }
+
+      // the services run concurrently and the single thread of the event pool remains available
+      await()
+          .atMost(1, TimeUnit.SECONDS)
+          .until(
+              new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                  return nbRunningServices.get() == 3;
+                }
+              });
+      remotePlugin
+          .getEventNotificationExecutor()
+          .execute(
+              "reader",
+              new Runnable() {
+                @Override
+                public void run() {
+                  eventDelivered.countDown();
+                }
+              });
+      assertThat(eventDelivered.await(1, TimeUnit.SECONDS)).isTrue();
+      assertThat(remotePlugin.getServiceNotificationExecutor().getNbPendingTasks()).isEqualTo(3);
+    } finally {
+      endOfServices.countDown();
+      eventPool.shutdown();
+      servicePool.shutdown();
+    }
+  }
 }
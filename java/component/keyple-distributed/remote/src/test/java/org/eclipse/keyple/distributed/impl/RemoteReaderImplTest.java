@@ -19,6 +19,7 @@ import com.google.gson.reflect.TypeToken;
 import java.util.*;
 import org.eclipse.keyple.core.card.message.*;
 import org.eclipse.keyple.core.card.selection.MultiSelectionProcessing;
+import org.eclipse.keyple.core.service.event.ReaderEvent;
 import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
 import org.eclipse.keyple.core.util.json.BodyError;
 import org.eclipse.keyple.core.util.json.KeypleGsonParser;
@@ -189,6 +190,66 @@ public class RemoteReaderImplTest {
     assertThat(result).isTrue();
   }
 
+  @Test
+  public void isSePresent_whenCacheIsActivated_shouldRequestOnlyOnce() {
+
+    // init
+    reader.setCardPresenceCacheTtl(10000);
+    MessageDto responseDto =
+        new MessageDto() //
+            .setAction(MessageDto.Action.IS_CARD_PRESENT.name()) //
+            .setRemoteReaderName(reader.getName()) //
+            .setLocalReaderName(reader.getLocalReaderName()) //
+            .setBody(KeypleGsonParser.getParser().toJson(true, Boolean.class));
+
+    doReturn(responseDto).when(node).sendRequest(any(MessageDto.class));
+
+    // execute
+    assertThat(reader.isCardPresent()).isTrue();
+    assertThat(reader.isCardPresent()).isTrue();
+
+    // verify
+    verify(node).sendRequest(any(MessageDto.class));
+  }
+
+  @Test
+  public void isSePresent_whenCacheIsUpdatedByAnEvent_shouldNotRequest() {
+
+    // init
+    reader.setCardPresenceCacheTtl(10000);
+
+    // execute
+    reader.updateCardPresence(ReaderEvent.EventType.CARD_INSERTED);
+    assertThat(reader.isCardPresent()).isTrue();
+    reader.updateCardPresence(ReaderEvent.EventType.CARD_REMOVED);
+    assertThat(reader.isCardPresent()).isFalse();
+
+    // verify
+    verifyZeroInteractions(node);
+  }
+
+  @Test
+  public void isSePresent_whenCacheIsNotActivated_shouldIgnoreEvents() {
+
+    // init
+    MessageDto responseDto =
+        new MessageDto() //
+            .setAction(MessageDto.Action.IS_CARD_PRESENT.name()) //
+            .setRemoteReaderName(reader.getName()) //
+            .setLocalReaderName(reader.getLocalReaderName()) //
+            .setBody(KeypleGsonParser.getParser().toJson(false, Boolean.class));
+
+    doReturn(responseDto).when(node).sendRequest(any(MessageDto.class));
+
+    // execute
+    reader.updateCardPresence(ReaderEvent.EventType.CARD_INSERTED);
+    boolean result = reader.isCardPresent();
+
+    // verify
+    assertThat(result).isFalse();
+    verify(node).sendRequest(any(MessageDto.class));
+  }
+
   @Test(expected = NodeCommunicationException.class)
   public void isSePresent_whenNodeTimeout_shouldThrowNCE() {
     // init
@@ -225,6 +286,41 @@ public class RemoteReaderImplTest {
     assertThat(result).isTrue();
   }
 
+  @Test
+  public void isReaderContactless_whenCalledTwice_shouldRequestOnlyOnce() {
+
+    // init
+    MessageDto responseDto =
+        new MessageDto() //
+            .setAction(MessageDto.Action.IS_READER_CONTACTLESS.name()) //
+            .setRemoteReaderName(reader.getName()) //
+            .setLocalReaderName(reader.getLocalReaderName()) //
+            .setBody(KeypleGsonParser.getParser().toJson(true, Boolean.class));
+
+    doReturn(responseDto).when(node).sendRequest(any(MessageDto.class));
+
+    // execute
+    assertThat(reader.isContactless()).isTrue();
+    assertThat(reader.isContactless()).isTrue();
+
+    // verify
+    verify(node).sendRequest(any(MessageDto.class));
+  }
+
+  @Test
+  public void isReaderContactless_whenAlreadyKnown_shouldNotRequest() {
+
+    // init
+    reader.setContactless(false);
+
+    // execute
+    boolean result = reader.isContactless();
+
+    // verify
+    assertThat(result).isFalse();
+    verifyZeroInteractions(node);
+  }
+
   @Test(expected = NodeCommunicationException.class)
   public void isReaderContactless_whenNodeTimeout_shouldThrowNCE() {
     // init
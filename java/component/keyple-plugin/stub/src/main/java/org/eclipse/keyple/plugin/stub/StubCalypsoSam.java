@@ -0,0 +1,583 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.plugin.stub;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.eclipse.keyple.core.util.ByteArrayUtil;
+
+/**
+ * Stateful software emulation of a Calypso SAM (C1 revision) to be inserted in a {@link
+ * StubReader}.
+ *
+ * <p>Unlike the command/response tables of a {@link StubSmartCard}, the emulator keeps the state of
+ * the secure session and computes the session and SV signatures from the data it receives, so that
+ * complete transactions can be processed offline. It handles the following commands:
+ *
+ * <ul>
+ *   <li>Select Diversifier, Get Challenge,
+ *   <li>Digest Init, Digest Update, Digest Update Multiple, Digest Close, Digest Authenticate,
+ *   <li>SV Prepare Load, SV Prepare Debit, SV Prepare Undebit, SV Check,
+ *   <li>Manage Channel (logical channels 1 to 3, each one having its own session state).
+ * </ul>
+ *
+ * <p>The other commands are processed as by a {@link StubSmartCard}, using the commands added with
+ * {@link #addHexCommand(String, String)}.
+ *
+ * <p>The signatures are HMAC-SHA256 values computed with work keys derived from a test master key
+ * and truncated to the expected length. They are deterministic for a given master key and a given
+ * sequence of commands, but they are not Calypso cryptograms: the signatures of the card provided
+ * to the Digest Authenticate and SV Check commands are not verified, only their length is checked.
+ * The encrypted sessions are not supported.
+ *
+ * <p>A latency can be added to the processing of each APDU to simulate the processing time of a
+ * real SAM. Like a real SAM, the emulator processes one APDU at a time.
+ *
+ * @since 1.0
+ */
+public class StubCalypsoSam extends StubSmartCard {
+
+  private static final String ATR_PREFIX = "3B3F9600805A0080C1200000";
+  private static final String ATR_SUFFIX = "829000";
+  private static final byte[] DEFAULT_MASTER_KEY =
+      ByteArrayUtil.fromHex("00112233445566778899AABBCCDDEEFF");
+  private static final String MAC_ALGORITHM = "HmacSHA256";
+
+  private static final byte INS_SELECT_DIVERSIFIER = (byte) 0x14;
+  private static final byte INS_MANAGE_CHANNEL = (byte) 0x70;
+  private static final byte INS_GET_CHALLENGE = (byte) 0x84;
+  private static final byte INS_DIGEST_INIT = (byte) 0x8A;
+  private static final byte INS_DIGEST_UPDATE = (byte) 0x8C;
+  private static final byte INS_DIGEST_CLOSE = (byte) 0x8E;
+  private static final byte INS_DIGEST_AUTHENTICATE = (byte) 0x82;
+  private static final byte INS_SV_PREPARE_DEBIT = (byte) 0x54;
+  private static final byte INS_SV_PREPARE_LOAD = (byte) 0x56;
+  private static final byte INS_SV_PREPARE_UNDEBIT = (byte) 0x5C;
+  private static final byte INS_SV_CHECK = (byte) 0x58;
+
+  private static final byte[] SW_SUCCESS = {(byte) 0x90, (byte) 0x00};
+  private static final byte[] SW_WRONG_LENGTH = {(byte) 0x67, (byte) 0x00};
+  private static final byte[] SW_CHANNEL_NOT_SUPPORTED = {(byte) 0x68, (byte) 0x81};
+  private static final byte[] SW_CONDITIONS_NOT_SATISFIED = {(byte) 0x69, (byte) 0x85};
+  private static final byte[] SW_NO_MORE_CHANNEL = {(byte) 0x6A, (byte) 0x81};
+  private static final byte[] SW_WRONG_P1P2 = {(byte) 0x6B, (byte) 0x00};
+
+  /** the Lc of the SV Reload and SV Debit/Undebit commands of a card in revision 3.2 mode */
+  private static final byte SV_RELOAD_LC_REV3_2 = (byte) 0x1C;
+
+  private static final byte SV_DEBIT_LC_REV3_2 = (byte) 0x19;
+  private static final int SV_RELOAD_DATA_LENGTH = 15;
+  private static final int SV_DEBIT_DATA_LENGTH = 12;
+
+  private static final int NB_CHANNELS = 4;
+
+  private final byte[] serialNumber;
+  private final byte[] masterKey;
+  private final Channel[] channels;
+  private final Random random;
+  private int svTransactionNumber;
+  private volatile long apduLatencyNanos;
+
+  /**
+   * Creates a SAM emulator using the default test master key.
+   *
+   * @param serialNumber the 4-byte serial number of the SAM
+   * @throws IllegalArgumentException if the serial number is null or has a bad length
+   * @since 1.0
+   */
+  public StubCalypsoSam(byte[] serialNumber) {
+    this(serialNumber, DEFAULT_MASTER_KEY);
+  }
+
+  /**
+   * Creates a SAM emulator using the provided test master key.
+   *
+   * @param serialNumber the 4-byte serial number of the SAM
+   * @param masterKey the master key from which the work keys are derived (not empty)
+   * @throws IllegalArgumentException if one of the arguments is null or has a bad length
+   * @since 1.0
+   */
+  public StubCalypsoSam(byte[] serialNumber, byte[] masterKey) {
+    if (serialNumber == null || serialNumber.length != 4) {
+      throw new IllegalArgumentException("The serial number should be 4 bytes long");
+    }
+    if (masterKey == null || masterKey.length == 0) {
+      throw new IllegalArgumentException("The master key should not be empty");
+    }
+    this.serialNumber = serialNumber.clone();
+    this.masterKey = masterKey.clone();
+    this.channels = new Channel[NB_CHANNELS];
+    // the basic channel is always open
+    this.channels[0] = new Channel();
+    // the challenges are reproducible from one run to another
+    this.random = new Random(ByteArrayUtil.twoBytesToInt(serialNumber, 2));
+  }
+
+  /**
+   * Sets the latency added to the processing of each APDU.
+   *
+   * @param latency the latency (0 for no latency)
+   * @param unit the unit of the latency
+   * @since 1.0
+   */
+  public void setApduLatency(long latency, TimeUnit unit) {
+    if (latency < 0 || unit == null) {
+      throw new IllegalArgumentException("Bad latency");
+    }
+    this.apduLatencyNanos = unit.toNanos(latency);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The ATR contains the serial number of the SAM.
+   *
+   * @since 1.0
+   */
+  @Override
+  public byte[] getATR() {
+    return ByteArrayUtil.fromHex(ATR_PREFIX + ByteArrayUtil.toHex(serialNumber) + ATR_SUFFIX);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return {@link StubSupportedProtocols#ISO_7816_3}
+   * @since 1.0
+   */
+  @Override
+  public String getCardProtocol() {
+    return StubSupportedProtocols.ISO_7816_3.name();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The commands emulated by the SAM are processed according to its current state, the other
+   * ones are looked up in the commands added with {@link #addHexCommand(String, String)}.
+   *
+   * @since 1.0
+   */
+  @Override
+  public synchronized byte[] processApdu(byte[] apduIn) {
+    if (apduIn == null) {
+      return null;
+    }
+    applyLatency();
+    if (apduIn.length < 4) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    byte ins = apduIn[1];
+    if (ins == INS_MANAGE_CHANNEL) {
+      return manageChannel(apduIn);
+    }
+    if (!isEmulated(ins)) {
+      return super.processApdu(apduIn);
+    }
+    Channel channel = channels[apduIn[0] & 0x03];
+    if (channel == null) {
+      return SW_CHANNEL_NOT_SUPPORTED.clone();
+    }
+    Apdu apdu = Apdu.parse(apduIn);
+    if (apdu == null) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    switch (ins) {
+      case INS_SELECT_DIVERSIFIER:
+        return selectDiversifier(channel, apdu);
+      case INS_GET_CHALLENGE:
+        return getChallenge(channel, apdu);
+      case INS_DIGEST_INIT:
+        return digestInit(channel, apdu);
+      case INS_DIGEST_UPDATE:
+        return digestUpdate(channel, apdu);
+      case INS_DIGEST_CLOSE:
+        return digestClose(channel, apdu);
+      case INS_DIGEST_AUTHENTICATE:
+        return digestAuthenticate(channel, apdu);
+      case INS_SV_CHECK:
+        return svCheck(channel, apdu);
+      default:
+        return svPrepare(channel, apdu);
+    }
+  }
+
+  /**
+   * (private)<br>
+   *
+   * @param ins the instruction byte
+   * @return true if the command is emulated
+   */
+  private static boolean isEmulated(byte ins) {
+    switch (ins) {
+      case INS_SELECT_DIVERSIFIER:
+      case INS_GET_CHALLENGE:
+      case INS_DIGEST_INIT:
+      case INS_DIGEST_UPDATE:
+      case INS_DIGEST_CLOSE:
+      case INS_DIGEST_AUTHENTICATE:
+      case INS_SV_PREPARE_DEBIT:
+      case INS_SV_PREPARE_LOAD:
+      case INS_SV_PREPARE_UNDEBIT:
+      case INS_SV_CHECK:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Waits for the configured latency.
+   */
+  private void applyLatency() {
+    long latency = apduLatencyNanos;
+    if (latency > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(latency);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Opens (P1 = 00h) or closes (P1 = 80h) a logical channel.
+   *
+   * @param apduIn the command
+   * @return the response
+   */
+  private byte[] manageChannel(byte[] apduIn) {
+    if (apduIn[2] == (byte) 0x00) {
+      for (int i = 1; i < NB_CHANNELS; i++) {
+        if (channels[i] == null) {
+          channels[i] = new Channel();
+          return buildResponse(new byte[] {(byte) i});
+        }
+      }
+      return SW_NO_MORE_CHANNEL.clone();
+    }
+    if (apduIn[2] == (byte) 0x80 && apduIn[3] > 0 && apduIn[3] < NB_CHANNELS) {
+      channels[apduIn[3]] = null;
+      return SW_SUCCESS.clone();
+    }
+    return SW_WRONG_P1P2.clone();
+  }
+
+  /**
+   * (private)<br>
+   * Select Diversifier: sets the serial number of the card.
+   */
+  private byte[] selectDiversifier(Channel channel, Apdu apdu) {
+    if (apdu.data.length != 4 && apdu.data.length != 8) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    channel.reset();
+    channel.diversifier = apdu.data;
+    return SW_SUCCESS.clone();
+  }
+
+  /**
+   * (private)<br>
+   * Get Challenge: generates the challenge sent to the card at the opening of the session.
+   */
+  private byte[] getChallenge(Channel channel, Apdu apdu) {
+    if (apdu.le != 4 && apdu.le != 8) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    channel.challenge = new byte[apdu.le];
+    random.nextBytes(channel.challenge);
+    return buildResponse(channel.challenge);
+  }
+
+  /**
+   * (private)<br>
+   * Digest Init: starts the session digest with the response of the card to the Open Secure
+   * Session command.
+   */
+  private byte[] digestInit(Channel channel, Apdu apdu) {
+    if ((apdu.p1 & 0x02) != 0) {
+      // encrypted sessions are not supported
+      return SW_WRONG_P1P2.clone();
+    }
+    if (channel.diversifier == null || channel.challenge == null) {
+      return SW_CONDITIONS_NOT_SATISFIED.clone();
+    }
+    byte[] keyReference;
+    byte[] digestData;
+    if (apdu.p2 == (byte) 0xFF) {
+      if (apdu.data.length < 2) {
+        return SW_WRONG_LENGTH.clone();
+      }
+      // KIF and KVC
+      keyReference = new byte[] {apdu.data[0], apdu.data[1]};
+      digestData = Arrays.copyOfRange(apdu.data, 2, apdu.data.length);
+    } else {
+      // key record number
+      keyReference = new byte[] {(byte) 0xFF, apdu.p2};
+      digestData = apdu.data;
+    }
+    byte[] workKey = computeMac(masterKey, keyReference);
+    channel.sessionMac =
+        createMac(computeMac(workKey, concat(channel.challenge, channel.diversifier)));
+    channel.isSessionClosed = false;
+    updateDigest(channel, digestData);
+    return SW_SUCCESS.clone();
+  }
+
+  /**
+   * (private)<br>
+   * Digest Update (P1 = 00h) and Digest Update Multiple (P1 = 80h): adds the exchanged data to the
+   * session digest.
+   */
+  private byte[] digestUpdate(Channel channel, Apdu apdu) {
+    if (apdu.p2 != (byte) 0x00) {
+      // encrypted sessions are not supported
+      return SW_WRONG_P1P2.clone();
+    }
+    if (channel.sessionMac == null || channel.isSessionClosed) {
+      return SW_CONDITIONS_NOT_SATISFIED.clone();
+    }
+    if (apdu.p1 == (byte) 0x00) {
+      updateDigest(channel, apdu.data);
+      return SW_SUCCESS.clone();
+    }
+    if (apdu.p1 != (byte) 0x80) {
+      return SW_WRONG_P1P2.clone();
+    }
+    // each buffer is preceded by its length
+    int offset = 0;
+    while (offset < apdu.data.length) {
+      int length = apdu.data[offset++] & 0xFF;
+      if (offset + length > apdu.data.length) {
+        return SW_WRONG_LENGTH.clone();
+      }
+      updateDigest(channel, Arrays.copyOfRange(apdu.data, offset, offset + length));
+      offset += length;
+    }
+    return SW_SUCCESS.clone();
+  }
+
+  /**
+   * (private)<br>
+   * Digest Close: computes the signature of the terminal.
+   */
+  private byte[] digestClose(Channel channel, Apdu apdu) {
+    if (apdu.le != 4 && apdu.le != 8) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    if (channel.sessionMac == null || channel.isSessionClosed) {
+      return SW_CONDITIONS_NOT_SATISFIED.clone();
+    }
+    channel.isSessionClosed = true;
+    return buildResponse(Arrays.copyOf(channel.sessionMac.doFinal(), apdu.le));
+  }
+
+  /**
+   * (private)<br>
+   * Digest Authenticate: checks the signature of the card (only its length is checked).
+   */
+  private byte[] digestAuthenticate(Channel channel, Apdu apdu) {
+    if (apdu.data.length != 4 && apdu.data.length != 8 && apdu.data.length != 16) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    if (channel.sessionMac == null || !channel.isSessionClosed) {
+      return SW_CONDITIONS_NOT_SATISFIED.clone();
+    }
+    channel.sessionMac = null;
+    return SW_SUCCESS.clone();
+  }
+
+  /**
+   * (private)<br>
+   * SV Prepare Load/Debit/Undebit: computes the SAM part of the SV command.
+   *
+   * <p>The data are the SV Get command header (4 bytes), the SV Get response and the SV command
+   * data (15 bytes for a reload, 12 bytes for a debit or an undebit). The Lc of the SV command
+   * indicates if the card is in revision 3.2 mode.
+   *
+   * <p>The response contains the SAM challenge (3 bytes), the SAM SV transaction number (3 bytes)
+   * and the SAM part of the signature (5 bytes, 10 bytes in revision 3.2 mode).
+   */
+  private byte[] svPrepare(Channel channel, Apdu apdu) {
+    if (apdu.p1 != (byte) 0x01 || apdu.p2 != (byte) 0xFF) {
+      return SW_WRONG_P1P2.clone();
+    }
+    int svDataLength =
+        apdu.ins == INS_SV_PREPARE_LOAD ? SV_RELOAD_DATA_LENGTH : SV_DEBIT_DATA_LENGTH;
+    if (apdu.data.length < 4 + svDataLength) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    if (channel.diversifier == null) {
+      return SW_CONDITIONS_NOT_SATISFIED.clone();
+    }
+    byte svLc = apdu.data[apdu.data.length - svDataLength + 3];
+    boolean isRev32Mode =
+        apdu.ins == INS_SV_PREPARE_LOAD ? svLc == SV_RELOAD_LC_REV3_2 : svLc == SV_DEBIT_LC_REV3_2;
+
+    byte[] response = new byte[isRev32Mode ? 16 : 11];
+    byte[] challenge = new byte[3];
+    random.nextBytes(challenge);
+    System.arraycopy(challenge, 0, response, 0, 3);
+    svTransactionNumber = (svTransactionNumber + 1) & 0xFFFFFF;
+    response[3] = (byte) (svTransactionNumber >> 16);
+    response[4] = (byte) (svTransactionNumber >> 8);
+    response[5] = (byte) svTransactionNumber;
+    byte[] svKey = computeMac(masterKey, new byte[] {apdu.ins});
+    byte[] signature =
+        computeMac(
+            svKey, concat(channel.diversifier, concat(apdu.data, Arrays.copyOf(response, 6))));
+    System.arraycopy(signature, 0, response, 6, response.length - 6);
+    channel.isSvPrepared = true;
+    return buildResponse(response);
+  }
+
+  /**
+   * (private)<br>
+   * SV Check: checks the SV signature of the card (only its length is checked) or aborts the SV
+   * operation (no data).
+   */
+  private byte[] svCheck(Channel channel, Apdu apdu) {
+    if (apdu.data.length != 0 && apdu.data.length != 3 && apdu.data.length != 6) {
+      return SW_WRONG_LENGTH.clone();
+    }
+    if (apdu.data.length != 0 && !channel.isSvPrepared) {
+      return SW_CONDITIONS_NOT_SATISFIED.clone();
+    }
+    channel.isSvPrepared = false;
+    return SW_SUCCESS.clone();
+  }
+
+  /**
+   * (private)<br>
+   * Adds a buffer to the session digest, preceded by its length so that a Digest Update Multiple
+   * gives the same signature as the equivalent Digest Update commands.
+   */
+  private static void updateDigest(Channel channel, byte[] data) {
+    channel.sessionMac.update((byte) data.length);
+    channel.sessionMac.update(data);
+  }
+
+  /**
+   * (private)<br>
+   * Creates a MAC initialized with the provided key.
+   */
+  private static Mac createMac(byte[] key) {
+    try {
+      Mac mac = Mac.getInstance(MAC_ALGORITHM);
+      mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Computes the MAC of the provided data.
+   */
+  private static byte[] computeMac(byte[] key, byte[] data) {
+    return createMac(key).doFinal(data);
+  }
+
+  /**
+   * (private)<br>
+   * Concatenates two byte arrays.
+   */
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] result = Arrays.copyOf(a, a.length + b.length);
+    System.arraycopy(b, 0, result, a.length, b.length);
+    return result;
+  }
+
+  /**
+   * (private)<br>
+   * Builds a successful response.
+   */
+  private static byte[] buildResponse(byte[] dataOut) {
+    return concat(dataOut, SW_SUCCESS);
+  }
+
+  /**
+   * (private)<br>
+   * State of a logical channel.
+   */
+  private static final class Channel {
+    private byte[] diversifier;
+    private byte[] challenge;
+    private Mac sessionMac;
+    private boolean isSessionClosed;
+    private boolean isSvPrepared;
+
+    /**
+     * (private)<br>
+     * Resets the state of the channel.
+     */
+    private void reset() {
+      diversifier = null;
+      challenge = null;
+      sessionMac = null;
+      isSessionClosed = false;
+      isSvPrepared = false;
+    }
+  }
+
+  /**
+   * (private)<br>
+   * Parsed APDU command.
+   */
+  private static final class Apdu {
+    private final byte ins;
+    private final byte p1;
+    private final byte p2;
+    private final byte[] data;
+    private final int le;
+
+    private Apdu(byte ins, byte p1, byte p2, byte[] data, int le) {
+      this.ins = ins;
+      this.p1 = p1;
+      this.p2 = p2;
+      this.data = data;
+      this.le = le;
+    }
+
+    /**
+     * (private)<br>
+     * Parses a short APDU command (cases 1 to 4).
+     *
+     * @param apduIn the command (at least 4 bytes)
+     * @return null if the command is malformed
+     */
+    private static Apdu parse(byte[] apduIn) {
+      byte[] data = new byte[0];
+      int le = 0;
+      if (apduIn.length == 5) {
+        le = apduIn[4] & 0xFF;
+      } else if (apduIn.length > 5) {
+        int lc = apduIn[4] & 0xFF;
+        if (apduIn.length != 5 + lc && apduIn.length != 6 + lc) {
+          return null;
+        }
+        data = Arrays.copyOfRange(apduIn, 5, 5 + lc);
+        if (apduIn.length == 6 + lc) {
+          le = apduIn[5 + lc] & 0xFF;
+        }
+      }
+      return new Apdu(apduIn[1], apduIn[2], apduIn[3], data, le);
+    }
+  }
+}
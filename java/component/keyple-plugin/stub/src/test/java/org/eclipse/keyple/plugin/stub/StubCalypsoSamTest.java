@@ -0,0 +1,179 @@
+/* **************************************************************************************
+ * Copyright (c) 2020 Calypso Networks Association https://www.calypsonet-asso.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.plugin.stub;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.calypso.command.sam.SamRevision;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestAuthenticateCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestCloseCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestInitCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestUpdateCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.DigestUpdateMultipleCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.SamGetChallengeCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.SelectDiversifierCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.SvCheckCmdBuild;
+import org.eclipse.keyple.calypso.command.sam.builder.security.SvPrepareLoadCmdBuild;
+import org.eclipse.keyple.core.card.command.AbstractApduCommandBuilder;
+import org.eclipse.keyple.core.service.exception.KeypleReaderIOException;
+import org.eclipse.keyple.core.util.ByteArrayUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubCalypsoSamTest {
+
+  private static final byte[] SAM_SERIAL_NUMBER = ByteArrayUtil.fromHex("12345678");
+  private static final byte[] PO_SERIAL_NUMBER = ByteArrayUtil.fromHex("0000000011223344");
+  private static final byte KIF = (byte) 0x30;
+  private static final byte KVC = (byte) 0x7E;
+  private static final byte[] OPEN_SESSION_DATA = ByteArrayUtil.fromHex("0308306C00307E1D24B928");
+  private static final byte[] DIGEST_DATA_1 = ByteArrayUtil.fromHex("00B2014400");
+  private static final byte[] DIGEST_DATA_2 =
+      ByteArrayUtil.fromHex("00112233445566778899AABBCCDDEEFF00112233445566778899AABBCC9000");
+  private static final String SW_SUCCESS = "9000";
+
+  private StubCalypsoSam sam;
+
+  @Before
+  public void setUp() {
+    sam = new StubCalypsoSam(SAM_SERIAL_NUMBER);
+  }
+
+  @Test
+  public void getATR_shouldContainTheSerialNumber() {
+    assertEquals("3B3F9600805A0080C120000012345678829000", ByteArrayUtil.toHex(sam.getATR()));
+  }
+
+  @Test
+  public void session_shouldComputeTheSignature() {
+    openSession(sam);
+    assertEquals(SW_SUCCESS, transmit(sam, new DigestUpdateCmdBuild(null, false, DIGEST_DATA_1)));
+    assertEquals(SW_SUCCESS, transmit(sam, new DigestUpdateCmdBuild(null, false, DIGEST_DATA_2)));
+
+    String response = transmit(sam, new DigestCloseCmdBuild(null, (byte) 4));
+    assertEquals(12, response.length());
+    assertTrue(response.endsWith(SW_SUCCESS));
+
+    byte[] poSignature = ByteArrayUtil.fromHex("01020304");
+    assertEquals(SW_SUCCESS, transmit(sam, new DigestAuthenticateCmdBuild(null, poSignature)));
+  }
+
+  @Test
+  public void digestUpdateMultiple_shouldGiveTheSameSignatureThanDigestUpdates() {
+    openSession(sam);
+    transmit(sam, new DigestUpdateCmdBuild(null, false, DIGEST_DATA_1));
+    transmit(sam, new DigestUpdateCmdBuild(null, false, DIGEST_DATA_2));
+    String signature = transmit(sam, new DigestCloseCmdBuild(null, (byte) 8));
+
+    // the challenges of two emulators having the same serial number are the same
+    StubCalypsoSam otherSam = new StubCalypsoSam(SAM_SERIAL_NUMBER);
+    openSession(otherSam);
+    byte[] packedData = new byte[DIGEST_DATA_1.length + DIGEST_DATA_2.length + 2];
+    packedData[0] = (byte) DIGEST_DATA_1.length;
+    System.arraycopy(DIGEST_DATA_1, 0, packedData, 1, DIGEST_DATA_1.length);
+    packedData[DIGEST_DATA_1.length + 1] = (byte) DIGEST_DATA_2.length;
+    System.arraycopy(DIGEST_DATA_2, 0, packedData, DIGEST_DATA_1.length + 2, DIGEST_DATA_2.length);
+    transmit(otherSam, new DigestUpdateMultipleCmdBuild(null, false, packedData));
+    assertEquals(signature, transmit(otherSam, new DigestCloseCmdBuild(null, (byte) 8)));
+  }
+
+  @Test
+  public void session_whenDataDiffer_shouldGiveAnotherSignature() {
+    openSession(sam);
+    transmit(sam, new DigestUpdateCmdBuild(null, false, DIGEST_DATA_1));
+    String signature = transmit(sam, new DigestCloseCmdBuild(null, (byte) 4));
+
+    StubCalypsoSam otherSam = new StubCalypsoSam(SAM_SERIAL_NUMBER);
+    openSession(otherSam);
+    transmit(otherSam, new DigestUpdateCmdBuild(null, false, DIGEST_DATA_2));
+    assertNotEquals(signature, transmit(otherSam, new DigestCloseCmdBuild(null, (byte) 4)));
+  }
+
+  @Test
+  public void digestUpdate_whenNoSession_shouldReturn6985() {
+    assertEquals("6985", transmit(sam, new DigestUpdateCmdBuild(null, false, DIGEST_DATA_1)));
+  }
+
+  @Test
+  public void digestAuthenticate_whenSessionIsNotClosed_shouldReturn6985() {
+    openSession(sam);
+    byte[] poSignature = ByteArrayUtil.fromHex("01020304");
+    assertEquals("6985", transmit(sam, new DigestAuthenticateCmdBuild(null, poSignature)));
+  }
+
+  @Test
+  public void svPrepareLoad_shouldReturnTheSamPartOfTheSvCommand() {
+    transmit(sam, new SelectDiversifierCmdBuild(null, PO_SERIAL_NUMBER));
+    byte[] svGetHeader = ByteArrayUtil.fromHex("007C0721");
+    byte[] svGetData = ByteArrayUtil.fromHex("7989C4D30123456789ABCDEF0001000064000000000000");
+    byte[] svReloadData = ByteArrayUtil.fromHex("B80000170000006400000000000000");
+    String response =
+        transmit(
+            sam,
+            new SvPrepareLoadCmdBuild(SamRevision.C1, svGetHeader, svGetData, svReloadData));
+    // challenge (3) + transaction number (3) + signature (5) + SW
+    assertEquals(26, response.length());
+    assertEquals("000001", response.substring(6, 12));
+    byte[] poSvSignature = ByteArrayUtil.fromHex("010203");
+    assertEquals(SW_SUCCESS, transmit(sam, new SvCheckCmdBuild(null, poSvSignature)));
+  }
+
+  @Test
+  public void manageChannel_shouldOpenIndependentChannels() {
+    byte[] manageChannel = ByteArrayUtil.fromHex("0070000001");
+    assertEquals("019000", ByteArrayUtil.toHex(sam.processApdu(manageChannel)));
+    openSession(sam);
+    // no session on channel 1
+    byte[] digestUpdate =
+        new DigestUpdateCmdBuild(null, false, DIGEST_DATA_1).getApduRequest().getBytes();
+    digestUpdate[0] |= 0x01;
+    assertEquals("6985", ByteArrayUtil.toHex(sam.processApdu(digestUpdate)));
+    // channel 2 is not open
+    digestUpdate[0] |= 0x02;
+    assertEquals("6881", ByteArrayUtil.toHex(sam.processApdu(digestUpdate)));
+  }
+
+  @Test
+  public void processApdu_whenCommandIsNotEmulated_shouldUseTheHexCommands() {
+    sam.addHexCommand("80BC00A000", "0102039000");
+    assertEquals(
+        "0102039000", ByteArrayUtil.toHex(sam.processApdu(ByteArrayUtil.fromHex("80BC00A000"))));
+  }
+
+  @Test(expected = KeypleReaderIOException.class)
+  public void processApdu_whenCommandIsUnknown_shouldThrowKRIOE() {
+    sam.processApdu(ByteArrayUtil.fromHex("80BC00A000"));
+  }
+
+  @Test
+  public void setApduLatency_shouldDelayTheResponses() {
+    sam.setApduLatency(20, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    transmit(sam, new SelectDiversifierCmdBuild(null, PO_SERIAL_NUMBER));
+    transmit(sam, new SamGetChallengeCmdBuild(null, (byte) 4));
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+  }
+
+  private void openSession(StubCalypsoSam sam) {
+    assertEquals(SW_SUCCESS, transmit(sam, new SelectDiversifierCmdBuild(null, PO_SERIAL_NUMBER)));
+    String challenge = transmit(sam, new SamGetChallengeCmdBuild(null, (byte) 4));
+    assertEquals(12, challenge.length());
+    DigestInitCmdBuild digestInit =
+        new DigestInitCmdBuild(null, false, false, (byte) 0, KIF, KVC, OPEN_SESSION_DATA);
+    assertEquals(SW_SUCCESS, transmit(sam, digestInit));
+  }
+
+  private String transmit(StubCalypsoSam sam, AbstractApduCommandBuilder builder) {
+    return ByteArrayUtil.toHex(sam.processApdu(builder.getApduRequest().getBytes()));
+  }
+}